@@ -25,27 +25,75 @@ package wood.poulos.webcrawler;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import wood.poulos.webcrawler.util.Fetcher;
 import wood.poulos.webcrawler.util.URLDownloader;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.Locale;
 
 /**
  * Simple implementation of WebElement for the parts that are consistent across
  * all web elements.
+ * <p>
+ * Elements are identified by a canonical string form of their URL, which is
+ * computed once along with its hash. Unlike {@link URL#equals(Object)} and
+ * {@link URL#hashCode()}, comparing and hashing elements never resolves host
+ * names, so putting elements in sets never touches the network.
+ * </p>
  */
 abstract class AbstractWebElement implements WebElement {
 
-    private static final Logger logger = LoggerFactory.getLogger(WebCrawler.class);
-
     private final URL url;
+    private final String identity;
+    private final int hash;
 
     AbstractWebElement(URL url) {
         this.url = url;
+        this.identity = identityOf(url);
+        this.hash = identity.hashCode();
+    }
+
+    /**
+     * Returns the canonical string form of the given URL that web elements
+     * are identified by. It is the same for any two URLs that
+     * {@link URL#equals(Object)} considers equal by name alone: the protocol
+     * and host are lower cased and the protocol's default port is left out.
+     *
+     * @param url The URL to identify.
+     * @return The URL's identity.
+     */
+    @NotNull
+    static String identityOf(@NotNull URL url) {
+        StringBuilder identity = new StringBuilder(url.toExternalForm().length());
+        identity.append(url.getProtocol().toLowerCase(Locale.ENGLISH)).append(':');
+        if (url.getAuthority() != null) {
+            identity.append("//").append(url.getHost().toLowerCase(Locale.ENGLISH));
+            if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+                identity.append(':').append(url.getPort());
+            }
+        }
+        identity.append(url.getFile());
+        if (url.getRef() != null) {
+            identity.append('#').append(url.getRef());
+        }
+        return identity.toString();
+    }
+
+    /**
+     * Returns the identity of the given element, as described by
+     * {@link #identityOf(URL)}.
+     *
+     * @param element The element to identify.
+     * @return The element's identity.
+     */
+    @NotNull
+    static String identityOf(@NotNull WebElement element) {
+        if (element instanceof AbstractWebElement) {
+            return ((AbstractWebElement) element).identity;
+        }
+        return identityOf(element.getURL());
     }
 
     /**
@@ -59,18 +107,18 @@ abstract class AbstractWebElement implements WebElement {
 
     /**
      * {@inheritDoc}
-     *
-     * @param saveLocation
      */
     @Override
-    public void save(Path saveLocation) {
-        try {
-            URLDownloader.downloadElement(getURL(), saveLocation);
-        } catch (FileNotFoundException e) {
-            logger.warn("Could not locate element {}", e.getMessage());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    public void save(Path saveLocation) throws IOException {
+        URLDownloader.downloadElement(getURL(), saveLocation);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(@NotNull Path saveLocation, @NotNull Fetcher fetcher) throws IOException {
+        URLDownloader.downloadElement(fetcher, getURL(), saveLocation);
     }
 
     /**
@@ -78,7 +126,7 @@ abstract class AbstractWebElement implements WebElement {
      */
     @Override
     public int hashCode() {
-        return getURL().hashCode();
+        return hash;
     }
 
     /**
@@ -94,8 +142,11 @@ abstract class AbstractWebElement implements WebElement {
             return false;
         }
 
-        WebElement other = (WebElement) obj;
-        return other.getURL().equals(this.getURL());
+        if (obj instanceof AbstractWebElement) {
+            AbstractWebElement other = (AbstractWebElement) obj;
+            return other.hash == hash && other.identity.equals(identity);
+        }
+        return identityOf(((WebElement) obj).getURL()).equals(identity);
     }
 
     /**
@@ -0,0 +1,274 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wood.poulos.webcrawler.util.Fetcher;
+import wood.poulos.webcrawler.util.HttpStatusException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides how many requests to each host may run at once, adapting the limit
+ * to how the host copes.
+ * <p>
+ * Limits follow additive increase, multiplicative decrease: every request that
+ * succeeds while the host's latency stays flat raises its limit by a fraction,
+ * adding about one request per round of requests, and a timeout, a 429 or a
+ * 5xx status halves it. Latency counts as flat while its recent average stays
+ * within {@value #LATENCY_TOLERANCE} times its long running average. Limits
+ * stay between 1 and the given maximum.
+ * </p>
+ */
+final class AdaptiveLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveLimiter.class);
+
+    /**
+     * How far the recent latency of a host may rise above its long running
+     * latency before its limit stops growing.
+     */
+    static final double LATENCY_TOLERANCE = 1.5;
+
+    private static final double RECENT_LATENCY_WEIGHT = 0.3;
+    private static final double LONG_RUNNING_LATENCY_WEIGHT = 0.05;
+    private static final double BACKOFF = 0.5;
+
+    @NotNull
+    private final String name;
+    private final int initialLimit;
+    private final int maxLimit;
+    private final ConcurrentMap<String, HostLimit> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a limiter.
+     *
+     * @param name         What the limiter limits, for the logs.
+     * @param initialLimit The limit for a host that has not been seen yet.
+     * @param maxLimit     The highest a host's limit may grow.
+     * @throws IllegalArgumentException If the initial limit is less than 1 or
+     *                                  more than the maximum.
+     */
+    AdaptiveLimiter(@NotNull String name, int initialLimit, int maxLimit) throws IllegalArgumentException {
+        if (initialLimit < 1 || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("The initial limit must be between 1 and the maximum limit.");
+        }
+        this.name = name;
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Returns how many requests to the given host may run at once.
+     *
+     * @param host The host.
+     * @return the host's current limit.
+     */
+    int getLimit(@NotNull String host) {
+        HostLimit limit = hosts.get(host.toLowerCase(Locale.ENGLISH));
+        return limit == null ? initialLimit : limit.get();
+    }
+
+    /**
+     * Returns the current limit of every host that has been seen so far,
+     * ordered by host.
+     *
+     * @return the current limits by host.
+     */
+    @NotNull
+    SortedMap<String, Integer> getLimits() {
+        SortedMap<String, Integer> limits = new TreeMap<>();
+        for (Map.Entry<String, HostLimit> host : hosts.entrySet()) {
+            limits.put(host.getKey(), host.getValue().get());
+        }
+        return limits;
+    }
+
+    /**
+     * Records a request to the given host that succeeded.
+     *
+     * @param host         The host.
+     * @param latencyNanos How long the request took, in nanoseconds.
+     */
+    void recordSuccess(@NotNull String host, long latencyNanos) {
+        hostLimit(host).succeeded(latencyNanos);
+    }
+
+    /**
+     * Wraps the given fetcher so that every response it receives is recorded
+     * as a success, with the time until the server started answering as its
+     * latency. How long the body then takes to read depends on its size more
+     * than on how the host copes, so it is left out. Failures are left to the
+     * caller, since reading the body can fail too.
+     *
+     * @param fetcher The fetcher to record the responses of.
+     * @return The recording fetcher.
+     */
+    @NotNull
+    Fetcher recordLatency(@NotNull Fetcher fetcher) {
+        return new Fetcher() {
+            @NotNull
+            @Override
+            public Response fetch(@NotNull URL url) throws IOException {
+                long start = System.nanoTime();
+                Response response = fetcher.fetch(url);
+                recordSuccess(url.getHost(), System.nanoTime() - start);
+                return response;
+            }
+
+            @NotNull
+            @Override
+            public CompletableFuture<Void> fetchAsync(@NotNull URL url, @NotNull BodyHandler handler) {
+                long start = System.nanoTime();
+                return fetcher.fetchAsync(url, new BodyHandler() {
+                    @Override
+                    public void start(@Nullable String contentType) throws IOException {
+                        recordSuccess(url.getHost(), System.nanoTime() - start);
+                        handler.start(contentType);
+                    }
+
+                    @Override
+                    public void handle(@NotNull ByteBuffer chunk) throws IOException {
+                        handler.handle(chunk);
+                    }
+
+                    @Override
+                    public void finish() throws IOException {
+                        handler.finish();
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Records a request to the given host that failed, cutting the host's
+     * limit if the failure shows that the host is overloaded.
+     *
+     * @param host    The host.
+     * @param failure Why the request failed.
+     */
+    void recordFailure(@NotNull String host, @NotNull IOException failure) {
+        if (isOverload(failure)) {
+            hostLimit(host).backOff();
+        }
+    }
+
+    /**
+     * Returns whether the given failure shows that a host is overloaded: a
+     * timeout, a 429 (too many requests) or a 5xx status.
+     *
+     * @param failure Why a request failed.
+     * @return True if the host should be sent fewer requests at once.
+     */
+    static boolean isOverload(@NotNull IOException failure) {
+        if (failure instanceof SocketTimeoutException) {
+            return true;
+        }
+        if (failure instanceof HttpStatusException) {
+            int status = ((HttpStatusException) failure).getStatusCode();
+            return status == 429 || status >= 500;
+        }
+        return false;
+    }
+
+    @NotNull
+    private HostLimit hostLimit(@NotNull String host) {
+        return hosts.computeIfAbsent(host.toLowerCase(Locale.ENGLISH), HostLimit::new);
+    }
+
+    /**
+     * The limit of a single host and the latency it is judged by.
+     */
+    private final class HostLimit {
+
+        @NotNull
+        private final String host;
+        private double limit = initialLimit;
+        private double recentLatency = Double.NaN;
+        private double longRunningLatency = Double.NaN;
+        private long lastBackOff = System.nanoTime();
+        private boolean backedOff = false;
+
+        private HostLimit(@NotNull String host) {
+            this.host = host;
+        }
+
+        private synchronized int get() {
+            return (int) limit;
+        }
+
+        private void succeeded(long latencyNanos) {
+            int before;
+            int after;
+            synchronized (this) {
+                before = (int) limit;
+                if (Double.isNaN(recentLatency)) {
+                    recentLatency = latencyNanos;
+                    longRunningLatency = latencyNanos;
+                } else {
+                    recentLatency += RECENT_LATENCY_WEIGHT * (latencyNanos - recentLatency);
+                    longRunningLatency += LONG_RUNNING_LATENCY_WEIGHT * (latencyNanos - longRunningLatency);
+                }
+                if (recentLatency <= longRunningLatency * LATENCY_TOLERANCE) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+                after = (int) limit;
+            }
+            if (after != before) {
+                logger.debug("Raised {} limit for {} to {}", name, host, after);
+            }
+        }
+
+        private void backOff() {
+            int after;
+            synchronized (this) {
+                // Requests that were already running when the host became overloaded fail together, which is only
+                // one sign of overload, so the limit is only cut once per round of requests.
+                long now = System.nanoTime();
+                if (backedOff && !Double.isNaN(longRunningLatency) && now - lastBackOff < longRunningLatency) {
+                    return;
+                }
+                backedOff = true;
+                lastBackOff = now;
+                limit = Math.max(1, limit * BACKOFF);
+                after = (int) limit;
+            }
+            logger.debug("Cut {} limit for {} to {}", name, host, after);
+        }
+    }
+}
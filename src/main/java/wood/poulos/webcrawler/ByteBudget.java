@@ -0,0 +1,215 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.apache.commons.io.input.ProxyInputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import wood.poulos.webcrawler.util.Fetcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit on the number of bytes fetched, shared by every thread fetching
+ * through the same budget.
+ * <p>
+ * Bytes are counted as they are read from response bodies. Once the budget is
+ * used up, fetches that have not started yet throw a
+ * {@link BudgetExhaustedException}, while responses already being read are
+ * read to the end so that nothing is left half saved. The budget can
+ * therefore be overrun by what was in flight when it ran out.
+ * </p>
+ */
+final class ByteBudget {
+
+    @NotNull
+    private final String name;
+    private final long maxBytes;
+    @NotNull
+    private final Runnable onExhausted;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    /**
+     * Creates a budget.
+     *
+     * @param name        What the budget is for, used in messages.
+     * @param maxBytes    The number of bytes that may be fetched.
+     * @param onExhausted Run once, by the thread that uses the budget up.
+     */
+    ByteBudget(@NotNull String name, long maxBytes, @NotNull Runnable onExhausted) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("A byte budget must allow at least one byte.");
+        }
+        this.name = name;
+        this.maxBytes = maxBytes;
+        this.onExhausted = onExhausted;
+    }
+
+    /**
+     * Returns the number of bytes fetched through this budget so far.
+     *
+     * @return the number of bytes used.
+     */
+    long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * Returns whether this budget is used up.
+     *
+     * @return True if no more fetches may start.
+     */
+    boolean isExhausted() {
+        return usedBytes.get() >= maxBytes;
+    }
+
+    /**
+     * Returns a fetcher that fetches with the given fetcher within this
+     * budget.
+     *
+     * @param fetcher The fetcher to fetch with.
+     * @return the budgeted fetcher.
+     */
+    @NotNull
+    Fetcher limit(@NotNull Fetcher fetcher) {
+        return new Fetcher() {
+            @NotNull
+            @Override
+            public Response fetch(@NotNull URL url) throws IOException {
+                checkNotExhausted(url);
+                return new CountedResponse(fetcher.fetch(url));
+            }
+
+            @NotNull
+            @Override
+            public CompletableFuture<Void> fetchAsync(@NotNull URL url, @NotNull BodyHandler handler) {
+                try {
+                    checkNotExhausted(url);
+                } catch (BudgetExhaustedException e) {
+                    CompletableFuture<Void> result = new CompletableFuture<>();
+                    result.completeExceptionally(e);
+                    return result;
+                }
+                return fetcher.fetchAsync(url, new CountedBodyHandler(handler));
+            }
+        };
+    }
+
+    private void checkNotExhausted(@NotNull URL url) throws BudgetExhaustedException {
+        if (isExhausted()) {
+            throw new BudgetExhaustedException("The " + name + " budget of " + maxBytes
+                    + " bytes is used up, not fetching " + url);
+        }
+    }
+
+    private void use(long bytes) {
+        long before = usedBytes.getAndAdd(bytes);
+        if (before < maxBytes && before + bytes >= maxBytes) {
+            onExhausted.run();
+        }
+    }
+
+    /**
+     * A response whose body counts what is read from it against the budget.
+     */
+    private final class CountedResponse implements Fetcher.Response {
+
+        @NotNull
+        private final Fetcher.Response response;
+        @NotNull
+        private final InputStream body;
+
+        private CountedResponse(@NotNull Fetcher.Response response) {
+            this.response = response;
+            this.body = new ProxyInputStream(response.getBody()) {
+                @Override
+                protected void afterRead(int n) {
+                    if (n > 0) {
+                        use(n);
+                    }
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    long skipped = super.skip(n);
+                    if (skipped > 0) {
+                        use(skipped);
+                    }
+                    return skipped;
+                }
+            };
+        }
+
+        @Nullable
+        @Override
+        public String getContentType() {
+            return response.getContentType();
+        }
+
+        @NotNull
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            response.close();
+        }
+    }
+
+    /**
+     * A body handler that counts what is handed to it against the budget.
+     */
+    private final class CountedBodyHandler implements Fetcher.BodyHandler {
+
+        @NotNull
+        private final Fetcher.BodyHandler handler;
+
+        private CountedBodyHandler(@NotNull Fetcher.BodyHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void start(@Nullable String contentType) throws IOException {
+            handler.start(contentType);
+        }
+
+        @Override
+        public void handle(@NotNull ByteBuffer chunk) throws IOException {
+            use(chunk.remaining());
+            handler.handle(chunk);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            handler.finish();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Works out the charset of a web page the way a browser does: from a byte
+ * order mark, then the charset of the Content-Type header, then a
+ * {@code meta} charset declaration near the start of the page.
+ */
+final class CharsetDetector {
+
+    /**
+     * How far into a page to look for a {@code meta} charset declaration.
+     */
+    static final int PRESCAN_LENGTH = 1024;
+
+    /**
+     * The characters that must encode to the same bytes as in ASCII for the
+     * tokenizer to read a page's bytes directly.
+     */
+    private static final String ASCII_PROBE = "<!-->=\"' \t\r\n/abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private CharsetDetector() {
+    }
+
+    /**
+     * Detects the charset of the page starting with the given bytes.
+     *
+     * @param prefix      The first bytes of the page's body. Only the first
+     *                    {@link #PRESCAN_LENGTH} are looked at.
+     * @param contentType The page's Content-Type header, if any.
+     * @param tokenizer   A tokenizer for finding {@code meta} tags.
+     * @param fallback    The charset to use if the page does not declare one.
+     * @return The page's charset.
+     * @throws IllegalStateException If the tokenizer is already reading an
+     *                               input.
+     */
+    @NotNull
+    static Charset detect(@NotNull byte[] prefix, @Nullable String contentType,
+                          @NotNull HTMLTagTokenizer tokenizer, @NotNull Charset fallback) throws IllegalStateException {
+        int length = Math.min(prefix.length, PRESCAN_LENGTH);
+        Charset charset = fromByteOrderMark(prefix, length);
+        if (charset == null) {
+            charset = fromContentType(contentType);
+        }
+        if (charset == null) {
+            charset = fromMetaTags(prefix, length, tokenizer);
+        }
+        return charset != null ? charset : fallback;
+    }
+
+    /**
+     * Returns the charset named by the charset parameter of the given
+     * Content-Type, or null if there is none or it is not supported.
+     */
+    @Nullable
+    static Charset fromContentType(@Nullable String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset");
+        while (index >= 0) {
+            int i = index + "charset".length();
+            while (i < contentType.length() && contentType.charAt(i) <= ' ') {
+                i++;
+            }
+            if (i < contentType.length() && contentType.charAt(i) == '=') {
+                int start = i + 1;
+                while (start < contentType.length() && contentType.charAt(start) <= ' ') {
+                    start++;
+                }
+                int end = start;
+                while (end < contentType.length() && contentType.charAt(end) != ';'
+                        && contentType.charAt(end) > ' ') {
+                    end++;
+                }
+                return forName(contentType.substring(start, end));
+            }
+            index = contentType.toLowerCase(Locale.ROOT).indexOf("charset", i);
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the tokenizer can read text in the given charset as
+     * bytes, which is when the characters of HTML markup encode to the same
+     * single bytes as in ASCII.
+     *
+     * @param charset The charset to check.
+     * @return True if the charset is ASCII compatible.
+     */
+    static boolean isAsciiCompatible(@NotNull Charset charset) {
+        return charset.canEncode() && Arrays.equals(ASCII_PROBE.getBytes(StandardCharsets.US_ASCII),
+                ASCII_PROBE.getBytes(charset));
+    }
+
+    /**
+     * Returns the given page's body as bytes the tokenizer can read: the body
+     * itself if its charset is ASCII compatible, or the body transcoded to
+     * UTF-8 if not.
+     *
+     * @param input   The page's body.
+     * @param charset The body's charset.
+     * @return The body in an ASCII compatible charset.
+     */
+    @NotNull
+    static InputStream asciiCompatible(@NotNull InputStream input, @NotNull Charset charset) {
+        if (isAsciiCompatible(charset)) {
+            return input;
+        }
+        return new TranscodingInputStream(new InputStreamReader(input, charset), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the charset the tokenizer's values will be in when reading the
+     * stream returned by {@link #asciiCompatible} for the given charset.
+     *
+     * @param charset The body's charset.
+     * @return The charset of the values found in the body.
+     */
+    @NotNull
+    static Charset tokenCharset(@NotNull Charset charset) {
+        return isAsciiCompatible(charset) ? charset : StandardCharsets.UTF_8;
+    }
+
+    @Nullable
+    private static Charset fromByteOrderMark(@NotNull byte[] prefix, int length) {
+        if (length >= 3 && prefix[0] == (byte) 0xEF && prefix[1] == (byte) 0xBB && prefix[2] == (byte) 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (length >= 2 && ((prefix[0] == (byte) 0xFE && prefix[1] == (byte) 0xFF)
+                || (prefix[0] == (byte) 0xFF && prefix[1] == (byte) 0xFE))) {
+            // The UTF-16 decoder picks the byte order from the mark.
+            return StandardCharsets.UTF_16;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Charset fromMetaTags(@NotNull byte[] prefix, int length, @NotNull HTMLTagTokenizer tokenizer) {
+        Charset[] declared = new Charset[1];
+        tokenizer.start((type, bytes, start, end) -> {
+            if (declared[0] != null) {
+                return;
+            }
+            String value = new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+            if (type == HTMLTagTokenizer.AttributeType.META_CHARSET) {
+                declared[0] = forName(value.trim());
+            } else if (type == HTMLTagTokenizer.AttributeType.META_CONTENT) {
+                declared[0] = fromContentType(value);
+            }
+        });
+        try {
+            tokenizer.feed(prefix, 0, length);
+        } finally {
+            tokenizer.finish();
+        }
+        if (declared[0] != null && !isAsciiCompatible(declared[0])) {
+            // The declaration was readable as ASCII, so the page can't really
+            // be in a charset such as UTF-16.
+            return StandardCharsets.UTF_8;
+        }
+        return declared[0];
+    }
+
+    @Nullable
+    private static Charset forName(@NotNull String name) {
+        if (name.length() > 1 && (name.charAt(0) == '"' || name.charAt(0) == '\'')
+                && name.charAt(name.length() - 1) == name.charAt(0)) {
+            name = name.substring(1, name.length() - 1);
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Decides what a fetched link really is from its Content-Type header and the
+ * first bytes of its body, so that bodies which are not HTML are never run
+ * through the tokenizer.
+ * <p>
+ * A known file signature always wins, since misconfigured servers label all
+ * sorts of files as HTML. Otherwise HTML and image Content-Types are trusted,
+ * as are types that are clearly binary, such as application/pdf or video/mp4.
+ * Textual types, such as text/plain or application/xml, are only pages if the
+ * body starts with HTML markup, since servers label HTML with them too. A
+ * missing or generic Content-Type, such as application/octet-stream, falls
+ * back to looking at the body for binary bytes.
+ * </p>
+ */
+final class ContentSniffer {
+
+    /**
+     * How many bytes at the start of a body are looked at.
+     */
+    static final int SNIFF_LENGTH = 1024;
+
+    private static final byte[][] IMAGE_SIGNATURES = {
+            {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'},
+            {'G', 'I', 'F', '8', '7', 'a'},
+            {'G', 'I', 'F', '8', '9', 'a'},
+            {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF},
+            {0, 0, 1, 0},
+    };
+
+    private static final byte[][] FILE_SIGNATURES = {
+            {'%', 'P', 'D', 'F', '-'},
+            {'P', 'K', 3, 4},
+            {0x1F, (byte) 0x8B},
+            {'R', 'a', 'r', '!', 0x1A, 0x07},
+            {'7', 'z', (byte) 0xBC, (byte) 0xAF},
+            {'O', 'g', 'g', 'S', 0},
+            {0x7F, 'E', 'L', 'F'},
+    };
+
+    /**
+     * The tags an HTML document is recognized by when it is labelled as
+     * another kind of text, as in the WHATWG MIME Sniffing Standard.
+     */
+    private static final String[] HTML_TAGS = {
+            "<!DOCTYPE HTML", "<HTML", "<HEAD", "<SCRIPT", "<IFRAME", "<H1", "<DIV", "<FONT", "<TABLE", "<A",
+            "<STYLE", "<TITLE", "<B", "<BODY", "<BR", "<P", "<!--",
+    };
+
+    private static final byte[] UTF_8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] RIFF = "RIFF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WEBP = "WEBP".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FTYP = "ftyp".getBytes(StandardCharsets.US_ASCII);
+
+    private ContentSniffer() {
+    }
+
+    /**
+     * Reads up to the given number of bytes from the start of the input and
+     * then resets the input to its start.
+     *
+     * @param input  The input to peek at, which must support mark and reset.
+     * @param length The most bytes to read.
+     * @return The bytes read, which is fewer than asked for only if the input
+     * is shorter.
+     * @throws IOException If reading the input fails.
+     */
+    @NotNull
+    static byte[] peek(@NotNull BufferedInputStream input, int length) throws IOException {
+        input.mark(length);
+        byte[] prefix = new byte[length];
+        int read = 0;
+        int count;
+        while (read < length && (count = input.read(prefix, read, length - read)) != -1) {
+            read += count;
+        }
+        input.reset();
+        return read == length ? prefix : Arrays.copyOf(prefix, read);
+    }
+
+    /**
+     * Returns what the body with the given Content-Type and first bytes is.
+     *
+     * @param contentType The body's Content-Type header, if any.
+     * @param prefix      The first bytes of the body.
+     * @return {@code PAGE} if the body is HTML, {@code IMAGE} if it is an
+     * image, or {@code FILE} if it is something else.
+     */
+    @NotNull
+    static WebPage.URLParser.URLType classify(@Nullable String contentType, @NotNull byte[] prefix) {
+        if (startsWithAny(prefix, 0, IMAGE_SIGNATURES)
+                || (startsWith(prefix, 0, RIFF) && startsWith(prefix, 8, WEBP))) {
+            return WebPage.URLParser.URLType.IMAGE;
+        }
+        if (startsWithAny(prefix, 0, FILE_SIGNATURES) || startsWith(prefix, 0, RIFF) || startsWith(prefix, 4, FTYP)) {
+            return WebPage.URLParser.URLType.FILE;
+        }
+
+        String mediaType = mediaTypeOf(contentType);
+        if (mediaType.equals("text/html") || mediaType.equals("application/xhtml+xml")) {
+            return WebPage.URLParser.URLType.PAGE;
+        }
+        if (mediaType.startsWith("image/")) {
+            return WebPage.URLParser.URLType.IMAGE;
+        }
+        if (isGeneric(mediaType)) {
+            return looksLikeText(prefix) ? WebPage.URLParser.URLType.PAGE : WebPage.URLParser.URLType.FILE;
+        }
+        if (isBinary(mediaType)) {
+            return WebPage.URLParser.URLType.FILE;
+        }
+        return looksLikeHTML(prefix) ? WebPage.URLParser.URLType.PAGE : WebPage.URLParser.URLType.FILE;
+    }
+
+    /**
+     * Returns the lower case media type of the given Content-Type without
+     * its parameters, or an empty string if there is none.
+     */
+    @NotNull
+    static String mediaTypeOf(@Nullable String contentType) {
+        if (contentType == null) {
+            return "";
+        }
+        int end = contentType.indexOf(';');
+        return (end == -1 ? contentType : contentType.substring(0, end)).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isGeneric(@NotNull String mediaType) {
+        return mediaType.isEmpty() || mediaType.equals("application/octet-stream") || mediaType.equals("*/*")
+                || mediaType.equals("unknown/unknown") || mediaType.equals("application/unknown");
+    }
+
+    /**
+     * Returns whether the media type is one that never holds text: audio,
+     * video, fonts and models, and application types other than XML,
+     * JSON and scripts.
+     */
+    private static boolean isBinary(@NotNull String mediaType) {
+        if (mediaType.startsWith("audio/") || mediaType.startsWith("video/") || mediaType.startsWith("font/")
+                || mediaType.startsWith("model/")) {
+            return true;
+        }
+        return mediaType.startsWith("application/") && !mediaType.endsWith("xml") && !mediaType.endsWith("json")
+                && !mediaType.endsWith("javascript") && !mediaType.endsWith("ecmascript");
+    }
+
+    /**
+     * Returns whether the bytes start, after any byte order mark and white
+     * space, with one of the tags HTML documents are recognized by.
+     */
+    private static boolean looksLikeHTML(@NotNull byte[] prefix) {
+        int start = startsWith(prefix, 0, UTF_8_BOM) ? UTF_8_BOM.length : 0;
+        while (start < prefix.length && (prefix[start] == ' ' || prefix[start] == '\t' || prefix[start] == '\n'
+                || prefix[start] == '\f' || prefix[start] == '\r')) {
+            start++;
+        }
+        for (String tag : HTML_TAGS) {
+            int end = start + tag.length();
+            // The tag has to end there, so that <a does not match <abbr or <br match <brain.
+            if (end < prefix.length && (prefix[end] == ' ' || prefix[end] == '>')
+                    && new String(prefix, start, tag.length(), StandardCharsets.ISO_8859_1).equalsIgnoreCase(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true unless the bytes contain control characters that never
+     * appear in text. Bodies with a UTF-16 byte order mark are text.
+     */
+    private static boolean looksLikeText(@NotNull byte[] prefix) {
+        if (prefix.length >= 2 && ((prefix[0] == (byte) 0xFE && prefix[1] == (byte) 0xFF)
+                || (prefix[0] == (byte) 0xFF && prefix[1] == (byte) 0xFE))) {
+            return true;
+        }
+        for (byte b : prefix) {
+            if ((b >= 0 && b <= 0x08) || b == 0x0B || (b >= 0x0E && b <= 0x1A) || (b >= 0x1C && b <= 0x1F)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWithAny(@NotNull byte[] bytes, int offset, @NotNull byte[][] signatures) {
+        for (byte[] signature : signatures) {
+            if (startsWith(bytes, offset, signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(@NotNull byte[] bytes, int offset, @NotNull byte[] signature) {
+        if (bytes.length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (bytes[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The pages of a crawl that are waiting to be crawled.
+ * <p>
+ * Pages are handed out shallowest depth first and in the order they were
+ * added within each depth. Only a limited number of pages are kept in memory;
+ * once that many are waiting, further pages are spilled to memory-mapped
+ * segment files on disk and read back as room frees up, so the frontier can
+ * grow far larger than the heap.
+ * </p>
+ */
+final class CrawlFrontier implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlFrontier.class);
+
+    /**
+     * The size of each segment file pages are spilled to.
+     */
+    static final int SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    private final int memoryCapacity;
+    private final int segmentSize;
+    private final List<DepthQueue> depths = new ArrayList<>();
+    private int memorySize = 0;
+    private long size = 0;
+    @Nullable
+    private Path spillDirectory;
+    private int segmentCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a frontier keeping at most the given number of pages in memory.
+     *
+     * @param memoryCapacity The number of waiting pages kept in memory.
+     */
+    CrawlFrontier(int memoryCapacity) {
+        this(memoryCapacity, SEGMENT_SIZE);
+    }
+
+    CrawlFrontier(int memoryCapacity, int segmentSize) {
+        this.memoryCapacity = memoryCapacity;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Adds a page to the back of the queue for its depth.
+     *
+     * @param url   The URL of the page.
+     * @param depth The depth the page is to be crawled at.
+     * @throws UncheckedIOException If the page had to be spilled to disk and
+     *                              could not be written.
+     */
+    synchronized void add(@NotNull String url, int depth) throws UncheckedIOException {
+        if (closed) {
+            return;
+        }
+        while (depths.size() <= depth) {
+            depths.add(new DepthQueue());
+        }
+        DepthQueue queue = depths.get(depth);
+        // Once a depth has spilled, later pages go after the spilled ones to keep them in order.
+        if (queue.spilled.isEmpty() && memorySize < memoryCapacity) {
+            queue.inMemory.add(url);
+            memorySize++;
+        } else {
+            try {
+                queue.spilled.add(url.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not spill the crawl frontier to disk", e);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Removes the next page to crawl.
+     *
+     * @return The next page to crawl, or null if there are none waiting.
+     */
+    @Nullable
+    synchronized Entry poll() {
+        if (closed) {
+            return null;
+        }
+        for (int depth = 0; depth < depths.size(); depth++) {
+            DepthQueue queue = depths.get(depth);
+            if (queue.inMemory.isEmpty() && !queue.spilled.isEmpty()) {
+                refill(queue);
+            }
+            String url = queue.inMemory.poll();
+            if (url != null) {
+                memorySize--;
+                size--;
+                return new Entry(url, depth);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads as many spilled pages back into memory as there is room for, and
+     * at least one.
+     */
+    private void refill(@NotNull DepthQueue queue) {
+        do {
+            queue.inMemory.add(new String(queue.spilled.remove(), StandardCharsets.UTF_8));
+            memorySize++;
+        } while (memorySize < memoryCapacity && !queue.spilled.isEmpty());
+    }
+
+    /**
+     * Returns the number of pages waiting to be crawled.
+     *
+     * @return the number of pages waiting to be crawled.
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of waiting pages that have been spilled to disk.
+     *
+     * @return the number of waiting pages on disk.
+     */
+    synchronized long getSpilledSize() {
+        return size - memorySize;
+    }
+
+    /**
+     * Discards every waiting page and deletes the frontier's segment files.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (DepthQueue queue : depths) {
+            queue.spilled.clear();
+        }
+        depths.clear();
+        memorySize = 0;
+        size = 0;
+        if (spillDirectory != null) {
+            try {
+                Files.deleteIfExists(spillDirectory);
+            } catch (IOException e) {
+                logger.warn("Could not delete crawl frontier directory {}: {}", spillDirectory, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the directory the frontier spills to, once it has spilled.
+     *
+     * @return the spill directory, or null if nothing was spilled yet.
+     */
+    @Nullable
+    synchronized Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    @NotNull
+    private Path createSegmentFile() throws IOException {
+        if (spillDirectory == null) {
+            spillDirectory = Files.createTempDirectory("webcrawler-frontier");
+            logger.debug("Spilling crawl frontier to {}", spillDirectory);
+        }
+        return spillDirectory.resolve("segment-" + segmentCount++);
+    }
+
+    /**
+     * A page waiting to be crawled and the depth it is to be crawled at.
+     */
+    static final class Entry {
+
+        private final String url;
+        private final int depth;
+
+        private Entry(@NotNull String url, int depth) {
+            this.url = url;
+            this.depth = depth;
+        }
+
+        @NotNull
+        String getURL() {
+            return url;
+        }
+
+        int getDepth() {
+            return depth;
+        }
+    }
+
+    /**
+     * The pages waiting at a single depth, the oldest of which are in memory.
+     */
+    private final class DepthQueue {
+
+        private final ArrayDeque<String> inMemory = new ArrayDeque<>();
+        private final SpillQueue spilled = new SpillQueue();
+    }
+
+    /**
+     * A queue of records stored in a series of memory-mapped segment files.
+     * Records are appended to the last segment and read from the first, which
+     * is deleted once it has been read completely.
+     */
+    private final class SpillQueue {
+
+        private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+        boolean isEmpty() {
+            return segments.isEmpty();
+        }
+
+        void add(@NotNull byte[] record) throws IOException {
+            Segment tail = segments.peekLast();
+            if (tail == null || !tail.hasRoomFor(record)) {
+                tail = new Segment(createSegmentFile(), Math.max(segmentSize, Integer.BYTES + record.length));
+                segments.add(tail);
+            }
+            tail.write(record);
+        }
+
+        @NotNull
+        byte[] remove() {
+            Segment head = segments.getFirst();
+            byte[] record = head.read();
+            if (head.isExhausted()) {
+                segments.removeFirst();
+                head.delete();
+            }
+            return record;
+        }
+
+        void clear() {
+            for (Segment segment : segments) {
+                segment.delete();
+            }
+            segments.clear();
+        }
+    }
+
+    /**
+     * A segment file holding length prefixed records.
+     */
+    private static final class Segment {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int readPosition = 0;
+
+        private Segment(@NotNull Path file, int size) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        boolean hasRoomFor(@NotNull byte[] record) {
+            return buffer.remaining() >= Integer.BYTES + record.length;
+        }
+
+        void write(@NotNull byte[] record) {
+            buffer.putInt(record.length);
+            buffer.put(record);
+        }
+
+        @NotNull
+        byte[] read() {
+            ByteBuffer reader = buffer.duplicate();
+            reader.position(readPosition);
+            byte[] record = new byte[reader.getInt()];
+            reader.get(record);
+            readPosition = reader.position();
+            return record;
+        }
+
+        boolean isExhausted() {
+            return readPosition == buffer.position();
+        }
+
+        void delete() {
+            unmap(buffer);
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Could not delete crawl frontier segment {}: {}", file, e.getMessage());
+            }
+        }
+
+        /**
+         * Releases the mapping of a segment that is no longer read, rather
+         * than waiting for the buffer to be garbage collected, so that its
+         * file can be deleted and its disk space is freed right away. The
+         * buffer must not be used afterwards.
+         * <p>
+         * The JDK only offers this through its internal APIs: sun.misc.Unsafe
+         * on Java 9 and newer, and the buffer's cleaner on Java 8. If neither
+         * is accessible, the mapping is left to the garbage collector.
+         * </p>
+         */
+        private static void unmap(@NotNull MappedByteBuffer buffer) {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+                return;
+            } catch (NoSuchMethodException e) {
+                // Java 8, where the buffer's cleaner does the same.
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.debug("Could not unmap crawl frontier segment: {}", e.toString());
+                return;
+            }
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.debug("Could not unmap crawl frontier segment: {}", e.toString());
+            }
+        }
+    }
+}
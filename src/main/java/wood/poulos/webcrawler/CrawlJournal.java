@@ -0,0 +1,428 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only record of a crawl's progress, from which an interrupted crawl
+ * can be resumed.
+ * <p>
+ * Each record is a single tab separated line: the pages claimed for crawling,
+ * the pages that have been crawled and the elements staged in the repository
+ * since it was last committed. Recording only queues the line, which a
+ * background thread appends to the file and flushes every checkpoint
+ * interval, so that checkpointing never makes the crawl wait on the disk.
+ * </p>
+ */
+final class CrawlJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlJournal.class);
+
+    /**
+     * The name of the journal file within the download directory.
+     */
+    static final String FILE_NAME = ".webcrawler-checkpoint";
+
+    private static final String SEED = "H";
+    private static final String CLAIMED = "C";
+    private static final String CRAWLED = "D";
+    private static final String STAGED = "S";
+    private static final String COMMITTED = "K";
+    private static final String IMAGE = "I";
+    private static final String FILE = "F";
+
+    /**
+     * Queued to tell the writer thread that the journal is closed. Compared by
+     * identity so that it can never be confused with a real record.
+     */
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    private static final String END_OF_JOURNAL = new String("");
+
+    private final Path file;
+    @Nullable
+    private final Path createdDirectory;
+    @Nullable
+    private final Checkpoint checkpoint;
+    private final BlockingQueue<String> records = new LinkedBlockingQueue<>();
+    private final Writer writer;
+    private final long flushIntervalNanos;
+    private final Thread writerThread;
+    private volatile boolean failed;
+    private boolean closed;
+
+    private CrawlJournal(@NotNull Path file, @Nullable Path createdDirectory, @Nullable Checkpoint checkpoint,
+                         @NotNull Writer writer, long flushIntervalNanos) {
+        this.file = file;
+        this.createdDirectory = createdDirectory;
+        this.checkpoint = checkpoint;
+        this.writer = writer;
+        this.flushIntervalNanos = flushIntervalNanos;
+        this.writerThread = new Thread(this::writeRecords, "crawl-journal");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Opens the journal for a crawl of the given seed.
+     * <p>
+     * When resuming, the journal's existing records are loaded into a
+     * {@link #getCheckpoint() checkpoint} and compacted down to what is still
+     * relevant before new records are appended. Otherwise any existing journal
+     * is replaced.
+     * </p>
+     *
+     * @param file            The journal file.
+     * @param seed            The URI the crawl starts from.
+     * @param maxDepth        The maximum depth of the crawl.
+     * @param checkpointNanos How often queued records are written to disk.
+     * @param resume          Whether to resume the crawl recorded in the file.
+     * @return The opened journal.
+     * @throws IllegalArgumentException If resuming and the file does not hold
+     *                                  a journal of a crawl of the same seed and
+     *                                  max depth.
+     * @throws IOException              If the journal could not be read or
+     *                                  written.
+     */
+    @NotNull
+    static CrawlJournal open(@NotNull Path file, @NotNull URI seed, int maxDepth, long checkpointNanos,
+                             boolean resume) throws IllegalArgumentException, IOException {
+        Checkpoint checkpoint = null;
+        if (resume) {
+            if (!Files.isRegularFile(file)) {
+                throw new IllegalArgumentException("There is no crawl to resume in " + file.getParent() + ".");
+            }
+            checkpoint = Checkpoint.load(file);
+            if (!seed.toString().equals(checkpoint.seed) || maxDepth != checkpoint.maxDepth) {
+                throw new IllegalArgumentException("The crawl in " + file.getParent() + " was started from "
+                        + checkpoint.seed + " with a max depth of " + checkpoint.maxDepth + ".");
+            }
+        }
+
+        Path createdDirectory = null;
+        if (file.getParent() != null && !Files.exists(file.getParent())) {
+            createdDirectory = Files.createDirectories(file.getParent());
+        }
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            writeRecord(out, SEED, Integer.toString(maxDepth), seed.toString());
+            if (checkpoint != null) {
+                checkpoint.writeTo(out);
+            }
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        return new CrawlJournal(file, createdDirectory, checkpoint, writer, checkpointNanos);
+    }
+
+    /**
+     * Returns the progress of the crawl being resumed.
+     *
+     * @return The checkpoint the journal was opened with, or null if the crawl
+     * is not being resumed.
+     */
+    @Nullable
+    Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Records that the page with the given URL has been claimed for crawling
+     * at the given depth.
+     */
+    void recordClaimed(@NotNull String url, int depth) {
+        record(CLAIMED, Integer.toString(depth), url);
+    }
+
+    /**
+     * Records that the page with the given URL has been crawled at the given
+     * depth.
+     */
+    void recordCrawled(@NotNull String url, int depth) {
+        record(CRAWLED, Integer.toString(depth), url);
+    }
+
+    /**
+     * Records that the given element has been staged in the repository.
+     */
+    void recordStaged(@NotNull WebElement element) {
+        record(STAGED, element instanceof WebImage ? IMAGE : FILE, element.getURL().toExternalForm());
+    }
+
+    /**
+     * Records that the repository has been committed, so elements staged
+     * before now no longer need to be restored.
+     */
+    void recordCommitted() {
+        record(COMMITTED);
+    }
+
+    private void record(@NotNull String... fields) {
+        if (!failed) {
+            records.add(String.join("\t", fields));
+        }
+    }
+
+    /**
+     * Writes every outstanding record to disk and closes the journal.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        records.add(END_OF_JOURNAL);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.warn("Could not close crawl checkpoint {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the journal and deletes it, since the crawl it records has
+     * finished and will not need to be resumed. If the journal's directory was
+     * created for it and has been left empty, it is deleted too.
+     */
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file);
+            if (createdDirectory != null) {
+                Files.deleteIfExists(createdDirectory);
+            }
+        } catch (DirectoryNotEmptyException ignore) {
+            // Something was downloaded to the directory, so it stays.
+        } catch (IOException e) {
+            logger.warn("Could not delete crawl checkpoint {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void writeRecords() {
+        long nextFlush = System.nanoTime() + flushIntervalNanos;
+        try {
+            while (true) {
+                String record = records.poll(Math.max(0, nextFlush - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (record == END_OF_JOURNAL) {
+                    break;
+                }
+                if (record != null) {
+                    writer.write(record);
+                    writer.write('\n');
+                }
+                if (System.nanoTime() - nextFlush >= 0) {
+                    writer.flush();
+                    nextFlush = System.nanoTime() + flushIntervalNanos;
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            logger.error("Could not write crawl checkpoint {}, the crawl will not be resumable: {}",
+                    file, e.getMessage());
+            failed = true;
+            records.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeRecord(@NotNull Writer out, @NotNull String... fields) throws IOException {
+        out.write(String.join("\t", fields));
+        out.write('\n');
+    }
+
+    /**
+     * The progress of a crawl as recorded by its journal.
+     */
+    static final class Checkpoint {
+
+        private String seed;
+        private int maxDepth;
+        private final Map<String, Integer> claimedPages = new HashMap<>();
+        private final Map<String, Integer> crawledPages = new HashMap<>();
+        private final Map<String, String> stagedElements = new LinkedHashMap<>();
+
+        private Checkpoint() { }
+
+        @NotNull
+        static Checkpoint load(@NotNull Path file) throws IllegalArgumentException, IOException {
+            Checkpoint checkpoint = new Checkpoint();
+            // A record is only complete once its line break has been written.
+            boolean lastLineComplete = endsWithLineBreak(file);
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                while (line != null) {
+                    String next = reader.readLine();
+                    if (next != null || lastLineComplete) {
+                        checkpoint.apply(line.split("\t", 3));
+                    }
+                    line = next;
+                }
+            }
+            if (checkpoint.seed == null) {
+                throw new IllegalArgumentException("The crawl checkpoint " + file + " is not valid.");
+            }
+            return checkpoint;
+        }
+
+        private static boolean endsWithLineBreak(@NotNull Path file) throws IOException {
+            try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+                if (channel.size() == 0) {
+                    return false;
+                }
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.position(channel.size() - 1);
+                channel.read(last);
+                return last.get(0) == '\n';
+            }
+        }
+
+        private void apply(@NotNull String[] record) {
+            try {
+                switch (record[0]) {
+                    case SEED:
+                        maxDepth = Integer.parseInt(record[1]);
+                        seed = record[2];
+                        break;
+                    case CLAIMED:
+                        claimedPages.merge(record[2], Integer.parseInt(record[1]), Math::min);
+                        break;
+                    case CRAWLED:
+                        crawledPages.merge(record[2], Integer.parseInt(record[1]), Math::min);
+                        break;
+                    case STAGED:
+                        stagedElements.put(record[2], record[1]);
+                        break;
+                    case COMMITTED:
+                        stagedElements.clear();
+                        break;
+                    default:
+                        logger.warn("Skipping unknown crawl checkpoint record {}", record[0]);
+                }
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                logger.warn("Skipping corrupt crawl checkpoint record {}", String.join("\t", record));
+            }
+        }
+
+        private void writeTo(@NotNull Writer out) throws IOException {
+            for (Map.Entry<String, Integer> page : claimedPages.entrySet()) {
+                writeRecord(out, CLAIMED, page.getValue().toString(), page.getKey());
+            }
+            for (Map.Entry<String, Integer> page : crawledPages.entrySet()) {
+                writeRecord(out, CRAWLED, page.getValue().toString(), page.getKey());
+            }
+            for (Map.Entry<String, String> element : stagedElements.entrySet()) {
+                writeRecord(out, STAGED, element.getValue(), element.getKey());
+            }
+        }
+
+        /**
+         * Returns every page claimed for crawling so far, mapped to the
+         * shallowest depth it was claimed at.
+         */
+        @NotNull
+        Map<String, Integer> getClaimedPages() {
+            return Collections.unmodifiableMap(claimedPages);
+        }
+
+        /**
+         * Returns the pages that were claimed but not yet crawled at the depth
+         * they were claimed at, mapped to that depth.
+         */
+        @NotNull
+        Map<String, Integer> getFrontier() {
+            Map<String, Integer> frontier = new HashMap<>();
+            for (Map.Entry<String, Integer> page : claimedPages.entrySet()) {
+                Integer crawledDepth = crawledPages.get(page.getKey());
+                if (crawledDepth == null || crawledDepth > page.getValue()) {
+                    frontier.put(page.getKey(), page.getValue());
+                }
+            }
+            return frontier;
+        }
+
+        /**
+         * Returns whether the page with the given URL has already been
+         * crawled.
+         */
+        boolean isCrawled(@NotNull String url) {
+            return crawledPages.containsKey(url);
+        }
+
+        /**
+         * Returns the elements that were staged in the repository but not yet
+         * committed.
+         */
+        @NotNull
+        Collection<WebElement> getStagedElements() {
+            Collection<WebElement> elements = new ArrayList<>(stagedElements.size());
+            for (Map.Entry<String, String> element : stagedElements.entrySet()) {
+                try {
+                    URL url = new URL(element.getKey());
+                    elements.add(IMAGE.equals(element.getValue())
+                            ? WebElements.createWebImage(url)
+                            : WebElements.createWebFile(url));
+                } catch (MalformedURLException e) {
+                    logger.warn("Skipping malformed URL in crawl checkpoint: {}", element.getKey());
+                }
+            }
+            return elements;
+        }
+    }
+}
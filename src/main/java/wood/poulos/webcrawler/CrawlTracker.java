@@ -0,0 +1,315 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Tracks the crawl tasks of a {@link WebCrawler} that have not finished yet.
+ * <p>
+ * Only a count of outstanding tasks is kept, so nothing is retained for a
+ * task once it has finished. The crawl can also be cancelled, after which
+ * tasks that have not started will not run and
+ * {@link #runUnlessCancelled(Runnable) guarded actions} will no longer run.
+ * </p>
+ */
+class CrawlTracker {
+
+    private final AtomicLong outstandingTasks = new AtomicLong();
+    private final Object completionMonitor = new Object();
+    @NotNull
+    private final Runnable onTaskFinished;
+
+    private final ReadWriteLock cancellationLock = new ReentrantReadWriteLock();
+    private volatile boolean cancelled = false;
+    private volatile boolean waitStopped = false;
+
+    CrawlTracker() {
+        this(() -> { });
+    }
+
+    /**
+     * Creates a tracker that runs the given action each time one of its
+     * tracked tasks finishes, before the task stops being counted as
+     * outstanding.
+     *
+     * @param onTaskFinished The action to run when a tracked task finishes.
+     */
+    CrawlTracker(@NotNull Runnable onTaskFinished) {
+        this.onTaskFinished = onTaskFinished;
+    }
+
+    /**
+     * Wraps the given crawl task so that it is counted as outstanding until it
+     * has either run or been discarded.
+     *
+     * @param task The task to track.
+     * @return The tracked task, which should be submitted in place of the
+     * given task.
+     */
+    @NotNull
+    TrackedTask track(@NotNull Runnable task) {
+        reserve();
+        return trackReserved(task);
+    }
+
+    /**
+     * Counts a task that has not been created yet as outstanding, for work
+     * that waits somewhere other than an executor before it is tracked with
+     * {@link #trackReserved(Runnable)}.
+     */
+    void reserve() {
+        outstandingTasks.incrementAndGet();
+    }
+
+    /**
+     * Wraps the given crawl task, which has already been counted as
+     * outstanding by {@link #reserve()}, so that it stops being counted once
+     * it has either run or been discarded.
+     *
+     * @param task The task to track.
+     * @return The tracked task, which should be submitted in place of the
+     * given task.
+     */
+    @NotNull
+    TrackedTask trackReserved(@NotNull Runnable task) {
+        return new TrackedTask(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Wraps the given crawl task as described by
+     * {@link #trackReserved(Runnable)}, except that once it has run the task
+     * is only counted as finished when the stage it returns completes, so
+     * that it can go on after returning its thread.
+     *
+     * @param task The task to track, which returns the stage that completes
+     *             once it has finished.
+     * @return The tracked task, which should be submitted in place of the
+     * given task.
+     */
+    @NotNull
+    TrackedTask trackReservedAsync(@NotNull Supplier<? extends CompletionStage<?>> task) {
+        return new TrackedTask(task);
+    }
+
+    /**
+     * Returns the number of tracked tasks that have not finished yet.
+     *
+     * @return the number of tracked tasks that have not finished yet.
+     */
+    long getOutstandingTasks() {
+        return outstandingTasks.get();
+    }
+
+    /**
+     * Waits until every tracked task has finished, the given timeout elapses
+     * or {@link #stopWaiting()} is called.
+     *
+     * @param timeout The maximum time to wait, or 0 to wait indefinitely.
+     * @param unit    The unit of the timeout.
+     * @return True if every task finished or false if the timeout elapsed or
+     * waiting was stopped.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    boolean awaitCompletion(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (completionMonitor) {
+            while (outstandingTasks.get() > 0) {
+                if (waitStopped) {
+                    return false;
+                }
+                if (timeout == 0) {
+                    completionMonitor.wait();
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(completionMonitor, remaining);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes {@link #awaitCompletion(long, TimeUnit)} return, now and from now
+     * on, without waiting for the tasks still outstanding, for a crawl that
+     * is to end before all of its tasks have run.
+     */
+    void stopWaiting() {
+        waitStopped = true;
+        synchronized (completionMonitor) {
+            completionMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Cancels the crawl. Tracked tasks that have not started yet will finish
+     * without running and guarded actions will no longer run.
+     * <p>
+     * This waits for any guarded action that is currently running, so once
+     * this returns, nothing guarded will run again.
+     * </p>
+     */
+    void cancel() {
+        Lock lock = cancellationLock.writeLock();
+        lock.lock();
+        try {
+            cancelled = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the crawl has been cancelled.
+     *
+     * @return True if the crawl has been cancelled.
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Runs the given action unless the crawl has been cancelled. The action
+     * will never overlap with {@link #cancel()}, so it should be short.
+     *
+     * @param action The action to run.
+     * @return True if the action was run.
+     */
+    boolean runUnlessCancelled(@NotNull Runnable action) {
+        Lock lock = cancellationLock.readLock();
+        lock.lock();
+        try {
+            if (cancelled) {
+                return false;
+            }
+            action.run();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void taskFinished() {
+        try {
+            onTaskFinished.run();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Stops counting work that was counted by {@link #reserve()} but never
+     * tracked as a task, once that work is done.
+     */
+    void release() {
+        if (outstandingTasks.decrementAndGet() == 0) {
+            synchronized (completionMonitor) {
+                completionMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * A crawl task that is counted by the tracker until it has finished.
+     */
+    class TrackedTask implements HostScheduler.AsyncTask {
+
+        /**
+         * The task, which returns the stage it finishes with, or null if it
+         * finished when it returned.
+         */
+        @NotNull
+        private final Supplier<? extends CompletionStage<?>> task;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private boolean finished = false;
+
+        private TrackedTask(@NotNull Supplier<? extends CompletionStage<?>> task) {
+            this.task = task;
+        }
+
+        /**
+         * Runs the task unless the crawl has been cancelled.
+         */
+        @Override
+        public void run() {
+            CompletionStage<?> completion = null;
+            try {
+                if (!cancelled) {
+                    completion = task.get();
+                }
+            } finally {
+                if (completion == null) {
+                    finish();
+                } else {
+                    completion.whenComplete((ignore, failure) -> finish());
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void whenFinished(@NotNull Runnable action) {
+            done.thenRun(action);
+        }
+
+        /**
+         * Marks the task as finished without running it, for when it could
+         * not be scheduled.
+         */
+        void discard() {
+            finish();
+        }
+
+        private void finish() {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+            }
+            try {
+                taskFinished();
+            } finally {
+                done.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A simple class containing factory methods for the executors that a
+ * {@link WebCrawler} crawls pages on.
+ */
+class CrawlerExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlerExecutors.class);
+
+    /**
+     * Creates the executor described by the given settings' execution mode.
+     * <p>
+     * If virtual threads are requested but the running JVM does not support
+     * them, a bounded pool of platform threads is created instead.
+     * </p>
+     *
+     * @param settings The settings describing the executor.
+     * @return A new executor for crawling pages on.
+     */
+    @NotNull
+    static ExecutorService create(@NotNull CrawlerSettings settings) {
+        if (settings.getExecutionMode() == CrawlerSettings.ExecutionMode.VIRTUAL) {
+            ExecutorService executor = createVirtualThreadExecutor();
+            if (executor != null) {
+                return executor;
+            }
+            logger.warn("Virtual threads are not supported by this JVM, crawling with platform threads instead.");
+        }
+        return createPlatformThreadExecutor(settings);
+    }
+
+    /**
+     * Returns how many crawl tasks can be handed to the given executor at
+     * once: a bounded pool's threads plus its queue capacity, or the
+     * settings' maximum number of connections for an unbounded executor,
+     * since no more than that can be fetching at once anyway.
+     * <p>
+     * A bounded pool's queue has room for this many tasks even while every
+     * thread is busy, since a thread that finishes a task hands over the
+     * next one before it is free to take it from the queue. A crawler that
+     * never has more tasks than this in the pool therefore never has one
+     * rejected, so none is ever run on the thread handing it over.
+     * </p>
+     *
+     * @param executor The executor created for the given settings.
+     * @param settings The settings the executor was created for.
+     * @return The number of tasks the executor can accept at once.
+     */
+    static int getCapacity(@NotNull ExecutorService executor, @NotNull CrawlerSettings settings) {
+        if (executor instanceof ThreadPoolExecutor) {
+            return getCapacity(settings);
+        }
+        return settings.getMaxConnections();
+    }
+
+    private static int getCapacity(@NotNull CrawlerSettings settings) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) settings.getThreads() + settings.getQueueCapacity());
+    }
+
+    /**
+     * Creates the bounded pool of threads that pages are crawled on. Once all
+     * of the threads are busy, newly discovered pages wait in a queue of
+     * limited capacity and the settings' saturation policy decides what
+     * happens when that queue is full as well.
+     * <p>
+     * The queue has room for one more task per thread than the queue
+     * capacity, for the tasks handed over by threads that have finished
+     * theirs but are not yet free to take the next one, as described by
+     * {@link #getCapacity(ExecutorService, CrawlerSettings)}.
+     * </p>
+     *
+     * @param settings The settings describing the pool.
+     * @return A new bounded pool of platform threads.
+     */
+    @NotNull
+    static ExecutorService createPlatformThreadExecutor(@NotNull CrawlerSettings settings) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(settings.getThreads(), settings.getThreads(),
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(getCapacity(settings)),
+                new CrawlerThreadFactory("crawler-"), createSaturationHandler(settings.getSaturationPolicy()));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Creates the executor that the robots.txt files of newly found hosts are
+     * fetched on. These fetches are kept out of the crawl pool so that they
+     * never take the room of crawl tasks there. There is one per host, so
+     * the fetches waiting for a thread are not bounded.
+     *
+     * @param settings The settings describing the crawl pool.
+     * @return A new executor for fetching robots.txt files on.
+     */
+    @NotNull
+    static ExecutorService createRobotsExecutor(@NotNull CrawlerSettings settings) {
+        if (settings.getExecutionMode() == CrawlerSettings.ExecutionMode.VIRTUAL) {
+            ExecutorService executor = createVirtualThreadExecutor();
+            if (executor != null) {
+                return executor;
+            }
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(settings.getThreads(), settings.getThreads(),
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new CrawlerThreadFactory("robots-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     * <p>
+     * The project still compiles for Java 8, so the executor is looked up
+     * reflectively and is only available when running on Java 21 or newer.
+     * </p>
+     *
+     * @return A new virtual thread executor or null if the running JVM does
+     * not support virtual threads.
+     */
+    @Nullable
+    static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // Virtual threads are a preview feature on Java 19 and 20 which fails unless previews are enabled.
+            logger.debug("Could not create virtual thread executor: {}", e.getCause().toString());
+            return null;
+        }
+    }
+
+    /**
+     * Creates the handler for crawl tasks the pool has no room for. Tasks it
+     * does not run are rejected with an exception, which lets the
+     * {@link HostScheduler} that handed them over discard them.
+     */
+    @NotNull
+    private static RejectedExecutionHandler createSaturationHandler(@NotNull CrawlerSettings.SaturationPolicy policy) {
+        switch (policy) {
+            case DISCARD:
+                return (task, executor) -> {
+                    if (!executor.isShutdown()) {
+                        logger.warn("Crawler is saturated, discarding a discovered page.");
+                    }
+                    throw new RejectedExecutionException("Crawler is saturated");
+                };
+            case CALLER_RUNS:
+            default:
+                return (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Crawler is shut down");
+                    }
+                    task.run();
+                };
+        }
+    }
+
+    /**
+     * Names the crawler's threads so they can be told apart in the logs.
+     */
+    private static class CrawlerThreadFactory implements ThreadFactory {
+
+        @NotNull
+        private final String prefix;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        private CrawlerThreadFactory(@NotNull String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            return new Thread(runnable, prefix + threadCount.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,723 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import wood.poulos.webcrawler.util.URLCanonicalizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The tunable settings of a {@link WebCrawler}.
+ * <p>
+ * Settings are read from system properties so that they can be given on the
+ * command line, for example:
+ * {@code java -Dcrawler.threads=32 -jar webcrawler.jar <url> <depth> <dir>}
+ * </p>
+ */
+final class CrawlerSettings {
+
+    static final String THREADS_PROPERTY = "crawler.threads";
+    static final String QUEUE_CAPACITY_PROPERTY = "crawler.queueCapacity";
+    static final String SATURATION_POLICY_PROPERTY = "crawler.saturationPolicy";
+    static final String EXECUTION_MODE_PROPERTY = "crawler.executionMode";
+    static final String MAX_CONNECTIONS_PROPERTY = "crawler.maxConnections";
+    static final String MAX_CRAWL_SECONDS_PROPERTY = "crawler.maxCrawlSeconds";
+    static final String MAX_PAGES_PROPERTY = "crawler.maxPages";
+    static final String MAX_PAGE_BYTES_PROPERTY = "crawler.maxPageBytes";
+    static final String MAX_DOWNLOAD_BYTES_PROPERTY = "crawler.maxDownloadBytes";
+    static final String STREAM_DOWNLOADS_PROPERTY = "crawler.streamDownloads";
+    static final String DOWNLOAD_QUEUE_CAPACITY_PROPERTY = "crawler.downloadQueueCapacity";
+    static final String DOWNLOAD_THREADS_PROPERTY = "crawler.downloadThreads";
+    static final String DOWNLOADS_PER_HOST_PROPERTY = "crawler.downloadsPerHost";
+    static final String CHECKPOINT_SECONDS_PROPERTY = "crawler.checkpointSeconds";
+    static final String FRONTIER_MEMORY_CAPACITY_PROPERTY = "crawler.frontierMemoryCapacity";
+    static final String STRIPPED_QUERY_PARAMETERS_PROPERTY = "crawler.strippedQueryParameters";
+    static final String SORT_QUERY_PARAMETERS_PROPERTY = "crawler.sortQueryParameters";
+    static final String SAVE_PAGES_PROPERTY = "crawler.savePages";
+    static final String CONNECT_TIMEOUT_SECONDS_PROPERTY = "crawler.connectTimeoutSeconds";
+    static final String READ_TIMEOUT_SECONDS_PROPERTY = "crawler.readTimeoutSeconds";
+    static final String PAGES_PER_HOST_PROPERTY = "crawler.pagesPerHost";
+    static final String HOST_DELAY_MILLIS_PROPERTY = "crawler.hostDelayMillis";
+    static final String ADAPTIVE_HOST_LIMITS_PROPERTY = "crawler.adaptiveHostLimits";
+    static final String RESPECT_ROBOTS_PROPERTY = "crawler.respectRobots";
+    static final String SITEMAPS_PROPERTY = "crawler.sitemaps";
+    static final String FETCH_MODE_PROPERTY = "crawler.fetchMode";
+
+    static final int DEFAULT_THREADS = 32;
+    static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    static final int DEFAULT_MAX_CONNECTIONS = 256;
+    static final int DEFAULT_DOWNLOAD_QUEUE_CAPACITY = 1_000;
+    static final int DEFAULT_DOWNLOAD_THREADS = 16;
+    static final int DEFAULT_DOWNLOADS_PER_HOST = 4;
+    static final int DEFAULT_CHECKPOINT_SECONDS = 5;
+    static final int DEFAULT_FRONTIER_MEMORY_CAPACITY = 100_000;
+    static final int DEFAULT_CONNECT_TIMEOUT_SECONDS = 10;
+    static final int DEFAULT_READ_TIMEOUT_SECONDS = 30;
+    static final int DEFAULT_PAGES_PER_HOST = 4;
+
+    private int threads = DEFAULT_THREADS;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    @NotNull
+    private SaturationPolicy saturationPolicy = SaturationPolicy.CALLER_RUNS;
+    @NotNull
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private long maxCrawlSeconds = 0;
+    private long maxPages = 0;
+    private long maxPageBytes = 0;
+    private long maxDownloadBytes = 0;
+    private boolean streamingDownloads = false;
+    private int downloadQueueCapacity = DEFAULT_DOWNLOAD_QUEUE_CAPACITY;
+    private int downloadThreads = DEFAULT_DOWNLOAD_THREADS;
+    private int downloadsPerHost = DEFAULT_DOWNLOADS_PER_HOST;
+    private long checkpointSeconds = DEFAULT_CHECKPOINT_SECONDS;
+    private int frontierMemoryCapacity = DEFAULT_FRONTIER_MEMORY_CAPACITY;
+    @NotNull
+    private List<String> strippedQueryParameters = URLCanonicalizer.DEFAULT_STRIPPED_PARAMETERS;
+    private boolean sortingQueryParameters = false;
+    private boolean savingPages = false;
+    private int connectTimeoutSeconds = DEFAULT_CONNECT_TIMEOUT_SECONDS;
+    private int readTimeoutSeconds = DEFAULT_READ_TIMEOUT_SECONDS;
+    private int pagesPerHost = DEFAULT_PAGES_PER_HOST;
+    private long hostDelayMillis = 0;
+    private boolean adaptingHostLimits = false;
+    private boolean respectingRobots = true;
+    private boolean seedingFromSitemaps = false;
+    @NotNull
+    private FetchMode fetchMode = FetchMode.BLOCKING;
+
+    /**
+     * Creates settings for a crawler with all of the default values.
+     */
+    CrawlerSettings() { }
+
+    /**
+     * Creates settings for a crawler from the system properties, using the
+     * default value for any property that is not set.
+     *
+     * @return The settings given by the system properties.
+     * @throws IllegalArgumentException If any of the properties has an invalid
+     *                                  value.
+     */
+    @NotNull
+    static CrawlerSettings fromSystemProperties() throws IllegalArgumentException {
+        return fromProperties(System.getProperties());
+    }
+
+    /**
+     * Creates settings for a crawler from the given properties, using the
+     * default value for any property that is not set.
+     *
+     * @param properties The properties to read the settings from.
+     * @return The settings given by the properties.
+     * @throws IllegalArgumentException If any of the properties has an invalid
+     *                                  value.
+     */
+    @NotNull
+    static CrawlerSettings fromProperties(@NotNull Properties properties) throws IllegalArgumentException {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setThreads(parseNaturalNumber(properties, THREADS_PROPERTY, DEFAULT_THREADS));
+        settings.setQueueCapacity(parseNaturalNumber(properties, QUEUE_CAPACITY_PROPERTY, DEFAULT_QUEUE_CAPACITY));
+        settings.setSaturationPolicy(parseEnum(properties, SATURATION_POLICY_PROPERTY,
+                SaturationPolicy.class, SaturationPolicy.CALLER_RUNS));
+        settings.setExecutionMode(parseEnum(properties, EXECUTION_MODE_PROPERTY,
+                ExecutionMode.class, ExecutionMode.PLATFORM));
+        settings.setMaxConnections(parseNaturalNumber(properties, MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS));
+        settings.setMaxCrawlSeconds(parseNonNegativeNumber(properties, MAX_CRAWL_SECONDS_PROPERTY));
+        settings.setMaxPages(parseNonNegativeNumber(properties, MAX_PAGES_PROPERTY));
+        settings.setMaxPageBytes(parseByteCount(properties, MAX_PAGE_BYTES_PROPERTY));
+        settings.setMaxDownloadBytes(parseByteCount(properties, MAX_DOWNLOAD_BYTES_PROPERTY));
+        settings.setStreamingDownloads(parseBoolean(properties, STREAM_DOWNLOADS_PROPERTY, false));
+        settings.setDownloadQueueCapacity(parseNaturalNumber(properties, DOWNLOAD_QUEUE_CAPACITY_PROPERTY,
+                DEFAULT_DOWNLOAD_QUEUE_CAPACITY));
+        settings.setDownloadThreads(parseNaturalNumber(properties, DOWNLOAD_THREADS_PROPERTY, DEFAULT_DOWNLOAD_THREADS));
+        settings.setDownloadsPerHost(parseNaturalNumber(properties, DOWNLOADS_PER_HOST_PROPERTY,
+                DEFAULT_DOWNLOADS_PER_HOST));
+        settings.setCheckpointSeconds(parseNaturalNumber(properties, CHECKPOINT_SECONDS_PROPERTY,
+                DEFAULT_CHECKPOINT_SECONDS));
+        settings.setFrontierMemoryCapacity(parseNaturalNumber(properties, FRONTIER_MEMORY_CAPACITY_PROPERTY,
+                DEFAULT_FRONTIER_MEMORY_CAPACITY));
+        settings.setStrippedQueryParameters(parseList(properties, STRIPPED_QUERY_PARAMETERS_PROPERTY,
+                URLCanonicalizer.DEFAULT_STRIPPED_PARAMETERS));
+        settings.setSortingQueryParameters(parseBoolean(properties, SORT_QUERY_PARAMETERS_PROPERTY, false));
+        settings.setSavingPages(parseBoolean(properties, SAVE_PAGES_PROPERTY, false));
+        settings.setConnectTimeoutSeconds(parseNaturalNumber(properties, CONNECT_TIMEOUT_SECONDS_PROPERTY,
+                DEFAULT_CONNECT_TIMEOUT_SECONDS));
+        settings.setReadTimeoutSeconds(parseNaturalNumber(properties, READ_TIMEOUT_SECONDS_PROPERTY,
+                DEFAULT_READ_TIMEOUT_SECONDS));
+        settings.setPagesPerHost(parseNaturalNumber(properties, PAGES_PER_HOST_PROPERTY, DEFAULT_PAGES_PER_HOST));
+        settings.setHostDelayMillis(parseNonNegativeNumber(properties, HOST_DELAY_MILLIS_PROPERTY));
+        settings.setAdaptingHostLimits(parseBoolean(properties, ADAPTIVE_HOST_LIMITS_PROPERTY, false));
+        settings.setRespectingRobots(parseBoolean(properties, RESPECT_ROBOTS_PROPERTY, true));
+        settings.setSeedingFromSitemaps(parseBoolean(properties, SITEMAPS_PROPERTY, false));
+        settings.setFetchMode(parseEnum(properties, FETCH_MODE_PROPERTY, FetchMode.class, FetchMode.BLOCKING));
+        return settings;
+    }
+
+    private static int parseNaturalNumber(@NotNull Properties properties, @NotNull String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value.trim());
+            if (number < 1) {
+                throw new IllegalArgumentException();
+            }
+            return number;
+        } catch (IllegalArgumentException ignore) {
+            throw new IllegalArgumentException("The " + key + " property must be a natural number.");
+        }
+    }
+
+    /**
+     * Parses a number that may be 0 to switch off whatever it limits.
+     *
+     * @return the number, or 0 if the property is not set.
+     */
+    private static int parseNonNegativeNumber(@NotNull Properties properties, @NotNull String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            int number = Integer.parseInt(value.trim());
+            if (number < 0) {
+                throw new IllegalArgumentException();
+            }
+            return number;
+        } catch (IllegalArgumentException ignore) {
+            throw new IllegalArgumentException("The " + key + " property must be 0 or a natural number.");
+        }
+    }
+
+    /**
+     * Parses a positive number of bytes, which may end in K, M or G for
+     * kibibytes, mebibytes or gibibytes.
+     *
+     * @return the number of bytes, or 0 if the property is not set.
+     */
+    private static long parseByteCount(@NotNull Properties properties, @NotNull String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return 0;
+        }
+        value = value.trim().toUpperCase(Locale.ENGLISH);
+        int shift = 0;
+        if (value.endsWith("K")) {
+            shift = 10;
+        } else if (value.endsWith("M")) {
+            shift = 20;
+        } else if (value.endsWith("G")) {
+            shift = 30;
+        }
+        try {
+            long number = Long.parseLong(shift == 0 ? value : value.substring(0, value.length() - 1).trim());
+            if (number < 1 || number > Long.MAX_VALUE >> shift) {
+                throw new IllegalArgumentException();
+            }
+            return number << shift;
+        } catch (IllegalArgumentException ignore) {
+            throw new IllegalArgumentException("The " + key
+                    + " property must be a natural number of bytes, optionally followed by K, M or G.");
+        }
+    }
+
+    private static boolean parseBoolean(@NotNull Properties properties, @NotNull String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        value = value.trim();
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        } else if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("The " + key + " property must be either true or false.");
+    }
+
+    @NotNull
+    private static List<String> parseList(@NotNull Properties properties, @NotNull String key,
+                                          @NotNull List<String> defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        List<String> list = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                list.add(item.trim());
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    @NotNull
+    private static <E extends Enum<E>> E parseEnum(@NotNull Properties properties, @NotNull String key,
+                                                   @NotNull Class<E> type, @NotNull E defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+        } catch (IllegalArgumentException ignore) {
+            StringBuilder options = new StringBuilder();
+            for (E option : type.getEnumConstants()) {
+                if (options.length() > 0) {
+                    options.append(", ");
+                }
+                options.append(option.name().toLowerCase(Locale.ENGLISH).replace('_', '-'));
+            }
+            throw new IllegalArgumentException("The " + key + " property must be one of: " + options + ".");
+        }
+    }
+
+    /**
+     * Returns the maximum number of threads crawling pages at once.
+     *
+     * @return the maximum number of threads crawling pages at once.
+     */
+    int getThreads() {
+        return threads;
+    }
+
+    void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the maximum number of discovered pages that may wait for a free
+     * crawler thread before the {@link #getSaturationPolicy() saturation
+     * policy} kicks in.
+     *
+     * @return the capacity of the queue of pages waiting to be crawled.
+     */
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Returns what happens to a newly discovered page when all crawler threads
+     * are busy and the queue of waiting pages is full.
+     *
+     * @return the policy for handling pages when the crawler is saturated.
+     */
+    @NotNull
+    SaturationPolicy getSaturationPolicy() {
+        return saturationPolicy;
+    }
+
+    void setSaturationPolicy(@NotNull SaturationPolicy saturationPolicy) {
+        this.saturationPolicy = saturationPolicy;
+    }
+
+    /**
+     * Returns the kind of threads pages are crawled on.
+     *
+     * @return the kind of threads pages are crawled on.
+     */
+    @NotNull
+    ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    void setExecutionMode(@NotNull ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Returns the maximum number of pages being fetched at once. This is
+     * independent of the number of crawler threads so that it still applies
+     * when crawling on virtual threads.
+     *
+     * @return the maximum number of concurrent page connections.
+     */
+    int getMaxConnections() {
+        return maxConnections;
+    }
+
+    void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Returns how long a crawl may run before it is cancelled and whatever has
+     * been found so far is committed.
+     *
+     * @return the maximum crawl time in seconds, or 0 if unlimited.
+     */
+    long getMaxCrawlSeconds() {
+        return maxCrawlSeconds;
+    }
+
+    void setMaxCrawlSeconds(long maxCrawlSeconds) {
+        this.maxCrawlSeconds = maxCrawlSeconds;
+    }
+
+    /**
+     * Returns how many pages a crawl may fetch. Once that many have been
+     * started, the crawl finishes the pages it is crawling and whatever has
+     * been found so far is committed.
+     *
+     * @return the maximum number of pages, or 0 if unlimited.
+     */
+    long getMaxPages() {
+        return maxPages;
+    }
+
+    void setMaxPages(long maxPages) {
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * Returns how many bytes of pages a crawl may fetch before it finishes
+     * the pages it is crawling and whatever has been found so far is
+     * committed.
+     *
+     * @return the maximum number of page bytes, or 0 if unlimited.
+     */
+    long getMaxPageBytes() {
+        return maxPageBytes;
+    }
+
+    void setMaxPageBytes(long maxPageBytes) {
+        this.maxPageBytes = maxPageBytes;
+    }
+
+    /**
+     * Returns how many bytes of files and images may be downloaded. Once
+     * that many have been downloaded, downloads in progress finish and the
+     * rest are skipped.
+     *
+     * @return the maximum number of downloaded bytes, or 0 if unlimited.
+     */
+    long getMaxDownloadBytes() {
+        return maxDownloadBytes;
+    }
+
+    void setMaxDownloadBytes(long maxDownloadBytes) {
+        this.maxDownloadBytes = maxDownloadBytes;
+    }
+
+    /**
+     * Returns whether elements are downloaded while the crawl is still
+     * running rather than after it has finished.
+     *
+     * @return True if downloads are streamed during the crawl.
+     */
+    boolean isStreamingDownloads() {
+        return streamingDownloads;
+    }
+
+    void setStreamingDownloads(boolean streamingDownloads) {
+        this.streamingDownloads = streamingDownloads;
+    }
+
+    /**
+     * Returns the maximum number of elements that may wait to be downloaded
+     * when streaming downloads, before the crawl is made to wait for them.
+     *
+     * @return the capacity of the queue of elements waiting to be downloaded.
+     */
+    int getDownloadQueueCapacity() {
+        return downloadQueueCapacity;
+    }
+
+    void setDownloadQueueCapacity(int downloadQueueCapacity) {
+        this.downloadQueueCapacity = downloadQueueCapacity;
+    }
+
+    /**
+     * Returns the number of elements downloaded at once.
+     *
+     * @return the number of download threads.
+     */
+    int getDownloadThreads() {
+        return downloadThreads;
+    }
+
+    void setDownloadThreads(int downloadThreads) {
+        this.downloadThreads = downloadThreads;
+    }
+
+    /**
+     * Returns the number of elements downloaded at once from any one host.
+     *
+     * @return the maximum number of concurrent downloads per host.
+     */
+    int getDownloadsPerHost() {
+        return downloadsPerHost;
+    }
+
+    void setDownloadsPerHost(int downloadsPerHost) {
+        this.downloadsPerHost = downloadsPerHost;
+    }
+
+    /**
+     * Returns how often the crawl's progress is written to its checkpoint
+     * file.
+     *
+     * @return the number of seconds between checkpoints.
+     */
+    long getCheckpointSeconds() {
+        return checkpointSeconds;
+    }
+
+    void setCheckpointSeconds(long checkpointSeconds) {
+        this.checkpointSeconds = checkpointSeconds;
+    }
+
+    /**
+     * Returns the maximum number of pages waiting to be crawled that are kept
+     * in memory. Any more are spilled to disk until there is room for them.
+     *
+     * @return the number of waiting pages kept in memory.
+     */
+    int getFrontierMemoryCapacity() {
+        return frontierMemoryCapacity;
+    }
+
+    void setFrontierMemoryCapacity(int frontierMemoryCapacity) {
+        this.frontierMemoryCapacity = frontierMemoryCapacity;
+    }
+
+    /**
+     * Returns the names of the query parameters removed from the URLs found
+     * while crawling. A name ending in {@code *} matches every parameter
+     * starting with the rest of the name.
+     *
+     * @return the names of the stripped query parameters.
+     */
+    @NotNull
+    List<String> getStrippedQueryParameters() {
+        return strippedQueryParameters;
+    }
+
+    void setStrippedQueryParameters(@NotNull List<String> strippedQueryParameters) {
+        this.strippedQueryParameters = strippedQueryParameters;
+    }
+
+    /**
+     * Returns whether the query parameters of the URLs found while crawling
+     * are sorted by name, so that the same parameters in a different order
+     * are recognized as the same URL.
+     *
+     * @return True if query parameters are sorted.
+     */
+    boolean isSortingQueryParameters() {
+        return sortingQueryParameters;
+    }
+
+    void setSortingQueryParameters(boolean sortingQueryParameters) {
+        this.sortingQueryParameters = sortingQueryParameters;
+    }
+
+    /**
+     * Returns whether the HTML of crawled pages is saved along with the files
+     * and images found on them.
+     *
+     * @return True if pages are saved.
+     */
+    boolean isSavingPages() {
+        return savingPages;
+    }
+
+    void setSavingPages(boolean savingPages) {
+        this.savingPages = savingPages;
+    }
+
+    /**
+     * Returns how long to wait for a connection to a host before giving up on
+     * a page or download.
+     *
+     * @return The connect timeout in seconds.
+     */
+    int getConnectTimeoutSeconds() {
+        return connectTimeoutSeconds;
+    }
+
+    void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+        this.connectTimeoutSeconds = connectTimeoutSeconds;
+    }
+
+    /**
+     * Returns how long to wait for a host to send more data before giving up
+     * on a page or download.
+     *
+     * @return The read timeout in seconds.
+     */
+    int getReadTimeoutSeconds() {
+        return readTimeoutSeconds;
+    }
+
+    void setReadTimeoutSeconds(int readTimeoutSeconds) {
+        this.readTimeoutSeconds = readTimeoutSeconds;
+    }
+
+    /**
+     * Returns the number of pages crawled at once from any one host.
+     *
+     * @return the maximum number of concurrent page crawls per host.
+     */
+    int getPagesPerHost() {
+        return pagesPerHost;
+    }
+
+    void setPagesPerHost(int pagesPerHost) {
+        this.pagesPerHost = pagesPerHost;
+    }
+
+    /**
+     * Returns the minimum time between starting to crawl two pages from the
+     * same host.
+     *
+     * @return the delay between pages from a host in milliseconds, or 0 if
+     * there is none.
+     */
+    long getHostDelayMillis() {
+        return hostDelayMillis;
+    }
+
+    void setHostDelayMillis(long hostDelayMillis) {
+        this.hostDelayMillis = hostDelayMillis;
+    }
+
+    /**
+     * Returns whether the number of pages crawled and elements downloaded at
+     * once from each host adapts to how the host copes, starting from the
+     * pages and downloads per host.
+     *
+     * @return True if the limits per host adapt.
+     */
+    boolean isAdaptingHostLimits() {
+        return adaptingHostLimits;
+    }
+
+    void setAdaptingHostLimits(boolean adaptingHostLimits) {
+        this.adaptingHostLimits = adaptingHostLimits;
+    }
+
+    /**
+     * Returns whether the crawler obeys each host's robots.txt, both its
+     * rules and its Crawl-delay.
+     *
+     * @return True if robots.txt files are obeyed.
+     */
+    boolean isRespectingRobots() {
+        return respectingRobots;
+    }
+
+    void setRespectingRobots(boolean respectingRobots) {
+        this.respectingRobots = respectingRobots;
+    }
+
+    /**
+     * Returns whether the pages listed by the seed host's sitemaps are added
+     * to the crawl alongside the seed page.
+     *
+     * @return True if the crawl is seeded from sitemaps.
+     */
+    boolean isSeedingFromSitemaps() {
+        return seedingFromSitemaps;
+    }
+
+    void setSeedingFromSitemaps(boolean seedingFromSitemaps) {
+        this.seedingFromSitemaps = seedingFromSitemaps;
+    }
+
+    /**
+     * Returns how pages, files and images are fetched.
+     *
+     * @return how pages, files and images are fetched.
+     */
+    @NotNull
+    FetchMode getFetchMode() {
+        return fetchMode;
+    }
+
+    void setFetchMode(@NotNull FetchMode fetchMode) {
+        this.fetchMode = fetchMode;
+    }
+
+    /**
+     * What to do with a newly discovered page when the crawler is saturated.
+     */
+    enum SaturationPolicy {
+        /**
+         * The thread that discovered the page crawls it itself, which slows
+         * discovery down until the crawler catches up.
+         */
+        CALLER_RUNS,
+        /**
+         * The page is dropped from the crawl.
+         */
+        DISCARD
+    }
+
+    /**
+     * The kinds of threads pages can be crawled on.
+     */
+    enum ExecutionMode {
+        /**
+         * A bounded pool of platform threads, as described by the thread
+         * count, queue capacity and saturation policy.
+         */
+        PLATFORM,
+        /**
+         * A new virtual thread for each page. Requires Java 21 or newer and
+         * falls back to {@link #PLATFORM} otherwise.
+         */
+        VIRTUAL
+    }
+
+    /**
+     * The ways pages, files and images can be fetched.
+     */
+    enum FetchMode {
+        /**
+         * Each fetch blocks a thread on its connection, reusing kept alive
+         * connections.
+         */
+        BLOCKING,
+        /**
+         * Plain HTTP pages, files and images are fetched over non-blocking
+         * connections driven by a single selector thread, which tokenizes
+         * pages and writes files as their bytes arrive, so no thread waits
+         * on a connection. Anything else is fetched as with
+         * {@link #BLOCKING}.
+         */
+        NON_BLOCKING
+    }
+}
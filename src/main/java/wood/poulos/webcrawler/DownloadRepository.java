@@ -25,7 +25,12 @@ package wood.poulos.webcrawler;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import wood.poulos.webcrawler.util.Fetcher;
+import wood.poulos.webcrawler.util.URLConnectionFetcher;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -43,6 +48,15 @@ enum DownloadRepository implements WebElementRepository {
 
     private LocalFileRepository localRepo = new LocalFileRepository(Paths.get("."));
 
+    private int downloadThreads = CrawlerSettings.DEFAULT_DOWNLOAD_THREADS;
+    private int maxDownloadsPerHost = CrawlerSettings.DEFAULT_DOWNLOADS_PER_HOST;
+    private int streamingQueueCapacity = 0;
+    private boolean savingPages = false;
+    private boolean adaptingDownloads = false;
+    private long maxDownloadBytes = 0;
+    @NotNull
+    private Fetcher fetcher = new URLConnectionFetcher();
+
     /**
      * Sets the download location for this repository.
      *
@@ -50,10 +64,95 @@ enum DownloadRepository implements WebElementRepository {
      */
     void setDownloadLocation(Path path) {
         LocalFileRepository newLocalRepo = new LocalFileRepository(path);
+        newLocalRepo.configureDownloads(downloadThreads, maxDownloadsPerHost);
+        newLocalRepo.setFetcher(fetcher);
+        if (streamingQueueCapacity > 0) {
+            newLocalRepo.enableStreaming(streamingQueueCapacity);
+        }
+        if (savingPages) {
+            newLocalRepo.enablePageSaving();
+        }
+        if (adaptingDownloads) {
+            newLocalRepo.enableAdaptiveDownloads();
+        }
+        if (maxDownloadBytes > 0) {
+            newLocalRepo.limitDownloadBytes(maxDownloadBytes);
+        }
         copyCurrentElementsToOtherRepo(newLocalRepo);
         localRepo = newLocalRepo;
     }
 
+    /**
+     * Sets how many elements this repository downloads at once, both overall
+     * and from any single host.
+     *
+     * @param threads             The maximum number of downloads running at
+     *                            once.
+     * @param maxDownloadsPerHost The maximum number of downloads from a single
+     *                            host running at once.
+     * @see LocalFileRepository#configureDownloads(int, int)
+     */
+    void configureDownloads(int threads, int maxDownloadsPerHost) {
+        this.downloadThreads = threads;
+        this.maxDownloadsPerHost = maxDownloadsPerHost;
+        localRepo.configureDownloads(threads, maxDownloadsPerHost);
+    }
+
+    /**
+     * Sets the fetcher this repository downloads elements with.
+     *
+     * @param fetcher The fetcher to download elements with.
+     * @see LocalFileRepository#setFetcher(Fetcher)
+     */
+    void setFetcher(@NotNull Fetcher fetcher) {
+        this.fetcher = fetcher;
+        localRepo.setFetcher(fetcher);
+    }
+
+    /**
+     * Makes this repository download elements as soon as they are added.
+     *
+     * @param queueCapacity The maximum number of elements that have not
+     *                      finished downloading.
+     * @see LocalFileRepository#enableStreaming(int)
+     */
+    void enableStreaming(int queueCapacity) {
+        streamingQueueCapacity = queueCapacity;
+        localRepo.enableStreaming(queueCapacity);
+    }
+
+    /**
+     * Makes this repository save the HTML of pages as they are crawled.
+     *
+     * @see LocalFileRepository#enablePageSaving()
+     */
+    void enablePageSaving() {
+        savingPages = true;
+        localRepo.enablePageSaving();
+    }
+
+    /**
+     * Makes the number of elements this repository downloads at once from
+     * each host adapt to how the host copes.
+     *
+     * @see LocalFileRepository#enableAdaptiveDownloads()
+     */
+    void enableAdaptiveDownloads() {
+        adaptingDownloads = true;
+        localRepo.enableAdaptiveDownloads();
+    }
+
+    /**
+     * Limits the number of bytes this repository downloads.
+     *
+     * @param maxBytes The number of bytes that may be downloaded.
+     * @see LocalFileRepository#limitDownloadBytes(long)
+     */
+    void limitDownloadBytes(long maxBytes) {
+        maxDownloadBytes = maxBytes;
+        localRepo.limitDownloadBytes(maxBytes);
+    }
+
     private void copyCurrentElementsToOtherRepo(@NotNull LocalFileRepository otherRepo) {
         for (WebElement e : getStagedElements()) {
             otherRepo.addElement(e);
@@ -84,6 +183,23 @@ enum DownloadRepository implements WebElementRepository {
         localRepo.addElement(element);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addFetchedElement(@NotNull WebElement element, @NotNull InputStream content) {
+        localRepo.addFetchedElement(element, content);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Nullable
+    public OutputStream openPageCopy(@NotNull WebPage page) throws IOException {
+        return localRepo.openPageCopy(page);
+    }
+
     /**
      * {@inheritDoc}
      */
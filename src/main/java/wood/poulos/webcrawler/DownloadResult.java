@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The outcome of downloading a single {@link WebElement}.
+ */
+public final class DownloadResult {
+
+    @NotNull
+    private final WebElement element;
+    @NotNull
+    private final Path path;
+    @Nullable
+    private final IOException failure;
+
+    private DownloadResult(@NotNull WebElement element, @NotNull Path path, @Nullable IOException failure) {
+        this.element = element;
+        this.path = path;
+        this.failure = failure;
+    }
+
+    @NotNull
+    static DownloadResult success(@NotNull WebElement element, @NotNull Path path) {
+        return new DownloadResult(element, path, null);
+    }
+
+    @NotNull
+    static DownloadResult failure(@NotNull WebElement element, @NotNull Path path, @NotNull IOException failure) {
+        return new DownloadResult(element, path, failure);
+    }
+
+    /**
+     * Returns the element that was downloaded.
+     *
+     * @return the element that was downloaded.
+     */
+    @NotNull
+    public WebElement getElement() {
+        return element;
+    }
+
+    /**
+     * Returns the path the element was downloaded to.
+     *
+     * @return the path the element was downloaded to.
+     */
+    @NotNull
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns whether the element was downloaded successfully.
+     *
+     * @return True if the element was downloaded successfully.
+     */
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    /**
+     * Returns the reason the download failed.
+     *
+     * @return the reason the download failed or null if it was successful.
+     */
+    @Nullable
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "DownloadResult{element=" + element + ", path=" + path + ", failure=" + failure + "}";
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wood.poulos.webcrawler.util.Fetcher;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A stage that hands elements to a {@link Downloader} as soon as they are
+ * submitted, so that elements can be downloaded while the crawl that finds
+ * them is still running.
+ * <p>
+ * Only a limited number of submitted elements may be waiting for or in the
+ * middle of a download. Past that, {@link #submit(WebElement)} blocks, which
+ * slows the crawl down to the speed of the downloads and keeps the number of
+ * elements held in memory bounded.
+ * </p>
+ */
+class DownloadStage {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadStage.class);
+
+    private final Semaphore capacity;
+    private final Downloader downloader;
+    private final Function<WebElement, Path> pathForElement;
+    private final Consumer<DownloadResult> resultHandler;
+    private final ConcurrentMap<WebElement, CompletableFuture<DownloadResult>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a download stage.
+     *
+     * @param capacity       The maximum number of elements waiting for or in
+     *                       the middle of a download.
+     * @param downloader     The downloader to download elements with.
+     * @param pathForElement Gives the path each element is downloaded to.
+     * @param resultHandler  Handles the result of each download.
+     */
+    DownloadStage(int capacity, @NotNull Downloader downloader, @NotNull Function<WebElement, Path> pathForElement,
+                  @NotNull Consumer<DownloadResult> resultHandler) {
+        this.capacity = new Semaphore(capacity);
+        this.downloader = downloader;
+        this.pathForElement = pathForElement;
+        this.resultHandler = resultHandler;
+    }
+
+    /**
+     * Starts downloading the given element, waiting for space in the stage if
+     * it is full.
+     *
+     * @param element The element to download.
+     */
+    void submit(@NotNull WebElement element) {
+        start(element, path -> downloader.download(element, path));
+    }
+
+    /**
+     * Starts downloading the given element with the given fetcher, such as
+     * one that serves a body that has already been fetched, waiting for
+     * space in the stage if it is full.
+     *
+     * @param element The element to download.
+     * @param fetcher The fetcher to fetch the element with.
+     * @return A future completed once the download's result has been handled,
+     * or right away if interrupted while waiting for space.
+     */
+    @NotNull
+    CompletableFuture<?> submit(@NotNull WebElement element, @NotNull Fetcher fetcher) {
+        return start(element, path -> downloader.download(element, path, fetcher));
+    }
+
+    @NotNull
+    private CompletableFuture<?> start(@NotNull WebElement element,
+                                       @NotNull Function<Path, CompletableFuture<DownloadResult>> download) {
+        try {
+            capacity.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted before {} could be queued for download", element.getURL());
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<DownloadResult> started = download.apply(pathForElement.apply(element));
+        pending.put(element, started);
+        return started.whenComplete((result, e) -> {
+            pending.remove(element, started);
+            capacity.release();
+            if (result != null) {
+                resultHandler.accept(result);
+            }
+        });
+    }
+
+    /**
+     * Prevents the given element from being downloaded if its download has
+     * not started yet.
+     *
+     * @param element The element to remove.
+     */
+    void remove(@NotNull WebElement element) {
+        CompletableFuture<DownloadResult> download = pending.remove(element);
+        if (download != null) {
+            download.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the elements waiting for or in the middle of a download.
+     *
+     * @return a snapshot of the elements that have not been downloaded yet.
+     */
+    @NotNull
+    Collection<WebElement> getPendingElements() {
+        return new ArrayList<>(pending.keySet());
+    }
+
+    /**
+     * Waits for every submitted element to finish downloading.
+     */
+    void finish() {
+        while (!pending.isEmpty()) {
+            for (Map.Entry<WebElement, CompletableFuture<DownloadResult>> entry : pending.entrySet()) {
+                try {
+                    entry.getValue().join();
+                } catch (CancellationException | CompletionException ignore) {
+                    // Either removed from the stage or already reported as a failed result.
+                }
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
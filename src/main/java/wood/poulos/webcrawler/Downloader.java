@@ -0,0 +1,271 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import wood.poulos.webcrawler.util.Fetcher;
+import wood.poulos.webcrawler.util.URLConnectionFetcher;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads {@link WebElement}s on a dedicated pool of threads, limiting how
+ * many downloads from any one host run at once.
+ * <p>
+ * Downloads from a host that is at its limit wait in a {@link HostScheduler}
+ * rather than occupying a thread, so a single busy host never holds up
+ * downloads from the others. The limit may be fixed or adapt to each host
+ * through an {@link AdaptiveLimiter}.
+ * </p>
+ */
+class Downloader {
+
+    private final ThreadPoolExecutor executor;
+    private final HostScheduler hostScheduler;
+    @NotNull
+    private final Fetcher fetcher;
+    @Nullable
+    private final AdaptiveLimiter limiter;
+    /**
+     * The number of downloads submitted but not yet finished.
+     */
+    private int unfinishedDownloads = 0;
+    private boolean shutDown = false;
+
+    /**
+     * Creates a downloader.
+     *
+     * @param threads             The maximum number of downloads running at
+     *                            once.
+     * @param maxDownloadsPerHost The maximum number of downloads from a single
+     *                            host running at once.
+     */
+    Downloader(int threads, int maxDownloadsPerHost) {
+        this(threads, maxDownloadsPerHost, new URLConnectionFetcher());
+    }
+
+    /**
+     * Creates a downloader that fetches elements with the given fetcher.
+     *
+     * @param threads             The maximum number of downloads running at
+     *                            once.
+     * @param maxDownloadsPerHost The maximum number of downloads from a single
+     *                            host running at once.
+     * @param fetcher             The fetcher to download elements with.
+     */
+    Downloader(int threads, int maxDownloadsPerHost, @NotNull Fetcher fetcher) {
+        this(threads, maxDownloadsPerHost, fetcher, null);
+    }
+
+    /**
+     * Creates a downloader that fetches elements with the given fetcher and,
+     * if a limiter is given, lets it decide how many downloads from each
+     * host run at once.
+     *
+     * @param threads             The maximum number of downloads running at
+     *                            once.
+     * @param maxDownloadsPerHost The maximum number of downloads from a single
+     *                            host running at once, if there is no limiter.
+     * @param fetcher             The fetcher to download elements with.
+     * @param limiter             The limiter to adapt downloads per host
+     *                            with, or null to use the fixed maximum.
+     */
+    Downloader(int threads, int maxDownloadsPerHost, @NotNull Fetcher fetcher, @Nullable AdaptiveLimiter limiter) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "downloader-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.hostScheduler = new HostScheduler(executor,
+                limiter != null ? limiter::getLimit : host -> maxDownloadsPerHost, 0, TimeUnit.NANOSECONDS);
+        this.fetcher = limiter != null ? limiter.recordLatency(fetcher) : fetcher;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Returns how many downloads from each host may currently run at once,
+     * if the limits adapt.
+     *
+     * @return the current limits by host, or an empty map if they are fixed.
+     */
+    @NotNull
+    SortedMap<String, Integer> getHostLimits() {
+        return limiter == null ? Collections.emptySortedMap() : limiter.getLimits();
+    }
+
+    /**
+     * Downloads the given element to the given path in the background.
+     * <p>
+     * Cancelling the returned future before the download starts prevents it
+     * from starting. Once the downloader has been {@link #shutdown() shut
+     * down}, the download fails without being started.
+     * </p>
+     *
+     * @param element The element to download.
+     * @param path    The path to download the element to.
+     * @return A future completed with the result of the download.
+     */
+    @NotNull
+    CompletableFuture<DownloadResult> download(@NotNull WebElement element, @NotNull Path path) {
+        return download(element, path, fetcher);
+    }
+
+    /**
+     * Downloads the given element to the given path in the background, as
+     * described by {@link #download(WebElement, Path)}, but fetching it with
+     * the given fetcher instead of the downloader's own, such as one that
+     * serves a body that has already been fetched.
+     *
+     * @param element The element to download.
+     * @param path    The path to download the element to.
+     * @param fetcher The fetcher to fetch the element with.
+     * @return A future completed with the result of the download.
+     */
+    @NotNull
+    CompletableFuture<DownloadResult> download(@NotNull WebElement element, @NotNull Path path,
+                                               @NotNull Fetcher fetcher) {
+        DownloadTask task = new DownloadTask(element, path, fetcher);
+        synchronized (this) {
+            if (shutDown) {
+                task.result.complete(DownloadResult.failure(element, path,
+                        new IOException("The downloader has been shut down")));
+                return task.result;
+            }
+            unfinishedDownloads++;
+        }
+        hostScheduler.submit(element.getURL().getHost(), task);
+        return task.result;
+    }
+
+    /**
+     * Stops the downloader's threads once the downloads submitted so far have
+     * finished. Later downloads fail without being started.
+     */
+    void shutdown() {
+        synchronized (this) {
+            shutDown = true;
+            if (unfinishedDownloads > 0) {
+                // The last download to finish stops the threads.
+                return;
+            }
+        }
+        executor.shutdown();
+    }
+
+    private void downloadFinished() {
+        synchronized (this) {
+            if (--unfinishedDownloads > 0 || !shutDown) {
+                return;
+            }
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * A single download and its eventual result. The download returns its
+     * thread while a non-blocking fetch is in flight, and holds its host's
+     * slot until it has finished.
+     */
+    private class DownloadTask implements HostScheduler.AsyncTask {
+
+        @NotNull
+        private final WebElement element;
+        @NotNull
+        private final Path path;
+        @NotNull
+        private final Fetcher fetcher;
+        private final CompletableFuture<DownloadResult> result = new CompletableFuture<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private DownloadTask(@NotNull WebElement element, @NotNull Path path, @NotNull Fetcher fetcher) {
+            this.element = element;
+            this.path = path;
+            this.fetcher = fetcher;
+        }
+
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                finish();
+                return;
+            }
+            CompletableFuture<Void> saved;
+            try {
+                saved = element.saveAsync(path, fetcher);
+            } catch (RuntimeException e) {
+                saved = new CompletableFuture<>();
+                saved.completeExceptionally(e);
+            }
+            saved.whenComplete((ignore, failure) -> {
+                try {
+                    complete(failure);
+                } finally {
+                    finish();
+                }
+            });
+        }
+
+        @Override
+        public void whenFinished(@NotNull Runnable action) {
+            done.thenRun(action);
+        }
+
+        private void complete(@Nullable Throwable failure) {
+            if (failure instanceof CompletionException && failure.getCause() != null) {
+                failure = failure.getCause();
+            }
+            if (failure == null) {
+                result.complete(DownloadResult.success(element, path));
+            } else if (failure instanceof IOException) {
+                if (limiter != null) {
+                    limiter.recordFailure(element.getURL().getHost(), (IOException) failure);
+                }
+                result.complete(DownloadResult.failure(element, path, (IOException) failure));
+            } else {
+                result.complete(DownloadResult.failure(element, path, new IOException(failure)));
+            }
+        }
+
+        private void finish() {
+            try {
+                downloadFinished();
+            } finally {
+                done.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,594 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A single pass tokenizer that finds the {@code href} of {@code a} tags, the
+ * {@code src} of {@code img} tags and the charset declarations of
+ * {@code meta} tags in a stream of HTML.
+ * <p>
+ * The tokenizer works on the raw bytes of a page in an ASCII compatible
+ * encoding, since the tag and attribute names it looks for are all ASCII, and
+ * leaves decoding the values it finds to its {@link Handler}. Attribute values
+ * may be double quoted, single quoted or unquoted. HTML comments are skipped.
+ * </p>
+ * <p>
+ * The HTML is either read from an {@link InputStream} by
+ * {@link #tokenize(InputStream, Handler)}, or pushed to the tokenizer a chunk
+ * at a time, as it arrives, between {@link #start(Handler)} and
+ * {@link #finish()}. The tokenizer keeps its place between chunks, so a tag
+ * or value may be split across any number of them. Values are handed to the
+ * handler as a range of either the chunk being read or the tokenizer's own
+ * buffer, which are both reused, so a handler must copy anything it wants to
+ * keep.
+ * </p>
+ * <p>
+ * A tokenizer reads one input at a time. A handler that needs to tokenize
+ * something else, even on the same thread, must use another tokenizer.
+ * </p>
+ */
+final class HTMLTagTokenizer {
+
+    /**
+     * The number of bytes buffered from an input stream at a time.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * The longest attribute value, in bytes, that will be handed to a
+     * handler. Longer values are skipped rather than buffered.
+     */
+    static final int MAX_VALUE_LENGTH = 1 << 16;
+
+    /**
+     * The longest tag or attribute name the tokenizer looks for.
+     */
+    private static final int MAX_NAME_LENGTH = 7;
+
+    /**
+     * The kind of attribute a value was found in.
+     */
+    enum AttributeType {
+        /** The {@code href} of an {@code a} tag. */
+        LINK,
+        /** The {@code src} of an {@code img} tag. */
+        IMAGE,
+        /** The {@code charset} of a {@code meta} tag. */
+        META_CHARSET,
+        /** The {@code content} of a {@code meta} tag. */
+        META_CONTENT
+    }
+
+    /**
+     * Receives the attribute values found by a tokenizer.
+     */
+    @FunctionalInterface
+    interface Handler {
+
+        /**
+         * Handles a non-empty attribute value. The bytes in the given range
+         * are only valid until this returns.
+         *
+         * @param type  The kind of attribute the value was found in.
+         * @param bytes The buffer holding the value.
+         * @param start The index of the value's first byte.
+         * @param end   The index after the value's last byte.
+         */
+        void handle(@NotNull AttributeType type, @NotNull byte[] bytes, int start, int end);
+    }
+
+    /**
+     * A tag the tokenizer looks for and the attributes it wants from it.
+     */
+    private static final class Tag {
+
+        private final byte[] name;
+        private final byte[][] attributes;
+        private final AttributeType[] types;
+
+        private Tag(@NotNull String name, @NotNull String[] attributes, @NotNull AttributeType[] types) {
+            this.name = ascii(name);
+            this.attributes = new byte[attributes.length][];
+            for (int i = 0; i < attributes.length; i++) {
+                this.attributes[i] = ascii(attributes[i]);
+            }
+            this.types = types;
+        }
+
+        @NotNull
+        private static byte[] ascii(@NotNull String name) {
+            byte[] bytes = new byte[name.length()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) name.charAt(i);
+            }
+            return bytes;
+        }
+    }
+
+    private static final Tag[] TAGS = {
+            new Tag("a", new String[]{"href"}, new AttributeType[]{AttributeType.LINK}),
+            new Tag("img", new String[]{"src"}, new AttributeType[]{AttributeType.IMAGE}),
+            new Tag("meta", new String[]{"charset", "content"},
+                    new AttributeType[]{AttributeType.META_CHARSET, AttributeType.META_CONTENT})
+    };
+
+    /**
+     * Where in the HTML the tokenizer is between two bytes.
+     */
+    private enum State {
+        /** Outside of any tag. */
+        TEXT,
+        /** After a '&lt;'. */
+        TAG_OPEN,
+        /** After a "&lt;!". */
+        BANG,
+        /** After a "&lt;!-". */
+        BANG_DASH,
+        /** Inside a comment. */
+        COMMENT,
+        /** Inside the name of a tag. */
+        TAG_NAME,
+        /** Between the attributes of a wanted tag. */
+        ATTRIBUTES,
+        /** Inside the name of an attribute. */
+        ATTRIBUTE_NAME,
+        /** After the name of an attribute, looking for its '='. */
+        AFTER_ATTRIBUTE_NAME,
+        /** After the '=' of an attribute, looking for its value. */
+        BEFORE_VALUE,
+        /** Inside a quoted value. */
+        QUOTED_VALUE,
+        /** Inside an unquoted value. */
+        UNQUOTED_VALUE
+    }
+
+    private final int bufferSize;
+    @Nullable
+    private byte[] buffer;
+
+    @Nullable
+    private Handler handler;
+    @NotNull
+    private State state = State.TEXT;
+
+    /**
+     * The lower cased name being read, of which only the first
+     * {@link #MAX_NAME_LENGTH} bytes are kept, since no longer name is
+     * wanted.
+     */
+    private final byte[] name = new byte[MAX_NAME_LENGTH];
+    private int nameLength;
+
+    @Nullable
+    private Tag tag;
+    /**
+     * The attributes of the current tag whose values have been handed over,
+     * one bit per attribute.
+     */
+    private int handledAttributes;
+    /**
+     * The index of the attribute of the current tag whose value is being
+     * read, or -1 if the value is not wanted.
+     */
+    private int wantedAttribute = -1;
+    private int quote;
+    private int dashes;
+
+    /**
+     * The start of the value being read in the current chunk.
+     */
+    private int valueStart;
+    /**
+     * The part of a wanted value that arrived in earlier chunks.
+     */
+    private byte[] value = new byte[0];
+    private int valueLength;
+    /**
+     * Whether the value being read grew past {@link #MAX_VALUE_LENGTH}.
+     */
+    private boolean overflowed;
+
+    /**
+     * Creates a tokenizer with the {@link #DEFAULT_BUFFER_SIZE}.
+     */
+    HTMLTagTokenizer() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a tokenizer that buffers the given number of bytes of an input
+     * stream at a time.
+     *
+     * @param bufferSize The size of the buffer.
+     * @throws IllegalArgumentException If the buffer size is not positive.
+     */
+    HTMLTagTokenizer(int bufferSize) throws IllegalArgumentException {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Returns whether this tokenizer is in the middle of reading an input,
+     * such as when called from one of its handlers.
+     *
+     * @return True if this tokenizer is reading an input.
+     */
+    boolean isTokenizing() {
+        return handler != null;
+    }
+
+    /**
+     * Reads the given HTML to its end, handing every wanted attribute value
+     * found to the given handler in document order.
+     *
+     * @param input   The HTML to tokenize, in an ASCII compatible encoding. It
+     *                is not closed.
+     * @param handler The handler for the values found.
+     * @throws IOException           If the input throws.
+     * @throws IllegalStateException If this tokenizer is already reading an
+     *                               input.
+     */
+    void tokenize(@NotNull InputStream input, @NotNull Handler handler) throws IOException, IllegalStateException {
+        start(handler);
+        try {
+            if (buffer == null) {
+                buffer = new byte[bufferSize];
+            }
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                feed(buffer, 0, read);
+            }
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Starts reading a new input, which is then pushed to the tokenizer with
+     * {@link #feed} as it arrives, up to a call to {@link #finish()}.
+     *
+     * @param handler The handler for the values found.
+     * @throws IllegalStateException If this tokenizer is already reading an
+     *                               input.
+     */
+    void start(@NotNull Handler handler) throws IllegalStateException {
+        if (isTokenizing()) {
+            throw new IllegalStateException("The tokenizer is already reading an input.");
+        }
+        this.handler = handler;
+        state = State.TEXT;
+        wantedAttribute = -1;
+    }
+
+    /**
+     * Reads the next chunk of the current input, handing every wanted value
+     * that ends in it to the handler.
+     *
+     * @param chunk The chunk, which is read from its position to its limit.
+     * @throws IllegalStateException If no input was started.
+     */
+    void feed(@NotNull ByteBuffer chunk) throws IllegalStateException {
+        if (chunk.hasArray()) {
+            feed(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            chunk.position(chunk.limit());
+            return;
+        }
+        if (buffer == null) {
+            buffer = new byte[bufferSize];
+        }
+        while (chunk.hasRemaining()) {
+            int length = Math.min(buffer.length, chunk.remaining());
+            chunk.get(buffer, 0, length);
+            feed(buffer, 0, length);
+        }
+    }
+
+    /**
+     * Reads the next chunk of the current input, handing every wanted value
+     * that ends in it to the handler.
+     *
+     * @param bytes  The buffer holding the chunk.
+     * @param offset The index of the chunk's first byte.
+     * @param length The length of the chunk.
+     * @throws IllegalStateException If no input was started.
+     */
+    void feed(@NotNull byte[] bytes, int offset, int length) throws IllegalStateException {
+        if (!isTokenizing()) {
+            throw new IllegalStateException("The tokenizer is not reading an input.");
+        }
+        int end = offset + length;
+        int i = offset;
+        valueStart = offset;
+        while (i < end) {
+            int c = bytes[i];
+            switch (state) {
+                case TEXT:
+                    while (c != '<' && ++i < end) {
+                        c = bytes[i];
+                    }
+                    if (i < end) {
+                        i++;
+                        state = State.TAG_OPEN;
+                    }
+                    break;
+                case TAG_OPEN:
+                    if (c == '!') {
+                        i++;
+                        state = State.BANG;
+                    } else if (isNameStart(c)) {
+                        i++;
+                        startName(c);
+                        state = State.TAG_NAME;
+                    } else {
+                        state = State.TEXT;
+                    }
+                    break;
+                case BANG:
+                case BANG_DASH:
+                    // Other declarations, such as a doctype, are skipped as text.
+                    if (c == '-') {
+                        i++;
+                        dashes = 0;
+                        state = state == State.BANG ? State.BANG_DASH : State.COMMENT;
+                    } else {
+                        state = State.TEXT;
+                    }
+                    break;
+                case COMMENT:
+                    i++;
+                    if (c == '>' && dashes >= 2) {
+                        state = State.TEXT;
+                    }
+                    dashes = c == '-' ? dashes + 1 : 0;
+                    break;
+                case TAG_NAME:
+                    if (!isNameEnd(c)) {
+                        i++;
+                        appendName(c);
+                        break;
+                    }
+                    tag = findTag();
+                    if (tag == null || c == '<') {
+                        // Tags the tokenizer does not look for are skipped as text.
+                        state = State.TEXT;
+                    } else {
+                        i++;
+                        handledAttributes = 0;
+                        state = c == '>' ? State.TEXT : State.ATTRIBUTES;
+                    }
+                    break;
+                case ATTRIBUTES:
+                    if (c == '<') {
+                        // A broken tag. Read the next one.
+                        state = State.TEXT;
+                        break;
+                    }
+                    i++;
+                    if (c == '>') {
+                        state = State.TEXT;
+                    } else if (!isWhitespace(c) && c != '/' && c != '=' && c != '"' && c != '\'') {
+                        startName(c);
+                        state = State.ATTRIBUTE_NAME;
+                    }
+                    break;
+                case ATTRIBUTE_NAME:
+                    if (!isNameEnd(c)) {
+                        i++;
+                        appendName(c);
+                        break;
+                    }
+                    wantedAttribute = findAttribute();
+                    state = State.AFTER_ATTRIBUTE_NAME;
+                    break;
+                case AFTER_ATTRIBUTE_NAME:
+                    if (isWhitespace(c)) {
+                        i++;
+                    } else if (c == '=') {
+                        i++;
+                        state = State.BEFORE_VALUE;
+                    } else {
+                        state = State.ATTRIBUTES;
+                    }
+                    break;
+                case BEFORE_VALUE:
+                    if (isWhitespace(c)) {
+                        i++;
+                    } else if (c == '>') {
+                        state = State.ATTRIBUTES;
+                    } else if (c == '"' || c == '\'') {
+                        i++;
+                        quote = c;
+                        startValue(i);
+                        state = State.QUOTED_VALUE;
+                    } else {
+                        startValue(i);
+                        i++;
+                        state = State.UNQUOTED_VALUE;
+                    }
+                    break;
+                case QUOTED_VALUE:
+                    while (c != quote && ++i < end) {
+                        c = bytes[i];
+                    }
+                    if (i < end) {
+                        endValue(bytes, i);
+                        i++;
+                        state = State.ATTRIBUTES;
+                    }
+                    break;
+                case UNQUOTED_VALUE:
+                    while (c != '>' && !isWhitespace(c) && ++i < end) {
+                        c = bytes[i];
+                    }
+                    if (i < end) {
+                        endValue(bytes, i);
+                        state = State.ATTRIBUTES;
+                    }
+                    break;
+            }
+        }
+        if ((state == State.QUOTED_VALUE || state == State.UNQUOTED_VALUE) && wantedAttribute >= 0) {
+            appendValue(bytes, valueStart, end);
+        }
+    }
+
+    /**
+     * Ends the current input. A value that the input ended in the middle of
+     * is dropped.
+     */
+    void finish() {
+        handler = null;
+        tag = null;
+        wantedAttribute = -1;
+        valueLength = 0;
+        if (value.length > bufferSize) {
+            // Only keep a buffer grown for an unusually long value while reading the page it was on.
+            value = new byte[0];
+        }
+    }
+
+    private void startName(int c) {
+        nameLength = 0;
+        appendName(c);
+    }
+
+    private void appendName(int c) {
+        if (nameLength < MAX_NAME_LENGTH) {
+            name[nameLength] = (byte) (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+        }
+        nameLength++;
+    }
+
+    /**
+     * Returns the wanted tag with the name just read, or null if it is not
+     * wanted.
+     */
+    @Nullable
+    private Tag findTag() {
+        for (Tag tag : TAGS) {
+            if (isName(tag.name)) {
+                return tag;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index of the current tag's attribute with the name just
+     * read, or -1 if it is not wanted or its value has already been handed
+     * over.
+     */
+    private int findAttribute() {
+        for (int i = 0; i < tag.attributes.length; i++) {
+            if ((handledAttributes & (1 << i)) == 0 && isName(tag.attributes[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isName(@NotNull byte[] wanted) {
+        if (nameLength != wanted.length) {
+            return false;
+        }
+        for (int i = 0; i < nameLength; i++) {
+            if (name[i] != wanted[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startValue(int index) {
+        valueStart = index;
+        valueLength = 0;
+        overflowed = false;
+    }
+
+    /**
+     * Hands the value that ends before the given index of the current chunk
+     * to the handler if it is wanted.
+     */
+    private void endValue(@NotNull byte[] bytes, int end) {
+        if (wantedAttribute < 0) {
+            return;
+        }
+        int attribute = wantedAttribute;
+        wantedAttribute = -1;
+        byte[] valueBytes = bytes;
+        int start = valueStart;
+        if (valueLength > 0 || overflowed) {
+            // The value started in an earlier chunk.
+            appendValue(bytes, valueStart, end);
+            valueBytes = value;
+            start = 0;
+            end = valueLength;
+        }
+        if (end > start && end - start <= MAX_VALUE_LENGTH && !overflowed) {
+            handler.handle(tag.types[attribute], valueBytes, start, end);
+            handledAttributes |= 1 << attribute;
+        }
+    }
+
+    /**
+     * Keeps part of a wanted value until the rest of it arrives.
+     */
+    private void appendValue(@NotNull byte[] bytes, int start, int end) {
+        int length = end - start;
+        if (overflowed || length == 0) {
+            return;
+        }
+        if (valueLength + length > MAX_VALUE_LENGTH) {
+            overflowed = true;
+            return;
+        }
+        if (valueLength + length > value.length) {
+            value = Arrays.copyOf(value, Math.min(MAX_VALUE_LENGTH, Math.max(valueLength + length, 2 * value.length)));
+        }
+        System.arraycopy(bytes, start, value, valueLength, length);
+        valueLength += length;
+    }
+
+    private static boolean isNameStart(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isNameEnd(int c) {
+        return c == '>' || c == '/' || c == '=' || c == '<' || isWhitespace(c);
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
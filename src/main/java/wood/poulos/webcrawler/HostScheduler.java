@@ -0,0 +1,362 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hands crawl tasks to an executor in a way that is polite to the hosts being
+ * crawled.
+ * <p>
+ * Tasks wait in a queue for their host. Only so many tasks for a host are in
+ * the executor at once, and when a host has a delay, its next task is only
+ * handed over once that long has passed since its previous task started.
+ * Hosts whose next task may start take turns, one task each, so a slow or
+ * delayed host never holds up the others.
+ * </p>
+ * <p>
+ * Tasks that can not be run, because the executor rejects them or the
+ * scheduler has been shut down, are discarded if they are
+ * {@link CrawlTracker.TrackedTask tracked}. An executor that drops tasks it
+ * has no room for must therefore reject them with a
+ * {@link RejectedExecutionException} rather than silently, so that their
+ * host's slot is freed and they are discarded.
+ * </p>
+ * <p>
+ * A task usually holds its host's slot until it returns. An
+ * {@link AsyncTask} may go on after returning its thread, such as while it
+ * waits for a non-blocking fetch, and holds the slot until it has finished.
+ * </p>
+ */
+final class HostScheduler {
+
+    @NotNull
+    private final Executor executor;
+    @NotNull
+    private final ToIntFunction<String> maxInFlightPerHost;
+    @NotNull
+    private final ToLongFunction<String> delayNanos;
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    private final Queue<HostQueue> readyHosts = new ArrayDeque<>();
+    @Nullable
+    private ScheduledExecutorService timer;
+    private boolean shutDown = false;
+
+    /**
+     * A task that may go on after returning its thread.
+     */
+    interface AsyncTask extends Runnable {
+
+        /**
+         * Runs the given action once this task has finished, which may be
+         * right away on the calling thread if it already has.
+         *
+         * @param action The action to run.
+         */
+        void whenFinished(@NotNull Runnable action);
+    }
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param executor           The executor to run tasks on.
+     * @param maxInFlightPerHost The maximum number of tasks for a single host
+     *                           in the executor at once.
+     * @param delay              The minimum time between the starts of two
+     *                           tasks for the same host, or 0 for none.
+     * @param unit               The unit of the delay.
+     */
+    HostScheduler(@NotNull Executor executor, int maxInFlightPerHost, long delay, @NotNull TimeUnit unit) {
+        this(executor, host -> maxInFlightPerHost, host -> unit.toNanos(delay));
+    }
+
+    /**
+     * Creates a scheduler whose limit for each host may change over time,
+     * such as an {@link AdaptiveLimiter}'s.
+     *
+     * @param executor           The executor to run tasks on.
+     * @param maxInFlightPerHost The current maximum number of tasks for a
+     *                           given host in the executor at once.
+     * @param delay              The minimum time between the starts of two
+     *                           tasks for the same host, or 0 for none.
+     * @param unit               The unit of the delay.
+     */
+    HostScheduler(@NotNull Executor executor, @NotNull ToIntFunction<String> maxInFlightPerHost, long delay,
+                  @NotNull TimeUnit unit) {
+        this(executor, maxInFlightPerHost, host -> unit.toNanos(delay));
+    }
+
+    /**
+     * Creates a scheduler whose limit and delay for each host may change over
+     * time, such as a host's Crawl-delay once its robots.txt is known.
+     *
+     * @param executor           The executor to run tasks on.
+     * @param maxInFlightPerHost The current maximum number of tasks for a
+     *                           given host in the executor at once.
+     * @param delayNanos         The current minimum time between the starts of
+     *                           two tasks for a given host, in nanoseconds, or
+     *                           0 for none.
+     */
+    HostScheduler(@NotNull Executor executor, @NotNull ToIntFunction<String> maxInFlightPerHost,
+                  @NotNull ToLongFunction<String> delayNanos) {
+        this.executor = executor;
+        this.maxInFlightPerHost = maxInFlightPerHost;
+        this.delayNanos = delayNanos;
+    }
+
+    /**
+     * Queues a task for the given host, running it as soon as the host's
+     * limits allow.
+     *
+     * @param host The host the task fetches from.
+     * @param task The task.
+     */
+    void submit(@NotNull String host, @NotNull Runnable task) {
+        boolean accepted;
+        synchronized (this) {
+            accepted = !shutDown;
+            if (accepted) {
+                HostQueue queue = hosts.computeIfAbsent(host.toLowerCase(Locale.ENGLISH), HostQueue::new);
+                queue.waiting.add(task);
+                markReady(queue);
+            }
+        }
+        if (accepted) {
+            dispatch();
+        } else {
+            discard(task);
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting for their host.
+     *
+     * @return the number of waiting tasks.
+     */
+    synchronized int getWaitingCount() {
+        int waiting = 0;
+        for (HostQueue queue : hosts.values()) {
+            waiting += queue.waiting.size();
+        }
+        return waiting;
+    }
+
+    /**
+     * Discards every waiting task and any submitted later. Tasks already in
+     * the executor are left to it.
+     */
+    void shutdown() {
+        List<Runnable> discarded = new ArrayList<>();
+        synchronized (this) {
+            shutDown = true;
+            for (HostQueue queue : hosts.values()) {
+                discarded.addAll(queue.waiting);
+                queue.waiting.clear();
+            }
+            hosts.clear();
+            readyHosts.clear();
+            if (timer != null) {
+                timer.shutdownNow();
+            }
+        }
+        discarded.forEach(HostScheduler::discard);
+    }
+
+    /**
+     * Hands the next task of each ready host to the executor in turn, until
+     * no host has a task that may start now.
+     */
+    private void dispatch() {
+        List<HostTask> started = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            HostQueue queue;
+            while (!shutDown && (queue = readyHosts.poll()) != null) {
+                queue.ready = false;
+                if (queue.waiting.isEmpty() || queue.inFlight >= maxInFlightPerHost.applyAsInt(queue.host)
+                        || queue.starting) {
+                    // Becomes ready again once one of its tasks starts or finishes.
+                    continue;
+                }
+                if (now - queue.nextStart < 0) {
+                    wakeUpLater(queue, queue.nextStart - now);
+                    continue;
+                }
+                started.add(new HostTask(queue, queue.waiting.remove()));
+                queue.inFlight++;
+                queue.starting = delayNanos.applyAsLong(queue.host) > 0;
+                markReady(queue);
+            }
+        }
+        for (HostTask task : started) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // A saturated executor has tasks of its own that dispatch again as they finish, and dispatching
+                // again from here would only reject the host's next task as well.
+                release(task.queue);
+                discard(task.task);
+            }
+        }
+    }
+
+    /**
+     * Queues the given host to take its turn. Must hold the scheduler's lock.
+     */
+    private void markReady(@NotNull HostQueue queue) {
+        if (!queue.ready && !queue.waiting.isEmpty()) {
+            queue.ready = true;
+            readyHosts.add(queue);
+        }
+    }
+
+    /**
+     * Makes the given host ready once its delay is up. Must hold the
+     * scheduler's lock.
+     */
+    private void wakeUpLater(@NotNull HostQueue queue, long nanos) {
+        if (queue.wakeUpScheduled || shutDown) {
+            return;
+        }
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "host-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        queue.wakeUpScheduled = true;
+        timer.schedule(() -> {
+            synchronized (this) {
+                queue.wakeUpScheduled = false;
+                markReady(queue);
+            }
+            dispatch();
+        }, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void started(@NotNull HostQueue queue) {
+        long delay = delayNanos.applyAsLong(queue.host);
+        boolean wasStarting;
+        synchronized (this) {
+            wasStarting = queue.starting;
+            queue.starting = false;
+            queue.nextStart = System.nanoTime() + delay;
+            markReady(queue);
+        }
+        if (wasStarting || delay > 0) {
+            dispatch();
+        }
+    }
+
+    private void finished(@NotNull HostQueue queue) {
+        release(queue);
+        dispatch();
+    }
+
+    /**
+     * Frees the slot in the executor taken by one of the given host's tasks.
+     */
+    private synchronized void release(@NotNull HostQueue queue) {
+        queue.inFlight--;
+        queue.starting = false;
+        if (queue.waiting.isEmpty() && queue.inFlight == 0 && System.nanoTime() - queue.nextStart >= 0) {
+            // Nothing about an idle host needs remembering once its delay is up.
+            hosts.remove(queue.host, queue);
+        }
+        markReady(queue);
+    }
+
+    private static void discard(@NotNull Runnable task) {
+        if (task instanceof CrawlTracker.TrackedTask) {
+            ((CrawlTracker.TrackedTask) task).discard();
+        }
+    }
+
+    /**
+     * The tasks for a single host and how many of them are in the executor.
+     */
+    private static final class HostQueue {
+
+        @NotNull
+        private final String host;
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int inFlight = 0;
+        private boolean starting = false;
+        private long nextStart = System.nanoTime();
+        private boolean ready = false;
+        private boolean wakeUpScheduled = false;
+
+        private HostQueue(@NotNull String host) {
+            this.host = host;
+        }
+    }
+
+    /**
+     * A task handed to the executor, which lets its host know when it starts
+     * and finishes.
+     */
+    private final class HostTask implements Runnable {
+
+        @NotNull
+        private final HostQueue queue;
+        @NotNull
+        private final Runnable task;
+
+        private HostTask(@NotNull HostQueue queue, @NotNull Runnable task) {
+            this.queue = queue;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            started(queue);
+            try {
+                task.run();
+            } finally {
+                if (task instanceof AsyncTask) {
+                    ((AsyncTask) task).whenFinished(() -> finished(queue));
+                } else {
+                    finished(queue);
+                }
+            }
+        }
+    }
+}
@@ -27,23 +27,73 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import wood.poulos.webcrawler.util.Fetcher;
+import wood.poulos.webcrawler.util.URLConnectionFetcher;
 import wood.poulos.webcrawler.util.URLConverter;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A repository of {@link WebElement}s that will commit elements by downloading
  * them to the path specified in the constructor
  * {@link #LocalFileRepository(Path)}.
+ * <p>
+ * Elements are downloaded on a dedicated pool of threads configured by
+ * {@link #configureDownloads(int, int)}. If {@link #enableStreaming(int)
+ * streaming} is enabled, elements are downloaded as soon as they are added
+ * instead of waiting for a commit. If {@link #enablePageSaving() page saving}
+ * is enabled, the HTML of crawled pages is saved too.
+ * </p>
  */
 public class LocalFileRepository implements WebElementRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(WebCrawler.class);
 
     private final Path localPath;
-    private final Set<WebElement> stagedElements = new HashSet<>();
+    private final StagingStore stagedElements = new StagingStore();
+
+    private int downloadThreads = CrawlerSettings.DEFAULT_DOWNLOAD_THREADS;
+    private int maxDownloadsPerHost = CrawlerSettings.DEFAULT_DOWNLOADS_PER_HOST;
+    @NotNull
+    private Fetcher fetcher = new URLConnectionFetcher();
+    @Nullable
+    private Downloader downloader = null;
+
+    private int streamingQueueCapacity = 0;
+    private boolean savingPages = false;
+    private boolean adaptingDownloads = false;
+    @Nullable
+    private ByteBudget downloadBudget = null;
+    @Nullable
+    private DownloadStage downloadStage = null;
+    /**
+     * The identities of the elements downloaded, or being downloaded, without
+     * waiting for a commit.
+     */
+    private final Set<String> streamedURLs = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong successfulDownloads = new AtomicLong();
+    private final Queue<DownloadResult> failedDownloads = new ConcurrentLinkedQueue<>();
+    private List<DownloadResult> lastCommitFailures = Collections.emptyList();
+    private long lastCommitSuccesses = 0;
 
     /**
      * Constructs a LocalFileRepository with the given localPath download
@@ -65,6 +115,116 @@ public class LocalFileRepository implements WebElementRepository {
         return localPath;
     }
 
+    /**
+     * Sets how many elements this repository downloads at once, both overall
+     * and from any single host.
+     *
+     * @param threads             The maximum number of downloads running at
+     *                            once.
+     * @param maxDownloadsPerHost The maximum number of downloads from a single
+     *                            host running at once.
+     */
+    public synchronized void configureDownloads(int threads, int maxDownloadsPerHost) {
+        this.downloadThreads = threads;
+        this.maxDownloadsPerHost = maxDownloadsPerHost;
+        discardDownloader();
+    }
+
+    /**
+     * Sets the fetcher this repository downloads elements with.
+     *
+     * @param fetcher The fetcher to download elements with.
+     */
+    public synchronized void setFetcher(@NotNull Fetcher fetcher) {
+        this.fetcher = fetcher;
+        discardDownloader();
+    }
+
+    /**
+     * Makes this repository download elements as soon as they are added
+     * rather than waiting for {@link #commit()}, which then only waits for
+     * the downloads to finish.
+     * <p>
+     * At most the given number of added elements may be waiting for or in the
+     * middle of a download. Adding an element past that blocks until a
+     * download finishes, so that whatever is adding elements slows down to
+     * the speed of the downloads.
+     * </p>
+     *
+     * @param queueCapacity The maximum number of elements that have not
+     *                      finished downloading.
+     */
+    public synchronized void enableStreaming(int queueCapacity) {
+        this.streamingQueueCapacity = queueCapacity;
+    }
+
+    /**
+     * Returns whether this repository downloads elements as soon as they are
+     * added.
+     *
+     * @return True if streaming is enabled.
+     */
+    public synchronized boolean isStreaming() {
+        return streamingQueueCapacity > 0;
+    }
+
+    /**
+     * Makes this repository save the HTML of pages as they are crawled, to
+     * the same kind of path as any other element.
+     *
+     * @see #openPageCopy(WebPage)
+     */
+    public synchronized void enablePageSaving() {
+        this.savingPages = true;
+    }
+
+    /**
+     * Makes the number of elements this repository downloads at once from
+     * each host adapt to how the host copes, starting from the configured
+     * downloads per host and growing up to the number of download threads.
+     *
+     * @see AdaptiveLimiter
+     */
+    public synchronized void enableAdaptiveDownloads() {
+        this.adaptingDownloads = true;
+        discardDownloader();
+    }
+
+    /**
+     * Limits the number of bytes this repository downloads, counted across
+     * every download from now on. Once the limit is reached, downloads in
+     * progress finish and later downloads fail without being fetched.
+     *
+     * @param maxBytes The number of bytes that may be downloaded.
+     * @see ByteBudget
+     */
+    public synchronized void limitDownloadBytes(long maxBytes) {
+        this.downloadBudget = new ByteBudget("download", maxBytes, () ->
+                logger.info("The download budget of {} bytes is used up, skipping the remaining downloads.",
+                        maxBytes));
+        discardDownloader();
+    }
+
+    /**
+     * Returns how many elements this repository currently downloads at once
+     * from each host, if those limits adapt.
+     *
+     * @return the current limits by host, or an empty map if they are fixed.
+     */
+    @NotNull
+    public SortedMap<String, Integer> getDownloadLimits() {
+        return getDownloader().getHostLimits();
+    }
+
+    /**
+     * Returns whether this repository saves the HTML of crawled pages.
+     *
+     * @return True if page saving is enabled.
+     */
+    public synchronized boolean isSavingPages() {
+        return savingPages;
+    }
+
     /**
      * Retrieves the path on the local disk for the given element.
      * <p>
@@ -86,7 +246,61 @@ public class LocalFileRepository implements WebElementRepository {
      */
     @Override
     public void addElement(@NotNull WebElement element) {
-        stagedElements.add(element);
+        if (isStreaming() && !(element instanceof WebPage)) {
+            if (streamedURLs.add(AbstractWebElement.identityOf(element))) {
+                getDownloadStage().submit(element);
+            }
+        } else if (!streamedURLs.contains(AbstractWebElement.identityOf(element))) {
+            stagedElements.add(element);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The content is saved right away, whether or not streaming is enabled,
+     * and the outcome is reported with the next commit. It is saved like any
+     * other download, counting against the download budget and, when
+     * streaming, taking a place in the download stage, while the calling
+     * thread waits for it.
+     * </p>
+     */
+    @Override
+    public void addFetchedElement(@NotNull WebElement element, @NotNull InputStream content) {
+        if (!streamedURLs.add(AbstractWebElement.identityOf(element))) {
+            return;
+        }
+        stagedElements.remove(element);
+        Fetcher fetched = withinDownloadBudget(url -> new FetchedResponse(content));
+        logger.trace("Saving fetched {} to {}", element, getLocalPathForElement(element));
+        try {
+            if (isStreaming()) {
+                getDownloadStage().submit(element, fetched).join();
+            } else {
+                recordResult(getDownloader().download(element, getLocalPathForElement(element), fetched).join());
+            }
+        } catch (CancellationException | CompletionException e) {
+            logger.debug("Fetched {} was not saved", element, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Pages are only kept once {@link #enablePageSaving() page saving} is
+     * enabled.
+     * </p>
+     */
+    @Override
+    @Nullable
+    public OutputStream openPageCopy(@NotNull WebPage page) throws IOException {
+        if (!isSavingPages()) {
+            return null;
+        }
+        Path path = getLocalPathForElement(page);
+        logger.trace("Saving {} to {}", page, path);
+        Files.createDirectories(path.getParent());
+        return Files.newOutputStream(path);
     }
 
     /**
@@ -95,6 +309,11 @@ public class LocalFileRepository implements WebElementRepository {
     @Override
     public void removeElement(@NotNull WebElement element) {
         stagedElements.remove(element);
+        DownloadStage stage = getStartedDownloadStage();
+        if (stage != null) {
+            stage.remove(element);
+            streamedURLs.remove(AbstractWebElement.identityOf(element));
+        }
     }
 
     /**
@@ -103,22 +322,178 @@ public class LocalFileRepository implements WebElementRepository {
     @Override
     @NotNull
     public Iterable<WebElement> getStagedElements() {
-        return stagedElements;
+        DownloadStage stage = getStartedDownloadStage();
+        if (stage == null) {
+            return stagedElements.view();
+        }
+        Collection<WebElement> elements = new ArrayList<>(stagedElements.view());
+        elements.addAll(stage.getPendingElements());
+        return elements;
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * The outcome of every download is logged and the failed downloads can be
+     * retrieved afterwards with {@link #getLastCommitFailures()}.
+     * </p>
      */
     @Override
     public void commit() {
+        DownloadStage stage;
+        synchronized (this) {
+            stage = downloadStage;
+            downloadStage = null;
+        }
+        if (stage != null) {
+            logger.info("Waiting for downloads to finish...");
+            stage.finish();
+        }
+
         logger.info("Begin downloading...");
-        stagedElements.parallelStream()
-                .filter(e -> !(e instanceof WebPage))
-                .forEach(e -> {
-                    logger.trace("Saving {} to {}", e, getLocalPathForElement(e));
-                    e.save(getLocalPathForElement(e));
-                });
-        stagedElements.clear();
-        logger.info("Done downloading.");
+        List<CompletableFuture<DownloadResult>> downloads = new ArrayList<>();
+        stagedElements.drain(element -> {
+            if (!(element instanceof WebPage)) {
+                downloads.add(startDownload(element));
+            }
+        });
+        for (CompletableFuture<DownloadResult> download : downloads) {
+            recordResult(download.join());
+        }
+        streamedURLs.clear();
+
+        List<DownloadResult> failures = new ArrayList<>(failedDownloads);
+        failedDownloads.removeAll(failures);
+        long successes = successfulDownloads.getAndSet(0);
+        synchronized (this) {
+            lastCommitFailures = Collections.unmodifiableList(failures);
+            lastCommitSuccesses = successes;
+        }
+        logger.info("Done downloading. {} succeeded, {} failed.", successes, failures.size());
+        if (isAdaptingDownloads()) {
+            logger.info("Downloads at once per host: {}", getDownloadLimits());
+        }
+    }
+
+    /**
+     * Returns the number of elements that were downloaded successfully by the
+     * last commit.
+     *
+     * @return the number of successful downloads in the last commit.
+     */
+    public synchronized long getLastCommitSuccessCount() {
+        return lastCommitSuccesses;
+    }
+
+    /**
+     * Returns the results of the downloads that failed in the last commit.
+     *
+     * @return an unmodifiable list of the failed downloads in the last commit.
+     */
+    @NotNull
+    public synchronized List<DownloadResult> getLastCommitFailures() {
+        return lastCommitFailures;
+    }
+
+    @NotNull
+    private CompletableFuture<DownloadResult> startDownload(@NotNull WebElement element) {
+        Path path = getLocalPathForElement(element);
+        logger.trace("Saving {} to {}", element, path);
+        return getDownloader().download(element, path);
+    }
+
+    private void recordResult(@NotNull DownloadResult result) {
+        if (result.isSuccessful()) {
+            logger.trace("Saved {} to {}", result.getElement(), result.getPath());
+            successfulDownloads.incrementAndGet();
+        } else {
+            if (result.getFailure() instanceof FileNotFoundException) {
+                logger.warn("Could not locate element {}", result.getElement().getURL());
+            } else if (result.getFailure() instanceof BudgetExhaustedException) {
+                logger.debug("Skipped {}: {}", result.getElement().getURL(), result.getFailure().getMessage());
+            } else {
+                logger.warn("Could not download {}: {}", result.getElement().getURL(), result.getFailure());
+            }
+            failedDownloads.add(result);
+        }
+    }
+
+    private synchronized boolean isAdaptingDownloads() {
+        return adaptingDownloads;
+    }
+
+    @NotNull
+    private synchronized Downloader getDownloader() {
+        if (downloader == null) {
+            AdaptiveLimiter limiter = adaptingDownloads
+                    ? new AdaptiveLimiter("download", Math.min(maxDownloadsPerHost, downloadThreads), downloadThreads)
+                    : null;
+            downloader = new Downloader(downloadThreads, maxDownloadsPerHost, withinDownloadBudget(fetcher), limiter);
+        }
+        return downloader;
+    }
+
+    /**
+     * Returns the given fetcher limited to the download budget, if there is
+     * one.
+     */
+    @NotNull
+    private synchronized Fetcher withinDownloadBudget(@NotNull Fetcher fetcher) {
+        return downloadBudget == null ? fetcher : downloadBudget.limit(fetcher);
+    }
+
+    /**
+     * Shuts the current downloader down, if there is one, so that the next
+     * download creates one with the current configuration.
+     */
+    private synchronized void discardDownloader() {
+        if (downloader != null) {
+            downloader.shutdown();
+            downloader = null;
+        }
+    }
+
+    @NotNull
+    private synchronized DownloadStage getDownloadStage() {
+        if (downloadStage == null) {
+            downloadStage = new DownloadStage(streamingQueueCapacity, getDownloader(), this::getLocalPathForElement,
+                    this::recordResult);
+        }
+        return downloadStage;
+    }
+
+    @Nullable
+    private synchronized DownloadStage getStartedDownloadStage() {
+        return downloadStage;
+    }
+
+    /**
+     * A response serving a body that has already been fetched, which is left
+     * open for whoever fetched it to close.
+     */
+    private static final class FetchedResponse implements Fetcher.Response {
+
+        @NotNull
+        private final InputStream body;
+
+        private FetchedResponse(@NotNull InputStream body) {
+            this.body = body;
+        }
+
+        @Nullable
+        @Override
+        public String getContentType() {
+            return null;
+        }
+
+        @NotNull
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() {
+        }
     }
 }
@@ -0,0 +1,194 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wood.poulos.webcrawler.util.Fetcher;
+import wood.poulos.webcrawler.util.HttpStatusException;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The robots.txt rules of every host seen during a crawl.
+ * <p>
+ * A host's robots.txt is fetched the first time one of its URLs is checked,
+ * and its compiled {@link RobotsRules} are kept for the rest of the crawl.
+ * Checks of a host whose robots.txt is still being fetched wait for it rather
+ * than fetching it again, either by blocking or by way of a future. As
+ * RFC 9309 asks, a missing robots.txt allows everything and one that is
+ * unavailable because of a server error disallows everything. Any other
+ * failure to fetch it allows everything, since fetching the host's pages
+ * will fail the same way.
+ * </p>
+ */
+final class RobotsCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RobotsCache.class);
+
+    /**
+     * The most of a robots.txt file that is read.
+     */
+    static final int MAX_ROBOTS_SIZE = 500 * 1024;
+
+    /**
+     * The longest Crawl-delay honored, so that a host asking for an
+     * unreasonable delay can not stall the crawl.
+     */
+    static final long MAX_CRAWL_DELAY_MILLIS = 60_000;
+
+    @NotNull
+    private final Fetcher fetcher;
+    private final ConcurrentMap<String, CompletableFuture<RobotsRules>> rules = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> crawlDelays = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param fetcher The fetcher to fetch robots.txt files with.
+     */
+    RobotsCache(@NotNull Fetcher fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * Returns whether the robots.txt of the given URL's host allows crawling
+     * it, fetching the robots.txt if this is the first URL of the host.
+     *
+     * @param url The URL to check.
+     * @return True if the URL may be crawled.
+     */
+    boolean isAllowed(@NotNull URL url) {
+        return getRules(url).isAllowed(url.getFile());
+    }
+
+    /**
+     * Returns the rules for the given URL's host, fetching its robots.txt if
+     * this is the first URL of the host.
+     *
+     * @param url A URL of the host.
+     * @return The host's rules.
+     */
+    @NotNull
+    RobotsRules getRules(@NotNull URL url) {
+        return getRulesAsync(url, Runnable::run).join();
+    }
+
+    /**
+     * Returns the rules for the given URL's host once they are known. If this
+     * is the first URL of the host, its robots.txt is fetched on the given
+     * executor, or on the calling thread if the executor rejects the fetch.
+     *
+     * @param url      A URL of the host.
+     * @param executor The executor to fetch the robots.txt on.
+     * @return A future completed with the host's rules, which is already
+     * complete if they are known.
+     */
+    @NotNull
+    CompletableFuture<RobotsRules> getRulesAsync(@NotNull URL url, @NotNull Executor executor) {
+        String protocol = url.getProtocol().toLowerCase(Locale.ENGLISH);
+        if (!protocol.equals("http") && !protocol.equals("https")) {
+            return CompletableFuture.completedFuture(RobotsRules.ALLOW_ALL);
+        }
+        int port = url.getPort() == url.getDefaultPort() ? -1 : url.getPort();
+        String key = protocol + "://" + url.getHost().toLowerCase(Locale.ENGLISH) + (port == -1 ? "" : ":" + port);
+
+        CompletableFuture<RobotsRules> loading = new CompletableFuture<>();
+        CompletableFuture<RobotsRules> loaded = rules.putIfAbsent(key, loading);
+        if (loaded != null) {
+            return loaded;
+        }
+        try {
+            executor.execute(() -> load(key, url.getHost(), loading));
+        } catch (RejectedExecutionException e) {
+            load(key, url.getHost(), loading);
+        }
+        return loading;
+    }
+
+    /**
+     * Fetches the robots.txt of the given origin and completes the given
+     * future with its rules.
+     */
+    private void load(@NotNull String origin, @NotNull String host, @NotNull CompletableFuture<RobotsRules> loading) {
+        RobotsRules hostRules = RobotsRules.ALLOW_ALL;
+        try {
+            hostRules = fetchRules(origin);
+            if (hostRules.getCrawlDelayMillis() > 0) {
+                crawlDelays.merge(host.toLowerCase(Locale.ENGLISH),
+                        Math.min(MAX_CRAWL_DELAY_MILLIS, hostRules.getCrawlDelayMillis()), Math::max);
+            }
+        } finally {
+            loading.complete(hostRules);
+        }
+    }
+
+    /**
+     * Returns the Crawl-delay of the given host, if its robots.txt has been
+     * fetched and gives one.
+     *
+     * @param host The host.
+     * @return the crawl delay in milliseconds, or 0 if there is none.
+     */
+    long getCrawlDelayMillis(@NotNull String host) {
+        Long delay = crawlDelays.get(host.toLowerCase(Locale.ENGLISH));
+        return delay == null ? 0 : delay;
+    }
+
+    @NotNull
+    private RobotsRules fetchRules(@NotNull String origin) {
+        URL robotsURL;
+        try {
+            robotsURL = new URL(origin + "/robots.txt");
+        } catch (MalformedURLException e) {
+            return RobotsRules.ALLOW_ALL;
+        }
+        try (Fetcher.Response response = fetcher.fetch(robotsURL)) {
+            byte[] content = IOUtils.toByteArray(new BoundedInputStream(response.getBody(), MAX_ROBOTS_SIZE));
+            logger.debug("Fetched {}", robotsURL);
+            return RobotsRules.parse(new String(content, StandardCharsets.UTF_8), RobotsRules.USER_AGENT);
+        } catch (HttpStatusException e) {
+            if (e.getStatusCode() >= 500) {
+                logger.warn("{} is unavailable, not crawling anything from {}", robotsURL, origin);
+                return RobotsRules.DISALLOW_ALL;
+            }
+            return RobotsRules.ALLOW_ALL;
+        } catch (IOException e) {
+            logger.debug("No robots.txt for {}: {}", origin, e.toString());
+            return RobotsRules.ALLOW_ALL;
+        }
+    }
+}
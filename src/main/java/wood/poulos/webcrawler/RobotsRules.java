@@ -0,0 +1,294 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The rules of a robots.txt file that apply to this crawler, compiled so that
+ * checking a URL against them is cheap.
+ * <p>
+ * Rules are parsed as described by RFC 9309. The rules of the groups naming
+ * this crawler's product token apply, or else those of the {@code *} groups.
+ * A path is allowed unless the longest rule matching it is a disallow rule,
+ * and an allow rule wins over a disallow rule of the same length. Rules
+ * without wildcards are kept in a trie, so a path is checked against all of
+ * them in a single walk along it, and the rarer rules with {@code *} or
+ * {@code $} are compiled to regular expressions.
+ * </p>
+ */
+final class RobotsRules {
+
+    /**
+     * The product token this crawler looks for in User-agent lines.
+     */
+    static final String USER_AGENT = "webcrawler";
+
+    /**
+     * Rules allowing everything, for hosts without a robots.txt.
+     */
+    static final RobotsRules ALLOW_ALL = new RobotsRules();
+
+    /**
+     * Rules disallowing everything, for hosts whose robots.txt is
+     * unavailable because of a server error.
+     */
+    static final RobotsRules DISALLOW_ALL = new RobotsRules();
+
+    static {
+        DISALLOW_ALL.addRule("/", false);
+    }
+
+    private final TrieNode literalRules = new TrieNode();
+    private final List<WildcardRule> wildcardRules = new ArrayList<>();
+    private long crawlDelayMillis = 0;
+    private final List<String> sitemaps = new ArrayList<>();
+
+    private RobotsRules() { }
+
+    /**
+     * Parses the given robots.txt content for the rules that apply to the
+     * given user agent.
+     *
+     * @param content   The content of a robots.txt file.
+     * @param userAgent The product token of the crawler.
+     * @return The compiled rules.
+     */
+    @NotNull
+    static RobotsRules parse(@NotNull String content, @NotNull String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ENGLISH);
+        List<String[]> ownRules = new ArrayList<>();
+        List<String[]> defaultRules = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+
+        boolean inGroupRules = false;
+        boolean groupIsOwn = false;
+        boolean groupIsDefault = false;
+        for (String line : content.split("\r\n|\r|\n")) {
+            int comment = line.indexOf('#');
+            if (comment != -1) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon == -1) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ENGLISH);
+            String value = line.substring(colon + 1).trim();
+
+            switch (key) {
+                case "user-agent":
+                    if (inGroupRules) {
+                        // A User-agent line after rules starts a new group.
+                        inGroupRules = false;
+                        groupIsOwn = false;
+                        groupIsDefault = false;
+                    }
+                    String token = productToken(value);
+                    groupIsOwn |= token.equals(agent);
+                    groupIsDefault |= token.equals("*");
+                    break;
+                case "allow":
+                case "disallow":
+                case "crawl-delay":
+                    inGroupRules = true;
+                    if (groupIsOwn) {
+                        ownRules.add(new String[]{key, value});
+                    } else if (groupIsDefault) {
+                        defaultRules.add(new String[]{key, value});
+                    }
+                    break;
+                case "sitemap":
+                    if (!value.isEmpty()) {
+                        sitemaps.add(value);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        RobotsRules rules = new RobotsRules();
+        rules.sitemaps.addAll(sitemaps);
+        for (String[] rule : ownRules.isEmpty() ? defaultRules : ownRules) {
+            if (rule[0].equals("crawl-delay")) {
+                rules.crawlDelayMillis = Math.max(rules.crawlDelayMillis, parseCrawlDelayMillis(rule[1]));
+            } else if (!rule[1].isEmpty()) {
+                rules.addRule(rule[1], rule[0].equals("allow"));
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Returns the product token of a User-agent line's value: its start, up
+     * to any version or comment, lower cased.
+     */
+    @NotNull
+    private static String productToken(@NotNull String value) {
+        int end = 0;
+        while (end < value.length() && value.charAt(end) != '/' && !Character.isWhitespace(value.charAt(end))) {
+            end++;
+        }
+        return value.substring(0, end).toLowerCase(Locale.ENGLISH);
+    }
+
+    private static long parseCrawlDelayMillis(@NotNull String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            return seconds > 0 && !Double.isInfinite(seconds) ? (long) (seconds * 1000) : 0;
+        } catch (NumberFormatException ignore) {
+            return 0;
+        }
+    }
+
+    private void addRule(@NotNull String pattern, boolean allow) {
+        if (pattern.indexOf('*') == -1 && !pattern.endsWith("$")) {
+            TrieNode node = literalRules;
+            for (int i = 0; i < pattern.length(); i++) {
+                node = node.childFor(pattern.charAt(i));
+            }
+            // Of an allow and a disallow rule for the same path, the allow rule wins.
+            node.rule = node.rule == Boolean.TRUE || allow;
+        } else {
+            wildcardRules.add(new WildcardRule(pattern, allow));
+        }
+    }
+
+    /**
+     * Returns whether the given path may be crawled.
+     *
+     * @param path The path of a URL, including its query if it has one.
+     * @return True if the path is allowed.
+     */
+    boolean isAllowed(@NotNull String path) {
+        if (path.isEmpty()) {
+            path = "/";
+        }
+        if (path.equals("/robots.txt")) {
+            return true;
+        }
+
+        int longestMatch = -1;
+        boolean allowed = true;
+        TrieNode node = literalRules;
+        for (int i = 0; node != null; i++) {
+            if (node.rule != null) {
+                longestMatch = i;
+                allowed = node.rule;
+            }
+            node = i < path.length() ? node.children.get(path.charAt(i)) : null;
+        }
+        for (WildcardRule rule : wildcardRules) {
+            int length = rule.pattern.length();
+            if ((length > longestMatch || (length == longestMatch && rule.allow && !allowed)) && rule.matches(path)) {
+                longestMatch = length;
+                allowed = rule.allow;
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Returns how long to wait between requests to the host, as given by its
+     * Crawl-delay.
+     *
+     * @return the crawl delay in milliseconds, or 0 if there is none.
+     */
+    long getCrawlDelayMillis() {
+        return crawlDelayMillis;
+    }
+
+    /**
+     * Returns the sitemap URLs listed in the robots.txt, which apply
+     * regardless of user agent.
+     *
+     * @return the sitemap URLs.
+     */
+    @NotNull
+    List<String> getSitemaps() {
+        return Collections.unmodifiableList(sitemaps);
+    }
+
+    /**
+     * A node in the trie of rules without wildcards, keyed by the next
+     * character of the rule's path.
+     */
+    private static final class TrieNode {
+
+        private final Map<Character, TrieNode> children = new HashMap<>(4);
+        /**
+         * Whether the rule ending at this node allows its path, or null if no
+         * rule ends here.
+         */
+        @Nullable
+        private Boolean rule;
+
+        @NotNull
+        private TrieNode childFor(char c) {
+            return children.computeIfAbsent(c, k -> new TrieNode());
+        }
+    }
+
+    /**
+     * A rule with {@code *} wildcards or ending in {@code $}.
+     */
+    private static final class WildcardRule {
+
+        @NotNull
+        private final String pattern;
+        private final boolean allow;
+        @NotNull
+        private final Pattern regex;
+        private final boolean anchored;
+
+        private WildcardRule(@NotNull String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+            this.anchored = pattern.endsWith("$");
+            String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            StringBuilder regex = new StringBuilder();
+            int start = 0;
+            for (int star = body.indexOf('*'); star != -1; star = body.indexOf('*', start)) {
+                regex.append(Pattern.quote(body.substring(start, star))).append(".*");
+                start = star + 1;
+            }
+            regex.append(Pattern.quote(body.substring(start)));
+            this.regex = Pattern.compile(regex.toString(), Pattern.DOTALL);
+        }
+
+        private boolean matches(@NotNull String path) {
+            return anchored ? regex.matcher(path).matches() : regex.matcher(path).lookingAt();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wood.poulos.webcrawler.util.Fetcher;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the page URLs listed by a host's sitemaps, one at a time.
+ * <p>
+ * Sitemaps are streamed with a StAX reader rather than loaded whole, so that
+ * even very large ones only take a buffer's worth of memory, and a sitemap is
+ * only fetched once the pages of the ones before it have been read. Sitemap
+ * index files add the sitemaps they list to those left to read. Gzipped
+ * sitemaps are recognized by their content, whatever their name. As the
+ * sitemap protocol requires, URLs on a different host than the sitemap
+ * listing them are skipped.
+ * </p>
+ * <p>
+ * A reader is not thread safe.
+ * </p>
+ */
+final class SitemapReader implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SitemapReader.class);
+
+    /**
+     * The most sitemap files read, counting sitemap index files.
+     */
+    static final int MAX_SITEMAPS = 1000;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    @NotNull
+    private final Fetcher fetcher;
+    private final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+    private final Deque<URL> pendingSitemaps = new ArrayDeque<>();
+    private final Set<String> seenSitemaps = new HashSet<>();
+
+    @Nullable
+    private URL sitemap;
+    @Nullable
+    private Fetcher.Response response;
+    @Nullable
+    private XMLStreamReader xml;
+    private boolean inIndex;
+    private int elementDepth;
+
+    /**
+     * Creates a reader of the given sitemaps.
+     *
+     * @param fetcher  The fetcher to fetch sitemaps with.
+     * @param sitemaps The URLs of the sitemaps or sitemap index files to read.
+     */
+    SitemapReader(@NotNull Fetcher fetcher, @NotNull Collection<URL> sitemaps) {
+        this.fetcher = fetcher;
+        // Sitemaps have no use for DTDs, and resolving external entities would let a sitemap read local files.
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        for (URL url : sitemaps) {
+            addSitemap(url);
+        }
+    }
+
+    /**
+     * Returns the next page URL listed by the sitemaps, fetching the next
+     * sitemap if the current one has been read. A sitemap that can not be
+     * fetched or parsed is skipped from where it failed.
+     *
+     * @return the next page URL, or null if every sitemap has been read.
+     */
+    @Nullable
+    URL next() {
+        while (true) {
+            if (xml == null && !openNextSitemap()) {
+                return null;
+            }
+            URL page = nextPage(xml, sitemap);
+            if (page != null) {
+                return page;
+            }
+            closeSitemap();
+        }
+    }
+
+    /**
+     * Stops reading the sitemaps, closing the current one.
+     */
+    @Override
+    public void close() {
+        closeSitemap();
+        pendingSitemaps.clear();
+    }
+
+    private void addSitemap(@NotNull URL url) {
+        if (seenSitemaps.size() >= MAX_SITEMAPS) {
+            logger.debug("Skipping sitemap {}, {} sitemaps have been read", url, MAX_SITEMAPS);
+            return;
+        }
+        if (seenSitemaps.add(url.toExternalForm())) {
+            pendingSitemaps.add(url);
+        }
+    }
+
+    private boolean openNextSitemap() {
+        while (!pendingSitemaps.isEmpty()) {
+            URL next = pendingSitemaps.remove();
+            sitemap = next;
+            try {
+                Fetcher.Response opened = fetcher.fetch(next);
+                response = opened;
+                xml = xmlInputFactory.createXMLStreamReader(decompressed(opened.getBody()));
+                inIndex = false;
+                elementDepth = 0;
+                logger.info("Reading sitemap {}", sitemap);
+                return true;
+            } catch (IOException | XMLStreamException e) {
+                logger.warn("Could not read sitemap {}: {}", sitemap, e.toString());
+                closeSitemap();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the given sitemap content, decompressed if it is gzipped.
+     */
+    @NotNull
+    private static InputStream decompressed(@NotNull InputStream content) throws IOException {
+        InputStream buffered = new BufferedInputStream(content);
+        buffered.mark(2);
+        int magic = buffered.read() | buffered.read() << 8;
+        buffered.reset();
+        return magic == GZIP_MAGIC ? new GZIPInputStream(buffered) : buffered;
+    }
+
+    /**
+     * Reads the current sitemap up to its next page URL, queueing any
+     * sitemaps listed along the way if it is an index.
+     *
+     * @return the next page URL, or null if the sitemap has no more.
+     */
+    @Nullable
+    private URL nextPage(@NotNull XMLStreamReader xml, @NotNull URL sitemap) {
+        try {
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    elementDepth--;
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    elementDepth++;
+                    String name = xml.getLocalName();
+                    if (elementDepth == 1) {
+                        inIndex = name.equals("sitemapindex");
+                    } else if (elementDepth == 3 && name.equals("loc")) {
+                        // Reading the text consumes the end of the element as well.
+                        elementDepth--;
+                        URL url = sameHostURL(xml.getElementText().trim(), sitemap);
+                        if (url != null && inIndex) {
+                            addSitemap(url);
+                        } else if (url != null) {
+                            return url;
+                        }
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            logger.warn("Could not parse sitemap {}: {}", sitemap, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the given location as a URL if it is on the same host as the
+     * sitemap listing it.
+     */
+    @Nullable
+    private static URL sameHostURL(@NotNull String location, @NotNull URL sitemap) {
+        try {
+            URL url = new URL(location);
+            if (url.getHost().equalsIgnoreCase(sitemap.getHost())) {
+                return url;
+            }
+            logger.debug("Skipping {} from sitemap {} on a different host", location, sitemap);
+        } catch (MalformedURLException e) {
+            logger.debug("Skipping malformed URL {} from sitemap {}", location, sitemap);
+        }
+        return null;
+    }
+
+    private void closeSitemap() {
+        if (xml != null) {
+            try {
+                xml.close();
+            } catch (XMLStreamException ignore) {
+                // The response is closed below either way.
+            }
+            xml = null;
+        }
+        if (response != null) {
+            try {
+                response.close();
+            } catch (IOException e) {
+                logger.debug("Could not close sitemap {}: {}", sitemap, e.getMessage());
+            }
+            response = null;
+        }
+    }
+}
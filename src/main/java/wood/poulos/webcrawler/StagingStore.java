@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * A thread safe store of the {@link WebElement}s staged in a
+ * {@link WebElementRepository}.
+ * <p>
+ * Elements are kept in a {@link ConcurrentHashMap} keyed by their
+ * {@link AbstractWebElement#identityOf(WebElement) identity}, so many crawler threads can stage elements at once without
+ * contending on a single lock. Elements added while the store is being
+ * {@link #drain(Consumer) drained} are either drained or left in the store,
+ * never lost.
+ * </p>
+ */
+class StagingStore {
+
+    static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+    private final ConcurrentMap<String, WebElement> elements;
+
+    /**
+     * Creates an empty store.
+     */
+    StagingStore() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty store sized to hold the given number of elements
+     * without resizing.
+     *
+     * @param initialCapacity The number of elements expected in the store.
+     */
+    StagingStore(int initialCapacity) {
+        this.elements = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    /**
+     * Adds the given element to the store unless an equal element is already
+     * in it.
+     *
+     * @param element The element to add.
+     * @return True if the element was added.
+     */
+    boolean add(@NotNull WebElement element) {
+        return elements.putIfAbsent(keyOf(element), element) == null;
+    }
+
+    /**
+     * Removes the element equal to the given element from the store.
+     *
+     * @param element The element to remove.
+     * @return True if an element was removed.
+     */
+    boolean remove(@NotNull WebElement element) {
+        return elements.remove(keyOf(element)) != null;
+    }
+
+    /**
+     * Returns whether an element equal to the given element is in the store.
+     *
+     * @param element The element to look for.
+     * @return True if the store contains the element.
+     */
+    boolean contains(@NotNull WebElement element) {
+        return elements.containsKey(keyOf(element));
+    }
+
+    /**
+     * Returns the number of elements in the store.
+     *
+     * @return the number of elements in the store.
+     */
+    int size() {
+        return elements.size();
+    }
+
+    /**
+     * Returns a live, unmodifiable view of the elements in the store.
+     *
+     * @return the elements in the store.
+     */
+    @NotNull
+    Collection<WebElement> view() {
+        return Collections.unmodifiableCollection(elements.values());
+    }
+
+    /**
+     * Removes the elements in the store one at a time, passing each removed
+     * element to the given consumer.
+     *
+     * @param consumer Receives each removed element.
+     */
+    void drain(@NotNull Consumer<WebElement> consumer) {
+        Iterator<Map.Entry<String, WebElement>> iterator = elements.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, WebElement> entry = iterator.next();
+            if (elements.remove(entry.getKey(), entry.getValue())) {
+                consumer.accept(entry.getValue());
+            }
+        }
+    }
+
+    @NotNull
+    private static String keyOf(@NotNull WebElement element) {
+        return AbstractWebElement.identityOf(element);
+    }
+}
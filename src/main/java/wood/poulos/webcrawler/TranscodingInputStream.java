@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * An input stream of the characters of a reader encoded in another charset.
+ */
+final class TranscodingInputStream extends InputStream {
+
+    private final Reader reader;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars = CharBuffer.allocate(4096);
+    private final ByteBuffer bytes;
+    private boolean endOfInput;
+    private boolean flushed;
+
+    /**
+     * Creates a stream of the given reader's characters in the given charset.
+     * Characters the charset can't encode are replaced.
+     *
+     * @param reader  The characters to encode.
+     * @param charset The charset to encode them in.
+     */
+    TranscodingInputStream(@NotNull Reader reader, @NotNull Charset charset) {
+        this.reader = reader;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate((int) Math.ceil(chars.capacity() * encoder.maxBytesPerChar()));
+        chars.flip();
+        bytes.flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(@NotNull byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (!bytes.hasRemaining()) {
+            if (flushed) {
+                return -1;
+            }
+            encodeMore();
+        }
+        int count = Math.min(len, bytes.remaining());
+        bytes.get(b, off, count);
+        return count;
+    }
+
+    private void encodeMore() throws IOException {
+        bytes.compact();
+        if (!endOfInput) {
+            chars.compact();
+            int read = reader.read(chars);
+            chars.flip();
+            if (read == -1) {
+                endOfInput = true;
+            }
+        }
+        encoder.encode(chars, bytes, endOfInput);
+        if (endOfInput && !chars.hasRemaining()) {
+            encoder.flush(bytes);
+            flushed = true;
+        }
+        bytes.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The set of pages claimed for crawling, along with the shallowest depth each
+ * was claimed at.
+ * <p>
+ * Rather than keeping the pages themselves, each page is stored as a single
+ * {@code long}: a 56 bit fingerprint of its URL alongside its depth. These are
+ * kept in an open-addressing table of primitive longs, so a page costs around
+ * a dozen bytes instead of the hundreds taken by a {@link WebPage} or its URL
+ * string. The trade-off is that two URLs whose fingerprints collide are
+ * treated as the same page, which becomes likely only after hundreds of
+ * millions of pages.
+ * </p>
+ * <p>
+ * Claims are made concurrently with compare-and-set on the table's slots, and
+ * only block while the table is being grown.
+ * </p>
+ */
+final class VisitedPageSet {
+
+    /**
+     * The deepest depth that is recorded exactly. Pages claimed any deeper
+     * are recorded at this depth.
+     */
+    static final int MAX_RECORDED_DEPTH = 254;
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final long EMPTY = 0L;
+    private static final long DEPTH_MASK = 0xFFL;
+    private static final long FINGERPRINT_MASK = ~DEPTH_MASK;
+
+    private final ReadWriteLock resizeLock = new ReentrantReadWriteLock();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile AtomicLongArray table;
+    private volatile int threshold;
+
+    /**
+     * Creates an empty set.
+     */
+    VisitedPageSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty set with room for about the given number of pages
+     * before it has to grow.
+     *
+     * @param expectedPages The number of pages expected to be claimed.
+     */
+    VisitedPageSet(int expectedPages) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < MAX_CAPACITY && capacity / 3 * 2 < expectedPages) {
+            capacity <<= 1;
+        }
+        setTable(new AtomicLongArray(capacity));
+    }
+
+    /**
+     * Atomically claims the page with the given URL at the given depth.
+     *
+     * @param url   The URL of the page to claim.
+     * @param depth The depth the page was discovered at.
+     * @return True if the page had not been claimed yet, or had only been
+     * claimed at a deeper depth.
+     */
+    boolean claim(@NotNull String url, int depth) {
+        long entry = (fingerprint(url) & FINGERPRINT_MASK) | (Math.min(depth, MAX_RECORDED_DEPTH) + 1);
+        while (true) {
+            // Room for the entry is reserved first so that the table can never fill up.
+            if (size.incrementAndGet() > threshold) {
+                size.decrementAndGet();
+                grow();
+                continue;
+            }
+            Lock lock = resizeLock.readLock();
+            lock.lock();
+            try {
+                if (insert(table, entry)) {
+                    return true;
+                }
+                size.decrementAndGet();
+                return replaceIfShallower(table, entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of pages that have been claimed.
+     *
+     * @return the number of pages that have been claimed.
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of slots in the table, for measuring how much memory
+     * the set takes up.
+     *
+     * @return the number of slots in the table.
+     */
+    int getCapacity() {
+        return table.length();
+    }
+
+    /**
+     * Inserts the entry if its fingerprint is not in the table yet.
+     *
+     * @return True if the entry was inserted.
+     */
+    private static boolean insert(@NotNull AtomicLongArray table, long entry) {
+        int mask = table.length() - 1;
+        for (int i = indexOf(entry, mask); ; i = (i + 1) & mask) {
+            long current = table.get(i);
+            while (current == EMPTY) {
+                if (table.compareAndSet(i, EMPTY, entry)) {
+                    return true;
+                }
+                current = table.get(i);
+            }
+            if ((current & FINGERPRINT_MASK) == (entry & FINGERPRINT_MASK)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Replaces the entry with the same fingerprint as the given one, if the
+     * given one is shallower.
+     *
+     * @return True if the entry was replaced.
+     */
+    private static boolean replaceIfShallower(@NotNull AtomicLongArray table, long entry) {
+        int mask = table.length() - 1;
+        for (int i = indexOf(entry, mask); ; i = (i + 1) & mask) {
+            long current = table.get(i);
+            if ((current & FINGERPRINT_MASK) == (entry & FINGERPRINT_MASK)) {
+                while ((current & DEPTH_MASK) > (entry & DEPTH_MASK)) {
+                    if (table.compareAndSet(i, current, entry)) {
+                        return true;
+                    }
+                    current = table.get(i);
+                }
+                return false;
+            }
+        }
+    }
+
+    private void grow() {
+        Lock lock = resizeLock.writeLock();
+        lock.lock();
+        try {
+            AtomicLongArray current = table;
+            if (size.get() < threshold) {
+                // Another thread already grew the table.
+                return;
+            }
+            if (current.length() == MAX_CAPACITY) {
+                throw new IllegalStateException("Too many pages have been claimed.");
+            }
+            AtomicLongArray grown = new AtomicLongArray(current.length() << 1);
+            for (int i = 0; i < current.length(); i++) {
+                long entry = current.get(i);
+                if (entry != EMPTY) {
+                    insert(grown, entry);
+                }
+            }
+            setTable(grown);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void setTable(@NotNull AtomicLongArray table) {
+        this.threshold = table.length() / 3 * 2;
+        this.table = table;
+    }
+
+    private static int indexOf(long entry, int mask) {
+        return (int) (entry >>> 32 ^ entry >>> 8) & mask;
+    }
+
+    /**
+     * Computes a 64 bit fingerprint of the given URL: an FNV-1a hash of its
+     * characters, mixed so that every bit of the result depends on every
+     * character.
+     */
+    static long fingerprint(@NotNull String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
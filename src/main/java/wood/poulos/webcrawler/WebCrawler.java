@@ -24,22 +24,39 @@
 package wood.poulos.webcrawler;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import wood.poulos.webcrawler.util.Fetcher;
+import wood.poulos.webcrawler.util.SelectorFetcher;
+import wood.poulos.webcrawler.util.URLCanonicalizer;
+import wood.poulos.webcrawler.util.URLConnectionFetcher;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * An application for recursively crawling a web page, downloading the elements
@@ -49,17 +66,119 @@ public class WebCrawler {
 
     private static final Logger logger = LoggerFactory.getLogger(WebCrawler.class);
 
+    /**
+     * The program argument for resuming an interrupted crawl.
+     */
+    static final String RESUME_OPTION = "--resume";
+
     private final URI uri;
     private final int maxDepth;
     private final WebElementRepository repository;
+    private final CrawlerSettings settings;
+    private final URLCanonicalizer canonicalizer;
+    private final Fetcher fetcher;
+    /**
+     * The fetcher pages are crawled with, which counts their bytes against
+     * the page byte budget if there is one.
+     */
+    private final Fetcher pageFetcher;
+    @Nullable
+    private final CrawlJournal journal;
+
+    private final ExecutorService executorService;
+    /**
+     * The executor robots.txt files are fetched on, so that the crawl pool
+     * only ever holds crawl tasks.
+     */
+    private final ExecutorService robotsExecutor;
+    private final HostScheduler hostScheduler;
+    @Nullable
+    private final AdaptiveLimiter pageLimiter;
+    @Nullable
+    private final RobotsCache robots;
+    private final Semaphore connectionPermits;
+    private final CrawlTracker tracker;
+
+    /**
+     * The pages waiting to be crawled. Pages are only handed to the executor
+     * as it has room for them, so that waiting pages are kept compactly in
+     * the frontier, which can spill to disk, instead of as queued tasks.
+     */
+    private final CrawlFrontier frontier;
+    private final AtomicInteger dispatchedCrawls = new AtomicInteger();
+    private final int maxDispatchedCrawls;
+    /**
+     * Woken whenever the last dispatched crawl finishes, for winding down a
+     * crawl once its started pages are done.
+     */
+    private final Object dispatchMonitor = new Object();
 
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
-    private final Queue<Future<?>> crawlerQueue = new ConcurrentLinkedQueue<>();
+    /**
+     * Woken whenever a crawl finishes while pages are being fed from
+     * sitemaps, since the frontier may then have room for more of them.
+     */
+    private final Object sitemapFeedMonitor = new Object();
+    private volatile boolean feedingFromSitemaps = false;
+
+    /**
+     * The pages claimed for crawling so far and the shallowest depth they have
+     * been claimed at.
+     */
+    private final VisitedPageSet claimedPages = new VisitedPageSet();
+
+    private final AtomicLong startedPages = new AtomicLong();
+    /**
+     * The budget that ran out first, once one has, after which the crawl winds
+     * down.
+     */
+    private final AtomicReference<String> exhaustedBudget = new AtomicReference<>();
 
     WebCrawler(URI uri, int maxDepth, WebElementRepository repository) {
+        this(uri, maxDepth, repository, CrawlerSettings.fromSystemProperties());
+    }
+
+    WebCrawler(URI uri, int maxDepth, WebElementRepository repository, CrawlerSettings settings) {
+        this(uri, maxDepth, repository, settings, null);
+    }
+
+    WebCrawler(URI uri, int maxDepth, WebElementRepository repository, CrawlerSettings settings,
+               @Nullable CrawlJournal journal) {
+        this(uri, maxDepth, repository, settings, journal, createFetcher(settings));
+    }
+
+    /**
+     * Creates a crawler that crawls pages with the given fetcher, which
+     * should be the same one the repository downloads elements with.
+     */
+    WebCrawler(URI uri, int maxDepth, WebElementRepository repository, CrawlerSettings settings,
+               @Nullable CrawlJournal journal, @NotNull Fetcher fetcher) {
         this.uri = uri;
         this.maxDepth = maxDepth;
         this.repository = repository;
+        this.settings = settings;
+        this.journal = journal;
+        this.canonicalizer = new URLCanonicalizer(settings.getStrippedQueryParameters(),
+                settings.isSortingQueryParameters());
+        this.fetcher = fetcher;
+        this.pageLimiter = settings.isAdaptingHostLimits()
+                ? new AdaptiveLimiter("page", settings.getPagesPerHost(),
+                        Math.max(settings.getPagesPerHost(), settings.getMaxConnections()))
+                : null;
+        Fetcher budgetedFetcher = settings.getMaxPageBytes() > 0
+                ? new ByteBudget("page", settings.getMaxPageBytes(), () ->
+                        budgetExhausted("page byte budget of " + settings.getMaxPageBytes() + " bytes")).limit(fetcher)
+                : fetcher;
+        this.pageFetcher = pageLimiter != null ? pageLimiter.recordLatency(budgetedFetcher) : budgetedFetcher;
+        this.executorService = CrawlerExecutors.create(settings);
+        this.robotsExecutor = CrawlerExecutors.createRobotsExecutor(settings);
+        this.robots = settings.isRespectingRobots() ? new RobotsCache(fetcher) : null;
+        this.hostScheduler = new HostScheduler(executorService,
+                pageLimiter != null ? pageLimiter::getLimit : host -> settings.getPagesPerHost(),
+                host -> TimeUnit.MILLISECONDS.toNanos(getHostDelayMillis(host)));
+        this.connectionPermits = new Semaphore(settings.getMaxConnections());
+        this.tracker = new CrawlTracker(this::crawlFinished);
+        this.frontier = new CrawlFrontier(settings.getFrontierMemoryCapacity());
+        this.maxDispatchedCrawls = CrawlerExecutors.getCapacity(executorService, settings);
     }
 
     /**
@@ -70,12 +189,23 @@ public class WebCrawler {
      * page depth to crawl. The third argument should be the path to a local
      * directory to download web elements to.
      * </p>
+     * <p>
+     * The crawler can be further tuned with system properties as described by
+     * {@link CrawlerSettings}.
+     * </p>
+     * <p>
+     * The crawl's progress is checkpointed to the local directory as it runs.
+     * If the crawl is interrupted, running it again with the same arguments
+     * plus {@value #RESUME_OPTION} continues it from the last checkpoint.
+     * </p>
      *
      * @param args the program arguments.
      * @throws MalformedURLException
      */
     public static void main(String[] args) {
         WebCrawler crawler;
+        boolean resume = hasResumeOption(args);
+        args = removeResumeOption(args);
 
         try {
             verifySufficientArgCount(args);
@@ -84,8 +214,28 @@ public class WebCrawler {
             URI uri = parseValidURL(args[0]);
             int maxDepth = parseValidMaxDepth(args[1]);
             WebElementRepository repository = parseValidDownloadRepository(args[2]);
+            CrawlerSettings settings = CrawlerSettings.fromSystemProperties();
+            DownloadRepository.INSTANCE.configureDownloads(settings.getDownloadThreads(),
+                    settings.getDownloadsPerHost());
+            Fetcher fetcher = createFetcher(settings);
+            DownloadRepository.INSTANCE.setFetcher(fetcher);
+            if (settings.isStreamingDownloads()) {
+                DownloadRepository.INSTANCE.enableStreaming(settings.getDownloadQueueCapacity());
+            }
+            if (settings.isSavingPages()) {
+                DownloadRepository.INSTANCE.enablePageSaving();
+            }
+            if (settings.isAdaptingHostLimits()) {
+                DownloadRepository.INSTANCE.enableAdaptiveDownloads();
+            }
+            if (settings.getMaxDownloadBytes() > 0) {
+                DownloadRepository.INSTANCE.limitDownloadBytes(settings.getMaxDownloadBytes());
+            }
+
+            CrawlJournal journal = openJournal(Paths.get(args[2]).resolve(CrawlJournal.FILE_NAME), uri, maxDepth,
+                    settings, resume);
 
-            crawler = new WebCrawler(uri, maxDepth, repository);
+            crawler = new WebCrawler(uri, maxDepth, repository, settings, journal, fetcher);
         } catch (IllegalArgumentException e) {
             logger.error(e.getMessage());
             return;
@@ -101,25 +251,131 @@ public class WebCrawler {
     /**
      * Crawls the web page specified by the URI passed into this WebCrawler's
      * constructor.
+     * <p>
+     * If the crawl runs longer than the settings' maximum crawl time, it is
+     * cancelled and whatever has been found so far is committed. If it uses
+     * up its page or page byte budget, the pages being crawled are finished
+     * before committing.
+     * </p>
      */
     void start() throws MalformedURLException {
+        long startTime = System.nanoTime();
         WebPage page;
         try {
-            page = WebElements.createWebPage(uri.toURL());
+            page = WebElements.createWebPage(canonicalizer.canonicalize(uri.toURL()));
         } catch (IllegalArgumentException e) {
             throw new MalformedURLException("URL does not represent a web page URL.");
         }
 
-        try {
-            crawlPage(new CrawlerData(page, 0));
-        } catch (IllegalArgumentException e) {
-            logger.error(e.getMessage());
-            return;
+        CrawlJournal.Checkpoint checkpoint = journal == null ? null : journal.getCheckpoint();
+        if (checkpoint != null) {
+            resumeFrom(checkpoint, page);
         }
 
-        waitForCrawlsToFinish();
+        if (checkpoint == null || !checkpoint.isCrawled(page.getURL().toExternalForm())) {
+            claimPage(page, 0);
+            try {
+                if (!isAllowedByRobots(page)) {
+                    throw new IllegalArgumentException("robots.txt does not allow crawling url: " + page.getURL());
+                }
+                crawlPage(new CrawlerData(page, 0));
+            } catch (IllegalArgumentException e) {
+                logger.error(e.getMessage());
+                abandon();
+                closeFetcher();
+                if (journal != null) {
+                    if (checkpoint == null) {
+                        journal.delete();
+                    } else {
+                        // The interrupted crawl can still be resumed once the seed is reachable again.
+                        journal.close();
+                    }
+                }
+                return;
+            }
+        }
+        if (checkpoint != null) {
+            dispatchCrawls();
+        }
+
+        if (settings.isSeedingFromSitemaps()) {
+            startSitemapFeed(page.getURL());
+        }
+
+        boolean finished = waitForCrawlsToFinish(startTime);
+        frontier.close();
+        if (pageLimiter != null) {
+            logger.info("Pages crawled at once per host: {}", pageLimiter.getLimits());
+        }
 
         repository.commit();
+        closeFetcher();
+
+        if (journal != null) {
+            journal.recordCommitted();
+            if (finished) {
+                journal.delete();
+            } else {
+                journal.close();
+            }
+        }
+    }
+
+    /**
+     * Restores the progress of an interrupted crawl: the pages it had already
+     * claimed, the elements it had staged but not committed, and the pages
+     * it had yet to crawl, which are added to the frontier. The seed page is
+     * left to the caller, which dispatches the restored pages once the seed
+     * is known to be reachable.
+     */
+    private void resumeFrom(@NotNull CrawlJournal.Checkpoint checkpoint, @NotNull WebPage seed) {
+        Map<String, Integer> frontier = checkpoint.getFrontier();
+        logger.info("Resuming crawl with {} pages left to crawl.", frontier.size());
+
+
+        for (Map.Entry<String, Integer> claimed : checkpoint.getClaimedPages().entrySet()) {
+            claimedPages.claim(claimed.getKey(), claimed.getValue());
+        }
+        for (WebElement element : checkpoint.getStagedElements()) {
+            repository.addElement(element);
+        }
+        String seedKey = seed.getURL().toExternalForm();
+        for (Map.Entry<String, Integer> pending : frontier.entrySet()) {
+            if (!pending.getKey().equals(seedKey)) {
+                enqueueCrawl(pending.getKey(), pending.getValue());
+            }
+        }
+    }
+
+    /**
+     * Gives up on a crawl whose seed can not be crawled, cancelling it and
+     * waiting for any page that has already started to stop.
+     */
+    private void abandon() {
+        cancel();
+        try {
+            // A page blocked on its connection stops at the latest once the connection times out.
+            long timeoutSeconds = settings.getConnectTimeoutSeconds() + settings.getReadTimeoutSeconds();
+            if (!executorService.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("Pages still being crawled did not stop in time.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        frontier.close();
+    }
+
+    /**
+     * Cancels this crawler's crawl. Pages that have not been crawled yet will
+     * be skipped and nothing more will be added to the repository, so that
+     * what has been found so far can be committed.
+     */
+    void cancel() {
+        tracker.cancel();
+        hostScheduler.shutdown();
+        executorService.shutdownNow();
+        robotsExecutor.shutdownNow();
+        wakeSitemapFeed();
     }
 
     /**
@@ -130,53 +386,656 @@ public class WebCrawler {
      *                    that page is at in the overall crawl.
      */
     void crawlPage(CrawlerData crawlerData) {
+        PageListener listener = startCrawl(crawlerData);
+        if (listener == null) {
+            return;
+        }
+        IOException failure = null;
+        try {
+            crawlWithConnectionPermit(crawlerData.page, listener);
+        } catch (IOException e) {
+            failure = e;
+        }
+        finishCrawl(listener, failure);
+    }
+
+    /**
+     * Crawls the {@link WebPage} contained within the given crawlerData as
+     * described by {@link #crawlPage(CrawlerData)}, but with a non-blocking
+     * fetch, so that the calling thread is free again while the page
+     * arrives. A page that turns out to need a blocking crawl is crawled
+     * again with one.
+     *
+     * @param crawlerData Contains the WebPage to crawl and the current depth
+     *                    that page is at in the overall crawl.
+     * @return A future that completes once the page has been crawled.
+     */
+    @NotNull
+    CompletableFuture<Void> crawlPageAsync(@NotNull CrawlerData crawlerData) {
+        PageListener listener = startCrawl(crawlerData);
+        if (listener == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        WebPage page = crawlerData.page;
+        try {
+            acquireConnectionPermit(page);
+        } catch (IOException e) {
+            finishCrawl(listener, e);
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Boolean> crawled;
+        try {
+            crawled = page.crawlAsync(pageFetcher, canonicalizer, listener, executorService);
+        } catch (RuntimeException e) {
+            connectionPermits.release();
+            throw e;
+        }
+        // The rest runs on the crawl thread that handed the page's elements to the listener.
+        return crawled.whenComplete((ignore, failure) -> connectionPermits.release())
+                .handle((readAsItArrived, failure) -> {
+                    Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                            ? failure.getCause() : failure;
+                    if (cause != null && !(cause instanceof IOException)) {
+                        throw new CompletionException(cause);
+                    }
+                    IOException crawlFailure = (IOException) cause;
+                    if (crawlFailure != null && pageLimiter != null) {
+                        pageLimiter.recordFailure(page.getURL().getHost(), crawlFailure);
+                    }
+                    if (crawlFailure == null && !readAsItArrived) {
+                        try {
+                            crawlWithConnectionPermit(page, listener);
+                        } catch (IOException e) {
+                            crawlFailure = e;
+                        }
+                    }
+                    finishCrawl(listener, crawlFailure);
+                    return null;
+                });
+    }
+
+    /**
+     * Checks whether the page contained within the given crawlerData should
+     * be crawled, and if so counts it as started.
+     *
+     * @return The listener for the page's elements, or null if the page is
+     * not crawled.
+     */
+    @Nullable
+    private PageListener startCrawl(@NotNull CrawlerData crawlerData) {
         WebPage page = crawlerData.page;
         int currentDepth = crawlerData.depth;
 
         if (currentDepth >= maxDepth) {
             logger.trace("{} is deeper than maxDepth", page.getURL());
-            return;
+            return null;
         }
 
-        try {
-            logger.info("Crawling page at {}", page.getURL());
-            page.crawl();
-        } catch (IOException e) {
-            if (currentDepth == 0) {
+        if (isStopping() || !tryStartPage()) {
+            logger.trace("Crawl stopped before crawling {}", page.getURL());
+            return null;
+        }
+
+        logger.info("Crawling page at {}", page.getURL());
+        // Children are handed out while the page is still being read, so that
+        // they can start downloading before the whole page has arrived.
+        return new PageListener(page, currentDepth);
+    }
+
+    /**
+     * Records a page as crawled once it has been, unless the crawl failed in
+     * a way that means it has to be crawled again when the crawl is resumed.
+     *
+     * @param listener The listener the page was crawled with.
+     * @param failure  Why the crawl failed, or null if it did not.
+     * @throws IllegalArgumentException If the seed page could not be crawled.
+     */
+    private void finishCrawl(@NotNull PageListener listener, @Nullable IOException failure)
+            throws IllegalArgumentException {
+        WebPage page = listener.page;
+        if (failure instanceof BudgetExhaustedException) {
+            // The page was never fully read, so it is not recorded as crawled and a resumed crawl crawls it again.
+            logger.trace(failure.getMessage());
+            return;
+        } else if (failure != null) {
+            if (listener.depth == 0 && !listener.foundElements) {
                 throw new IllegalArgumentException("Could not connect to url: " + page.getURL());
             } else {
                 logger.warn("Could not connect to url: {}", page.getURL());
             }
         }
 
-        handlePageElements(page, currentDepth);
+        if (listener.droppedPages) {
+            // A resumed crawl crawls the page again to find the pages it links to.
+            logger.trace("Not recording {} as crawled, the crawl stopped before its links were queued", page.getURL());
+            return;
+        }
+        if (journal != null && !tracker.isCancelled()) {
+            journal.recordCrawled(page.getURL().toExternalForm(), listener.depth);
+        }
     }
 
-    private void handlePageElements(@NotNull WebPage page, int currentDepth) {
-        for (WebPage p : page.getWebPages()) {
-            CrawlerData data = new CrawlerData(p, currentDepth + 1);
-            crawlerQueue.add(executorService.submit(() -> crawlPage(data)));
+    /**
+     * Crawls the given page once one of the crawler's connection permits is
+     * available, capping the number of sockets open at once regardless of
+     * how many threads are crawling. When limits per host adapt, why the
+     * crawl failed is fed back to the page limiter, which the page fetcher
+     * already tells how long the host took to answer.
+     */
+    private void crawlWithConnectionPermit(@NotNull WebPage page, @NotNull WebPage.ElementListener listener)
+            throws IOException {
+        acquireConnectionPermit(page);
+        try {
+            page.crawl(pageFetcher, canonicalizer, listener);
+        } catch (IOException e) {
+            if (pageLimiter != null) {
+                pageLimiter.recordFailure(page.getURL().getHost(), e);
+            }
+            throw e;
+        } finally {
+            connectionPermits.release();
         }
-        for (WebImage i : page.getImages()) {
-            repository.addElement(i);
+    }
+
+    private void acquireConnectionPermit(@NotNull WebPage page) throws IOException {
+        try {
+            connectionPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to connect to " + page.getURL(), e);
         }
-        for (WebFile f : page.getFiles()) {
-            repository.addElement(f);
+    }
+
+    /**
+     * Queues a page found on a page at the given depth for crawling, or
+     * stages a file or image found on it for download.
+     *
+     * @return False if the element was a page that was dropped because the
+     * crawl is stopping.
+     */
+    private boolean handlePageElement(@NotNull WebElement element, int currentDepth) {
+        if (element instanceof WebPage) {
+            // Whether robots.txt allows crawling the page is decided once it is dispatched.
+            int childDepth = currentDepth + 1;
+            if (childDepth >= maxDepth) {
+                return true;
+            }
+            if (isStopping()) {
+                return false;
+            }
+            if (claimPage((WebPage) element, childDepth)) {
+                enqueueCrawl(element.getURL().toExternalForm(), childDepth);
+                dispatchCrawls();
+            }
+        } else if (!tracker.isCancelled()) {
+            tracker.reserve();
+            whenRobotsKnown(element, allowed -> {
+                try {
+                    if (allowed) {
+                        tracker.runUnlessCancelled(() -> stage(element));
+                    }
+                } finally {
+                    tracker.release();
+                }
+            });
         }
+        return true;
     }
 
-    private void waitForCrawlsToFinish() {
-        logger.debug("Waiting for crawling to finish");
-        Future<?> crawlerTask;
-        while ((crawlerTask = crawlerQueue.poll()) != null) {
+    /**
+     * Counts a page against the page budget, if there is one.
+     *
+     * @return False if the page budget was already used up.
+     */
+    private boolean tryStartPage() {
+        if (settings.getMaxPages() == 0) {
+            return true;
+        }
+        long started = startedPages.incrementAndGet();
+        if (started == settings.getMaxPages()) {
+            budgetExhausted("page budget of " + settings.getMaxPages() + " pages");
+        }
+        return started <= settings.getMaxPages();
+    }
+
+    /**
+     * Winds the crawl down once the first of its budgets is used up: no more
+     * pages are queued or started, and the crawl stops waiting for the pages
+     * it will now never crawl.
+     */
+    private void budgetExhausted(@NotNull String budget) {
+        if (exhaustedBudget.compareAndSet(null, budget)) {
+            logger.info("The {} is used up, finishing the pages being crawled.", budget);
+            tracker.stopWaiting();
+            wakeSitemapFeed();
+        }
+    }
+
+    /**
+     * Returns whether no more pages should be crawled, because the crawl was
+     * cancelled or used up a budget.
+     */
+    private boolean isStopping() {
+        return tracker.isCancelled() || exhaustedBudget.get() != null;
+    }
+
+    /**
+     * Returns whether the robots.txt of the given element's host allows
+     * crawling or downloading it, or true if robots.txt files are not obeyed.
+     * Fetches the host's robots.txt on the calling thread if it is not known
+     * yet.
+     */
+    private boolean isAllowedByRobots(@NotNull WebElement element) {
+        return robots == null || isAllowedBy(robots.getRules(element.getURL()), element);
+    }
+
+    /**
+     * Passes whether the robots.txt of the given element's host allows
+     * crawling or downloading it to the given action, once the host's
+     * robots.txt is known. The action runs right away if it is, and
+     * otherwise on the thread that fetches it, so the thread finding the
+     * element never waits for the host.
+     */
+    private void whenRobotsKnown(@NotNull WebElement element, @NotNull Consumer<Boolean> action) {
+        if (robots == null) {
+            action.accept(true);
+            return;
+        }
+        robots.getRulesAsync(element.getURL(), robotsExecutor)
+                .thenAccept(rules -> action.accept(isAllowedBy(rules, element)))
+                .exceptionally(e -> {
+                    logger.warn("Could not handle {}: {}", element.getURL(), e.toString());
+                    return null;
+                });
+    }
+
+    private static boolean isAllowedBy(@NotNull RobotsRules rules, @NotNull WebElement element) {
+        if (rules.isAllowed(element.getURL().getFile())) {
+            return true;
+        }
+        logger.debug("robots.txt disallows {}", element.getURL());
+        return false;
+    }
+
+    /**
+     * Returns the minimum time between crawling two pages from the given
+     * host: the configured delay, or the host's Crawl-delay if it is longer.
+     */
+    private long getHostDelayMillis(@NotNull String host) {
+        long robotsDelay = robots == null ? 0 : robots.getCrawlDelayMillis(host);
+        return Math.max(settings.getHostDelayMillis(), robotsDelay);
+    }
+
+    /**
+     * Saves the body of a link that turned out not to be a page, without
+     * fetching it again.
+     */
+    private void saveFetchedContent(@NotNull WebElement element, @NotNull InputStream content) {
+        if (tracker.isCancelled()) {
+            return;
+        }
+        if (journal != null) {
+            journal.recordStaged(element);
+        }
+        repository.addFetchedElement(element, content);
+    }
+
+    private void stage(@NotNull WebElement element) {
+        repository.addElement(element);
+        if (journal != null) {
+            journal.recordStaged(element);
+        }
+    }
+
+    /**
+     * Adds a page to the frontier. It is counted as outstanding from now on so
+     * that the crawl is not considered finished while the page waits.
+     */
+    private void enqueueCrawl(@NotNull String url, int depth) {
+        tracker.reserve();
+        frontier.add(url, depth);
+    }
+
+    /**
+     * Hands pages from the frontier to the executor, by way of the host
+     * scheduler, until either the frontier is empty or the executor has as
+     * many pages as it can take. Pages waiting in the host scheduler count
+     * towards what the executor can take.
+     */
+    private void dispatchCrawls() {
+        while (!isStopping()) {
+            if (dispatchedCrawls.incrementAndGet() > maxDispatchedCrawls) {
+                // Every dispatched crawl dispatches more when it finishes.
+                releaseDispatchSlot();
+                return;
+            }
+            CrawlFrontier.Entry next = frontier.poll();
+            if (next == null) {
+                releaseDispatchSlot();
+                // A page added while this thread held a dispatch slot may have been turned away by it.
+                if (frontier.size() == 0) {
+                    return;
+                }
+                continue;
+            }
+            submitCrawl(next);
+        }
+    }
+
+    /**
+     * Hands a page from the frontier to the host scheduler once the robots.txt
+     * of its host is known, if it allows crawling the page.
+     */
+    private void submitCrawl(@NotNull CrawlFrontier.Entry entry) {
+        WebPage page;
+        try {
+            page = WebElements.createWebPage(new URL(entry.getURL()));
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            logger.warn("Skipping page that can not be crawled: {}", entry.getURL());
+            skipCrawl();
+            return;
+        }
+        CrawlerData crawlerData = new CrawlerData(page, entry.getDepth());
+        CrawlTracker.TrackedTask task = settings.getFetchMode() == CrawlerSettings.FetchMode.NON_BLOCKING
+                ? tracker.trackReservedAsync(() -> crawlPageAsync(crawlerData))
+                : tracker.trackReserved(() -> crawlPage(crawlerData));
+        RobotsRules rules = robots == null ? RobotsRules.ALLOW_ALL : robots.getRulesAsync(page.getURL(),
+                robotsExecutor).getNow(null);
+        if (rules == null) {
+            // Discarding the task dispatches the next page, which happens on the thread that fetched robots.txt.
+            whenRobotsKnown(page, allowed -> {
+                if (allowed) {
+                    hostScheduler.submit(page.getURL().getHost(), task);
+                } else {
+                    task.discard();
+                }
+            });
+        } else if (isAllowedBy(rules, page)) {
+            hostScheduler.submit(page.getURL().getHost(), task);
+        } else {
+            // Discarding the task here would dispatch the next page from within this one.
+            skipCrawl();
+        }
+    }
+
+    /**
+     * Gives up the dispatch slot and the outstanding count of a page that
+     * will not be crawled, without dispatching the next page, since the
+     * caller is already dispatching.
+     */
+    private void skipCrawl() {
+        releaseDispatchSlot();
+        tracker.release();
+    }
+
+    private void releaseDispatchSlot() {
+        if (dispatchedCrawls.decrementAndGet() == 0) {
+            synchronized (dispatchMonitor) {
+                dispatchMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Releases the page fetcher once no more pages will be crawled, stopping
+     * its thread if it has one.
+     */
+    private void closeFetcher() {
+        if (fetcher instanceof Closeable) {
             try {
-                crawlerTask.get();
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+                ((Closeable) fetcher).close();
+            } catch (IOException e) {
+                logger.warn("Could not close the page fetcher: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Frees the dispatch slot of a crawl that has finished, and fills it with
+     * the next page from the frontier. This runs on the thread of the
+     * finished crawl before that thread is free again, which the crawl
+     * pool's queue has room for, so the next page is never crawled on this
+     * thread's stack.
+     */
+    private void crawlFinished() {
+        releaseDispatchSlot();
+        dispatchCrawls();
+        wakeSitemapFeed();
+    }
+
+    /**
+     * Starts feeding the pages listed by the seed host's sitemaps into the
+     * frontier on a thread of its own. The crawl is not finished until every
+     * sitemap has been read.
+     */
+    private void startSitemapFeed(@NotNull URL seed) {
+        feedingFromSitemaps = true;
+        tracker.reserve();
+        Thread feeder = new Thread(() -> feedFromSitemaps(seed), "sitemap-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+    }
+
+    /**
+     * Adds the pages listed by the seed host's sitemaps to the frontier as
+     * seeds. Sitemaps are only read further once the frontier has fewer pages
+     * waiting than the executor can take, so a huge sitemap never floods the
+     * frontier ahead of the crawl.
+     */
+    private void feedFromSitemaps(@NotNull URL seed) {
+        try (SitemapReader reader = new SitemapReader(fetcher, findSitemaps(seed))) {
+            URL url;
+            while (awaitFrontierRoom() && (url = reader.next()) != null) {
+                feedSitemapPage(url, seed.getHost());
+            }
+        } finally {
+            feedingFromSitemaps = false;
+            tracker.release();
+        }
+    }
+
+    /**
+     * Returns the sitemaps of the given seed's host: those named by its
+     * robots.txt, or else the conventional /sitemap.xml.
+     */
+    @NotNull
+    private List<URL> findSitemaps(@NotNull URL seed) {
+        RobotsRules rules = (robots != null ? robots : new RobotsCache(fetcher)).getRules(seed);
+        List<URL> sitemaps = new ArrayList<>();
+        for (String location : rules.getSitemaps()) {
+            try {
+                sitemaps.add(new URL(location));
+            } catch (MalformedURLException e) {
+                logger.debug("Skipping malformed sitemap URL {} in robots.txt", location);
+            }
+        }
+        if (sitemaps.isEmpty()) {
+            try {
+                sitemaps.add(new URL(seed, "/sitemap.xml"));
+            } catch (MalformedURLException e) {
+                logger.debug("No sitemap for {}", seed);
+            }
+        }
+        return sitemaps;
+    }
+
+    private void feedSitemapPage(@NotNull URL url, @NotNull String seedHost) {
+        if (!url.getHost().equalsIgnoreCase(seedHost)) {
+            logger.debug("Skipping sitemap page on another host: {}", url);
+            return;
+        }
+        WebPage page;
+        try {
+            page = WebElements.createWebPage(canonicalizer.canonicalize(url));
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            logger.debug("Skipping sitemap entry that is not a web page: {}", url);
+            return;
+        }
+        if (isAllowedByRobots(page) && claimPage(page, 0)) {
+            enqueueCrawl(page.getURL().toExternalForm(), 0);
+            dispatchCrawls();
+        }
+    }
+
+    /**
+     * Waits until the frontier has fewer pages waiting than the executor can
+     * take.
+     *
+     * @return False if the crawl was cancelled or interrupted meanwhile.
+     */
+    private boolean awaitFrontierRoom() {
+        synchronized (sitemapFeedMonitor) {
+            while (frontier.size() >= maxDispatchedCrawls && !isStopping()) {
+                try {
+                    sitemapFeedMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return !isStopping();
+    }
+
+    private void wakeSitemapFeed() {
+        if (feedingFromSitemaps) {
+            synchronized (sitemapFeedMonitor) {
+                sitemapFeedMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns how many pages this crawler currently crawls at once from each
+     * host, if those limits adapt.
+     *
+     * @return the current limits by host, or an empty map if they are fixed.
+     */
+    @NotNull
+    SortedMap<String, Integer> getPageLimits() {
+        return pageLimiter == null ? Collections.emptySortedMap() : pageLimiter.getLimits();
+    }
+
+    /**
+     * Atomically claims the given page for crawling at the given depth.
+     * <p>
+     * A page may only be claimed once per crawl so that it is never fetched
+     * twice, even when several threads discover it at the same time. The one
+     * exception is when a page is rediscovered at a shallower depth than it
+     * was claimed at, since its links could otherwise be cut off by the max
+     * depth.
+     * </p>
+     *
+     * @param page  The page to claim.
+     * @param depth The depth the page was discovered at.
+     * @return True if the caller now owns crawling the page at the given depth.
+     */
+    boolean claimPage(@NotNull WebPage page, int depth) {
+        String key = page.getURL().toExternalForm();
+        if (!claimedPages.claim(key, depth)) {
+            return false;
+        }
+        if (journal != null) {
+            journal.recordClaimed(key, depth);
+        }
+        return true;
+    }
+
+    /**
+     * Waits for every submitted crawl to finish, winding the crawl down if it
+     * uses up a budget and cancelling it if it runs out of time.
+     *
+     * @return True if the crawl finished, false if it was stopped early.
+     */
+    private boolean waitForCrawlsToFinish(long startTime) {
+        logger.debug("Waiting for crawling to finish");
+        boolean finished;
+        try {
+            finished = tracker.awaitCompletion(getRemainingCrawlNanos(startTime), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = false;
+        }
+        if (exhaustedBudget.get() != null) {
+            finishStartedCrawls(startTime);
+            finished = false;
+        } else if (finished) {
+            logger.info("Done crawling.");
+            hostScheduler.shutdown();
+            executorService.shutdown();
+            robotsExecutor.shutdown();
+        } else {
+            logger.warn("Crawl did not finish in time, stopping with {} pages left to crawl.",
+                    tracker.getOutstandingTasks());
+            cancel();
+        }
+        return finished;
+    }
+
+    /**
+     * Waits for the pages that have already started to be crawled to finish,
+     * then cancels the crawl so that nothing else is added. Pages waiting to
+     * start are skipped.
+     */
+    private void finishStartedCrawls(long startTime) {
+        hostScheduler.shutdown();
+        boolean terminated;
+        try {
+            // Pages still arriving over non-blocking fetches need the executor to finish on.
+            terminated = settings.getFetchMode() != CrawlerSettings.FetchMode.NON_BLOCKING
+                    || awaitDispatchedCrawls(startTime);
+            executorService.shutdown();
+            long timeout = getRemainingCrawlNanos(startTime);
+            terminated &= executorService.awaitTermination(timeout == 0 ? Long.MAX_VALUE : timeout,
+                    TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executorService.shutdown();
+            terminated = false;
+        }
+        if (!terminated) {
+            logger.warn("Crawl did not finish in time, stopping the pages still being crawled.");
+        }
+        cancel();
+    }
+
+    /**
+     * Waits for every dispatched crawl to finish, once no more are being
+     * dispatched.
+     *
+     * @return False if the crawl ran out of time first.
+     */
+    private boolean awaitDispatchedCrawls(long startTime) throws InterruptedException {
+        long timeout = getRemainingCrawlNanos(startTime);
+        long deadline = System.nanoTime() + timeout;
+        synchronized (dispatchMonitor) {
+            while (dispatchedCrawls.get() > 0) {
+                if (timeout == 0) {
+                    dispatchMonitor.wait();
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(dispatchMonitor, remaining);
+                }
             }
         }
-        logger.info("Done crawling.");
-        executorService.shutdown();
+        return true;
+    }
+
+    /**
+     * Returns how much longer the crawl may run.
+     *
+     * @return the remaining time in nanoseconds, at least 1, or 0 if the crawl
+     * time is unlimited.
+     */
+    private long getRemainingCrawlNanos(long startTime) {
+        if (settings.getMaxCrawlSeconds() == 0) {
+            return 0;
+        }
+        long elapsed = System.nanoTime() - startTime;
+        return Math.max(1, TimeUnit.SECONDS.toNanos(settings.getMaxCrawlSeconds()) - elapsed);
     }
 
     /**
@@ -190,6 +1049,45 @@ public class WebCrawler {
         return repository;
     }
 
+    static boolean hasResumeOption(@NotNull String[] args) {
+        for (String arg : args) {
+            if (RESUME_OPTION.equals(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NotNull
+    static String[] removeResumeOption(@NotNull String[] args) {
+        List<String> remaining = new ArrayList<>(args.length);
+        for (String arg : args) {
+            if (!RESUME_OPTION.equals(arg)) {
+                remaining.add(arg);
+            }
+        }
+        return remaining.toArray(new String[remaining.size()]);
+    }
+
+    /**
+     * Opens the journal the crawl is checkpointed to. Failing to checkpoint
+     * does not stop a new crawl, only a crawl that is being resumed.
+     */
+    @Nullable
+    static CrawlJournal openJournal(@NotNull Path file, @NotNull URI uri, int maxDepth,
+                                    @NotNull CrawlerSettings settings, boolean resume) {
+        try {
+            return CrawlJournal.open(file, uri, maxDepth,
+                    TimeUnit.SECONDS.toNanos(settings.getCheckpointSeconds()), resume);
+        } catch (IOException e) {
+            if (resume) {
+                throw new IllegalArgumentException("Could not read the crawl checkpoint " + file + ".");
+            }
+            logger.warn("Could not create the crawl checkpoint {}, the crawl will not be resumable.", file);
+            return null;
+        }
+    }
+
     static void verifySufficientArgCount(@NotNull String[] args) {
         if (args.length < 1) {
             throw new IllegalArgumentException("A web address must be specified as the first argument.");
@@ -239,6 +1137,20 @@ public class WebCrawler {
         }
     }
 
+    /**
+     * Creates the fetcher for pages and downloads with the fetch mode and
+     * timeouts from the given settings.
+     */
+    @NotNull
+    static Fetcher createFetcher(@NotNull CrawlerSettings settings) {
+        int connectTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(settings.getConnectTimeoutSeconds());
+        int readTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(settings.getReadTimeoutSeconds());
+        if (settings.getFetchMode() == CrawlerSettings.FetchMode.NON_BLOCKING) {
+            return new SelectorFetcher(connectTimeoutMillis, readTimeoutMillis);
+        }
+        return new URLConnectionFetcher(connectTimeoutMillis, readTimeoutMillis);
+    }
+
     static void verifyValidDownloadRepository(@NotNull Path path) {
         if (isNonDirectory(path)) {
             throw new IllegalArgumentException("The local directory (3rd arg) must be a directory or non-existent.");
@@ -268,4 +1180,49 @@ public class WebCrawler {
             this.depth = depth;
         }
     }
+
+    /**
+     * Handles the elements of a page at a given depth as they are found.
+     */
+    private class PageListener implements WebPage.ElementListener {
+
+        private final WebPage page;
+        private final int depth;
+        private boolean foundElements = false;
+        /**
+         * Whether a page linked from this one was dropped because the crawl
+         * was stopping, so this page can not be recorded as crawled.
+         */
+        private boolean droppedPages = false;
+
+        private PageListener(@NotNull WebPage page, int depth) {
+            this.page = page;
+            this.depth = depth;
+        }
+
+        @Override
+        public void elementFound(@NotNull WebElement element) {
+            foundElements = true;
+            if (!handlePageElement(element, depth)) {
+                droppedPages = true;
+            }
+        }
+
+        @Override
+        public void contentFound(@NotNull WebElement element, @NotNull InputStream content) {
+            foundElements = true;
+            saveFetchedContent(element, content);
+        }
+
+        @Override
+        @Nullable
+        public OutputStream openPageCopy() {
+            try {
+                return repository.openPageCopy(page);
+            } catch (IOException e) {
+                logger.warn("Could not save page {}: {}", page.getURL(), e.getMessage());
+                return null;
+            }
+        }
+    }
 }
@@ -25,9 +25,12 @@ package wood.poulos.webcrawler;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import wood.poulos.webcrawler.util.Fetcher;
 
+import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * An abstract representation of some element of the web.
@@ -50,8 +53,46 @@ public interface WebElement {
      * </p>
      *
      * @param saveLocation The path to save the element to.
+     * @throws IOException If the element could not be saved.
      */
-    void save(Path saveLocation);
+    void save(Path saveLocation) throws IOException;
+
+    /**
+     * Saves this web element to the given path as described by
+     * {@link #save(Path)}, fetching it with the given fetcher. By default the
+     * fetcher is not used.
+     *
+     * @param saveLocation The path to save the element to.
+     * @param fetcher      The fetcher to fetch the element with.
+     * @throws IOException If the element could not be saved.
+     */
+    default void save(@NotNull Path saveLocation, @NotNull Fetcher fetcher) throws IOException {
+        save(saveLocation);
+    }
+
+    /**
+     * Saves this web element to the given path as described by
+     * {@link #save(Path, Fetcher)}, without waiting for it to arrive if the
+     * fetcher can fetch it without blocking. By default the element is saved
+     * with {@link #save(Path, Fetcher)} on the calling thread.
+     *
+     * @param saveLocation The path to save the element to.
+     * @param fetcher      The fetcher to fetch the element with.
+     * @return A future that completes once the element has been saved, or
+     * completes exceptionally with the {@link IOException} it could not be
+     * saved for.
+     */
+    @NotNull
+    default CompletableFuture<Void> saveAsync(@NotNull Path saveLocation, @NotNull Fetcher fetcher) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            save(saveLocation, fetcher);
+            result.complete(null);
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
 
     /**
      * Determines if this WebElement is equivalent to the given other object.
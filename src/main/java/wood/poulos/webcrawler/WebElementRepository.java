@@ -24,6 +24,11 @@
 package wood.poulos.webcrawler;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * An abstract repository of web elements.
@@ -37,6 +42,40 @@ public interface WebElementRepository {
      */
     void addElement(@NotNull WebElement element);
 
+    /**
+     * Adds an element whose content has already been fetched, such as a link
+     * that turned out not to be a web page once its body arrived, so that the
+     * content does not have to be fetched again.
+     * <p>
+     * The content is read by the time this returns, but not closed. By
+     * default the content is ignored and the element is simply
+     * {@link #addElement(WebElement) staged}.
+     * </p>
+     *
+     * @param element The element the content belongs to.
+     * @param content The element's content.
+     */
+    default void addFetchedElement(@NotNull WebElement element, @NotNull InputStream content) {
+        addElement(element);
+    }
+
+    /**
+     * Opens a stream to save the given page's HTML to while the page is
+     * crawled, so that the page is kept without being fetched again. The
+     * caller closes the stream once the whole page has been written to it.
+     * <p>
+     * By default pages are not kept and this returns null.
+     * </p>
+     *
+     * @param page The page about to be read.
+     * @return A stream for the page's HTML, or null if the page is not kept.
+     * @throws IOException If the stream can not be opened.
+     */
+    @Nullable
+    default OutputStream openPageCopy(@NotNull WebPage page) throws IOException {
+        return null;
+    }
+
     /**
      * Unstages the given element so that it will not be committed to the
      * repository.
@@ -23,7 +23,13 @@
  */
 package wood.poulos.webcrawler;
 
+import org.jetbrains.annotations.NotNull;
+import wood.poulos.webcrawler.util.Fetcher;
+import wood.poulos.webcrawler.util.URLDownloader;
+
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A abstract representation of a image on the web.
@@ -34,6 +40,15 @@ public class WebImage extends AbstractWebElement implements WebElement {
         super(url);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @NotNull
+    public CompletableFuture<Void> saveAsync(@NotNull Path saveLocation, @NotNull Fetcher fetcher) {
+        return URLDownloader.downloadElementAsync(fetcher, getURL(), saveLocation);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -23,24 +23,35 @@
  */
 package wood.poulos.webcrawler;
 
+import org.apache.commons.io.input.TeeInputStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import wood.poulos.webcrawler.util.Fetcher;
+import wood.poulos.webcrawler.util.URLCanonicalizer;
+import wood.poulos.webcrawler.util.URLConnectionFetcher;
+import wood.poulos.webcrawler.util.URLResolver;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Scanner;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -52,14 +63,26 @@ public class WebPage extends AbstractWebElement implements WebElement {
     private static final Logger logger = LoggerFactory.getLogger(WebCrawler.class);
 
     /**
-     * A RegEx pattern to find and differentiate links and images within HTML.
+     * A RegEx pattern to determine if a URL path is a page or not.
      */
-    final static Pattern LINK_AND_IMAGE_PATTERN = Pattern.compile("(?:(?:a(?:\\s+?|\\s+?[\\S\\s]*?\\s+?)href\\s*=\\s*(?:\"([\\S\\s]+?)\"|'([\\S\\s]+?)')[\\S\\s]*?>)|(?:img(?:\\s+?|\\s+?[\\S\\s]*?\\s+?)src\\s*=\\s*(?:\"([\\S\\s]+?)\"|'([\\S\\s]+?)')[\\S\\s]*?>))[\\S\\s]*", Pattern.CASE_INSENSITIVE);
+    final static Pattern PAGE_PATTERN = Pattern.compile("^((?!.*\\/.*#.*)|.*\\.html?|.*\\.aspx?|.*\\.jsp|.*\\.cgi|.*\\.php|[\\w\\d\\-~!$&'()*+,;=:@%/]+|.+\\/[^.]+)$", Pattern.CASE_INSENSITIVE);
 
     /**
-     * A RegEx pattern to determine if a URL path is a page or not.
+     * The canonicalizer used for links when none is given.
      */
-    final static Pattern PAGE_PATTERN = Pattern.compile("^((?!.*\\/.*#.*)|.*\\.html?|.*\\.aspx?|.*\\.jsp|.*\\.cgi|.*\\.php|[\\w\\d\\-~!$&'()*+,;=:@%/]+|.+\\/[^.]+)$", Pattern.CASE_INSENSITIVE);
+    static final URLCanonicalizer DEFAULT_CANONICALIZER = new URLCanonicalizer();
+
+    /**
+     * The fetcher used for pages when none is given.
+     */
+    static final Fetcher DEFAULT_FETCHER = new URLConnectionFetcher();
+
+    /**
+     * A tokenizer per crawling thread, so that its buffer is reused from page
+     * to page. A page crawled by a listener of another page on the same
+     * thread gets a tokenizer of its own instead.
+     */
+    private static final ThreadLocal<HTMLTagTokenizer> TOKENIZERS = ThreadLocal.withInitial(HTMLTagTokenizer::new);
 
     private boolean crawled = false;
 
@@ -125,6 +148,14 @@ public class WebPage extends AbstractWebElement implements WebElement {
         throw new UnsupportedOperationException("page doesn't support save");
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(@NotNull Path saveLocation, @NotNull Fetcher fetcher) {
+        save(saveLocation);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -143,6 +174,59 @@ public class WebPage extends AbstractWebElement implements WebElement {
      * @throws IOException If there is trouble connecting to the URL.
      */
     void crawl() throws IOException {
+        crawl(DEFAULT_CANONICALIZER);
+    }
+
+    /**
+     * Parses the concrete web page this WebPage represents and identifies all
+     * of its files, images, and links to other pages, canonicalizing their
+     * URLs with the given canonicalizer.
+     *
+     * @param canonicalizer The canonicalizer for the URLs found on the page.
+     * @throws IOException If there is trouble connecting to the URL.
+     */
+    void crawl(@NotNull URLCanonicalizer canonicalizer) throws IOException {
+        crawl(canonicalizer, element -> { });
+    }
+
+    /**
+     * Parses the concrete web page this WebPage represents as described by
+     * {@link #crawl(URLCanonicalizer)}, handing each distinct element to the
+     * given listener as soon as it is found rather than once the whole page
+     * has been read.
+     * <p>
+     * If the crawl fails part way through the page, the elements already
+     * handed to the listener are not taken back.
+     * </p>
+     * <p>
+     * If the Content-Type or the first bytes of the body show that this is
+     * not actually a web page, the body is not parsed. It is handed to the
+     * listener's {@link ElementListener#contentFound contentFound} as a file
+     * or image instead, and the page is left with no elements. Otherwise, if
+     * the listener {@link ElementListener#openPageCopy() opens a copy}, the
+     * page's raw bytes are written to it as they are parsed.
+     * </p>
+     *
+     * @param canonicalizer The canonicalizer for the URLs found on the page.
+     * @param listener      The listener for the elements found on the page.
+     * @throws IOException If there is trouble connecting to the URL.
+     */
+    void crawl(@NotNull URLCanonicalizer canonicalizer, @NotNull ElementListener listener) throws IOException {
+        crawl(DEFAULT_FETCHER, canonicalizer, listener);
+    }
+
+    /**
+     * Parses the concrete web page this WebPage represents as described by
+     * {@link #crawl(URLCanonicalizer, ElementListener)}, fetching it with the
+     * given fetcher.
+     *
+     * @param fetcher       The fetcher to fetch the page with.
+     * @param canonicalizer The canonicalizer for the URLs found on the page.
+     * @param listener      The listener for the elements found on the page.
+     * @throws IOException If there is trouble connecting to the URL.
+     */
+    void crawl(@NotNull Fetcher fetcher, @NotNull URLCanonicalizer canonicalizer,
+               @NotNull ElementListener listener) throws IOException {
         if (isCrawled()) {
             return;
         }
@@ -151,16 +235,37 @@ public class WebPage extends AbstractWebElement implements WebElement {
 
         // A triple for collecting the elements scraped from this page.
         ElementSets elementSets = new ElementSets();
+        URLResolver resolver = new URLResolver(getURL());
 
-        URLConnection conn = openConnection(getURL());
-        Scanner input = getConfiguredScanner(conn.getInputStream());
-
-        while (true) {
-            if (hasSkippedUselessHTML(input)) {
-                parseLinksAndImages(input, elementSets);
+        HTMLTagTokenizer tokenizer = TOKENIZERS.get();
+        if (tokenizer.isTokenizing()) {
+            tokenizer = new HTMLTagTokenizer();
+        }
+        try (Fetcher.Response response = fetcher.fetch(getURL());
+             BufferedInputStream body = new BufferedInputStream(response.getBody())) {
+            String contentType = response.getContentType();
+            byte[] prefix = ContentSniffer.peek(body, ContentSniffer.SNIFF_LENGTH);
+            URLParser.URLType type = ContentSniffer.classify(contentType, prefix);
+            if (type == URLParser.URLType.PAGE) {
+                Charset charset = CharsetDetector.detect(prefix, contentType, tokenizer, Charset.defaultCharset());
+                logger.trace("Reading {} as {}", getURL(), charset);
+                OutputStream copy = listener.openPageCopy();
+                InputStream source = copy != null ? new TeeInputStream(body, copy, true) : body;
+                try (InputStream input = CharsetDetector.asciiCompatible(source, charset)) {
+                    tokenizer.tokenize(input, (attributeType, bytes, start, end) -> {
+                        if (attributeType == HTMLTagTokenizer.AttributeType.LINK
+                                || attributeType == HTMLTagTokenizer.AttributeType.IMAGE) {
+                            URLParser urlParser = URLParser.fromAttribute(attributeType, bytes, start, end,
+                                    CharsetDetector.tokenCharset(charset));
+                            handleParsedURL(urlParser, elementSets, resolver, canonicalizer, listener);
+                        }
+                    });
+                }
             } else {
-                // EOF reached.
-                break;
+                logger.debug("{} is not a web page, its Content-Type is {}", getURL(), contentType);
+                WebElement content = type == URLParser.URLType.IMAGE
+                        ? WebElements.createWebImage(getURL()) : WebElements.createWebFile(getURL());
+                listener.contentFound(content, body);
             }
         }
 
@@ -172,70 +277,227 @@ public class WebPage extends AbstractWebElement implements WebElement {
         crawled = true;
     }
 
+    /**
+     * Parses the concrete web page this WebPage represents as described by
+     * {@link #crawl(Fetcher, URLCanonicalizer, ElementListener)}, but with a
+     * {@link Fetcher#fetchAsync(URL, Fetcher.BodyHandler) non-blocking fetch}
+     * that tokenizes the page as its bytes arrive, so that no thread waits
+     * for it.
+     * <p>
+     * Since the listener may block, the elements found are handed to it on
+     * the given executor once the whole page has been read, rather than as
+     * they are found. The page's copy, if the listener opens one, is written
+     * as the page arrives.
+     * </p>
+     * <p>
+     * Only HTML in an ASCII compatible charset can be read as it arrives. Any
+     * other body, such as a file or image behind a link that looked like a
+     * page, is abandoned once its first bytes show what it is, and the page
+     * has to be crawled with
+     * {@link #crawl(Fetcher, URLCanonicalizer, ElementListener)} instead.
+     * </p>
+     *
+     * @param fetcher       The fetcher to fetch the page with.
+     * @param canonicalizer The canonicalizer for the URLs found on the page.
+     * @param listener      The listener for the elements found on the page.
+     * @param executor      The executor to hand the elements to the listener
+     *                      on.
+     * @return A future completed with true once the page has been crawled, or
+     * with false if it has to be crawled again with
+     * {@link #crawl(Fetcher, URLCanonicalizer, ElementListener)}. It
+     * completes exceptionally with a {@link CompletionException} caused by
+     * an {@link IOException} if there is trouble connecting to the URL.
+     */
     @NotNull
-    private URLConnection openConnection(@NotNull URL url) throws IOException {
-        URLConnection connection = url.openConnection();
-        connection.connect();
-        return connection;
-    }
+    CompletableFuture<Boolean> crawlAsync(@NotNull Fetcher fetcher, @NotNull URLCanonicalizer canonicalizer,
+                                          @NotNull ElementListener listener, @NotNull Executor executor) {
+        if (isCrawled()) {
+            return CompletableFuture.completedFuture(true);
+        }
 
-    private Scanner getConfiguredScanner(InputStream inputStream) {
-        Scanner scanner = new Scanner(inputStream);
-        scanner.useDelimiter("<");
-        return scanner;
+        logger.trace("Crawling {} without blocking", getURL());
+        PageBodyHandler handler = new PageBodyHandler(canonicalizer, listener);
+        return fetcher.fetchAsync(getURL(), handler)
+                .whenComplete((ignore, failure) -> handler.closeCopy())
+                .handleAsync((ignore, failure) -> finishCrawl(handler, listener, failure), executor);
     }
 
     /**
-     * Skips all HTML that will not match the {@link #LINK_AND_IMAGE_PATTERN}
-     * which will result in the scanner's next token being either non-existant
-     * or able to match the {@link #LINK_AND_IMAGE_PATTERN}.
+     * Hands the elements found by a non-blocking crawl to the listener and
+     * records them as this page's.
      *
-     * @param scanner The scanner that is scanning HTML data.
-     * @return True if the next token should contain the
-     * {@link #LINK_AND_IMAGE_PATTERN} or false if scanner has reached the end
-     * of the input.
+     * @return False if the page has to be crawled with a blocking crawl.
      */
-    private boolean hasSkippedUselessHTML(@NotNull Scanner scanner) {
-        while (!scanner.hasNext(LINK_AND_IMAGE_PATTERN)) {
-            if (scanner.hasNext()) {
-                scanner.next();
-            } else {
-                return false;
-            }
+    private boolean finishCrawl(@NotNull PageBodyHandler handler, @NotNull ElementListener listener,
+                                @Nullable Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        if (cause == NOT_READABLE_AS_IT_ARRIVES) {
+            return false;
         }
+        // As with a blocking crawl, the elements found before a failure are not taken back.
+        handler.found.forEach(listener::elementFound);
+        if (cause != null) {
+            throw new CompletionException(cause);
+        }
+
+        this.webPages = Collections.unmodifiableCollection(handler.elementSets.webPages);
+        this.webFiles = Collections.unmodifiableCollection(handler.elementSets.webFiles);
+        this.webImages = Collections.unmodifiableCollection(handler.elementSets.webImages);
+        crawled = true;
         return true;
     }
 
-    private void parseLinksAndImages(@NotNull Scanner input, @NotNull ElementSets elementSets) {
-        while (input.hasNext(LINK_AND_IMAGE_PATTERN)) {
-            String next = input.next(LINK_AND_IMAGE_PATTERN);
+    /**
+     * Abandons a non-blocking crawl of a body that can only be read by a
+     * blocking one. It is only ever compared by identity, so it has no stack
+     * trace.
+     */
+    private static final IOException NOT_READABLE_AS_IT_ARRIVES =
+            new IOException("The body can not be read as it arrives") {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public synchronized Throwable fillInStackTrace() {
+                    return this;
+                }
+            };
+
+    /**
+     * Reads a page as it arrives: its first bytes are buffered until they show
+     * whether it is HTML and in which charset, after which every chunk is fed
+     * straight to a tokenizer and written to the page's copy.
+     */
+    private final class PageBodyHandler implements Fetcher.BodyHandler {
 
-            Matcher matcher = LINK_AND_IMAGE_PATTERN.matcher(next);
-            if (!matcher.matches()) {
-                throw new IllegalStateException("Matcher failed to match");
+        @NotNull
+        private final URLCanonicalizer canonicalizer;
+        @NotNull
+        private final ElementListener listener;
+        private final ElementSets elementSets = new ElementSets();
+        private final URLResolver resolver = new URLResolver(getURL());
+        private final HTMLTagTokenizer tokenizer = new HTMLTagTokenizer();
+        /**
+         * The distinct elements found, in the order they were found.
+         */
+        private final List<WebElement> found = new ArrayList<>();
+
+        @Nullable
+        private String contentType;
+        @Nullable
+        private byte[] prefix = new byte[ContentSniffer.SNIFF_LENGTH];
+        private int prefixLength;
+        @Nullable
+        private OutputStream copy;
+
+        private PageBodyHandler(@NotNull URLCanonicalizer canonicalizer, @NotNull ElementListener listener) {
+            this.canonicalizer = canonicalizer;
+            this.listener = listener;
+        }
+
+        @Override
+        public void start(@Nullable String contentType) {
+            this.contentType = contentType;
+        }
+
+        @Override
+        public void handle(@NotNull ByteBuffer chunk) throws IOException {
+            if (prefix != null) {
+                int length = Math.min(chunk.remaining(), prefix.length - prefixLength);
+                chunk.get(prefix, prefixLength, length);
+                prefixLength += length;
+                if (prefixLength < prefix.length) {
+                    return;
+                }
+                startTokenizing();
+            }
+            if (copy != null && chunk.hasArray()) {
+                copy.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            } else if (copy != null) {
+                byte[] bytes = new byte[chunk.remaining()];
+                chunk.duplicate().get(bytes);
+                copy.write(bytes);
+            }
+            tokenizer.feed(chunk);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (prefix != null) {
+                startTokenizing();
             }
+            tokenizer.finish();
+        }
+
+        /**
+         * Decides from the first bytes of the body whether it can be read as
+         * it arrives, and if so feeds them to the tokenizer.
+         */
+        private void startTokenizing() throws IOException {
+            byte[] sniffed = prefixLength == prefix.length ? prefix : Arrays.copyOf(prefix, prefixLength);
+            prefix = null;
+            if (ContentSniffer.classify(contentType, sniffed) != URLParser.URLType.PAGE) {
+                logger.debug("{} is not a web page, its Content-Type is {}", getURL(), contentType);
+                throw NOT_READABLE_AS_IT_ARRIVES;
+            }
+            Charset charset = CharsetDetector.detect(sniffed, contentType, tokenizer, Charset.defaultCharset());
+            if (!CharsetDetector.isAsciiCompatible(charset)) {
+                logger.debug("{} is in {}, which can not be tokenized as it arrives", getURL(), charset);
+                throw NOT_READABLE_AS_IT_ARRIVES;
+            }
+            logger.trace("Reading {} as {}", getURL(), charset);
+            copy = listener.openPageCopy();
+            if (copy != null) {
+                copy.write(sniffed);
+            }
+            tokenizer.start((attributeType, bytes, start, end) -> {
+                if (attributeType == HTMLTagTokenizer.AttributeType.LINK
+                        || attributeType == HTMLTagTokenizer.AttributeType.IMAGE) {
+                    URLParser urlParser = URLParser.fromAttribute(attributeType, bytes, start, end, charset);
+                    handleParsedURL(urlParser, elementSets, resolver, canonicalizer, found::add);
+                }
+            });
+            tokenizer.feed(sniffed, 0, sniffed.length);
+        }
 
-            WebElement element = getElementFromMatchedURL(matcher);
-            if (element != null) {
-                elementSets.addElementToAppropriateSet(element);
+        /**
+         * Closes the page's copy, if one was opened.
+         */
+        private void closeCopy() {
+            if (copy != null) {
+                try {
+                    copy.close();
+                } catch (IOException e) {
+                    logger.warn("Could not finish the copy of {}: {}", getURL(), e.getMessage());
+                }
             }
         }
     }
 
+    private void handleParsedURL(@NotNull URLParser urlParser, @NotNull ElementSets elementSets,
+                                 @NotNull URLResolver resolver, @NotNull URLCanonicalizer canonicalizer,
+                                 @NotNull ElementListener listener) {
+        WebElement element = getElementFromParsedURL(urlParser, resolver, canonicalizer);
+        if (element != null && elementSets.addElementToAppropriateSet(element)) {
+            listener.elementFound(element);
+        }
+    }
+
     /**
-     * Creates an appropriate WebElement object for the given matcher. The
-     * matcher should have already matched the {@link #LINK_AND_IMAGE_PATTERN}.
+     * Creates an appropriate WebElement object for the given parsed URL.
      *
-     * @param matcher the matcher which has found a potential URL that
-     *                represents a WebElement to be gathered.
-     * @return The WebElement that matches the URL matched by the given matcher
-     * or null if something is wrong with the URL matched.
+     * @param urlParser     the parser of a URL found on this page that
+     *                      represents a WebElement to be gathered.
+     * @param resolver      the resolver for URLs found on this page.
+     * @param canonicalizer the canonicalizer for the matched URL.
+     * @return The WebElement for the parsed URL or null if something is wrong
+     * with the URL.
      */
     @Nullable
-    private WebElement getElementFromMatchedURL(@NotNull Matcher matcher) {
-        URLParser urlParser = URLParser.fromMatcher(matcher);
+    private WebElement getElementFromParsedURL(@NotNull URLParser urlParser, @NotNull URLResolver resolver,
+                                               @NotNull URLCanonicalizer canonicalizer) {
         try {
-            URL resolvedURL = urlParser.resolveURL(getURL());
+            URL resolvedURL = urlParser.resolveURL(resolver, canonicalizer);
             logger.trace("Resolved: {}", resolvedURL);
             switch (urlParser.getURLType()) {
                 case PAGE:
@@ -245,69 +507,80 @@ public class WebPage extends AbstractWebElement implements WebElement {
                 case IMAGE:
                     return WebElements.createWebImage(resolvedURL);
             }
-        } catch (URISyntaxException | MalformedURLException e) {
-            logger.warn("Could not resolve url {} against {}", urlParser.uri, getURL());
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            logger.warn("Could not resolve url {} against {}", urlParser.reference, getURL());
             logger.warn(e.getMessage());
         }
         return null;
     }
 
     /**
-     * An internal utility for differentiating regex matches of URLs into the 3
+     * An internal utility for differentiating URLs found in HTML into the 3
      * relevant types: Page, File and Image.
      */
     abstract static class URLParser {
 
         /**
-         * Creates a an appropriate type of URLParser to parse the URL from the
-         * given matcher.
-         * <p>
-         * The given matcher must have already matched the pattern
-         * {@link WebPage#LINK_AND_IMAGE_PATTERN}.
-         * </p>
+         * Creates a an appropriate type of URLParser to parse the URL in the
+         * given range of bytes, as found by a {@link HTMLTagTokenizer}. Only
+         * these bytes of the page are decoded.
          *
-         * @param matcher The matcher than will be parsed into an appropriate
-         *                URL.
+         * @param type    The kind of attribute the URL was found in, either a
+         *                link or an image.
+         * @param bytes   The bytes holding the URL.
+         * @param start   The index of the URL's first byte.
+         * @param end     The index after the URL's last byte.
+         * @param charset The charset of the bytes.
          * @return A new URLParse of the appropriate type.
          */
         @NotNull
-        static WebPage.URLParser fromMatcher(@NotNull Matcher matcher) {
-            String group1 = matcher.group(1);
-            String group2 = matcher.group(2);
-            String group3 = matcher.group(3);
-            String group4 = matcher.group(4);
-
-            String uri;
-            if (group1 != null) {
-                uri = group1.replaceAll("[\\r\\n\\t]", "");
-            } else if (group2 != null) {
-                uri = group2.replaceAll("[\\r\\n\\t]", "");
-            } else if (group3 != null) {
-                uri = group3.replaceAll("[\\r\\n\\t]", "");
-            } else if (group4 != null) {
-                uri = group4.replaceAll("[\\r\\n\\t]", "");
+        static WebPage.URLParser fromAttribute(@NotNull HTMLTagTokenizer.AttributeType type, @NotNull byte[] bytes,
+                                               int start, int end, @NotNull Charset charset) {
+            String reference = stripWhitespace(new String(bytes, start, end - start, charset));
+            if (type == HTMLTagTokenizer.AttributeType.LINK) {
+                return new LinkURLParser(reference);
             } else {
-                throw new IllegalArgumentException("Matcher has all empty capture groups.");
+                return new ImageURLParser(reference);
             }
+        }
 
-            if (group1 != null || group2 != null) {
-                return new LinkURLParser(uri);
-            } else {
-                return new ImageURLParser(uri);
+        /**
+         * Returns the given URL without the whitespace that browsers ignore
+         * in URLs: line breaks and tabs anywhere, and spaces at either end.
+         */
+        @NotNull
+        private static String stripWhitespace(@NotNull String url) {
+            int start = 0;
+            int end = url.length();
+            while (start < end && url.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && url.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            if (url.indexOf('\r', start) == -1 && url.indexOf('\n', start) == -1 && url.indexOf('\t', start) == -1) {
+                return url.substring(start, end);
             }
+            StringBuilder reference = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                char c = url.charAt(i);
+                if (c != '\r' && c != '\n' && c != '\t') {
+                    reference.append(c);
+                }
+            }
+            return reference.toString();
         }
 
         @NotNull
-        protected final URI uri;
+        protected final String reference;
 
         /**
-         * Creates a new URL parser for the given string which should be a
-         * valid URI.
+         * Creates a new URL parser for the given URI reference.
          *
-         * @param urlString The URL string.
+         * @param reference The URI reference.
          */
-        URLParser(@NotNull String urlString) {
-            this.uri = URI.create(urlString);
+        URLParser(@NotNull String reference) {
+            this.reference = reference;
         }
 
         /**
@@ -329,35 +602,30 @@ public class WebPage extends AbstractWebElement implements WebElement {
          *
          * @param parent The parent URL to resolve against.
          * @return The resolved URL.
-         * @throws URISyntaxException    If either this URLParser's parsed URL
-         *                               or the given parent URL cannot be
-         *                               parsed as a valid URI.
-         * @throws MalformedURLException If either URL does not include the
-         *                               protocol.
+         * @throws MalformedURLException If the resolved URL is not a valid
+         *                               URL.
          */
         @NotNull
-        URL resolveURL(@NotNull URL parent) throws URISyntaxException, MalformedURLException {
-            URI resolved = parent.toURI().resolve(uri);
-            resolved = fixDeepRelativity(resolved);
-            return resolved.toURL();
+        URL resolveURL(@NotNull URL parent) throws MalformedURLException {
+            return resolveURL(new URLResolver(parent), DEFAULT_CANONICALIZER);
         }
 
         /**
-         * Fixes a bug in {@link URI#resolve(URI)} by removing an extra parent
-         * directory (../) found when resolving a URL that backs up more than
-         * 1 parent directory.
+         * Resolves this URLParser's parsed URL with the given resolver as
+         * described by {@link #resolveURL(URL)}, and canonicalizes the result
+         * so that different ways of writing the same URL resolve to the same
+         * URL.
          *
-         * @param uri The URI to fix.
-         * @return The fixed URI.
+         * @param resolver      The resolver for the page the URL was found on.
+         * @param canonicalizer The canonicalizer for the resolved URL.
+         * @return The resolved, canonical URL.
+         * @throws MalformedURLException If the resolved URL is not a valid
+         *                               URL.
          */
         @NotNull
-        private URI fixDeepRelativity(@NotNull URI uri) {
-            String uriString = uri.toString();
-            if (uriString.contains("../")) {
-                uriString = uriString.replace("../", "");
-                uri = URI.create(uriString);
-            }
-            return uri;
+        URL resolveURL(@NotNull URLResolver resolver, @NotNull URLCanonicalizer canonicalizer)
+                throws MalformedURLException {
+            return new URL(canonicalizer.canonicalize(resolver.resolve(reference)));
         }
 
         /**
@@ -380,7 +648,7 @@ public class WebPage extends AbstractWebElement implements WebElement {
 
         private LinkURLParser(@NotNull String urlString) {
             super(urlString);
-            String path = uri.getPath();
+            String path = URLResolver.pathOf(reference);
 
             if (path != null) {
                 Matcher pageMatcher = PAGE_PATTERN.matcher(path);
@@ -424,6 +692,45 @@ public class WebPage extends AbstractWebElement implements WebElement {
 
     }
 
+    /**
+     * Receives the elements of a web page as they are found during a crawl.
+     */
+    @FunctionalInterface
+    interface ElementListener {
+
+        /**
+         * Handles an element found on the page. Each distinct element is only
+         * handed to the listener once.
+         *
+         * @param element A page, file or image found on the page.
+         */
+        void elementFound(@NotNull WebElement element);
+
+        /**
+         * Handles the body of the page when it turns out to be a file or an
+         * image rather than HTML. The body is closed once this returns. By
+         * default the body is ignored.
+         *
+         * @param element The page's URL as a file or image.
+         * @param content The page's body.
+         */
+        default void contentFound(@NotNull WebElement element, @NotNull InputStream content) {
+        }
+
+        /**
+         * Opens a stream to copy the page's HTML to as it is read, once the
+         * page has turned out to be HTML. The stream is closed once the page
+         * has been read. By default the page is not copied.
+         *
+         * @return The stream to copy the page to, or null to not copy it.
+         * @throws IOException If the stream can not be opened.
+         */
+        @Nullable
+        default OutputStream openPageCopy() throws IOException {
+            return null;
+        }
+    }
+
     /**
      * A triple for collecting all of this web page's elements during a crawl.
      */
@@ -433,13 +740,16 @@ public class WebPage extends AbstractWebElement implements WebElement {
         private final Set<WebFile> webFiles = new HashSet<>();
         private final Set<WebImage> webImages = new HashSet<>();
 
-        private void addElementToAppropriateSet(@NotNull WebElement element) {
+        /**
+         * Returns true if the element had not been collected yet.
+         */
+        private boolean addElementToAppropriateSet(@NotNull WebElement element) {
             if (element instanceof WebPage) {
-                webPages.add((WebPage) element);
+                return webPages.add((WebPage) element);
             } else if (element instanceof WebFile) {
-                webFiles.add((WebFile) element);
+                return webFiles.add((WebFile) element);
             } else if (element instanceof WebImage) {
-                webImages.add((WebImage) element);
+                return webImages.add((WebImage) element);
             } else {
                 throw new IllegalStateException("Unexpected WebElement type: " + element.getClass());
             }
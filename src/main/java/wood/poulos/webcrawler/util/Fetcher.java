@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches the content of URLs. A single fetcher is shared by everything that
+ * fetches during a crawl, both crawling pages and downloading files, so that
+ * they all use the same timeouts and connections.
+ * <p>
+ * A URL can either be fetched by a thread that reads the body as a stream,
+ * with {@link #fetch(URL)}, or have its body pushed to a
+ * {@link BodyHandler} as it arrives, with {@link #fetchAsync(URL, BodyHandler)},
+ * which a fetcher with non-blocking connections does without tying up a
+ * thread for the fetch.
+ * </p>
+ */
+public interface Fetcher {
+
+    /**
+     * Fetches the given URL.
+     *
+     * @param url The URL to fetch.
+     * @return The response, which must be closed once its body has been read.
+     * @throws IOException If the URL can not be fetched, including when the
+     *                     server answers with an error. A missing resource
+     *                     throws a {@link java.io.FileNotFoundException}.
+     */
+    @NotNull
+    Response fetch(@NotNull URL url) throws IOException;
+
+    /**
+     * Fetches the given URL, pushing its body to the given handler as it
+     * arrives. The handler is called by one thread at a time, though not
+     * necessarily the same one each time, and must not block.
+     * <p>
+     * By default the URL is fetched with {@link #fetch(URL)} on the calling
+     * thread, which only returns once the whole body has been handed over.
+     * </p>
+     *
+     * @param url     The URL to fetch.
+     * @param handler The handler for the response.
+     * @return A future that completes once the handler has finished, or
+     * completes exceptionally with the {@link IOException} that the fetch or
+     * the handler failed with, as described by {@link #fetch(URL)}.
+     */
+    @NotNull
+    default CompletableFuture<Void> fetchAsync(@NotNull URL url, @NotNull BodyHandler handler) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try (Response response = fetch(url)) {
+            handler.start(response.getContentType());
+            InputStream body = response.getBody();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                handler.handle(ByteBuffer.wrap(buffer, 0, read));
+            }
+            handler.finish();
+            result.complete(null);
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * A successful response to a fetch.
+     */
+    interface Response extends Closeable {
+
+        /**
+         * Returns the Content-Type of the response.
+         *
+         * @return the Content-Type, or null if the server did not give one.
+         */
+        @Nullable
+        String getContentType();
+
+        /**
+         * Returns the body of the response. Closing the response closes the
+         * body.
+         *
+         * @return the body of the response.
+         */
+        @NotNull
+        InputStream getBody();
+    }
+
+    /**
+     * Receives the response to a {@link #fetchAsync(URL, BodyHandler)} as it
+     * arrives. If any of its methods throws, the fetch is abandoned and
+     * fails with what was thrown.
+     */
+    interface BodyHandler {
+
+        /**
+         * Handles the start of a successful response, before any of its body.
+         *
+         * @param contentType The Content-Type of the response, or null if
+         *                    the server did not give one.
+         * @throws IOException If the response can not be handled.
+         */
+        void start(@Nullable String contentType) throws IOException;
+
+        /**
+         * Handles the next part of the body. The buffer is only valid until
+         * this returns.
+         *
+         * @param chunk The part of the body, from its position to its limit.
+         * @throws IOException If the part can not be handled.
+         */
+        void handle(@NotNull ByteBuffer chunk) throws IOException;
+
+        /**
+         * Handles the end of the body.
+         *
+         * @throws IOException If the end can not be handled.
+         */
+        void finish() throws IOException;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Thrown by a {@link Fetcher} when a server answers with an error status,
+ * other than a missing resource, which is a
+ * {@link java.io.FileNotFoundException}.
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    /**
+     * Creates an exception for the given status.
+     *
+     * @param statusCode The HTTP status code the server answered with.
+     * @param url        The URL that was fetched.
+     */
+    public HttpStatusException(int statusCode, @NotNull URL url) {
+        super("Server returned HTTP response code: " + statusCode + " for URL: " + url);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Returns the HTTP status code the server answered with.
+     *
+     * @return the status code.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
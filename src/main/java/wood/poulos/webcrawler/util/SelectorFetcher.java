@@ -0,0 +1,688 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Fetcher} that fetches plain HTTP URLs asynchronously over
+ * non-blocking sockets, all driven by a single selector thread, so that
+ * thousands of fetches can be in flight without a thread for each of them.
+ * <p>
+ * The selector thread parses each response as it arrives and pushes its body
+ * straight from its read buffer to the fetch's
+ * {@link Fetcher.BodyHandler BodyHandler}, which runs on the selector thread
+ * and so must never block on anything but the disc. Requests are made with
+ * HTTP/1.1 and {@code Connection: close}, so connections are not reused;
+ * chunked and length delimited bodies are both understood, and redirects are
+ * followed.
+ * </p>
+ * <p>
+ * Host names are resolved by the thread calling
+ * {@link #fetchAsync(URL, BodyHandler)}, and redirects are started from the
+ * common fork join pool so that the selector thread never waits for a name
+ * to resolve. Anything that is not a plain HTTP URL, and every
+ * {@link #fetch(URL) fetch} that reads its body as a stream, is fetched with
+ * a fallback fetcher instead.
+ * </p>
+ */
+public class SelectorFetcher implements Fetcher, Closeable {
+
+    /**
+     * How many bytes are read from a connection at a time. The selector
+     * thread reads every connection into the same buffer.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * How often the selector thread looks for fetches that have timed out.
+     */
+    private static final long TIMEOUT_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int MAX_REDIRECTS = 20;
+    private static final int MAX_LINE_LENGTH = 8192;
+    private static final String USER_AGENT = "Java/" + System.getProperty("java.version");
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    @NotNull
+    private final Fetcher fallback;
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+
+    @Nullable
+    private Selector selector;
+    private boolean closed;
+
+    /**
+     * Creates a fetcher with the given timeouts, which fetches anything that
+     * is not plain HTTP with a {@link URLConnectionFetcher} with the same
+     * timeouts.
+     *
+     * @param connectTimeoutMillis How long to wait for a connection, in
+     *                             milliseconds, or 0 to wait forever.
+     * @param readTimeoutMillis    How long to wait for data, in milliseconds,
+     *                             or 0 to wait forever.
+     * @throws IllegalArgumentException If either timeout is negative.
+     */
+    public SelectorFetcher(int connectTimeoutMillis, int readTimeoutMillis) throws IllegalArgumentException {
+        this(connectTimeoutMillis, readTimeoutMillis, new URLConnectionFetcher(connectTimeoutMillis, readTimeoutMillis));
+    }
+
+    /**
+     * Creates a fetcher with the given timeouts, which fetches anything that
+     * is not plain HTTP, and every streamed fetch, with the given fallback
+     * fetcher.
+     *
+     * @param connectTimeoutMillis How long to wait for a connection, in
+     *                             milliseconds, or 0 to wait forever.
+     * @param readTimeoutMillis    How long to wait for data, in milliseconds,
+     *                             or 0 to wait forever.
+     * @param fallback             The fetcher for the fetches this one does
+     *                             not make itself.
+     * @throws IllegalArgumentException If either timeout is negative.
+     */
+    public SelectorFetcher(int connectTimeoutMillis, int readTimeoutMillis, @NotNull Fetcher fallback)
+            throws IllegalArgumentException {
+        if (connectTimeoutMillis < 0 || readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Timeouts must not be negative.");
+        }
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Fetches the given URL with the fallback fetcher, since reading the body
+     * as a stream ties up a thread anyway.
+     */
+    @Override
+    @NotNull
+    public Response fetch(@NotNull URL url) throws IOException {
+        return fallback.fetch(url);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The handler of a plain HTTP URL is called on the selector thread.
+     * </p>
+     */
+    @Override
+    @NotNull
+    public CompletableFuture<Void> fetchAsync(@NotNull URL url, @NotNull BodyHandler handler) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        start(url, handler, result, 0);
+        return result;
+    }
+
+    /**
+     * Stops the selector thread. Fetches that are still in flight fail, as do
+     * later fetches of plain HTTP URLs.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (selector == null) {
+                return;
+            }
+            selectorTasks.add(this::shutDownSelector);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Starts the exchange for the given URL, or hands it to the fallback
+     * fetcher if it is not plain HTTP.
+     */
+    private void start(@NotNull URL url, @NotNull BodyHandler handler, @NotNull CompletableFuture<Void> result,
+                       int redirects) {
+        if (!"http".equalsIgnoreCase(url.getProtocol())) {
+            fallback.fetchAsync(url, handler).whenComplete((ignore, e) -> {
+                if (e == null) {
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(e);
+                }
+            });
+            return;
+        }
+        try {
+            int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+            InetSocketAddress address = new InetSocketAddress(url.getHost(), port);
+            if (address.isUnresolved()) {
+                throw new UnknownHostException(url.getHost());
+            }
+            new Exchange(url, handler, result, redirects).connect(address);
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    @NotNull
+    private static ByteBuffer requestFor(@NotNull URL url) {
+        String target = url.getFile().isEmpty() ? "/" : url.getFile();
+        String host = url.getPort() == -1 ? url.getHost() : url.getHost() + ':' + url.getPort();
+        String request = "GET " + target + " HTTP/1.1\r\n" +
+                "Host: " + host + "\r\n" +
+                "User-Agent: " + USER_AGENT + "\r\n" +
+                "Accept: */*\r\n" +
+                "Connection: close\r\n" +
+                "\r\n";
+        return ByteBuffer.wrap(request.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Queues a task to run on the selector thread, starting the thread if it
+     * is not running yet.
+     */
+    private void runOnSelector(@NotNull Runnable task) throws IOException {
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Fetcher is closed");
+            }
+            if (selector == null) {
+                Selector newSelector = Selector.open();
+                Thread thread = new Thread(() -> runSelector(newSelector), "fetcher-selector");
+                thread.setDaemon(true);
+                thread.start();
+                selector = newSelector;
+            }
+            selectorTasks.add(task);
+            selector.wakeup();
+        }
+    }
+
+    private void runSelector(@NotNull Selector selector) {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long nextTimeoutCheck = System.nanoTime() + TIMEOUT_CHECK_NANOS;
+        try {
+            while (selector.isOpen()) {
+                selector.select(TimeUnit.NANOSECONDS.toMillis(TIMEOUT_CHECK_NANOS));
+                runSelectorTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Exchange exchange = (Exchange) key.attachment();
+                    try {
+                        if (key.isConnectable()) {
+                            exchange.finishConnect();
+                        } else if (key.isWritable()) {
+                            exchange.writeRequest();
+                        } else if (key.isReadable()) {
+                            exchange.readResponse(buffer);
+                        }
+                    } catch (CancelledKeyException ignore) {
+                        // The exchange has already ended.
+                    } catch (IOException | RuntimeException e) {
+                        exchange.fail(e);
+                    }
+                }
+                long now = System.nanoTime();
+                if (now - nextTimeoutCheck >= 0) {
+                    failTimedOutExchanges(selector, now);
+                    nextTimeoutCheck = now + TIMEOUT_CHECK_NANOS;
+                }
+            }
+        } catch (IOException e) {
+            shutDownSelector();
+        } catch (ClosedSelectorException ignore) {
+            // The fetcher was closed.
+        }
+        // Fail any fetches that were queued while the selector was closing.
+        runSelectorTasks();
+    }
+
+    private void runSelectorTasks() {
+        for (Runnable task = selectorTasks.poll(); task != null; task = selectorTasks.poll()) {
+            task.run();
+        }
+    }
+
+    private static void failTimedOutExchanges(@NotNull Selector selector, long now) {
+        for (SelectionKey key : new ArrayList<>(selector.keys())) {
+            Exchange exchange = (Exchange) key.attachment();
+            if (exchange.deadline != 0 && now - exchange.deadline >= 0) {
+                exchange.fail(new SocketTimeoutException(exchange.connected ? "Read timed out"
+                        : "connect timed out"));
+            }
+        }
+    }
+
+    /**
+     * Fails every fetch in flight and closes the selector. Runs on the
+     * selector thread.
+     */
+    private void shutDownSelector() {
+        Selector selector;
+        synchronized (this) {
+            closed = true;
+            selector = this.selector;
+        }
+        if (selector == null || !selector.isOpen()) {
+            return;
+        }
+        IOException failure = new IOException("Fetcher is closed");
+        for (SelectionKey key : new ArrayList<>(selector.keys())) {
+            ((Exchange) key.attachment()).fail(failure);
+        }
+        try {
+            selector.close();
+        } catch (IOException ignore) {
+            // Nothing more can be done with it.
+        }
+    }
+
+    /**
+     * Where in a response an exchange is.
+     */
+    private enum ResponseState {
+        STATUS_LINE, HEADERS, FIXED_LENGTH_BODY, CHUNK_SIZE, CHUNK, CHUNK_END, TRAILERS, BODY_UNTIL_CLOSE, DONE
+    }
+
+    /**
+     * A single request and its response on its own connection. Once it is
+     * connecting, everything about it happens on the selector thread.
+     */
+    private final class Exchange {
+
+        @NotNull
+        private final URL url;
+        @NotNull
+        private final BodyHandler handler;
+        @NotNull
+        private final CompletableFuture<Void> result;
+        private final int redirects;
+        @NotNull
+        private final ByteBuffer request;
+        @Nullable
+        private SocketChannel channel;
+        @Nullable
+        private SelectionKey key;
+        private boolean connected;
+        /**
+         * When the exchange times out unless it hears from the server, or 0
+         * for never.
+         */
+        private long deadline;
+
+        @NotNull
+        private ResponseState state = ResponseState.STATUS_LINE;
+        private final StringBuilder line = new StringBuilder();
+        private boolean lineEnded;
+        private int status;
+        private final Map<String, String> headers = new HashMap<>();
+        private long remaining;
+
+        private Exchange(@NotNull URL url, @NotNull BodyHandler handler, @NotNull CompletableFuture<Void> result,
+                         int redirects) {
+            this.url = url;
+            this.handler = handler;
+            this.result = result;
+            this.redirects = redirects;
+            this.request = requestFor(url);
+        }
+
+        /**
+         * Starts connecting to the given address and hands the connection to
+         * the selector thread.
+         */
+        private void connect(@NotNull InetSocketAddress address) throws IOException {
+            SocketChannel channel = SocketChannel.open();
+            this.channel = channel;
+            try {
+                channel.configureBlocking(false);
+                channel.connect(address);
+                runOnSelector(this::register);
+            } catch (IOException | RuntimeException e) {
+                closeChannel();
+                throw e;
+            }
+        }
+
+        private void register() {
+            try {
+                Selector selector;
+                synchronized (SelectorFetcher.this) {
+                    selector = SelectorFetcher.this.selector;
+                }
+                if (channel.isConnectionPending()) {
+                    key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+                    deadline = deadlineIn(connectTimeoutMillis);
+                } else {
+                    key = channel.register(selector, SelectionKey.OP_WRITE, this);
+                    markConnected();
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (ClosedSelectorException ignore) {
+                fail(new IOException("Fetcher is closed"));
+            }
+        }
+
+        private void finishConnect() throws IOException {
+            if (channel.finishConnect()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                markConnected();
+            }
+        }
+
+        private void markConnected() {
+            connected = true;
+            deadline = deadlineIn(readTimeoutMillis);
+        }
+
+        private void writeRequest() throws IOException {
+            channel.write(request);
+            if (!request.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Reads what has arrived into the given buffer and parses it.
+         */
+        private void readResponse(@NotNull ByteBuffer buffer) throws IOException {
+            buffer.clear();
+            int read = channel.read(buffer);
+            if (read == -1) {
+                if (state != ResponseState.BODY_UNTIL_CLOSE) {
+                    throw new EOFException("Connection closed before the response ended for URL: " + url);
+                }
+                succeed();
+                return;
+            }
+            deadline = deadlineIn(readTimeoutMillis);
+            buffer.flip();
+            while (buffer.hasRemaining() && state != ResponseState.DONE) {
+                parse(buffer);
+            }
+        }
+
+        /**
+         * Parses the next part of the response from the given buffer.
+         */
+        private void parse(@NotNull ByteBuffer buffer) throws IOException {
+            switch (state) {
+                case STATUS_LINE:
+                    if (readLine(buffer)) {
+                        status = parseStatus(line.toString());
+                        state = ResponseState.HEADERS;
+                    }
+                    break;
+                case HEADERS:
+                    if (readLine(buffer)) {
+                        if (line.length() == 0) {
+                            headersEnded();
+                        } else {
+                            addHeader(line.toString());
+                        }
+                    }
+                    break;
+                case FIXED_LENGTH_BODY:
+                case CHUNK:
+                    int length = (int) Math.min(remaining, buffer.remaining());
+                    handBody(buffer, length);
+                    remaining -= length;
+                    if (remaining == 0) {
+                        if (state == ResponseState.CHUNK) {
+                            state = ResponseState.CHUNK_END;
+                        } else {
+                            succeed();
+                        }
+                    }
+                    break;
+                case CHUNK_SIZE:
+                    if (readLine(buffer)) {
+                        remaining = parseChunkSize(line.toString());
+                        state = remaining == 0 ? ResponseState.TRAILERS : ResponseState.CHUNK;
+                    }
+                    break;
+                case CHUNK_END:
+                    if (readLine(buffer)) {
+                        state = ResponseState.CHUNK_SIZE;
+                    }
+                    break;
+                case TRAILERS:
+                    if (readLine(buffer) && line.length() == 0) {
+                        succeed();
+                    }
+                    break;
+                case BODY_UNTIL_CLOSE:
+                    handBody(buffer, buffer.remaining());
+                    break;
+                default:
+                    buffer.position(buffer.limit());
+            }
+        }
+
+        /**
+         * Decides what to do with the response once its head has been read.
+         */
+        private void headersEnded() throws IOException {
+            if (status >= 100 && status < 200) {
+                headers.clear();
+                state = ResponseState.STATUS_LINE;
+                return;
+            }
+            if (status >= 400) {
+                throw status == 404 || status == 410 ? new FileNotFoundException(url.toString())
+                        : new HttpStatusException(status, url);
+            }
+            String location = headers.get("location");
+            if (location != null && (status == 301 || status == 302 || status == 303 || status == 307
+                    || status == 308)) {
+                redirect(location);
+                return;
+            }
+
+            handler.start(headers.get("content-type"));
+            String transferEncoding = headers.get("transfer-encoding");
+            String contentLength = headers.get("content-length");
+            if (status == 204 || status == 304) {
+                succeed();
+            } else if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ENGLISH).contains("chunked")) {
+                state = ResponseState.CHUNK_SIZE;
+            } else if (contentLength != null) {
+                try {
+                    remaining = Long.parseLong(contentLength);
+                } catch (NumberFormatException ignore) {
+                    throw new ProtocolException("Invalid Content-Length: " + contentLength);
+                }
+                state = ResponseState.FIXED_LENGTH_BODY;
+                if (remaining <= 0) {
+                    succeed();
+                }
+            } else {
+                state = ResponseState.BODY_UNTIL_CLOSE;
+            }
+        }
+
+        private void redirect(@NotNull String location) throws IOException {
+            if (redirects == MAX_REDIRECTS) {
+                throw new ProtocolException("Server redirected too many times (" + MAX_REDIRECTS + ") for URL: "
+                        + url);
+            }
+            URL target;
+            try {
+                target = new URL(url, location);
+            } catch (MalformedURLException e) {
+                throw new ProtocolException("Invalid redirect to " + location + " for URL: " + url);
+            }
+            end();
+            CompletableFuture.runAsync(() -> start(target, handler, result, redirects + 1));
+        }
+
+        /**
+         * Hands the given number of bytes from the buffer's position to the
+         * handler, and moves the position past them whatever the handler
+         * reads.
+         */
+        private void handBody(@NotNull ByteBuffer buffer, int length) throws IOException {
+            int limit = buffer.limit();
+            int end = buffer.position() + length;
+            buffer.limit(end);
+            try {
+                handler.handle(buffer);
+            } finally {
+                buffer.limit(limit);
+                buffer.position(end);
+            }
+        }
+
+        /**
+         * Reads from the buffer up to the end of a line, which is then left in
+         * {@link #line} without its line feed or any carriage return before it
+         * until the next line is read.
+         *
+         * @return False if the buffer ended first.
+         */
+        private boolean readLine(@NotNull ByteBuffer buffer) throws IOException {
+            if (lineEnded) {
+                line.setLength(0);
+                lineEnded = false;
+            }
+            while (buffer.hasRemaining()) {
+                char c = (char) (buffer.get() & 0xFF);
+                if (c == '\n') {
+                    int end = line.length();
+                    if (end > 0 && line.charAt(end - 1) == '\r') {
+                        line.setLength(end - 1);
+                    }
+                    lineEnded = true;
+                    return true;
+                }
+                if (line.length() == MAX_LINE_LENGTH) {
+                    throw new ProtocolException("Response line longer than " + MAX_LINE_LENGTH + " bytes");
+                }
+                line.append(c);
+            }
+            return false;
+        }
+
+        private int parseStatus(@NotNull String statusLine) throws IOException {
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/") || parts[1].length() != 3) {
+                throw new ProtocolException("Invalid status line \"" + statusLine + "\" for URL: " + url);
+            }
+            try {
+                return Integer.parseInt(parts[1]);
+            } catch (NumberFormatException ignore) {
+                throw new ProtocolException("Invalid status line \"" + statusLine + "\" for URL: " + url);
+            }
+        }
+
+        private void addHeader(@NotNull String header) {
+            int colon = header.indexOf(':');
+            if (colon > 0) {
+                headers.put(header.substring(0, colon).trim().toLowerCase(Locale.ENGLISH),
+                        header.substring(colon + 1).trim());
+            }
+        }
+
+        private long parseChunkSize(@NotNull String chunkLine) throws IOException {
+            int extension = chunkLine.indexOf(';');
+            String size = (extension == -1 ? chunkLine : chunkLine.substring(0, extension)).trim();
+            try {
+                long chunkSize = Long.parseLong(size, 16);
+                if (chunkSize < 0) {
+                    throw new NumberFormatException();
+                }
+                return chunkSize;
+            } catch (NumberFormatException ignore) {
+                throw new ProtocolException("Invalid chunk size: " + size);
+            }
+        }
+
+        private void succeed() throws IOException {
+            end();
+            handler.finish();
+            result.complete(null);
+        }
+
+        private void fail(@NotNull Throwable failure) {
+            end();
+            result.completeExceptionally(failure);
+        }
+
+        /**
+         * Closes the connection, after which nothing more is read from it.
+         */
+        private void end() {
+            state = ResponseState.DONE;
+            deadline = 0;
+            closeChannel();
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignore) {
+                    // The connection is gone either way.
+                }
+            }
+        }
+
+        private long deadlineIn(int timeoutMillis) {
+            if (timeoutMillis == 0) {
+                return 0;
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            return deadline == 0 ? 1 : deadline;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A utility for rewriting URLs into a canonical form, so that URLs which
+ * refer to the same resource are written the same way.
+ * <p>
+ * Canonicalizing a URL:
+ * </p>
+ * <ul>
+ * <li>lower cases the scheme and host,</li>
+ * <li>drops the scheme's default port,</li>
+ * <li>drops the fragment,</li>
+ * <li>removes {@code .} and {@code ..} path segments,</li>
+ * <li>decodes percent-encoded unreserved characters, upper cases the hex
+ * digits of all other percent-encodings and percent-encodes characters that
+ * may not appear in a URL,</li>
+ * <li>removes any query parameters it was configured to strip and,
+ * optionally, sorts the remaining ones by name.</li>
+ * </ul>
+ * <p>
+ * URLs are canonicalized in a single pass over the URL into one buffer, since
+ * this is done for every link found while crawling.
+ * </p>
+ */
+public class URLCanonicalizer {
+
+    /**
+     * The query parameters stripped by default: analytics tags and session
+     * ids, which do not change what a page refers to.
+     */
+    public static final List<String> DEFAULT_STRIPPED_PARAMETERS = Collections.unmodifiableList(
+            Arrays.asList("utm_*", "fbclid", "gclid", "jsessionid", "phpsessid", "sessionid"));
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final String[] strippedNames;
+    private final String[] strippedPrefixes;
+    private final boolean sortingParameters;
+
+    /**
+     * Creates a canonicalizer that strips the
+     * {@link #DEFAULT_STRIPPED_PARAMETERS default query parameters} and leaves
+     * the rest in their original order.
+     */
+    public URLCanonicalizer() {
+        this(DEFAULT_STRIPPED_PARAMETERS, false);
+    }
+
+    /**
+     * Creates a canonicalizer.
+     *
+     * @param strippedParameters The names of query parameters to remove,
+     *                           matched without regard to case. A name ending
+     *                           in {@code *} matches every parameter starting
+     *                           with the rest of the name.
+     * @param sortingParameters  Whether to sort the remaining query
+     *                           parameters by name.
+     */
+    public URLCanonicalizer(@NotNull Collection<String> strippedParameters, boolean sortingParameters) {
+        List<String> names = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        for (String parameter : strippedParameters) {
+            String name = parameter.trim().toLowerCase(Locale.ENGLISH);
+            if (name.endsWith("*")) {
+                prefixes.add(name.substring(0, name.length() - 1));
+            } else if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        this.strippedNames = names.toArray(new String[names.size()]);
+        this.strippedPrefixes = prefixes.toArray(new String[prefixes.size()]);
+        this.sortingParameters = sortingParameters;
+    }
+
+    /**
+     * Canonicalizes the given URL.
+     *
+     * @param url The URL to canonicalize.
+     * @return The canonical form of the URL.
+     * @throws MalformedURLException If the canonical form is not a valid URL,
+     *                               which can only happen if the given URL
+     *                               was not valid to begin with.
+     */
+    @NotNull
+    public URL canonicalize(@NotNull URL url) throws MalformedURLException {
+        String canonical = canonicalize(url.toExternalForm());
+        return canonical.equals(url.toExternalForm()) ? url : new URL(canonical);
+    }
+
+    /**
+     * Canonicalizes the given absolute URL. URLs without an authority, such as
+     * {@code mailto:} links, only have their scheme lower cased.
+     *
+     * @param url The absolute URL to canonicalize.
+     * @return The canonical form of the URL.
+     */
+    @NotNull
+    public String canonicalize(@NotNull String url) {
+        int schemeEnd = url.indexOf(':');
+        if (schemeEnd < 1) {
+            return url;
+        }
+        StringBuilder canonical = new StringBuilder(url.length() + 1);
+        String scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ENGLISH);
+        canonical.append(scheme).append(':');
+        if (!url.startsWith("//", schemeEnd + 1)) {
+            return canonical.append(url, schemeEnd + 1, url.length()).toString();
+        }
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = indexOfAny(url, "/?#", authorityStart, url.length());
+        appendAuthority(canonical.append("//"), url, authorityStart, authorityEnd, scheme);
+
+        int fragmentStart = indexOfAny(url, "#", authorityEnd, url.length());
+        int queryStart = indexOfAny(url, "?", authorityEnd, fragmentStart);
+
+        int pathStart = canonical.length();
+        appendNormalizedEncoding(canonical, url, authorityEnd, queryStart, false);
+        if (canonical.length() == pathStart) {
+            canonical.append('/');
+        } else {
+            String path = canonical.substring(pathStart);
+            if (path.contains("/.")) {
+                canonical.setLength(pathStart);
+                canonical.append(removeDotSegments(path));
+            }
+        }
+
+        if (queryStart < fragmentStart) {
+            appendQuery(canonical, url, queryStart + 1, fragmentStart);
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * Removes the {@code .} and {@code ..} segments from the given path as
+     * described by RFC 3986 section 5.2.4. A {@code ..} segment that would go
+     * above the root is dropped.
+     *
+     * @param path The path to remove the dot segments from.
+     * @return The path without dot segments.
+     */
+    @NotNull
+    public static String removeDotSegments(@NotNull String path) {
+        StringBuilder output = new StringBuilder(path.length());
+        int i = 0;
+        while (i < path.length()) {
+            if (path.startsWith("../", i)) {
+                i += 3;
+            } else if (path.startsWith("./", i)) {
+                i += 2;
+            } else if (path.startsWith("/./", i)) {
+                i += 2;
+            } else if (path.startsWith("/.", i) && i + 2 == path.length()) {
+                output.append('/');
+                i += 2;
+            } else if (path.startsWith("/../", i)) {
+                removeLastSegment(output);
+                i += 3;
+            } else if (path.startsWith("/..", i) && i + 3 == path.length()) {
+                removeLastSegment(output);
+                output.append('/');
+                i += 3;
+            } else if ((path.startsWith(".", i) && i + 1 == path.length())
+                    || (path.startsWith("..", i) && i + 2 == path.length())) {
+                i = path.length();
+            } else {
+                int segmentEnd = path.indexOf('/', i + 1);
+                if (segmentEnd == -1) {
+                    segmentEnd = path.length();
+                }
+                output.append(path, i, segmentEnd);
+                i = segmentEnd;
+            }
+        }
+        return output.toString();
+    }
+
+    private static void removeLastSegment(@NotNull StringBuilder output) {
+        int lastSlash = output.lastIndexOf("/");
+        output.setLength(lastSlash == -1 ? 0 : lastSlash);
+    }
+
+    private static void appendAuthority(@NotNull StringBuilder canonical, @NotNull String url, int start, int end,
+                                        @NotNull String scheme) {
+        int hostStart = url.lastIndexOf('@', end - 1) + 1;
+        if (hostStart <= start) {
+            hostStart = start;
+        } else {
+            canonical.append(url, start, hostStart);
+        }
+        // The port follows the last colon, unless that colon is within an IPv6 address.
+        int portStart = url.lastIndexOf(':', end - 1);
+        if (portStart < hostStart || url.lastIndexOf(']', end - 1) > portStart) {
+            portStart = end;
+        }
+        for (int i = hostStart; i < portStart; i++) {
+            canonical.append(Character.toLowerCase(url.charAt(i)));
+        }
+        if (portStart + 1 < end) {
+            String port = url.substring(portStart + 1, end);
+            if (!port.equals(Integer.toString(getDefaultPort(scheme)))) {
+                canonical.append(':').append(port);
+            }
+        }
+    }
+
+    private static int getDefaultPort(@NotNull String scheme) {
+        switch (scheme) {
+            case "http":
+                return 80;
+            case "https":
+                return 443;
+            case "ftp":
+                return 21;
+            default:
+                return -1;
+        }
+    }
+
+    private void appendQuery(@NotNull StringBuilder canonical, @NotNull String url, int start, int end) {
+        if (strippedNames.length == 0 && strippedPrefixes.length == 0 && !sortingParameters) {
+            canonical.append('?');
+            appendNormalizedEncoding(canonical, url, start, end, true);
+            return;
+        }
+
+        List<String> parameters = new ArrayList<>();
+        StringBuilder parameter = new StringBuilder();
+        for (int i = start; i <= end; i++) {
+            if (i == end || url.charAt(i) == '&') {
+                if (parameter.length() > 0 && !isStripped(parameter)) {
+                    parameters.add(parameter.toString());
+                }
+                parameter.setLength(0);
+            } else {
+                int next = i + 1;
+                while (next < end && url.charAt(next) != '&') {
+                    next++;
+                }
+                appendNormalizedEncoding(parameter, url, i, next, true);
+                i = next - 1;
+            }
+        }
+        if (sortingParameters) {
+            parameters.sort((a, b) -> nameOf(a).compareTo(nameOf(b)));
+        }
+        for (int i = 0; i < parameters.size(); i++) {
+            canonical.append(i == 0 ? '?' : '&').append(parameters.get(i));
+        }
+    }
+
+    private boolean isStripped(@NotNull CharSequence parameter) {
+        String name = nameOf(parameter).toLowerCase(Locale.ENGLISH);
+        for (String strippedName : strippedNames) {
+            if (name.equals(strippedName)) {
+                return true;
+            }
+        }
+        for (String strippedPrefix : strippedPrefixes) {
+            if (name.startsWith(strippedPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NotNull
+    private static String nameOf(@NotNull CharSequence parameter) {
+        String string = parameter.toString();
+        int equals = string.indexOf('=');
+        return equals == -1 ? string : string.substring(0, equals);
+    }
+
+    /**
+     * Appends the given part of the URL with its percent-encoding normalized.
+     */
+    private static void appendNormalizedEncoding(@NotNull StringBuilder out, @NotNull String url, int start, int end,
+                                                 boolean inQuery) {
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '%') {
+                int high = i + 1 < end ? Character.digit(url.charAt(i + 1), 16) : -1;
+                int low = i + 2 < end ? Character.digit(url.charAt(i + 2), 16) : -1;
+                if (high == -1 || low == -1) {
+                    out.append("%25");
+                    continue;
+                }
+                char decoded = (char) (high << 4 | low);
+                if (isUnreserved(decoded)) {
+                    out.append(decoded);
+                } else {
+                    appendEncoded(out, decoded);
+                }
+                i += 2;
+            } else if (c > 0x7F) {
+                int codePoint = url.codePointAt(i);
+                for (byte b : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+                    appendEncoded(out, (char) (b & 0xFF));
+                }
+                i += Character.charCount(codePoint) - 1;
+            } else if (isAllowed(c, inQuery)) {
+                out.append(c);
+            } else {
+                appendEncoded(out, c);
+            }
+        }
+    }
+
+    private static void appendEncoded(@NotNull StringBuilder out, char c) {
+        out.append('%').append(HEX_DIGITS[c >> 4 & 0xF]).append(HEX_DIGITS[c & 0xF]);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static boolean isAllowed(char c, boolean inQuery) {
+        return isUnreserved(c) || "!$&'()*+,;=:@/".indexOf(c) != -1 || (inQuery && c == '?');
+    }
+
+    private static int indexOfAny(@NotNull String s, @NotNull String chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (chars.indexOf(s.charAt(i)) != -1) {
+                return i;
+            }
+        }
+        return end;
+    }
+}
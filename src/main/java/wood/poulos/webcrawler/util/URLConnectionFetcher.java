@@ -0,0 +1,196 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+
+/**
+ * A {@link Fetcher} built on {@link URLConnection}, with connect and read
+ * timeouts.
+ * <p>
+ * HTTP connections are kept alive and reused for later fetches from the same
+ * host by the JDK's own connection cache, which keeps up to
+ * {@code http.maxConnections} (5 by default) idle connections per host. A
+ * connection can only be reused once the response on it has been read to its
+ * end and closed, so error responses are drained here before they are
+ * reported.
+ * </p>
+ */
+public class URLConnectionFetcher implements Fetcher {
+
+    /**
+     * How long to wait for a connection by default, in milliseconds.
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * How long to wait for data by default, in milliseconds.
+     */
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 30_000;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    /**
+     * Creates a fetcher with the default timeouts.
+     */
+    public URLConnectionFetcher() {
+        this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a fetcher with the given timeouts.
+     *
+     * @param connectTimeoutMillis How long to wait for a connection, in
+     *                             milliseconds, or 0 to wait forever.
+     * @param readTimeoutMillis    How long to wait for data, in milliseconds,
+     *                             or 0 to wait forever.
+     * @throws IllegalArgumentException If either timeout is negative.
+     */
+    public URLConnectionFetcher(int connectTimeoutMillis, int readTimeoutMillis) throws IllegalArgumentException {
+        if (connectTimeoutMillis < 0 || readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Timeouts must not be negative.");
+        }
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Returns how long this fetcher waits for a connection, in milliseconds.
+     *
+     * @return the connect timeout.
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Returns how long this fetcher waits for data, in milliseconds.
+     *
+     * @return the read timeout.
+     */
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @NotNull
+    public Response fetch(@NotNull URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.connect();
+        try {
+            return new ConnectionResponse(connection, connection.getInputStream());
+        } catch (IOException e) {
+            if (connection instanceof HttpURLConnection) {
+                HttpURLConnection httpConnection = (HttpURLConnection) connection;
+                discardErrorBody(httpConnection);
+                if (!(e instanceof FileNotFoundException) && !(e instanceof SocketTimeoutException)) {
+                    throw statusExceptionOr(httpConnection, e);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns an {@link HttpStatusException} for the status of the given
+     * connection if the server answered with an error, or else the given
+     * exception.
+     */
+    @NotNull
+    private static IOException statusExceptionOr(@NotNull HttpURLConnection connection, @NotNull IOException e) {
+        try {
+            int status = connection.getResponseCode();
+            if (status >= 400) {
+                HttpStatusException statusException = new HttpStatusException(status, connection.getURL());
+                statusException.initCause(e);
+                return statusException;
+            }
+        } catch (IOException ignore) {
+            // The server never answered.
+        }
+        return e;
+    }
+
+    /**
+     * Reads and closes the body of an error response so that its connection
+     * can be reused.
+     */
+    private static void discardErrorBody(@NotNull HttpURLConnection connection) {
+        try (InputStream errorBody = connection.getErrorStream()) {
+            if (errorBody != null) {
+                byte[] buffer = new byte[4096];
+                while (errorBody.read(buffer) != -1) {
+                    // Discard.
+                }
+            }
+        } catch (IOException ignore) {
+            // The connection is simply not reused.
+        }
+    }
+
+    private static class ConnectionResponse implements Response {
+
+        @NotNull
+        private final URLConnection connection;
+        @NotNull
+        private final InputStream body;
+
+        private ConnectionResponse(@NotNull URLConnection connection, @NotNull InputStream body) {
+            this.connection = connection;
+            this.body = body;
+        }
+
+        @Override
+        @Nullable
+        public String getContentType() {
+            return connection.getContentType();
+        }
+
+        @Override
+        @NotNull
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+}
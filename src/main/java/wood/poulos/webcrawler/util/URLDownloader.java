@@ -25,20 +25,26 @@ package wood.poulos.webcrawler.util;
 
 import org.apache.commons.io.IOUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A utility for copying the contents of a URL to a file path.
  */
 public class URLDownloader {
 
+    private static final Fetcher DEFAULT_FETCHER = new URLConnectionFetcher();
+
     /**
      * Copies the contents of a URL to a location on disc as given by a path.
      *
@@ -48,8 +54,73 @@ public class URLDownloader {
      *                     contents.
      */
     public static void downloadElement(@NotNull URL fromURL, @NotNull Path toPath) throws IOException {
+        downloadElement(DEFAULT_FETCHER, fromURL, toPath);
+    }
+
+    /**
+     * Copies the contents of a URL, fetched with the given fetcher, to a
+     * location on disc as given by a path.
+     *
+     * @param fetcher The fetcher to fetch the URL with.
+     * @param fromURL The URL to download from.
+     * @param toPath  The path to download to.
+     * @throws IOException If something goes wrong while trying to copy the
+     *                     contents.
+     */
+    public static void downloadElement(@NotNull Fetcher fetcher, @NotNull URL fromURL, @NotNull Path toPath)
+            throws IOException {
+        verifyPathHasParent(toPath);
+        try (Fetcher.Response response = fetcher.fetch(fromURL)) {
+            copyToFile(response.getBody(), toPath);
+        }
+    }
+
+    /**
+     * Copies the contents of a URL to a location on disc as given by a path,
+     * as described by {@link #downloadElement(Fetcher, URL, Path)}, but with
+     * a {@link Fetcher#fetchAsync(URL, Fetcher.BodyHandler) non-blocking
+     * fetch} whose body is written to the file through a
+     * {@link FileChannel} as it arrives.
+     *
+     * @param fetcher The fetcher to fetch the URL with.
+     * @param fromURL The URL to download from.
+     * @param toPath  The path to download to.
+     * @return A future that completes once the file has been written, or
+     * completes exceptionally with the {@link IOException} that went wrong.
+     * A file that was started is left as far as it got.
+     */
+    @NotNull
+    public static CompletableFuture<Void> downloadElementAsync(@NotNull Fetcher fetcher, @NotNull URL fromURL,
+                                                               @NotNull Path toPath) {
+        try {
+            verifyPathHasParent(toPath);
+        } catch (IOException e) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+        FileBodyHandler handler = new FileBodyHandler(toPath);
+        return fetcher.fetchAsync(fromURL, handler).whenComplete((ignore, failure) -> {
+            if (failure != null) {
+                handler.close();
+            }
+        });
+    }
+
+    /**
+     * Copies the rest of the given input to a location on disc as given by a
+     * path. The input is not closed.
+     *
+     * @param from   The input to copy.
+     * @param toPath The path to copy to.
+     * @throws IOException If something goes wrong while trying to copy the
+     *                     contents.
+     */
+    public static void copyToFile(@NotNull InputStream from, @NotNull Path toPath) throws IOException {
         createParentDirsIfNonExistent(toPath);
-        performCopy(openConnection(fromURL), toPath);
+        try (OutputStream outStream = Files.newOutputStream(toPath)) {
+            IOUtils.copyLarge(from, outStream);
+        }
     }
 
     private static void createParentDirsIfNonExistent(@NotNull Path path) throws IOException {
@@ -64,17 +135,49 @@ public class URLDownloader {
         }
     }
 
-    @NotNull
-    private static URLConnection openConnection(@NotNull URL url) throws IOException {
-        URLConnection connection = url.openConnection();
-        connection.connect();
-        return connection;
-    }
+    /**
+     * Writes a body to a file as it arrives. The file is only created once
+     * the server has answered.
+     */
+    private static final class FileBodyHandler implements Fetcher.BodyHandler {
 
-    private static void performCopy(@NotNull URLConnection copyFrom, @NotNull Path copyTo) throws IOException {
-        try (InputStream inStream = copyFrom.getInputStream();
-             OutputStream outStream = Files.newOutputStream(copyTo)) {
-            IOUtils.copyLarge(inStream, outStream);
+        @NotNull
+        private final Path path;
+        @Nullable
+        private FileChannel channel;
+
+        private FileBodyHandler(@NotNull Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public void start(@Nullable String contentType) throws IOException {
+            createParentDirsIfNonExistent(path);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public void handle(@NotNull ByteBuffer chunk) throws IOException {
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            channel.close();
+        }
+
+        private void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignore) {
+                    // The download has already failed.
+                }
+            }
         }
     }
+
 }
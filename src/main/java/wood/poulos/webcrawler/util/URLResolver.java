@@ -0,0 +1,262 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URL;
+
+/**
+ * Resolves references, such as the links on a web page, against the base URL
+ * they were found at as described by RFC 3986 section 5.2.
+ * <p>
+ * The base URL is split into its components once, when the resolver is
+ * created, and references are resolved straight from their characters into a
+ * string, so resolving the many links on a page does not create any
+ * intermediate {@link java.net.URI} objects.
+ * </p>
+ */
+public class URLResolver {
+
+    private final String scheme;
+    @Nullable
+    private final String authority;
+    private final String path;
+    @Nullable
+    private final String query;
+
+    /**
+     * Creates a resolver for references found at the given base URL.
+     *
+     * @param base The absolute URL to resolve references against.
+     * @throws IllegalArgumentException If the URL is not absolute.
+     */
+    public URLResolver(@NotNull URL base) throws IllegalArgumentException {
+        this(base.toExternalForm());
+    }
+
+    /**
+     * Creates a resolver for references found at the given base URL.
+     *
+     * @param base The absolute URL to resolve references against.
+     * @throws IllegalArgumentException If the URL is not absolute.
+     */
+    public URLResolver(@NotNull String base) throws IllegalArgumentException {
+        Reference parsed = new Reference(base, 0, base.length());
+        if (parsed.schemeEnd == -1) {
+            throw new IllegalArgumentException("The base URL must be absolute: " + base);
+        }
+        this.scheme = base.substring(0, parsed.schemeEnd);
+        this.authority = parsed.hasAuthority() ? base.substring(parsed.authorityStart, parsed.pathStart) : null;
+        this.path = base.substring(parsed.pathStart, parsed.pathEnd);
+        this.query = parsed.hasQuery() ? base.substring(parsed.pathEnd + 1, parsed.queryEnd) : null;
+    }
+
+    /**
+     * Resolves the given reference against this resolver's base URL.
+     *
+     * @param reference The reference to resolve.
+     * @return The absolute URL the reference refers to.
+     */
+    @NotNull
+    public String resolve(@NotNull String reference) {
+        return resolve(reference, 0, reference.length());
+    }
+
+    /**
+     * Resolves the reference in the given range of characters against this
+     * resolver's base URL.
+     *
+     * @param chars The characters containing the reference.
+     * @param start The index of the reference's first character.
+     * @param end   The index after the reference's last character.
+     * @return The absolute URL the reference refers to.
+     */
+    @NotNull
+    public String resolve(@NotNull CharSequence chars, int start, int end) {
+        Reference r = new Reference(chars, start, end);
+        StringBuilder target = new StringBuilder(end - start + path.length() + 16);
+
+        if (r.schemeEnd != -1) {
+            target.append(chars, start, r.schemeEnd + 1);
+            if (r.hasAuthority()) {
+                target.append("//").append(chars, r.authorityStart, r.pathStart);
+            }
+            appendWithoutDotSegments(target, chars, r.pathStart, r.pathEnd);
+            appendQueryAndFragment(target, chars, r);
+            return target.toString();
+        }
+
+        target.append(scheme).append(':');
+        if (r.hasAuthority()) {
+            target.append("//").append(chars, r.authorityStart, r.pathStart);
+            appendWithoutDotSegments(target, chars, r.pathStart, r.pathEnd);
+            appendQueryAndFragment(target, chars, r);
+            return target.toString();
+        }
+
+        if (authority != null) {
+            target.append("//").append(authority);
+        }
+        if (r.pathStart == r.pathEnd) {
+            target.append(path);
+            if (r.hasQuery()) {
+                target.append(chars, r.pathEnd, r.queryEnd);
+            } else if (query != null) {
+                target.append('?').append(query);
+            }
+        } else {
+            if (chars.charAt(r.pathStart) == '/') {
+                appendWithoutDotSegments(target, chars, r.pathStart, r.pathEnd);
+            } else {
+                StringBuilder merged = new StringBuilder(path.length() + r.pathEnd - r.pathStart + 1);
+                if (authority != null && path.isEmpty()) {
+                    merged.append('/');
+                } else {
+                    merged.append(path, 0, path.lastIndexOf('/') + 1);
+                }
+                merged.append(chars, r.pathStart, r.pathEnd);
+                appendWithoutDotSegments(target, merged, 0, merged.length());
+            }
+            if (r.hasQuery()) {
+                target.append(chars, r.pathEnd, r.queryEnd);
+            }
+        }
+        if (r.queryEnd < end) {
+            target.append(chars, r.queryEnd, end);
+        }
+        return target.toString();
+    }
+
+    /**
+     * Returns the path of the given reference, or null if the reference has a
+     * scheme but is not hierarchical, such as a {@code mailto:} link.
+     *
+     * @param reference The reference to find the path of.
+     * @return The reference's path, which may be empty.
+     */
+    @Nullable
+    public static String pathOf(@NotNull String reference) {
+        Reference r = new Reference(reference, 0, reference.length());
+        if (r.schemeEnd != -1 && !r.hasAuthority() && (r.pathStart == r.pathEnd || reference.charAt(r.pathStart) != '/')) {
+            return null;
+        }
+        return reference.substring(r.pathStart, r.pathEnd);
+    }
+
+    private static void appendQueryAndFragment(@NotNull StringBuilder target, @NotNull CharSequence chars,
+                                               @NotNull Reference r) {
+        target.append(chars, r.pathEnd, r.end);
+    }
+
+    private static void appendWithoutDotSegments(@NotNull StringBuilder target, @NotNull CharSequence chars,
+                                                 int start, int end) {
+        if (containsDotSegment(chars, start, end)) {
+            target.append(URLCanonicalizer.removeDotSegments(chars.subSequence(start, end).toString()));
+        } else {
+            target.append(chars, start, end);
+        }
+    }
+
+    private static boolean containsDotSegment(@NotNull CharSequence chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (chars.charAt(i) == '.' && (i == start || chars.charAt(i - 1) == '/')) {
+                int next = i + 1 < end && chars.charAt(i + 1) == '.' ? i + 2 : i + 1;
+                if (next == end || chars.charAt(next) == '/') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The positions of the components of a URI reference within its
+     * characters, as split by the regular expression in RFC 3986 appendix B.
+     */
+    private static final class Reference {
+
+        private final int end;
+        private final int schemeEnd;
+        private final int authorityStart;
+        private final int pathStart;
+        private final int pathEnd;
+        private final int queryEnd;
+
+        private Reference(@NotNull CharSequence chars, int start, int end) {
+            this.end = end;
+            this.schemeEnd = findSchemeEnd(chars, start, end);
+
+            int i = schemeEnd == -1 ? start : schemeEnd + 1;
+            if (i + 1 < end && chars.charAt(i) == '/' && chars.charAt(i + 1) == '/') {
+                authorityStart = i + 2;
+                i = authorityStart;
+                while (i < end && "/?#".indexOf(chars.charAt(i)) == -1) {
+                    i++;
+                }
+            } else {
+                authorityStart = -1;
+            }
+
+            pathStart = i;
+            while (i < end && chars.charAt(i) != '?' && chars.charAt(i) != '#') {
+                i++;
+            }
+            pathEnd = i;
+            while (i < end && chars.charAt(i) != '#') {
+                i++;
+            }
+            queryEnd = i;
+        }
+
+        private boolean hasAuthority() {
+            return authorityStart != -1;
+        }
+
+        private boolean hasQuery() {
+            return queryEnd > pathEnd;
+        }
+
+        private static int findSchemeEnd(@NotNull CharSequence chars, int start, int end) {
+            if (start == end || !isAlpha(chars.charAt(start))) {
+                return -1;
+            }
+            for (int i = start + 1; i < end; i++) {
+                char c = chars.charAt(i);
+                if (c == ':') {
+                    return i;
+                }
+                if (!isAlpha(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean isAlpha(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+    }
+}
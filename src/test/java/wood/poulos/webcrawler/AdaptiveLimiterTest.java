@@ -0,0 +1,200 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import wood.poulos.webcrawler.util.Fetcher;
+import wood.poulos.webcrawler.util.HttpStatusException;
+import wood.poulos.webcrawler.util.URLCreator;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveLimiterTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AdaptiveLimiter limiter = new AdaptiveLimiter("test", 2, 10);
+
+    @Test
+    void testUnseenHostHasInitialLimit() {
+        assertEquals(2, limiter.getLimit("example.com"));
+        assertTrue(limiter.getLimits().isEmpty());
+    }
+
+    @Test
+    void testLimitGrowsToMaximumWhileLatencyIsFlat() {
+        for (int i = 0; i < 100; i++) {
+            limiter.recordSuccess("Example.com", 50 * MILLISECOND);
+        }
+        assertEquals(10, limiter.getLimit("example.com"));
+        assertEquals(2, limiter.getLimit("other.example.com"));
+    }
+
+    @Test
+    void testLimitStopsGrowingWhenLatencyRises() {
+        for (int i = 0; i < 20; i++) {
+            limiter.recordSuccess("example.com", 50 * MILLISECOND);
+        }
+        int limit = limiter.getLimit("example.com");
+        for (int i = 0; i < 5; i++) {
+            limiter.recordSuccess("example.com", 1000 * MILLISECOND);
+        }
+        assertTrue(limiter.getLimit("example.com") <= limit + 1);
+        int slowLimit = limiter.getLimit("example.com");
+        for (int i = 0; i < 5; i++) {
+            limiter.recordSuccess("example.com", 1000 * MILLISECOND);
+        }
+        assertEquals(slowLimit, limiter.getLimit("example.com"));
+    }
+
+    @Test
+    void testOverloadHalvesLimitOncePerRound() {
+        for (int i = 0; i < 100; i++) {
+            limiter.recordSuccess("example.com", 1000 * MILLISECOND);
+        }
+        assertEquals(10, limiter.getLimit("example.com"));
+        IOException overloaded = new HttpStatusException(503, URLCreator.create("http://example.com/"));
+        limiter.recordFailure("example.com", overloaded);
+        limiter.recordFailure("example.com", overloaded);
+        assertEquals(5, limiter.getLimit("example.com"));
+    }
+
+    @Test
+    void testLimitNeverDropsBelowOne() {
+        for (int i = 0; i < 10; i++) {
+            limiter.recordFailure("example.com", new SocketTimeoutException());
+        }
+        assertEquals(1, limiter.getLimit("example.com"));
+    }
+
+    @Test
+    void testOtherFailuresLeaveLimitAlone() {
+        limiter.recordFailure("example.com", new FileNotFoundException());
+        limiter.recordFailure("example.com", new HttpStatusException(403, URLCreator.create("http://example.com/")));
+        assertEquals(2, limiter.getLimit("example.com"));
+    }
+
+    @Test
+    void testIsOverload() {
+        assertTrue(AdaptiveLimiter.isOverload(new SocketTimeoutException()));
+        assertTrue(AdaptiveLimiter.isOverload(new HttpStatusException(429, URLCreator.create("http://a.test/"))));
+        assertTrue(AdaptiveLimiter.isOverload(new HttpStatusException(500, URLCreator.create("http://a.test/"))));
+        assertTrue(AdaptiveLimiter.isOverload(new HttpStatusException(503, URLCreator.create("http://a.test/"))));
+        assertFalse(AdaptiveLimiter.isOverload(new HttpStatusException(403, URLCreator.create("http://a.test/"))));
+        assertFalse(AdaptiveLimiter.isOverload(new FileNotFoundException()));
+        assertFalse(AdaptiveLimiter.isOverload(new IOException()));
+    }
+
+    @Test
+    void testGetLimitsIsOrderedByHost() {
+        limiter.recordSuccess("b.test", MILLISECOND);
+        limiter.recordSuccess("a.test", MILLISECOND);
+        assertEquals(Arrays.asList("a.test", "b.test"), Arrays.asList(limiter.getLimits().keySet().toArray()));
+        assertEquals(2, limiter.getLimits().get("a.test").intValue());
+    }
+
+    @Test
+    void testInvalidLimitsThrowIAE() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimiter("test", 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimiter("test", 11, 10));
+    }
+
+    @Test
+    void testRecordLatencyRecordsAnsweredFetches() throws IOException {
+        Fetcher answering = limiter.recordLatency(url -> {
+            if (url.getPath().equals("/overloaded")) {
+                throw new HttpStatusException(503, url);
+            }
+            return null;
+        });
+        for (int i = 0; i < 100; i++) {
+            answering.fetch(URLCreator.create("http://example.com/"));
+        }
+        assertEquals(10, limiter.getLimit("example.com"));
+
+        assertThrows(HttpStatusException.class,
+                () -> answering.fetch(URLCreator.create("http://other.example.com/overloaded")));
+        assertTrue(limiter.getLimits().keySet().contains("example.com"));
+        assertFalse(limiter.getLimits().keySet().contains("other.example.com"));
+    }
+
+    @Test
+    void testRecordLatencyRecordsFetchesAnsweredAsynchronously() throws Exception {
+        Fetcher answering = limiter.recordLatency(new Fetcher() {
+            @NotNull
+            @Override
+            public Response fetch(@NotNull URL url) {
+                throw new UnsupportedOperationException();
+            }
+
+            @NotNull
+            @Override
+            public CompletableFuture<Void> fetchAsync(@NotNull URL url, @NotNull BodyHandler handler) {
+                if (url.getPath().equals("/overloaded")) {
+                    CompletableFuture<Void> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(new HttpStatusException(503, url));
+                    return failed;
+                }
+                try {
+                    handler.start(null);
+                    handler.finish();
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+        });
+        Fetcher.BodyHandler ignoring = new Fetcher.BodyHandler() {
+            @Override
+            public void start(String contentType) {
+            }
+
+            @Override
+            public void handle(@NotNull ByteBuffer chunk) {
+            }
+
+            @Override
+            public void finish() {
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            answering.fetchAsync(URLCreator.create("http://example.com/"), ignoring).get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(10, limiter.getLimit("example.com"));
+
+        assertTrue(answering.fetchAsync(URLCreator.create("http://other.example.com/overloaded"), ignoring)
+                .isCompletedExceptionally());
+        assertFalse(limiter.getLimits().keySet().contains("other.example.com"));
+    }
+}
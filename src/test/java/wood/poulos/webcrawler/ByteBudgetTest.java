@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import wood.poulos.webcrawler.util.Fetcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteBudgetTest {
+
+    private final AtomicInteger exhaustions = new AtomicInteger();
+    private final Fetcher fetcher = url -> response(new byte[100]);
+
+    @Test
+    void testCountsBytesReadFromBodies() throws Exception {
+        ByteBudget budget = new ByteBudget("test", 1000, exhaustions::incrementAndGet);
+        Fetcher limited = budget.limit(fetcher);
+        try (Fetcher.Response response = limited.fetch(new URL("http://example.com/a"))) {
+            assertEquals(0, budget.getUsedBytes());
+            assertEquals(100, IOUtils.toByteArray(response.getBody()).length);
+        }
+        try (Fetcher.Response response = limited.fetch(new URL("http://example.com/b"))) {
+            assertEquals(40, response.getBody().skip(40));
+        }
+        assertEquals(140, budget.getUsedBytes());
+        assertFalse(budget.isExhausted());
+        assertEquals(0, exhaustions.get());
+    }
+
+    @Test
+    void testFetchesFailOnceUsedUpButBodiesInProgressAreReadToTheEnd() throws Exception {
+        ByteBudget budget = new ByteBudget("test", 150, exhaustions::incrementAndGet);
+        Fetcher limited = budget.limit(fetcher);
+        Fetcher.Response first = limited.fetch(new URL("http://example.com/a"));
+        Fetcher.Response second = limited.fetch(new URL("http://example.com/b"));
+        IOUtils.toByteArray(first.getBody());
+        assertFalse(budget.isExhausted());
+        assertEquals(100, IOUtils.toByteArray(second.getBody()).length);
+        assertTrue(budget.isExhausted());
+        assertEquals(200, budget.getUsedBytes());
+        assertEquals(1, exhaustions.get());
+        assertThrows(BudgetExhaustedException.class, () -> limited.fetch(new URL("http://example.com/c")));
+    }
+
+    @Test
+    void testConcurrentReadersUseUpBudgetExactlyOnce() throws Exception {
+        ByteBudget budget = new ByteBudget("test", 2000, exhaustions::incrementAndGet);
+        Fetcher limited = budget.limit(fetcher);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> reads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                reads.add(executor.submit(() -> {
+                    while (true) {
+                        try (Fetcher.Response response = limited.fetch(new URL("http://example.com/"))) {
+                            InputStream body = response.getBody();
+                            while (body.read() != -1) {
+                                // Count the body a byte at a time so that readers overlap.
+                            }
+                        } catch (BudgetExhaustedException e) {
+                            return null;
+                        }
+                    }
+                }));
+            }
+            for (Future<?> read : reads) {
+                read.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, exhaustions.get());
+        assertTrue(budget.getUsedBytes() >= 2000);
+        assertTrue(budget.getUsedBytes() < 2000 + 8 * 100);
+    }
+
+    @Test
+    void testCountsBytesHandedToBodyHandlers() throws Exception {
+        ByteBudget budget = new ByteBudget("test", 150, exhaustions::incrementAndGet);
+        Fetcher limited = budget.limit(fetcher);
+        AtomicInteger handled = new AtomicInteger();
+        Fetcher.BodyHandler handler = new Fetcher.BodyHandler() {
+            @Override
+            public void start(String contentType) {
+            }
+
+            @Override
+            public void handle(@NotNull ByteBuffer chunk) {
+                handled.addAndGet(chunk.remaining());
+            }
+
+            @Override
+            public void finish() {
+            }
+        };
+        limited.fetchAsync(new URL("http://example.com/a"), handler).get(10, TimeUnit.SECONDS);
+        assertEquals(100, budget.getUsedBytes());
+        assertFalse(budget.isExhausted());
+        limited.fetchAsync(new URL("http://example.com/b"), handler).get(10, TimeUnit.SECONDS);
+        assertEquals(200, handled.get());
+        assertEquals(200, budget.getUsedBytes());
+        assertEquals(1, exhaustions.get());
+
+        CompletableFuture<Void> refused = limited.fetchAsync(new URL("http://example.com/c"), handler);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> refused.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof BudgetExhaustedException);
+        assertEquals(200, handled.get());
+    }
+
+    @Test
+    void testEmptyBudgetThrowsIAE() {
+        assertThrows(IllegalArgumentException.class, () -> new ByteBudget("test", 0, () -> { }));
+    }
+
+    @NotNull
+    private static Fetcher.Response response(@NotNull byte[] content) {
+        InputStream body = new ByteArrayInputStream(content);
+        return new Fetcher.Response() {
+            @Override
+            public String getContentType() {
+                return null;
+            }
+
+            @NotNull
+            @Override
+            public InputStream getBody() {
+                return body;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
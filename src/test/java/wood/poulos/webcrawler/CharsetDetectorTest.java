@@ -0,0 +1,139 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CharsetDetectorTest {
+
+    private static final Charset LATIN_1 = StandardCharsets.ISO_8859_1;
+
+    @NotNull
+    private static Charset detect(@NotNull byte[] page, @Nullable String contentType) throws IOException {
+        return CharsetDetector.detect(page, contentType, new HTMLTagTokenizer(), StandardCharsets.US_ASCII);
+    }
+
+    @NotNull
+    private static byte[] readAll(@NotNull InputStream input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void testDetectUsesContentTypeCharset() throws Exception {
+        byte[] page = "<meta charset=utf-8>".getBytes(LATIN_1);
+        assertEquals(LATIN_1, detect(page, "text/html; charset=ISO-8859-1"));
+        assertEquals(LATIN_1, detect(page, "text/html;Charset=\"iso-8859-1\""));
+    }
+
+    @Test
+    void testDetectUsesMetaTagsWithoutContentTypeCharset() throws Exception {
+        assertEquals(StandardCharsets.UTF_8, detect("<html><meta charset='UTF-8'>".getBytes(LATIN_1), "text/html"));
+        assertEquals(LATIN_1, detect(("<meta http-equiv=\"Content-Type\" content=\"text/html; charset=iso-8859-1\">")
+                .getBytes(LATIN_1), null));
+    }
+
+    @Test
+    void testDetectUsesByteOrderMarkFirst() throws Exception {
+        byte[] page = "\uFEFF<meta charset=iso-8859-1>".getBytes(StandardCharsets.UTF_16LE);
+        assertEquals(StandardCharsets.UTF_16, detect(page, "text/html; charset=iso-8859-1"));
+        page = "\uFEFF<p>".getBytes(StandardCharsets.UTF_8);
+        assertEquals(StandardCharsets.UTF_8, detect(page, "text/html; charset=iso-8859-1"));
+    }
+
+    @Test
+    void testDetectFallsBackWithoutDeclaration() throws Exception {
+        assertEquals(StandardCharsets.US_ASCII, detect("<p>No charset</p>".getBytes(LATIN_1), "text/html"));
+        assertEquals(StandardCharsets.US_ASCII, detect(new byte[0], null));
+        assertEquals(StandardCharsets.US_ASCII, detect("<meta charset=no-such-charset>".getBytes(LATIN_1),
+                "text/html; charset=\"\""));
+    }
+
+    @Test
+    void testDetectIgnoresMetaTagsPastPrescan() throws Exception {
+        char[] padding = new char[CharsetDetector.PRESCAN_LENGTH];
+        Arrays.fill(padding, ' ');
+        byte[] page = (new String(padding) + "<meta charset=iso-8859-1>").getBytes(LATIN_1);
+        assertEquals(StandardCharsets.US_ASCII, detect(page, null));
+    }
+
+    @Test
+    void testDetectTreatsMetaUTF16AsUTF8() throws Exception {
+        assertEquals(StandardCharsets.UTF_8, detect("<meta charset=utf-16>".getBytes(LATIN_1), null));
+    }
+
+    @Test
+    void testIsAsciiCompatible() {
+        assertTrue(CharsetDetector.isAsciiCompatible(StandardCharsets.UTF_8));
+        assertTrue(CharsetDetector.isAsciiCompatible(LATIN_1));
+        assertTrue(CharsetDetector.isAsciiCompatible(Charset.forName("Shift_JIS")));
+        assertFalse(CharsetDetector.isAsciiCompatible(StandardCharsets.UTF_16));
+        assertFalse(CharsetDetector.isAsciiCompatible(StandardCharsets.UTF_16LE));
+    }
+
+    @Test
+    void testTokenizeDecodesValuesInPageCharset() throws Exception {
+        String html = "<a href=\"\u03b1\u03b2.html\"><img src='\u65e5\u672c.png'>";
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, Charset.forName("Shift_JIS"),
+                StandardCharsets.UTF_16LE, StandardCharsets.UTF_16BE}) {
+            InputStream input = CharsetDetector.asciiCompatible(new ByteArrayInputStream(html.getBytes(charset)), charset);
+            Charset tokenCharset = CharsetDetector.tokenCharset(charset);
+            List<String> values = new ArrayList<>();
+            new HTMLTagTokenizer(3).tokenize(input,
+                    (type, bytes, start, end) -> values.add(new String(bytes, start, end - start, tokenCharset)));
+            assertEquals(Arrays.asList("\u03b1\u03b2.html", "\u65e5\u672c.png"), values, charset.name());
+        }
+    }
+
+    @Test
+    void testTranscodingInputStreamEncodesReader() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("line ").append(i).append(" \u00e9\u65e5\uD83D\uDE00\n");
+        }
+        try (InputStream input = new TranscodingInputStream(new StringReader(text.toString()), StandardCharsets.UTF_8)) {
+            assertArrayEquals(text.toString().getBytes(StandardCharsets.UTF_8), readAll(input));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wood.poulos.webcrawler.WebPage.URLParser.URLType.FILE;
+import static wood.poulos.webcrawler.WebPage.URLParser.URLType.IMAGE;
+import static wood.poulos.webcrawler.WebPage.URLParser.URLType.PAGE;
+
+class ContentSnifferTest {
+
+    private static final byte[] HTML = "<!DOCTYPE html><html><body>Hi</body></html>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PDF = "%PDF-1.4\n%\u00e2\u00e3".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13};
+    private static final byte[] BINARY = {'d', 'a', 't', 'a', 0, 0, 0, 1, 2, 3};
+
+    @Test
+    void testClassifyTrustsSpecificContentType() {
+        assertEquals(PAGE, ContentSniffer.classify("text/html; charset=UTF-8", HTML));
+        assertEquals(PAGE, ContentSniffer.classify("application/xhtml+xml", HTML));
+        assertEquals(IMAGE, ContentSniffer.classify("image/svg+xml", HTML));
+        assertEquals(FILE, ContentSniffer.classify("application/pdf", HTML));
+        assertEquals(FILE, ContentSniffer.classify("video/mp4", HTML));
+    }
+
+    @Test
+    void testClassifyPrefersFileSignatureOverContentType() {
+        assertEquals(FILE, ContentSniffer.classify("text/html", PDF));
+        assertEquals(IMAGE, ContentSniffer.classify("text/html", PNG));
+        assertEquals(FILE, ContentSniffer.classify(null, new byte[]{'P', 'K', 3, 4, 20, 0}));
+        assertEquals(IMAGE, ContentSniffer.classify(null, "GIF89a".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(IMAGE, ContentSniffer.classify(null, "RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void testClassifySniffsBodyWithGenericContentType() {
+        assertEquals(PAGE, ContentSniffer.classify(null, HTML));
+        assertEquals(PAGE, ContentSniffer.classify("application/octet-stream", HTML));
+        assertEquals(FILE, ContentSniffer.classify("application/octet-stream", BINARY));
+        assertEquals(FILE, ContentSniffer.classify(null, BINARY));
+        assertEquals(PAGE, ContentSniffer.classify(null, new byte[0]));
+        assertEquals(PAGE, ContentSniffer.classify(null, "\uFEFF<html>".getBytes(StandardCharsets.UTF_16LE)));
+    }
+
+    @Test
+    void testClassifySniffsTextualContentTypesForMarkup() {
+        assertEquals(PAGE, ContentSniffer.classify("text/plain", HTML));
+        assertEquals(PAGE, ContentSniffer.classify("application/xml",
+                "\uFEFF\n  <HTML lang=\"en\">".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(PAGE, ContentSniffer.classify("text/x-unknown", "<!-- generated -->".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(FILE, ContentSniffer.classify("text/plain", "Just some notes.".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(FILE, ContentSniffer.classify("text/plain", "<abbr>".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(FILE, ContentSniffer.classify("application/json", "{}".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(FILE, ContentSniffer.classify("application/rss+xml",
+                "<?xml version=\"1.0\"?><rss>".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void testClassifyDoesNotMistakeTextForSignatures() {
+        assertEquals(PAGE, ContentSniffer.classify("text/html", "GIF8 is not an image".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(PAGE, ContentSniffer.classify("text/html", "MZ and ID3 are words".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void testMediaTypeOf() {
+        assertEquals("text/html", ContentSniffer.mediaTypeOf(" Text/HTML ; charset=utf-8"));
+        assertEquals("", ContentSniffer.mediaTypeOf(null));
+    }
+
+    @Test
+    void testPeekResetsInput() throws Exception {
+        BufferedInputStream input = new BufferedInputStream(new ByteArrayInputStream(HTML), 4);
+        assertArrayEquals(Arrays.copyOf(HTML, 10), ContentSniffer.peek(input, 10));
+        assertArrayEquals(HTML, ContentSniffer.peek(input, 1000));
+        assertEquals('<', input.read());
+    }
+}
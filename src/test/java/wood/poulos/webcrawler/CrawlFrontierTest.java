@@ -0,0 +1,146 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlFrontierTest {
+
+    private CrawlFrontier frontier;
+
+    @AfterEach
+    void tearDown() {
+        if (frontier != null) {
+            frontier.close();
+        }
+    }
+
+    @Test
+    void testPollReturnsShallowestPagesFirstInOrderAdded() {
+        frontier = new CrawlFrontier(100);
+        frontier.add("http://test.xyz/b", 2);
+        frontier.add("http://test.xyz/a", 1);
+        frontier.add("http://test.xyz/c", 2);
+        frontier.add("http://test.xyz/d", 1);
+        assertEquals(4, frontier.size());
+        assertEntry("http://test.xyz/a", 1, frontier.poll());
+        assertEntry("http://test.xyz/d", 1, frontier.poll());
+        assertEntry("http://test.xyz/b", 2, frontier.poll());
+        assertEntry("http://test.xyz/c", 2, frontier.poll());
+        assertNull(frontier.poll());
+        assertEquals(0, frontier.size());
+    }
+
+    @Test
+    void testSpilledPagesKeepTheirOrder() {
+        frontier = new CrawlFrontier(10, 256);
+        int pages = 10_000;
+        for (int i = 0; i < pages; i++) {
+            frontier.add("http://test.xyz/" + i, i % 2);
+        }
+        assertEquals(pages, frontier.size());
+        assertEquals(pages - 10, frontier.getSpilledSize());
+
+        for (int depth = 0; depth < 2; depth++) {
+            for (int i = depth; i < pages; i += 2) {
+                assertEntry("http://test.xyz/" + i, depth, frontier.poll());
+            }
+        }
+        assertNull(frontier.poll());
+        assertEquals(0, frontier.getSpilledSize());
+    }
+
+    @Test
+    void testPagesAddedWhileDrainingSpillGoAfterSpilledPages() {
+        frontier = new CrawlFrontier(2, 64);
+        for (int i = 0; i < 5; i++) {
+            frontier.add("http://test.xyz/" + i, 0);
+        }
+        assertEntry("http://test.xyz/0", 0, frontier.poll());
+        frontier.add("http://test.xyz/5", 0);
+        for (int i = 1; i <= 5; i++) {
+            assertEntry("http://test.xyz/" + i, 0, frontier.poll());
+        }
+        assertNull(frontier.poll());
+    }
+
+    @Test
+    void testRecordsLargerThanSegmentAreSpilled() {
+        frontier = new CrawlFrontier(1, 16);
+        StringBuilder longURL = new StringBuilder("http://test.xyz/");
+        for (int i = 0; i < 100; i++) {
+            longURL.append("long");
+        }
+        frontier.add("http://test.xyz/", 0);
+        frontier.add(longURL.toString(), 0);
+        assertEquals(1, frontier.getSpilledSize());
+        assertEntry("http://test.xyz/", 0, frontier.poll());
+        assertEntry(longURL.toString(), 0, frontier.poll());
+    }
+
+    @Test
+    void testDrainedSegmentsAreDeleted() throws IOException {
+        frontier = new CrawlFrontier(2, 64);
+        for (int i = 0; i < 50; i++) {
+            frontier.add("http://test.xyz/" + i, 0);
+        }
+        Path spillDirectory = frontier.getSpillDirectory();
+        assertNotNull(spillDirectory);
+        for (int i = 0; i < 50; i++) {
+            assertEntry("http://test.xyz/" + i, 0, frontier.poll());
+        }
+        try (Stream<Path> segments = Files.list(spillDirectory)) {
+            assertEquals(0, segments.count());
+        }
+
+        frontier.close();
+        assertFalse(Files.exists(spillDirectory));
+    }
+
+    @Test
+    void testCloseDiscardsWaitingPages() {
+        frontier = new CrawlFrontier(1, 64);
+        frontier.add("http://test.xyz/a", 0);
+        frontier.add("http://test.xyz/b", 0);
+        frontier.close();
+        assertEquals(0, frontier.size());
+        assertNull(frontier.poll());
+        frontier.add("http://test.xyz/c", 0);
+        assertNull(frontier.poll());
+    }
+
+    private static void assertEntry(String url, int depth, CrawlFrontier.Entry entry) {
+        assertNotNull(entry);
+        assertEquals(url, entry.getURL());
+        assertEquals(depth, entry.getDepth());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import wood.poulos.webcrawler.util.URLCreator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlJournalTest {
+
+    private static final URI SEED = URI.create("http://test.xyz/");
+    private static final long CHECKPOINT_NANOS = 1_000_000L;
+
+    private Path tempDir;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tempDir = Files.createTempDirectory(Paths.get("."), "tmp");
+        file = tempDir.resolve(CrawlJournal.FILE_NAME);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    @Test
+    void testNewJournalHasNoCheckpoint() throws IOException {
+        CrawlJournal journal = CrawlJournal.open(file, SEED, 3, CHECKPOINT_NANOS, false);
+        journal.close();
+        assertNull(journal.getCheckpoint());
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    void testResumeRestoresRecordedProgress() throws IOException {
+        CrawlJournal journal = CrawlJournal.open(file, SEED, 3, CHECKPOINT_NANOS, false);
+        journal.recordClaimed("http://test.xyz/", 0);
+        journal.recordClaimed("http://test.xyz/a.html", 2);
+        journal.recordClaimed("http://test.xyz/b.html", 1);
+        journal.recordClaimed("http://test.xyz/a.html", 1);
+        journal.recordStaged(WebElements.createWebFile(URLCreator.create("http://test.xyz/committed.txt")));
+        journal.recordCommitted();
+        journal.recordStaged(WebElements.createWebImage(URLCreator.create("http://test.xyz/image.png")));
+        journal.recordStaged(WebElements.createWebFile(URLCreator.create("http://test.xyz/file.txt")));
+        journal.recordCrawled("http://test.xyz/", 0);
+        journal.recordCrawled("http://test.xyz/a.html", 2);
+        journal.close();
+
+        CrawlJournal resumed = CrawlJournal.open(file, SEED, 3, CHECKPOINT_NANOS, true);
+        resumed.close();
+        CrawlJournal.Checkpoint checkpoint = resumed.getCheckpoint();
+        assertNotNull(checkpoint);
+
+        Map<String, Integer> claimed = checkpoint.getClaimedPages();
+        assertEquals(3, claimed.size());
+        assertEquals(Integer.valueOf(1), claimed.get("http://test.xyz/a.html"));
+
+        // a.html was only crawled at a deeper depth than it was last claimed at.
+        Map<String, Integer> frontier = checkpoint.getFrontier();
+        assertEquals(2, frontier.size());
+        assertEquals(Integer.valueOf(1), frontier.get("http://test.xyz/a.html"));
+        assertEquals(Integer.valueOf(1), frontier.get("http://test.xyz/b.html"));
+        assertTrue(checkpoint.isCrawled("http://test.xyz/"));
+        assertFalse(checkpoint.isCrawled("http://test.xyz/b.html"));
+
+        Collection<WebElement> staged = new ArrayList<>(checkpoint.getStagedElements());
+        assertEquals(2, staged.size());
+        assertTrue(staged.contains(WebElements.createWebImage(URLCreator.create("http://test.xyz/image.png"))));
+        assertTrue(staged.contains(WebElements.createWebFile(URLCreator.create("http://test.xyz/file.txt"))));
+        for (WebElement element : staged) {
+            assertEquals(element.getURL().getPath().endsWith(".png"), element instanceof WebImage);
+        }
+    }
+
+    @Test
+    void testResumeCompactsJournal() throws IOException {
+        CrawlJournal journal = CrawlJournal.open(file, SEED, 3, CHECKPOINT_NANOS, false);
+        for (int i = 0; i < 100; i++) {
+            journal.recordStaged(WebElements.createWebFile(URLCreator.create("http://test.xyz/" + i + ".txt")));
+            journal.recordCommitted();
+        }
+        journal.close();
+        CrawlJournal.open(file, SEED, 3, CHECKPOINT_NANOS, true).close();
+        assertEquals(1, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void testResumeIgnoresPartiallyWrittenRecord() throws IOException {
+        CrawlJournal journal = CrawlJournal.open(file, SEED, 3, CHECKPOINT_NANOS, false);
+        journal.recordClaimed("http://test.xyz/a.html", 1);
+        journal.close();
+        Files.write(file, "C\t1\thttp://test.xyz/b.ht".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        CrawlJournal resumed = CrawlJournal.open(file, SEED, 3, CHECKPOINT_NANOS, true);
+        resumed.recordClaimed("http://test.xyz/c.html", 1);
+        resumed.close();
+        assertEquals(1, resumed.getCheckpoint().getClaimedPages().size());
+
+        CrawlJournal resumedAgain = CrawlJournal.open(file, SEED, 3, CHECKPOINT_NANOS, true);
+        resumedAgain.close();
+        Map<String, Integer> claimed = resumedAgain.getCheckpoint().getClaimedPages();
+        assertEquals(2, claimed.size());
+        assertTrue(claimed.containsKey("http://test.xyz/c.html"));
+    }
+
+    @Test
+    void testResumeWithoutJournalThrowsIAE() {
+        assertThrows(IllegalArgumentException.class, () -> CrawlJournal.open(file, SEED, 3, CHECKPOINT_NANOS, true));
+    }
+
+    @Test
+    void testResumeDifferentCrawlThrowsIAE() throws IOException {
+        CrawlJournal.open(file, SEED, 3, CHECKPOINT_NANOS, false).close();
+        assertThrows(IllegalArgumentException.class,
+                () -> CrawlJournal.open(file, URI.create("http://other.xyz/"), 3, CHECKPOINT_NANOS, true));
+        assertThrows(IllegalArgumentException.class, () -> CrawlJournal.open(file, SEED, 2, CHECKPOINT_NANOS, true));
+    }
+
+    @Test
+    void testDeleteRemovesJournal() throws IOException {
+        CrawlJournal journal = CrawlJournal.open(file, SEED, 3, CHECKPOINT_NANOS, false);
+        journal.recordClaimed("http://test.xyz/", 0);
+        journal.delete();
+        assertFalse(Files.exists(file));
+    }
+}
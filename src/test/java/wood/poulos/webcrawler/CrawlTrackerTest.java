@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlTrackerTest {
+
+    private final CrawlTracker tracker = new CrawlTracker();
+
+    @Test
+    void testAwaitCompletionWithNoTasksReturnsImmediately() throws Exception {
+        assertTrue(tracker.awaitCompletion(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testTrackedTasksAreOutstandingUntilRunOrDiscarded() {
+        CrawlTracker.TrackedTask first = tracker.track(() -> { });
+        CrawlTracker.TrackedTask second = tracker.track(() -> { });
+        assertEquals(2, tracker.getOutstandingTasks());
+        first.run();
+        assertEquals(1, tracker.getOutstandingTasks());
+        second.discard();
+        assertEquals(0, tracker.getOutstandingTasks());
+        second.run();
+        assertEquals(0, tracker.getOutstandingTasks());
+    }
+
+    @Test
+    void testReservedTasksAreOutstandingUntilTrackedAndFinished() {
+        AtomicInteger finishedTasks = new AtomicInteger();
+        CrawlTracker listeningTracker = new CrawlTracker(finishedTasks::incrementAndGet);
+        listeningTracker.reserve();
+        assertEquals(1, listeningTracker.getOutstandingTasks());
+        CrawlTracker.TrackedTask task = listeningTracker.trackReserved(() -> { });
+        assertEquals(1, listeningTracker.getOutstandingTasks());
+        task.run();
+        assertEquals(0, listeningTracker.getOutstandingTasks());
+        assertEquals(1, finishedTasks.get());
+    }
+
+    @Test
+    void testAwaitCompletionTimesOutWhileTasksOutstanding() throws Exception {
+        tracker.track(() -> { });
+        assertFalse(tracker.awaitCompletion(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testStopWaitingEndsAwaitCompletionWhileTasksOutstanding() throws Exception {
+        tracker.track(() -> { });
+        Thread stopper = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignore) {
+            }
+            tracker.stopWaiting();
+        });
+        stopper.start();
+        assertFalse(tracker.awaitCompletion(0, TimeUnit.SECONDS));
+        assertFalse(tracker.awaitCompletion(0, TimeUnit.SECONDS));
+        assertEquals(1, tracker.getOutstandingTasks());
+        stopper.join();
+    }
+
+    @Test
+    void testAwaitCompletionWaitsForTasksSubmittedByOtherTasks() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicInteger runs = new AtomicInteger();
+        executor.execute(tracker.track(() -> {
+            runs.incrementAndGet();
+            for (int i = 0; i < 100; i++) {
+                executor.execute(tracker.track(runs::incrementAndGet));
+            }
+        }));
+        assertTrue(tracker.awaitCompletion(0, TimeUnit.SECONDS));
+        assertEquals(101, runs.get());
+        executor.shutdown();
+    }
+
+    @Test
+    void testCancelStopsTasksAndGuardedActionsFromRunning() {
+        AtomicInteger runs = new AtomicInteger();
+        CrawlTracker.TrackedTask task = tracker.track(runs::incrementAndGet);
+        assertTrue(tracker.runUnlessCancelled(runs::incrementAndGet));
+        tracker.cancel();
+        assertTrue(tracker.isCancelled());
+        task.run();
+        assertFalse(tracker.runUnlessCancelled(runs::incrementAndGet));
+        assertEquals(1, runs.get());
+        assertEquals(0, tracker.getOutstandingTasks());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.junit.jupiter.api.Test;
+import wood.poulos.webcrawler.util.URLCanonicalizer;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlerSettingsTest {
+
+    @Test
+    void testFromPropertiesUsesDefaultsWhenUnset() {
+        CrawlerSettings settings = CrawlerSettings.fromProperties(new Properties());
+        assertEquals(CrawlerSettings.DEFAULT_THREADS, settings.getThreads());
+        assertEquals(CrawlerSettings.DEFAULT_QUEUE_CAPACITY, settings.getQueueCapacity());
+        assertEquals(CrawlerSettings.SaturationPolicy.CALLER_RUNS, settings.getSaturationPolicy());
+        assertEquals(CrawlerSettings.ExecutionMode.PLATFORM, settings.getExecutionMode());
+        assertEquals(CrawlerSettings.DEFAULT_MAX_CONNECTIONS, settings.getMaxConnections());
+        assertEquals(0, settings.getMaxCrawlSeconds());
+        assertFalse(settings.isStreamingDownloads());
+        assertEquals(CrawlerSettings.DEFAULT_DOWNLOAD_QUEUE_CAPACITY, settings.getDownloadQueueCapacity());
+        assertEquals(CrawlerSettings.DEFAULT_DOWNLOAD_THREADS, settings.getDownloadThreads());
+        assertEquals(CrawlerSettings.DEFAULT_DOWNLOADS_PER_HOST, settings.getDownloadsPerHost());
+        assertEquals(CrawlerSettings.DEFAULT_CHECKPOINT_SECONDS, settings.getCheckpointSeconds());
+        assertEquals(CrawlerSettings.DEFAULT_FRONTIER_MEMORY_CAPACITY, settings.getFrontierMemoryCapacity());
+        assertEquals(URLCanonicalizer.DEFAULT_STRIPPED_PARAMETERS, settings.getStrippedQueryParameters());
+        assertFalse(settings.isSortingQueryParameters());
+        assertFalse(settings.isSavingPages());
+        assertEquals(CrawlerSettings.DEFAULT_CONNECT_TIMEOUT_SECONDS, settings.getConnectTimeoutSeconds());
+        assertEquals(CrawlerSettings.DEFAULT_READ_TIMEOUT_SECONDS, settings.getReadTimeoutSeconds());
+        assertEquals(CrawlerSettings.DEFAULT_PAGES_PER_HOST, settings.getPagesPerHost());
+        assertEquals(0, settings.getHostDelayMillis());
+        assertEquals(0, settings.getMaxPages());
+        assertFalse(settings.isAdaptingHostLimits());
+        assertTrue(settings.isRespectingRobots());
+        assertFalse(settings.isSeedingFromSitemaps());
+        assertEquals(0, settings.getMaxPages());
+        assertEquals(0, settings.getMaxPageBytes());
+        assertEquals(0, settings.getMaxDownloadBytes());
+        assertEquals(CrawlerSettings.FetchMode.BLOCKING, settings.getFetchMode());
+    }
+
+    @Test
+    void testFromPropertiesReadsGivenValues() {
+        Properties properties = new Properties();
+        properties.setProperty(CrawlerSettings.THREADS_PROPERTY, "4");
+        properties.setProperty(CrawlerSettings.QUEUE_CAPACITY_PROPERTY, "100");
+        properties.setProperty(CrawlerSettings.SATURATION_POLICY_PROPERTY, "discard");
+        properties.setProperty(CrawlerSettings.EXECUTION_MODE_PROPERTY, "virtual");
+        properties.setProperty(CrawlerSettings.MAX_CONNECTIONS_PROPERTY, "5000");
+        properties.setProperty(CrawlerSettings.MAX_CRAWL_SECONDS_PROPERTY, "600");
+        properties.setProperty(CrawlerSettings.STREAM_DOWNLOADS_PROPERTY, "TRUE");
+        properties.setProperty(CrawlerSettings.DOWNLOAD_QUEUE_CAPACITY_PROPERTY, "50");
+        properties.setProperty(CrawlerSettings.DOWNLOAD_THREADS_PROPERTY, "3");
+        properties.setProperty(CrawlerSettings.DOWNLOADS_PER_HOST_PROPERTY, "2");
+        properties.setProperty(CrawlerSettings.CHECKPOINT_SECONDS_PROPERTY, "30");
+        properties.setProperty(CrawlerSettings.FRONTIER_MEMORY_CAPACITY_PROPERTY, "500");
+        properties.setProperty(CrawlerSettings.STRIPPED_QUERY_PARAMETERS_PROPERTY, " sid, ref_* ,");
+        properties.setProperty(CrawlerSettings.SORT_QUERY_PARAMETERS_PROPERTY, "true");
+        properties.setProperty(CrawlerSettings.SAVE_PAGES_PROPERTY, "true");
+        properties.setProperty(CrawlerSettings.CONNECT_TIMEOUT_SECONDS_PROPERTY, "3");
+        properties.setProperty(CrawlerSettings.READ_TIMEOUT_SECONDS_PROPERTY, "7");
+        properties.setProperty(CrawlerSettings.PAGES_PER_HOST_PROPERTY, "2");
+        properties.setProperty(CrawlerSettings.HOST_DELAY_MILLIS_PROPERTY, "250");
+        properties.setProperty(CrawlerSettings.ADAPTIVE_HOST_LIMITS_PROPERTY, "true");
+        properties.setProperty(CrawlerSettings.RESPECT_ROBOTS_PROPERTY, "false");
+        properties.setProperty(CrawlerSettings.SITEMAPS_PROPERTY, "true");
+        properties.setProperty(CrawlerSettings.MAX_PAGES_PROPERTY, "1000");
+        properties.setProperty(CrawlerSettings.MAX_PAGE_BYTES_PROPERTY, "500m");
+        properties.setProperty(CrawlerSettings.MAX_DOWNLOAD_BYTES_PROPERTY, "12345");
+        properties.setProperty(CrawlerSettings.FETCH_MODE_PROPERTY, "non-blocking");
+        CrawlerSettings settings = CrawlerSettings.fromProperties(properties);
+        assertEquals(4, settings.getThreads());
+        assertEquals(100, settings.getQueueCapacity());
+        assertEquals(CrawlerSettings.SaturationPolicy.DISCARD, settings.getSaturationPolicy());
+        assertEquals(CrawlerSettings.ExecutionMode.VIRTUAL, settings.getExecutionMode());
+        assertEquals(5000, settings.getMaxConnections());
+        assertEquals(600, settings.getMaxCrawlSeconds());
+        assertTrue(settings.isStreamingDownloads());
+        assertEquals(50, settings.getDownloadQueueCapacity());
+        assertEquals(3, settings.getDownloadThreads());
+        assertEquals(2, settings.getDownloadsPerHost());
+        assertEquals(30, settings.getCheckpointSeconds());
+        assertEquals(500, settings.getFrontierMemoryCapacity());
+        assertEquals(Arrays.asList("sid", "ref_*"), settings.getStrippedQueryParameters());
+        assertTrue(settings.isSortingQueryParameters());
+        assertTrue(settings.isSavingPages());
+        assertEquals(3, settings.getConnectTimeoutSeconds());
+        assertEquals(7, settings.getReadTimeoutSeconds());
+        assertEquals(2, settings.getPagesPerHost());
+        assertEquals(250, settings.getHostDelayMillis());
+        assertTrue(settings.isAdaptingHostLimits());
+        assertFalse(settings.isRespectingRobots());
+        assertTrue(settings.isSeedingFromSitemaps());
+        assertEquals(CrawlerSettings.FetchMode.NON_BLOCKING, settings.getFetchMode());
+        assertEquals(1000, settings.getMaxPages());
+        assertEquals(500L * 1024 * 1024, settings.getMaxPageBytes());
+        assertEquals(12345, settings.getMaxDownloadBytes());
+
+        properties.setProperty(CrawlerSettings.MAX_DOWNLOAD_BYTES_PROPERTY, "10 G");
+        assertEquals(10L * 1024 * 1024 * 1024, CrawlerSettings.fromProperties(properties).getMaxDownloadBytes());
+        properties.setProperty(CrawlerSettings.MAX_DOWNLOAD_BYTES_PROPERTY, "2K");
+        assertEquals(2048, CrawlerSettings.fromProperties(properties).getMaxDownloadBytes());
+
+        properties.setProperty(CrawlerSettings.STRIPPED_QUERY_PARAMETERS_PROPERTY, "");
+        assertTrue(CrawlerSettings.fromProperties(properties).getStrippedQueryParameters().isEmpty());
+
+        properties.setProperty(CrawlerSettings.SATURATION_POLICY_PROPERTY, "caller-runs");
+        assertEquals(CrawlerSettings.SaturationPolicy.CALLER_RUNS,
+                CrawlerSettings.fromProperties(properties).getSaturationPolicy());
+    }
+
+    @Test
+    void testFromPropertiesNonNaturalNumbersThrowIAE() {
+        Properties properties = new Properties();
+        properties.setProperty(CrawlerSettings.THREADS_PROPERTY, "0");
+        assertThrows(IllegalArgumentException.class, () -> CrawlerSettings.fromProperties(properties));
+        properties.setProperty(CrawlerSettings.THREADS_PROPERTY, "asdf");
+        assertThrows(IllegalArgumentException.class, () -> CrawlerSettings.fromProperties(properties));
+        properties.remove(CrawlerSettings.THREADS_PROPERTY);
+        properties.setProperty(CrawlerSettings.QUEUE_CAPACITY_PROPERTY, "-5");
+        assertThrows(IllegalArgumentException.class, () -> CrawlerSettings.fromProperties(properties));
+    }
+
+    @Test
+    void testFromPropertiesExplicitZeroSwitchesLimitsOff() {
+        Properties properties = new Properties();
+        properties.setProperty(CrawlerSettings.MAX_CRAWL_SECONDS_PROPERTY, "0");
+        properties.setProperty(CrawlerSettings.HOST_DELAY_MILLIS_PROPERTY, "0");
+        properties.setProperty(CrawlerSettings.MAX_PAGES_PROPERTY, "0");
+        CrawlerSettings settings = CrawlerSettings.fromProperties(properties);
+        assertEquals(0, settings.getMaxCrawlSeconds());
+        assertEquals(0, settings.getHostDelayMillis());
+
+        properties.setProperty(CrawlerSettings.MAX_CRAWL_SECONDS_PROPERTY, "-1");
+        assertThrows(IllegalArgumentException.class, () -> CrawlerSettings.fromProperties(properties));
+    }
+
+    @Test
+    void testFromPropertiesInvalidByteCountsThrowIAE() {
+        Properties properties = new Properties();
+        for (String invalid : new String[]{"0", "-1K", "lots", "5T", "K", "99999999999G"}) {
+            properties.setProperty(CrawlerSettings.MAX_PAGE_BYTES_PROPERTY, invalid);
+            assertThrows(IllegalArgumentException.class, () -> CrawlerSettings.fromProperties(properties));
+        }
+    }
+
+    @Test
+    void testFromPropertiesUnknownSaturationPolicyThrowsIAE() {
+        Properties properties = new Properties();
+        properties.setProperty(CrawlerSettings.SATURATION_POLICY_PROPERTY, "block");
+        assertThrows(IllegalArgumentException.class, () -> CrawlerSettings.fromProperties(properties));
+    }
+
+    @Test
+    void testFromPropertiesNonBooleanStreamDownloadsThrowsIAE() {
+        Properties properties = new Properties();
+        properties.setProperty(CrawlerSettings.STREAM_DOWNLOADS_PROPERTY, "yes");
+        assertThrows(IllegalArgumentException.class, () -> CrawlerSettings.fromProperties(properties));
+    }
+
+    @Test
+    void testFromPropertiesUnknownExecutionModeThrowsIAE() {
+        Properties properties = new Properties();
+        properties.setProperty(CrawlerSettings.EXECUTION_MODE_PROPERTY, "green");
+        assertThrows(IllegalArgumentException.class, () -> CrawlerSettings.fromProperties(properties));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.junit.jupiter.api.Test;
+import wood.poulos.webcrawler.util.Fetcher;
+import wood.poulos.webcrawler.util.HttpStatusException;
+import wood.poulos.webcrawler.util.URLCreator;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloaderTest {
+
+    private static final Fetcher EMPTY_RESPONSES = url -> new Fetcher.Response() {
+        @Override
+        public String getContentType() {
+            return null;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final ConcurrentMap<String, AtomicInteger> running = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+
+    @Test
+    void testDownloadReportsSuccessAndFailure() {
+        Downloader downloader = new Downloader(2, 2, EMPTY_RESPONSES);
+        Path path = Paths.get("unused");
+        DownloadResult success = downloader.download(new SlowElement(URLCreator.create("http://a.test/1"), null), path).join();
+        assertTrue(success.isSuccessful());
+        assertNull(success.getFailure());
+        assertEquals(path, success.getPath());
+
+        IOException failure = new FileNotFoundException("missing");
+        DownloadResult failed = downloader.download(new SlowElement(URLCreator.create("http://a.test/2"), failure), path).join();
+        assertFalse(failed.isSuccessful());
+        assertSame(failure, failed.getFailure());
+    }
+
+    @Test
+    void testDownloadNeverExceedsLimitPerHost() {
+        Downloader downloader = new Downloader(8, 2, EMPTY_RESPONSES);
+        List<CompletableFuture<DownloadResult>> downloads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            downloads.add(downloader.download(new SlowElement(URLCreator.create("http://a.test/" + i), null), Paths.get("a")));
+            downloads.add(downloader.download(new SlowElement(URLCreator.create("http://b.test/" + i), null), Paths.get("b")));
+        }
+        for (CompletableFuture<DownloadResult> download : downloads) {
+            assertTrue(download.join().isSuccessful());
+        }
+        assertEquals(2, maxRunning.get("a.test").get());
+        assertEquals(2, maxRunning.get("b.test").get());
+    }
+
+    @Test
+    void testAdaptiveDownloadsBackOffOverloadedHost() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("download", 4, 8);
+        Downloader downloader = new Downloader(8, 4, url -> {
+            if (url.getHost().equals("a.test")) {
+                throw new HttpStatusException(503, url);
+            }
+            return EMPTY_RESPONSES.fetch(url);
+        }, limiter);
+        List<CompletableFuture<DownloadResult>> downloads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            downloads.add(downloader.download(new SlowElement(URLCreator.create("http://a.test/" + i), null),
+                    Paths.get("a")));
+            downloads.add(downloader.download(new SlowElement(URLCreator.create("http://b.test/" + i), null),
+                    Paths.get("b")));
+        }
+        for (CompletableFuture<DownloadResult> download : downloads) {
+            download.join();
+        }
+        assertEquals(1, limiter.getLimit("a.test"));
+        assertTrue(limiter.getLimit("b.test") > 4);
+        assertEquals(limiter.getLimits(), downloader.getHostLimits());
+        assertTrue(maxRunning.get("b.test").get() <= 8);
+    }
+
+    @Test
+    void testCancelledDownloadDoesNotRun() {
+        Downloader downloader = new Downloader(1, 1, EMPTY_RESPONSES);
+        SlowElement first = new SlowElement(URLCreator.create("http://a.test/1"), null);
+        SlowElement second = new SlowElement(URLCreator.create("http://a.test/2"), null);
+        CompletableFuture<DownloadResult> firstDownload = downloader.download(first, Paths.get("a"));
+        CompletableFuture<DownloadResult> secondDownload = downloader.download(second, Paths.get("a"));
+        secondDownload.cancel(false);
+        firstDownload.join();
+        assertTrue(first.saved);
+        assertFalse(second.saved);
+    }
+
+    @Test
+    void testShutdownFinishesSubmittedDownloads() {
+        Downloader downloader = new Downloader(1, 1, EMPTY_RESPONSES);
+        SlowElement first = new SlowElement(URLCreator.create("http://a.test/1"), null);
+        SlowElement second = new SlowElement(URLCreator.create("http://a.test/2"), null);
+        CompletableFuture<DownloadResult> firstDownload = downloader.download(first, Paths.get("a"));
+        CompletableFuture<DownloadResult> secondDownload = downloader.download(second, Paths.get("a"));
+        downloader.shutdown();
+
+        assertTrue(firstDownload.join().isSuccessful());
+        assertTrue(secondDownload.join().isSuccessful());
+        SlowElement late = new SlowElement(URLCreator.create("http://a.test/3"), null);
+        assertFalse(downloader.download(late, Paths.get("a")).join().isSuccessful());
+        assertFalse(late.saved);
+    }
+
+    /**
+     * An element that is fetched and then takes a little while to save, and
+     * records how many elements from its host are being saved at once.
+     */
+    private class SlowElement extends AbstractWebElement {
+
+        private final IOException failure;
+        private volatile boolean saved = false;
+
+        private SlowElement(URL url, IOException failure) {
+            super(url);
+            this.failure = failure;
+        }
+
+        @Override
+        public void save(Path saveLocation, Fetcher fetcher) throws IOException {
+            fetcher.fetch(getURL()).close();
+            String host = getURL().getHost();
+            int now = running.computeIfAbsent(host, h -> new AtomicInteger()).incrementAndGet();
+            maxRunning.computeIfAbsent(host, h -> new AtomicInteger()).accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.get(host).decrementAndGet();
+            }
+            saved = true;
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
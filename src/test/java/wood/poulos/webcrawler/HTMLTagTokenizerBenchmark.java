@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import wood.poulos.webcrawler.util.Throughput;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the throughput of the {@link HTMLTagTokenizer} with the
+ * {@link Scanner} and regular expression that pages were parsed with before,
+ * over a large generated page.
+ */
+public final class HTMLTagTokenizerBenchmark {
+
+    /**
+     * The pattern pages were parsed with before the tokenizer.
+     */
+    private static final Pattern LINK_AND_IMAGE_PATTERN = Pattern.compile("(?:(?:a(?:\\s+?|\\s+?[\\S\\s]*?\\s+?)href\\s*=\\s*(?:\"([\\S\\s]+?)\"|'([\\S\\s]+?)')[\\S\\s]*?>)|(?:img(?:\\s+?|\\s+?[\\S\\s]*?\\s+?)src\\s*=\\s*(?:\"([\\S\\s]+?)\"|'([\\S\\s]+?)')[\\S\\s]*?>))[\\S\\s]*", Pattern.CASE_INSENSITIVE);
+
+    private static final int DOCUMENT_SIZE = 4 << 20;
+
+    public static void main(String[] args) throws Exception {
+        byte[] document = generateDocument(DOCUMENT_SIZE);
+        HTMLTagTokenizer tokenizer = new HTMLTagTokenizer();
+        long tokenized = tokenize(tokenizer, document);
+        long scanned = scan(document);
+        if (tokenized != scanned) {
+            throw new IllegalStateException("Found " + tokenized + " values but the scanner found " + scanned);
+        }
+        System.out.println(document.length + " bytes, " + tokenized + " links and images");
+        double before = Throughput.reportBytes("Scanner and LINK_AND_IMAGE_PATTERN", document.length,
+                () -> scan(document));
+        double after = Throughput.reportBytes("HTMLTagTokenizer", document.length,
+                () -> tokenize(tokenizer, document));
+        System.out.println(String.format(Locale.ROOT, "%.1fx faster", after / before));
+    }
+
+    /**
+     * Generates a page of roughly the given size, mixing links and images
+     * with the text, markup and comments they are usually surrounded by.
+     */
+    private static byte[] generateDocument(int size) {
+        StringBuilder html = new StringBuilder(size + 1024);
+        html.append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>Generated</title>\n")
+                .append("<link rel=\"stylesheet\" href=\"main.css\">\n</head>\n<body>\n");
+        for (int i = 0; html.length() < size; i++) {
+            html.append("<div class=\"section\" id=\"s").append(i).append("\">\n")
+                    .append("<h2>Section ").append(i).append("</h2>\n")
+                    .append("<!-- <a href=\"commented").append(i).append(".html\">hidden</a> -->\n")
+                    .append("<p>Lorem ipsum dolor sit amet, <em>consectetur</em> adipiscing elit, sed do ")
+                    .append("eiusmod tempor incididunt ut labore et dolore magna aliqua. See ")
+                    .append("<a class=\"internal\" href=\"page").append(i).append(".html\">page ").append(i)
+                    .append("</a> or <a href='../docs/section").append(i).append("/index.html#top'>the docs</a>")
+                    .append(" before <a title=\"external\" href=\"http://example.com/p?id=").append(i)
+                    .append("&amp;q=x\">this</a>.</p>\n")
+                    .append("<img alt=\"figure ").append(i).append("\" src=\"images/figure").append(i)
+                    .append(".png\" width=\"320\" height=\"240\">\n")
+                    .append("<ul><li>One</li><li>Two</li><li><span>Three</span></li></ul>\n")
+                    .append("<p>Ut enim ad minim veniam, quis nostrud exercitation ullamco laboris nisi ut ")
+                    .append("aliquip ex ea commodo consequat.</p>\n</div>\n");
+        }
+        html.append("</body>\n</html>\n");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long tokenize(HTMLTagTokenizer tokenizer, byte[] document) throws Exception {
+        long[] found = {0};
+        tokenizer.tokenize(new ByteArrayInputStream(document), (type, bytes, start, end) -> {
+            if (type == HTMLTagTokenizer.AttributeType.LINK || type == HTMLTagTokenizer.AttributeType.IMAGE) {
+                found[0]++;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Parses the document the way pages were parsed before the tokenizer.
+     * Like before, links in comments are found too, so the links the
+     * tokenizer skips in them are added back to compare the counts.
+     */
+    private static long scan(byte[] document) {
+        long found = 0;
+        InputStream input = new ByteArrayInputStream(document);
+        Scanner scanner = new Scanner(input, "UTF-8");
+        scanner.useDelimiter("<");
+        while (skipUselessHTML(scanner)) {
+            while (scanner.hasNext(LINK_AND_IMAGE_PATTERN)) {
+                Matcher matcher = LINK_AND_IMAGE_PATTERN.matcher(scanner.next(LINK_AND_IMAGE_PATTERN));
+                if (!matcher.matches()) {
+                    throw new IllegalStateException("Matcher failed to match");
+                }
+                if (!matcher.group().contains("commented")) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static boolean skipUselessHTML(Scanner scanner) {
+        while (!scanner.hasNext(LINK_AND_IMAGE_PATTERN)) {
+            if (scanner.hasNext()) {
+                scanner.next();
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HTMLTagTokenizerTest {
+
+    @NotNull
+    private static List<String> tokenize(@NotNull HTMLTagTokenizer tokenizer, @NotNull String html) throws IOException {
+        List<String> values = new ArrayList<>();
+        tokenizer.tokenize(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)),
+                (type, bytes, start, end) -> values.add(type + " " + new String(bytes, start, end - start,
+                        StandardCharsets.UTF_8)));
+        return values;
+    }
+
+    @NotNull
+    private static List<String> tokenize(@NotNull String html) throws IOException {
+        return tokenize(new HTMLTagTokenizer(), html);
+    }
+
+    @NotNull
+    private static HTMLTagTokenizer.Handler collectingInto(@NotNull List<String> values) {
+        return (type, bytes, start, end) -> values.add(type + " " + new String(bytes, start, end - start,
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testTokenizeFindsQuotedAndUnquotedValues() throws Exception {
+        assertEquals(Arrays.asList("LINK a.html", "LINK b.html", "LINK c.html", "IMAGE d.png"),
+                tokenize("<a href=\"a.html\">A</a><a href='b.html'>B</a><A HREF=c.html>C</A><img src=d.png />"));
+    }
+
+    @Test
+    void testTokenizeFindsValueAmongOtherAttributes() throws Exception {
+        assertEquals(Arrays.asList("IMAGE logo.png", "LINK page.html"),
+                tokenize("<img test='' alt=\"a > b\" src = \"logo.png\" target='hello'>" +
+                        "<a\n  class=x\n  data-href=\"no.html\"\n  href\n=\n'page.html' >"));
+    }
+
+    @Test
+    void testTokenizeKeepsWhitespaceInsideQuotedValues() throws Exception {
+        assertEquals(Collections.singletonList("IMAGE image\n1.gif"), tokenize("<img src=\"image\n1.gif\">"));
+    }
+
+    @Test
+    void testTokenizeIgnoresOtherTagsAndAttributes() throws Exception {
+        assertEquals(Collections.emptyList(), tokenize("<!DOCTYPE html><html><abbr href=\"x\"><link href='y'>" +
+                "<img alt='src'><a name=\"href\"><area href=z></a></html>"));
+    }
+
+    @Test
+    void testTokenizeFindsMetaCharsetDeclarations() throws Exception {
+        assertEquals(Arrays.asList("META_CHARSET utf-8", "META_CONTENT text/html; charset=ISO-8859-1"),
+                tokenize("<meta charset=utf-8><META http-equiv=\"Content-Type\" " +
+                        "content=\"text/html; charset=ISO-8859-1\">"));
+    }
+
+    @Test
+    void testTokenizeSkipsEmptyValues() throws Exception {
+        assertEquals(Collections.emptyList(), tokenize("<a href=\"\"><a href=''><a href=><img src>"));
+    }
+
+    @Test
+    void testTokenizeSkipsComments() throws Exception {
+        assertEquals(Collections.singletonList("LINK b.html"),
+                tokenize("<!-- <a href=\"a.html\"> -- > --><a href=\"b.html\">"));
+    }
+
+    @Test
+    void testTokenizeHandsOnlyFirstWantedAttributeOfTag() throws Exception {
+        assertEquals(Collections.singletonList("LINK a.html"), tokenize("<a href=a.html href=b.html>"));
+    }
+
+    @Test
+    void testTokenizeRecoversFromBrokenTags() throws Exception {
+        assertEquals(Arrays.asList("IMAGE b.png", "LINK c.html"),
+                tokenize("<a <img src=b.png>< a href=x> <a href=c.html>"));
+    }
+
+    @Test
+    void testTokenizeIgnoresUnterminatedValue() throws Exception {
+        assertEquals(Collections.singletonList("LINK a.html"), tokenize("<a href=a.html><a href=\"b.html"));
+    }
+
+    @Test
+    void testTokenizeAcrossBufferBoundaries() throws Exception {
+        StringBuilder html = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            html.append("<p>Paragraph ").append(i).append("</p><a class=\"link\" href=\"/pages/page")
+                    .append(i).append(".html\">").append("<img src='/images/").append(i).append(".png'>");
+            expected.add("LINK /pages/page" + i + ".html");
+            expected.add("IMAGE /images/" + i + ".png");
+        }
+        for (int bufferSize : new int[]{1, 2, 3, 7, 64, HTMLTagTokenizer.DEFAULT_BUFFER_SIZE}) {
+            assertEquals(expected, tokenize(new HTMLTagTokenizer(bufferSize), html.toString()), "buffer " + bufferSize);
+        }
+    }
+
+    @Test
+    void testTokenizerCanBeReused() throws Exception {
+        HTMLTagTokenizer tokenizer = new HTMLTagTokenizer(4);
+        assertEquals(Collections.singletonList("LINK first.html"), tokenize(tokenizer, "<a href=\"first.html"
+                + "\"><a href=\"unterminated"));
+        assertEquals(Collections.singletonList("LINK second.html"), tokenize(tokenizer, "<a href=\"second.html\">"));
+    }
+
+    @Test
+    void testTokenizeFromHandlerThrowsISEWithoutDisturbingCurrentInput() throws Exception {
+        HTMLTagTokenizer tokenizer = new HTMLTagTokenizer(4);
+        List<String> values = new ArrayList<>();
+        tokenizer.tokenize(new ByteArrayInputStream("<a href=\"first.html\"><a href=\"second.html\">"
+                .getBytes(StandardCharsets.UTF_8)), (type, bytes, start, end) -> {
+            values.add(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+            assertTrue(tokenizer.isTokenizing());
+            assertThrows(IllegalStateException.class, () -> tokenize(tokenizer, "<a href=\"inner.html\">"));
+        });
+        assertEquals(Arrays.asList("first.html", "second.html"), values);
+        assertFalse(tokenizer.isTokenizing());
+    }
+
+    @Test
+    void testTokenizeSkipsOverlongValues() throws Exception {
+        char[] longValue = new char[HTMLTagTokenizer.MAX_VALUE_LENGTH + 1];
+        Arrays.fill(longValue, 'x');
+        assertEquals(Collections.singletonList("LINK after.html"),
+                tokenize(new HTMLTagTokenizer(16), "<a href=\"" + new String(longValue) + "\"><a href=\"after.html\">"));
+    }
+
+    @Test
+    void testTokenizeDoesNotReadTextAfterTagAsAttributes() throws Exception {
+        assertEquals(Collections.singletonList("LINK b.html"), tokenize("<a>href=a.html <a<a href=b.html>"));
+    }
+
+    @Test
+    void testFeedFindsValuesSplitAtAnyByte() {
+        byte[] html = ("<p>x</p><!-- <a href=no.html> --><A class=\"c\" HREF = 'a.html'>" +
+                "<img alt=\"a > b\" src=b.png><meta charset=utf-8>").getBytes(StandardCharsets.UTF_8);
+        List<String> expected = Arrays.asList("LINK a.html", "IMAGE b.png", "META_CHARSET utf-8");
+        HTMLTagTokenizer tokenizer = new HTMLTagTokenizer(4);
+        for (int split = 0; split <= html.length; split++) {
+            List<String> values = new ArrayList<>();
+            tokenizer.start(collectingInto(values));
+            tokenizer.feed(html, 0, split);
+            tokenizer.feed(html, split, html.length - split);
+            tokenizer.finish();
+            assertEquals(expected, values, "split at " + split);
+        }
+    }
+
+    @Test
+    void testFeedReadsDirectBuffers() {
+        byte[] html = "<a href=\"a.html\"><img src='b.png'>".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer chunk = ByteBuffer.allocateDirect(html.length);
+        chunk.put(html).flip();
+        List<String> values = new ArrayList<>();
+        HTMLTagTokenizer tokenizer = new HTMLTagTokenizer(3);
+        tokenizer.start(collectingInto(values));
+        tokenizer.feed(chunk);
+        tokenizer.finish();
+        assertEquals(Arrays.asList("LINK a.html", "IMAGE b.png"), values);
+        assertFalse(chunk.hasRemaining());
+    }
+
+    @Test
+    void testFeedWithoutStartThrowsISE() {
+        HTMLTagTokenizer tokenizer = new HTMLTagTokenizer();
+        assertThrows(IllegalStateException.class, () -> tokenizer.feed(new byte[]{'<'}, 0, 1));
+        tokenizer.start(collectingInto(new ArrayList<>()));
+        tokenizer.finish();
+        assertThrows(IllegalStateException.class, () -> tokenizer.feed(ByteBuffer.wrap(new byte[]{'<'})));
+    }
+
+    @Test
+    void testStartWhileTokenizingThrowsISE() {
+        HTMLTagTokenizer tokenizer = new HTMLTagTokenizer();
+        tokenizer.start(collectingInto(new ArrayList<>()));
+        assertThrows(IllegalStateException.class, () -> tokenizer.start(collectingInto(new ArrayList<>())));
+        assertTrue(tokenizer.isTokenizing());
+        tokenizer.finish();
+        assertFalse(tokenizer.isTokenizing());
+    }
+
+    @Test
+    void testNonPositiveBufferSizeThrowsIAE() {
+        assertThrows(IllegalArgumentException.class, () -> new HTMLTagTokenizer(0));
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostSchedulerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void shutDownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testNeverExceedsLimitPerHost() throws Exception {
+        HostScheduler scheduler = new HostScheduler(executor, 2, 0, TimeUnit.MILLISECONDS);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            scheduler.submit("Example.com", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ignore) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, scheduler.getWaitingCount());
+    }
+
+    @Test
+    void testBusyHostDoesNotHoldUpOtherHosts() throws Exception {
+        HostScheduler scheduler = new HostScheduler(executor, 1, 0, TimeUnit.MILLISECONDS);
+        CountDownLatch slowHostReleased = new CountDownLatch(1);
+        CountDownLatch fastHostDone = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit("slow.example.com", () -> {
+                try {
+                    slowHostReleased.await();
+                } catch (InterruptedException ignore) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit("fast.example.com", fastHostDone::countDown);
+        }
+        assertTrue(fastHostDone.await(10, TimeUnit.SECONDS));
+        assertEquals(4, scheduler.getWaitingCount());
+        slowHostReleased.countDown();
+    }
+
+    @Test
+    void testDelaysStartsFromSameHost() throws Exception {
+        HostScheduler scheduler = new HostScheduler(executor, 4, 100, TimeUnit.MILLISECONDS);
+        List<Long> starts = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(4);
+        long otherHostStart = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            scheduler.submit("example.com", () -> {
+                starts.add(System.nanoTime());
+                done.countDown();
+            });
+        }
+        CountDownLatch otherHostDone = new CountDownLatch(1);
+        scheduler.submit("other.example.com", otherHostDone::countDown);
+        assertTrue(otherHostDone.await(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - otherHostStart < TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < starts.size(); i++) {
+            assertTrue(starts.get(i) - starts.get(i - 1) >= TimeUnit.MILLISECONDS.toNanos(90),
+                    "start " + i + " came too soon");
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testDelaysOnlyHostsThatAskForIt() throws Exception {
+        HostScheduler scheduler = new HostScheduler(executor, host -> 4,
+                host -> host.equals("slow.example.com") ? TimeUnit.MILLISECONDS.toNanos(100) : 0);
+        List<Long> slowStarts = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch slowDone = new CountDownLatch(3);
+        CountDownLatch fastDone = new CountDownLatch(3);
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            scheduler.submit("slow.example.com", () -> {
+                slowStarts.add(System.nanoTime());
+                slowDone.countDown();
+            });
+            scheduler.submit("fast.example.com", fastDone::countDown);
+        }
+        assertTrue(fastDone.await(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertTrue(slowDone.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < slowStarts.size(); i++) {
+            assertTrue(slowStarts.get(i) - slowStarts.get(i - 1) >= TimeUnit.MILLISECONDS.toNanos(90),
+                    "start " + i + " came too soon");
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testShutdownDiscardsWaitingTasks() {
+        Queue<Runnable> handedOver = new ArrayDeque<>();
+        HostScheduler scheduler = new HostScheduler(handedOver::add, 1, 0, TimeUnit.MILLISECONDS);
+        CrawlTracker tracker = new CrawlTracker();
+        AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            scheduler.submit("example.com", tracker.track(ran::incrementAndGet));
+        }
+        assertEquals(1, handedOver.size());
+        assertEquals(2, scheduler.getWaitingCount());
+
+        scheduler.shutdown();
+        assertEquals(1, tracker.getOutstandingTasks());
+        scheduler.submit("example.com", tracker.track(ran::incrementAndGet));
+        assertEquals(1, tracker.getOutstandingTasks());
+
+        handedOver.remove().run();
+        assertEquals(0, tracker.getOutstandingTasks());
+        assertEquals(1, ran.get());
+        assertTrue(handedOver.isEmpty());
+    }
+
+    @Test
+    void testRejectedTasksAreDiscarded() {
+        HostScheduler scheduler = new HostScheduler(task -> {
+            throw new RejectedExecutionException();
+        }, 1, 0, TimeUnit.MILLISECONDS);
+        CrawlTracker tracker = new CrawlTracker();
+        for (int i = 0; i < 3; i++) {
+            scheduler.submit("example.com", tracker.track(() -> fail("Rejected task ran")));
+        }
+        assertEquals(0, tracker.getOutstandingTasks());
+        assertEquals(0, scheduler.getWaitingCount());
+    }
+
+    @Test
+    void testTasksDiscardedBySaturatedExecutorAreNoLongerOutstanding() throws Exception {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setThreads(1);
+        settings.setQueueCapacity(1);
+        settings.setSaturationPolicy(CrawlerSettings.SaturationPolicy.DISCARD);
+        ExecutorService saturated = CrawlerExecutors.createPlatformThreadExecutor(settings);
+        try {
+            HostScheduler scheduler = new HostScheduler(saturated, 10, 0, TimeUnit.MILLISECONDS);
+            CrawlTracker tracker = new CrawlTracker();
+            CountDownLatch released = new CountDownLatch(1);
+            AtomicInteger ran = new AtomicInteger();
+            scheduler.submit("example.com", tracker.track(() -> {
+                try {
+                    released.await();
+                } catch (InterruptedException ignore) {
+                    Thread.currentThread().interrupt();
+                }
+                ran.incrementAndGet();
+            }));
+            for (int i = 0; i < 5; i++) {
+                scheduler.submit("example.com", tracker.track(ran::incrementAndGet));
+            }
+            released.countDown();
+
+            assertTrue(tracker.awaitCompletion(10, TimeUnit.SECONDS));
+            assertTrue(ran.get() < 6);
+            assertEquals(0, scheduler.getWaitingCount());
+        } finally {
+            saturated.shutdownNow();
+        }
+    }
+}
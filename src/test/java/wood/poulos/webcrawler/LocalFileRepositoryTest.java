@@ -30,16 +30,23 @@ import wood.poulos.webcrawler.util.TestWebServer;
 import wood.poulos.webcrawler.util.URLConverter;
 import wood.poulos.webcrawler.util.URLCreator;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -183,4 +190,166 @@ class LocalFileRepositoryTest {
 
         FileUtils.deleteDirectory(tempDir.toFile());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testConcurrentAddElementStagesEveryElement() throws Exception {
+        int threads = 16;
+        int elementsPerThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < elementsPerThread; i++) {
+                    repo.addElement(WebElements.createWebFile(URLCreator.create("http://test.xyz/" + thread + "/" + i)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(threads * elementsPerThread, getStagedElements(repo).size());
+    }
+
+    @Test
+    void testCommitReportsSuccessfulAndFailedDownloads() {
+        URL fileURL = URLCreator.create(host + "text_files/text_file_1.txt");
+        URL missingURL = URLCreator.create(host + "text_files/text_file_100.txt");
+        repo.addElement(WebElements.createWebFile(fileURL));
+        repo.addElement(WebElements.createWebFile(missingURL));
+        repo.commit();
+        assertEquals(1, repo.getLastCommitSuccessCount());
+        assertEquals(1, repo.getLastCommitFailures().size());
+        DownloadResult failure = repo.getLastCommitFailures().get(0);
+        assertEquals(missingURL, failure.getElement().getURL());
+        assertFalse(failure.isSuccessful());
+        assertNotNull(failure.getFailure());
+    }
+
+    @Test
+    void testCommitSkipsDownloadsOnceDownloadBudgetIsUsedUp() {
+        repo.configureDownloads(1, 1);
+        repo.limitDownloadBytes(1);
+        for (int i = 1; i <= 3; i++) {
+            repo.addElement(WebElements.createWebFile(URLCreator.create(host + "text_files/text_file_" + i + ".txt")));
+        }
+        repo.commit();
+        assertEquals(1, repo.getLastCommitSuccessCount());
+        assertEquals(2, repo.getLastCommitFailures().size());
+        for (DownloadResult failure : repo.getLastCommitFailures()) {
+            assertTrue(failure.getFailure() instanceof BudgetExhaustedException);
+        }
+    }
+
+    @Test
+    void testAddFetchedElementSavesContentWithoutFetching() throws IOException {
+        // Nothing is served at this URL, so the content can only come from the given stream.
+        URL fileURL = URLCreator.create(host + "text_files/fetched.bin");
+        WebElement file = WebElements.createWebFile(fileURL);
+        byte[] content = {'%', 'P', 'D', 'F', '-', 0, 1, 2};
+        repo.addFetchedElement(file, new ByteArrayInputStream(content));
+        repo.addElement(file);
+
+        Path saved = tempDir.resolve(URLConverter.convertToFilePath(fileURL).toString());
+        assertArrayEquals(content, Files.readAllBytes(saved));
+        assertTrue(getStagedElements(repo).isEmpty());
+
+        repo.commit();
+        assertEquals(1, repo.getLastCommitSuccessCount());
+        assertTrue(repo.getLastCommitFailures().isEmpty());
+        assertArrayEquals(content, Files.readAllBytes(saved));
+    }
+
+    @Test
+    void testAddFetchedElementCountsAgainstDownloadBudget() {
+        assertFetchedElementCountsAgainstDownloadBudget();
+    }
+
+    @Test
+    void testAddFetchedElementCountsAgainstDownloadBudgetWhenStreaming() {
+        repo.enableStreaming(2);
+        assertFetchedElementCountsAgainstDownloadBudget();
+    }
+
+    private void assertFetchedElementCountsAgainstDownloadBudget() {
+        repo.configureDownloads(1, 1);
+        repo.limitDownloadBytes(8);
+        URL firstURL = URLCreator.create(host + "text_files/fetched.bin");
+        URL secondURL = URLCreator.create(host + "text_files/fetched_too.bin");
+        byte[] content = {'%', 'P', 'D', 'F', '-', 0, 1, 2};
+        repo.addFetchedElement(WebElements.createWebFile(firstURL), new ByteArrayInputStream(content));
+        repo.addFetchedElement(WebElements.createWebFile(secondURL), new ByteArrayInputStream(content));
+        repo.addElement(WebElements.createWebFile(URLCreator.create(host + "text_files/text_file_1.txt")));
+        repo.commit();
+
+        assertEquals(1, repo.getLastCommitSuccessCount());
+        assertEquals(2, repo.getLastCommitFailures().size());
+        for (DownloadResult failure : repo.getLastCommitFailures()) {
+            assertTrue(failure.getFailure() instanceof BudgetExhaustedException);
+        }
+        assertTrue(Files.exists(tempDir.resolve(URLConverter.convertToFilePath(firstURL).toString())));
+        assertFalse(Files.exists(tempDir.resolve(URLConverter.convertToFilePath(secondURL).toString())));
+    }
+
+    @Test
+    void testOpenPageCopyOnlyWhenSavingPages() throws IOException {
+        URL pageURL = URLCreator.create(host + "index.html");
+        WebPage page = WebElements.createWebPage(pageURL);
+        assertFalse(repo.isSavingPages());
+        assertNull(repo.openPageCopy(page));
+
+        repo.enablePageSaving();
+        assertTrue(repo.isSavingPages());
+        try (OutputStream copy = repo.openPageCopy(page)) {
+            assertNotNull(copy);
+            copy.write("<html></html>".getBytes(StandardCharsets.US_ASCII));
+        }
+        assertArrayEquals("<html></html>".getBytes(StandardCharsets.US_ASCII),
+                Files.readAllBytes(repo.getLocalPathForElement(page)));
+    }
+
+    @Test
+    void testStreamingDownloadsBeforeCommit() throws Exception {
+        repo.enableStreaming(10);
+        assertTrue(repo.isStreaming());
+        URL imageURL = URLCreator.create(host + "images/image1.png");
+        repo.addElement(WebElements.createWebImage(imageURL));
+
+        File downloaded = tempDir.resolve(URLConverter.convertToFilePath(imageURL).toString()).toFile();
+        for (int i = 0; i < 100 && !downloaded.exists(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(downloaded.exists());
+
+        repo.commit();
+        FileDownloadVerifier.assertFileDownloadedSuccessfully(Paths.get("./testPages/images/image1.png"), imageURL, tempDir);
+    }
+
+    @Test
+    void testStreamingCommitWaitsForAllDownloads() throws IOException {
+        repo.configureDownloads(1, 1);
+        repo.enableStreaming(1);
+        for (int i = 1; i <= 15; i++) {
+            repo.addElement(WebElements.createWebImage(URLCreator.create(host + "images/image" + i + ".png")));
+            repo.addElement(WebElements.createWebFile(URLCreator.create(host + "text_files/text_file_" + i + ".txt")));
+            repo.addElement(WebElements.createWebImage(URLCreator.create(host + "images/image" + i + ".png")));
+        }
+        repo.commit();
+        assertTrue(getStagedElements(repo).isEmpty());
+        for (int i = 1; i <= 15; i++) {
+            WebCrawlerTest.assertImageDownloaded(i, tempDir, host);
+            WebCrawlerTest.assertFileDownloaded(i, tempDir, host);
+        }
+    }
+
+    @Test
+    void testStreamingCommitWebPageDownloadsNothing() {
+        repo.enableStreaming(10);
+        URL pageURL = URLCreator.create(host + "index.html");
+        repo.addElement(WebElements.createWebPage(pageURL));
+        repo.commit();
+        File downloaded = tempDir.resolve(URLConverter.convertToFilePath(pageURL).toString()).toFile();
+        assertFalse(downloaded.exists());
+    }
+}
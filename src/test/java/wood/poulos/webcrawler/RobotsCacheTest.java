@@ -0,0 +1,189 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import wood.poulos.webcrawler.util.Fetcher;
+import wood.poulos.webcrawler.util.HttpStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotsCacheTest {
+
+    private final List<URL> fetched = new CopyOnWriteArrayList<>();
+
+    @Test
+    void testRobotsFileIsFetchedOncePerHost() throws Exception {
+        RobotsCache cache = new RobotsCache(serving("User-agent: *\nDisallow: /private/\n"));
+        assertTrue(cache.isAllowed(new URL("http://example.com/index.html")));
+        assertFalse(cache.isAllowed(new URL("http://example.com/private/a.html")));
+        assertFalse(cache.isAllowed(new URL("http://EXAMPLE.com:80/private/b.html")));
+        assertFalse(cache.isAllowed(new URL("http://example.com:8080/private/a.html")));
+        assertEquals(2, fetched.size());
+        assertEquals(new URL("http://example.com/robots.txt"), fetched.get(0));
+        assertEquals(new URL("http://example.com:8080/robots.txt"), fetched.get(1));
+    }
+
+    @Test
+    void testConcurrentChecksWaitForSingleFetch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RobotsCache cache = new RobotsCache(url -> {
+            fetched.add(url);
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return response("User-agent: *\nDisallow: /\n");
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> checks = new CopyOnWriteArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                URL url = new URL("http://example.com/page" + i + ".html");
+                checks.add(executor.submit(() -> cache.isAllowed(url)));
+            }
+            release.countDown();
+            for (Future<Boolean> check : checks) {
+                assertFalse(check.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, fetched.size());
+    }
+
+    @Test
+    void testAsyncRulesAreFetchedOnExecutorOnce() throws Exception {
+        RobotsCache cache = new RobotsCache(serving("User-agent: *\nDisallow: /private/\n"));
+        Queue<Runnable> executor = new ArrayDeque<>();
+        CompletableFuture<RobotsRules> rules = cache.getRulesAsync(new URL("http://example.com/a.html"), executor::add);
+        assertFalse(rules.isDone());
+        assertSame(rules, cache.getRulesAsync(new URL("http://example.com/b.html"), executor::add));
+        assertEquals(1, executor.size());
+        assertTrue(fetched.isEmpty());
+
+        executor.remove().run();
+        assertTrue(rules.isDone());
+        assertFalse(rules.join().isAllowed("/private/a.html"));
+        assertFalse(cache.isAllowed(new URL("http://example.com/private/b.html")));
+        assertEquals(1, fetched.size());
+    }
+
+    @Test
+    void testAsyncRulesAreFetchedOnCallerWhenExecutorRejects() throws Exception {
+        RobotsCache cache = new RobotsCache(serving("User-agent: *\nDisallow: /\n"));
+        CompletableFuture<RobotsRules> rules = cache.getRulesAsync(new URL("http://example.com/"), task -> {
+            throw new RejectedExecutionException();
+        });
+        assertTrue(rules.isDone());
+        assertFalse(rules.join().isAllowed("/"));
+    }
+
+    @Test
+    void testMissingRobotsFileAllowsEverything() throws Exception {
+        RobotsCache cache = new RobotsCache(url -> {
+            throw new FileNotFoundException(url.toString());
+        });
+        assertTrue(cache.isAllowed(new URL("http://example.com/index.html")));
+    }
+
+    @Test
+    void testServerErrorDisallowsEverything() throws Exception {
+        RobotsCache cache = new RobotsCache(url -> {
+            throw new HttpStatusException(503, url);
+        });
+        assertFalse(cache.isAllowed(new URL("http://example.com/index.html")));
+        RobotsCache forbiddenCache = new RobotsCache(url -> {
+            throw new HttpStatusException(403, url);
+        });
+        assertTrue(forbiddenCache.isAllowed(new URL("http://example.com/index.html")));
+    }
+
+    @Test
+    void testNonHttpURLsAreNotChecked() throws Exception {
+        RobotsCache cache = new RobotsCache(serving("User-agent: *\nDisallow: /\n"));
+        assertTrue(cache.isAllowed(new URL("file:/tmp/index.html")));
+        assertTrue(fetched.isEmpty());
+    }
+
+    @Test
+    void testCrawlDelayIsRecordedAndCapped() throws Exception {
+        RobotsCache cache = new RobotsCache(url -> response(url.getHost().equals("slow.example.com")
+                ? "User-agent: *\nCrawl-delay: 3600\n"
+                : "User-agent: *\nCrawl-delay: 2\n"));
+        assertEquals(0, cache.getCrawlDelayMillis("example.com"));
+        cache.isAllowed(new URL("http://example.com/"));
+        cache.isAllowed(new URL("http://slow.example.com/"));
+        assertEquals(2000, cache.getCrawlDelayMillis("Example.com"));
+        assertEquals(RobotsCache.MAX_CRAWL_DELAY_MILLIS, cache.getCrawlDelayMillis("slow.example.com"));
+    }
+
+    @NotNull
+    private Fetcher serving(@NotNull String content) {
+        return url -> {
+            fetched.add(url);
+            return response(content);
+        };
+    }
+
+    @NotNull
+    private static Fetcher.Response response(@NotNull String content) {
+        InputStream body = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+        return new Fetcher.Response() {
+            @Override
+            public String getContentType() {
+                return "text/plain";
+            }
+
+            @NotNull
+            @Override
+            public InputStream getBody() {
+                return body;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
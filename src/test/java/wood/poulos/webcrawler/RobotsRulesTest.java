@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotsRulesTest {
+
+    @Test
+    void testEmptyFileAllowsEverything() {
+        RobotsRules rules = RobotsRules.parse("", RobotsRules.USER_AGENT);
+        assertTrue(rules.isAllowed("/"));
+        assertTrue(rules.isAllowed("/any/path.html"));
+        assertEquals(0, rules.getCrawlDelayMillis());
+    }
+
+    @Test
+    void testOwnGroupIsPreferredOverDefaultGroup() {
+        String content = "User-agent: *\n"
+                + "Disallow: /\n"
+                + "\n"
+                + "User-agent: WebCrawler/1.0\n"
+                + "Disallow: /private/\n";
+        RobotsRules rules = RobotsRules.parse(content, RobotsRules.USER_AGENT);
+        assertTrue(rules.isAllowed("/index.html"));
+        assertFalse(rules.isAllowed("/private/index.html"));
+
+        RobotsRules otherRules = RobotsRules.parse(content, "othercrawler");
+        assertFalse(otherRules.isAllowed("/index.html"));
+    }
+
+    @Test
+    void testGroupsWithSeveralUserAgentsAndRepeatedGroupsCombine() {
+        String content = "User-agent: somebot\n"
+                + "User-agent: webcrawler\n"
+                + "Disallow: /a/\n"
+                + "User-agent: otherbot\n"
+                + "Disallow: /b/\n"
+                + "User-agent: webcrawler\n"
+                + "Disallow: /c/\n";
+        RobotsRules rules = RobotsRules.parse(content, RobotsRules.USER_AGENT);
+        assertFalse(rules.isAllowed("/a/page.html"));
+        assertTrue(rules.isAllowed("/b/page.html"));
+        assertFalse(rules.isAllowed("/c/page.html"));
+    }
+
+    @Test
+    void testLongestMatchWinsAndAllowWinsTies() {
+        String content = "User-agent: *\n"
+                + "Disallow: /docs/\n"
+                + "Allow: /docs/public/\n"
+                + "Disallow: /page\n"
+                + "Allow: /page\n";
+        RobotsRules rules = RobotsRules.parse(content, RobotsRules.USER_AGENT);
+        assertFalse(rules.isAllowed("/docs/secret.html"));
+        assertTrue(rules.isAllowed("/docs/public/readme.html"));
+        assertTrue(rules.isAllowed("/page.html"));
+        assertTrue(rules.isAllowed("/doc"));
+    }
+
+    @Test
+    void testWildcardsAndEndAnchors() {
+        String content = "User-agent: *\n"
+                + "Disallow: /*.pdf$\n"
+                + "Disallow: /search*q=\n"
+                + "Allow: /search/about\n";
+        RobotsRules rules = RobotsRules.parse(content, RobotsRules.USER_AGENT);
+        assertFalse(rules.isAllowed("/files/report.pdf"));
+        assertTrue(rules.isAllowed("/files/report.pdf.html"));
+        assertFalse(rules.isAllowed("/search?q=robots"));
+        assertTrue(rules.isAllowed("/search"));
+        assertTrue(rules.isAllowed("/search/about"));
+    }
+
+    @Test
+    void testCommentsAndEmptyDisallowAreIgnored() {
+        String content = "# robots.txt for example.com\n"
+                + "User-agent: * # everyone\n"
+                + "Disallow:\n"
+                + "Disallow: /tmp/ # scratch space\n";
+        RobotsRules rules = RobotsRules.parse(content, RobotsRules.USER_AGENT);
+        assertTrue(rules.isAllowed("/index.html"));
+        assertFalse(rules.isAllowed("/tmp/file.txt"));
+    }
+
+    @Test
+    void testRobotsFileIsAlwaysAllowed() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\r\nDisallow: /\r\n", RobotsRules.USER_AGENT);
+        assertFalse(rules.isAllowed("/"));
+        assertFalse(rules.isAllowed(""));
+        assertTrue(rules.isAllowed("/robots.txt"));
+        assertFalse(RobotsRules.DISALLOW_ALL.isAllowed("/index.html"));
+        assertTrue(RobotsRules.ALLOW_ALL.isAllowed("/index.html"));
+    }
+
+    @Test
+    void testCrawlDelayAndSitemaps() {
+        String content = "Sitemap: http://example.com/sitemap.xml\n"
+                + "User-agent: *\n"
+                + "Crawl-delay: 1.5\n"
+                + "User-agent: otherbot\n"
+                + "Crawl-delay: 30\n"
+                + "Sitemap: http://example.com/news.xml\n";
+        RobotsRules rules = RobotsRules.parse(content, RobotsRules.USER_AGENT);
+        assertEquals(1500, rules.getCrawlDelayMillis());
+        assertEquals(Arrays.asList("http://example.com/sitemap.xml", "http://example.com/news.xml"),
+                rules.getSitemaps());
+    }
+
+    @Test
+    void testInvalidCrawlDelayIsIgnored() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nCrawl-delay: soon\n", RobotsRules.USER_AGENT);
+        assertEquals(0, rules.getCrawlDelayMillis());
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import wood.poulos.webcrawler.util.Fetcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SitemapReaderTest {
+
+    private final Map<String, byte[]> sitemaps = new HashMap<>();
+    private final List<String> fetched = new ArrayList<>();
+    private final Fetcher fetcher = url -> {
+        fetched.add(url.toExternalForm());
+        byte[] content = sitemaps.get(url.toExternalForm());
+        if (content == null) {
+            throw new FileNotFoundException(url.toString());
+        }
+        return response(content);
+    };
+
+    @Test
+    void testReadsPagesInOrder() throws Exception {
+        serve("http://example.com/sitemap.xml", urlset("http://example.com/", "http://example.com/a.html",
+                "http://example.com/b.html"));
+        List<String> pages = readAll("http://example.com/sitemap.xml");
+        assertEquals(Arrays.asList("http://example.com/", "http://example.com/a.html",
+                "http://example.com/b.html"), pages);
+    }
+
+    @Test
+    void testFollowsIndexesAndGzippedSitemaps() throws Exception {
+        serve("http://example.com/sitemap.xml", ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<sitemap><loc>http://example.com/one.xml.gz</loc><lastmod>2017-11-01</lastmod></sitemap>"
+                + "<sitemap><loc> http://example.com/two.xml </loc></sitemap>"
+                + "<sitemap><loc>http://example.com/sitemap.xml</loc></sitemap>"
+                + "</sitemapindex>").getBytes(StandardCharsets.UTF_8));
+        serve("http://example.com/one.xml.gz", gzip(urlset("http://example.com/one.html")));
+        serve("http://example.com/two.xml", urlset("http://example.com/two.html"));
+        List<String> pages = readAll("http://example.com/sitemap.xml");
+        assertEquals(Arrays.asList("http://example.com/one.html", "http://example.com/two.html"), pages);
+        assertEquals(Arrays.asList("http://example.com/sitemap.xml", "http://example.com/one.xml.gz",
+                "http://example.com/two.xml"), fetched);
+    }
+
+    @Test
+    void testFetchesSitemapsOnlyAsTheyAreReached() throws Exception {
+        serve("http://example.com/one.xml", urlset("http://example.com/one.html"));
+        serve("http://example.com/two.xml", urlset("http://example.com/two.html"));
+        try (SitemapReader reader = new SitemapReader(fetcher, Arrays.asList(
+                new URL("http://example.com/one.xml"), new URL("http://example.com/two.xml")))) {
+            assertEquals(new URL("http://example.com/one.html"), reader.next());
+            assertEquals(Collections.singletonList("http://example.com/one.xml"), fetched);
+            assertEquals(new URL("http://example.com/two.html"), reader.next());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void testSkipsPagesOnOtherHosts() throws Exception {
+        serve("http://example.com/sitemap.xml", urlset("http://other.example.com/a.html",
+                "http://EXAMPLE.com/b.html", "not a url"));
+        assertEquals(Collections.singletonList("http://EXAMPLE.com/b.html"),
+                readAll("http://example.com/sitemap.xml"));
+    }
+
+    @Test
+    void testSkipsSitemapsThatCanNotBeReadPastTheirFailure() throws Exception {
+        serve("http://example.com/broken.xml", ("<urlset><url><loc>http://example.com/a.html</loc></url>"
+                + "<url><loc>http://example.com/b.html</loc></ur").getBytes(StandardCharsets.UTF_8));
+        serve("http://example.com/sitemap.xml", urlset("http://example.com/c.html"));
+        List<String> pages = readAll("http://example.com/missing.xml", "http://example.com/broken.xml",
+                "http://example.com/sitemap.xml");
+        assertEquals(Arrays.asList("http://example.com/a.html", "http://example.com/b.html",
+                "http://example.com/c.html"), pages);
+    }
+
+    @Test
+    void testDoesNotResolveExternalEntities() throws Exception {
+        serve("http://example.com/sitemap.xml", ("<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE urlset [<!ENTITY secret SYSTEM \"file:///etc/hostname\">]>"
+                + "<urlset><url><loc>http://example.com/&secret;</loc></url></urlset>")
+                .getBytes(StandardCharsets.UTF_8));
+        for (String page : readAll("http://example.com/sitemap.xml")) {
+            assertEquals("http://example.com/", page);
+        }
+    }
+
+    @NotNull
+    private List<String> readAll(@NotNull String... sitemapURLs) throws IOException {
+        List<URL> urls = new ArrayList<>();
+        for (String sitemapURL : sitemapURLs) {
+            urls.add(new URL(sitemapURL));
+        }
+        List<String> pages = new ArrayList<>();
+        try (SitemapReader reader = new SitemapReader(fetcher, urls)) {
+            URL page;
+            while ((page = reader.next()) != null) {
+                pages.add(page.toExternalForm());
+            }
+        }
+        return pages;
+    }
+
+    private void serve(@NotNull String url, @NotNull byte[] content) {
+        sitemaps.put(url, content);
+    }
+
+    @NotNull
+    private static byte[] urlset(@NotNull String... pages) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n");
+        for (String page : pages) {
+            xml.append("  <url>\n    <loc>").append(page).append("</loc>\n    <priority>0.5</priority>\n  </url>\n");
+        }
+        return xml.append("</urlset>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @NotNull
+    private static byte[] gzip(@NotNull byte[] content) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(content);
+        }
+        return compressed.toByteArray();
+    }
+
+    @NotNull
+    private static Fetcher.Response response(@NotNull byte[] content) {
+        InputStream body = new ByteArrayInputStream(content);
+        return new Fetcher.Response() {
+            @Override
+            public String getContentType() {
+                return "application/xml";
+            }
+
+            @NotNull
+            @Override
+            public InputStream getBody() {
+                return body;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import wood.poulos.webcrawler.util.Throughput;
+
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Stages the same elements from many threads at once in the
+ * {@link StagingStore}, in the plain {@link HashSet} repositories staged
+ * elements in before and in a synchronized {@link HashSet}, counting the
+ * adds each loses and timing them. The store is timed both growing from its
+ * default capacity and sized for every element up front.
+ */
+public final class StagingStoreBenchmark {
+
+    private static final int THREADS = 16;
+    private static final int ELEMENTS_PER_THREAD = 50_000;
+
+    public static void main(String[] args) throws Exception {
+        WebElement[][] elements = new WebElement[THREADS][ELEMENTS_PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < ELEMENTS_PER_THREAD; i++) {
+                URL url = new URL("http://host" + (i % 64) + ".example.com/t" + t + "/file" + i + ".txt");
+                elements[t][i] = WebElements.createWebFile(url);
+            }
+        }
+        int total = THREADS * ELEMENTS_PER_THREAD;
+        System.out.println(THREADS + " threads adding " + total + " distinct elements on "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+
+        int[] lost = new int[4];
+        Throughput.reportOperations("HashSet (before)", total, () -> {
+            Set<WebElement> set = new HashSet<>();
+            stage(elements, set::add);
+            lost[0] = Math.max(lost[0], total - set.size());
+            return set.size();
+        });
+        Throughput.reportOperations("synchronized HashSet", total, () -> {
+            Set<WebElement> set = Collections.synchronizedSet(new HashSet<>());
+            stage(elements, set::add);
+            lost[1] = Math.max(lost[1], total - set.size());
+            return set.size();
+        });
+        Throughput.reportOperations("StagingStore", total, () -> {
+            StagingStore store = new StagingStore();
+            stage(elements, store::add);
+            Collection<WebElement> view = store.view();
+            lost[2] = Math.max(lost[2], total - view.size());
+            return view.size();
+        });
+        Throughput.reportOperations("StagingStore sized for every element", total, () -> {
+            StagingStore store = new StagingStore(total);
+            stage(elements, store::add);
+            lost[3] = Math.max(lost[3], total - store.size());
+            return store.size();
+        });
+        System.out.println("Most adds lost in a run: HashSet " + lost[0] + ", synchronized HashSet " + lost[1]
+                + ", StagingStore " + lost[2] + ", sized StagingStore " + lost[3]);
+    }
+
+    /**
+     * Adds each thread's elements from its own thread, all starting at once.
+     */
+    private static void stage(WebElement[][] elements, Predicate<WebElement> add) throws InterruptedException {
+        Thread[] threads = new Thread[elements.length];
+        Object start = new Object();
+        boolean[] started = {false};
+        for (int t = 0; t < threads.length; t++) {
+            WebElement[] own = elements[t];
+            threads[t] = new Thread(() -> {
+                synchronized (start) {
+                    while (!started[0]) {
+                        try {
+                            start.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                for (WebElement element : own) {
+                    try {
+                        add.test(element);
+                    } catch (RuntimeException ignore) {
+                        // A plain HashSet can throw when it is corrupted by concurrent adds.
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        synchronized (start) {
+            started[0] = true;
+            start.notifyAll();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.junit.jupiter.api.Test;
+import wood.poulos.webcrawler.util.URLCreator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StagingStoreTest {
+
+    private static final int THREADS = 32;
+    private static final int ADDS_PER_THREAD = 5_000;
+
+    private final StagingStore store = new StagingStore();
+
+    @Test
+    void testAddRemoveAndContains() {
+        WebElement image = WebElements.createWebImage(URLCreator.create("http://test.xyz/image.png"));
+        assertTrue(store.add(image));
+        assertFalse(store.add(WebElements.createWebFile(URLCreator.create("http://test.xyz/image.png"))));
+        assertTrue(store.contains(image));
+        assertEquals(1, store.size());
+        assertTrue(store.view().contains(image));
+        assertTrue(store.remove(image));
+        assertFalse(store.remove(image));
+        assertFalse(store.contains(image));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testConcurrentAddsAreNeverLost() throws Exception {
+        runConcurrently(thread -> {
+            for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                store.add(createElement(thread, i));
+                // Every thread also adds an element shared by all of the threads.
+                store.add(createElement(-1, i));
+            }
+        });
+        assertEquals(THREADS * ADDS_PER_THREAD + ADDS_PER_THREAD, store.size());
+    }
+
+    @Test
+    void testConcurrentAddsWhileDrainingAreNeverLost() throws Exception {
+        AtomicInteger drained = new AtomicInteger();
+        ExecutorService drainer = Executors.newSingleThreadExecutor();
+        CountDownLatch addsFinished = new CountDownLatch(1);
+        Future<?> draining = drainer.submit(() -> {
+            while (addsFinished.getCount() > 0) {
+                store.drain(e -> drained.incrementAndGet());
+            }
+        });
+        try {
+            runConcurrently(thread -> {
+                for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                    store.add(createElement(thread, i));
+                }
+            });
+        } finally {
+            addsFinished.countDown();
+        }
+        draining.get();
+        drainer.shutdown();
+        store.drain(e -> drained.incrementAndGet());
+        assertEquals(THREADS * ADDS_PER_THREAD, drained.get());
+        assertEquals(0, store.size());
+    }
+
+    private void runConcurrently(ThreadWork work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                work.run(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    private static WebElement createElement(int thread, int i) {
+        return WebElements.createWebFile(URLCreator.create("http://test.xyz/" + thread + "/" + i + ".txt"));
+    }
+
+    private interface ThreadWork {
+        void run(int thread);
+    }
+}
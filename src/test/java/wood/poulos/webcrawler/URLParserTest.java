@@ -28,22 +28,28 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import wood.poulos.webcrawler.util.URLCreator;
 
-import java.net.URL;
-import java.util.regex.Matcher;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class URLParserTest {
 
     @NotNull
-    private WebPage.URLParser getParser(@NotNull String url) {
-        Matcher m = WebPage.LINK_AND_IMAGE_PATTERN.matcher(url);
-        assertTrue(m.matches());
-        return WebPage.URLParser.fromMatcher(m);
+    private WebPage.URLParser getParser(@NotNull String tag) throws IOException {
+        List<WebPage.URLParser> parsers = new ArrayList<>();
+        new HTMLTagTokenizer().tokenize(new ByteArrayInputStream(("<" + tag).getBytes(StandardCharsets.UTF_8)),
+                (type, bytes, start, end) -> parsers.add(
+                        WebPage.URLParser.fromAttribute(type, bytes, start, end, StandardCharsets.UTF_8)));
+        assertEquals(1, parsers.size());
+        return parsers.get(0);
     }
 
     @Test
-    void testFromMatcherOnVariousValidURLMatches() {
+    void testFromAttributeOnVariousValidURLMatches() throws Exception {
         WebPage.URLParser parser;
 
         parser = getParser("a href=\"http://www.google.com/\">");
@@ -94,7 +100,20 @@ public class URLParserTest {
     }
 
     @Test
-    void testGetURLTypeReturnedExpectedTypeForSampleURLs() {
+    void testResolveURLCanonicalizesResolvedURLs() throws Exception {
+        WebPage.URLParser parser;
+
+        parser = getParser("a href=\"HTTP://Example.com:80/a/./b/../c#frag\">");
+        assertEquals("http://example.com/a/c",
+                parser.resolveURL(URLCreator.create("http://www.test.com/")).toExternalForm());
+
+        parser = getParser("a href=\"page.html?utm_source=feed&id=2\">");
+        assertEquals("http://www.test.com/dir/page.html?id=2",
+                parser.resolveURL(URLCreator.create("http://www.test.com/dir/index.html")).toExternalForm());
+    }
+
+    @Test
+    void testGetURLTypeReturnedExpectedTypeForSampleURLs() throws Exception {
         WebPage.URLParser parser;
 
         parser = getParser("img src=\"/images/image1.jpg\">");
@@ -0,0 +1,160 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.jetbrains.annotations.NotNull;
+import wood.poulos.webcrawler.util.Throughput;
+import wood.poulos.webcrawler.util.URLResolver;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares resolving the links in the test pages with the
+ * {@link URLResolver} against resolving them the way pages did before it:
+ * stripping line breaks and tabs with a regular expression, resolving with
+ * {@link URI#resolve(URI)} and removing every {@code ../} left over. Both
+ * start from the link's bytes, as found by the tokenizer.
+ */
+public final class URLResolverBenchmark {
+
+    private static final Pattern LINK_PATTERN = Pattern.compile("(?:href|src)\\s*=\\s*([\"'])(.*?)\\1",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * The number of times every link is resolved in a run.
+     */
+    private static final int ROUNDS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, List<byte[]>> links = readLinks(Paths.get("testPages"));
+        int count = links.values().stream().mapToInt(List::size).sum();
+        int different = 0;
+        for (Map.Entry<String, List<byte[]>> page : links.entrySet()) {
+            URLResolver resolver = new URLResolver(page.getKey());
+            for (byte[] link : page.getValue()) {
+                String before = resolveBefore(new URL(page.getKey()), link);
+                String after = resolveAfter(resolver, link);
+                if (!after.equals(before)) {
+                    System.out.println("  " + new String(link, StandardCharsets.UTF_8) + " on " + page.getKey()
+                            + ": " + before + " -> " + after);
+                    different++;
+                }
+            }
+        }
+        System.out.println(count + " links on " + links.size() + " pages, " + different + " resolved differently");
+
+        long resolutions = (long) count * ROUNDS;
+        Throughput.reportOperations("URI#resolve and fixDeepRelativity", resolutions, () -> {
+            long length = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                for (Map.Entry<String, List<byte[]>> page : links.entrySet()) {
+                    URL parent = new URL(page.getKey());
+                    for (byte[] link : page.getValue()) {
+                        length += resolveBefore(parent, link).length();
+                    }
+                }
+            }
+            return length;
+        });
+        Throughput.reportOperations("URLResolver", resolutions, () -> {
+            long length = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                for (Map.Entry<String, List<byte[]>> page : links.entrySet()) {
+                    URLResolver resolver = new URLResolver(page.getKey());
+                    for (byte[] link : page.getValue()) {
+                        length += resolveAfter(resolver, link).length();
+                    }
+                }
+            }
+            return length;
+        });
+    }
+
+    /**
+     * Reads the links and images on every page under the given directory,
+     * keyed by the URL the test web server serves the page at.
+     */
+    @NotNull
+    private static Map<String, List<byte[]>> readLinks(@NotNull Path root) throws IOException {
+        Map<String, List<byte[]>> links = new TreeMap<>();
+        List<Path> pages;
+        try (Stream<Path> files = Files.walk(root)) {
+            pages = files.filter(file -> file.toString().endsWith(".html")).collect(Collectors.toList());
+        }
+        for (Path page : pages) {
+            String html = new String(Files.readAllBytes(page), StandardCharsets.UTF_8);
+            List<byte[]> found = new ArrayList<>();
+            Matcher matcher = LINK_PATTERN.matcher(html);
+            while (matcher.find()) {
+                found.add(matcher.group(2).getBytes(StandardCharsets.UTF_8));
+            }
+            String path = root.relativize(page).toString().replace('\\', '/');
+            links.put("http://localhost:8080/" + path, found);
+        }
+        return links;
+    }
+
+    /**
+     * Resolves the given link the way pages did before the
+     * {@link URLResolver}.
+     */
+    @NotNull
+    private static String resolveBefore(@NotNull URL parent, @NotNull byte[] link)
+            throws URISyntaxException, IOException {
+        URI uri = URI.create(new String(link, StandardCharsets.UTF_8).replaceAll("[\\r\\n\\t]", ""));
+        URI resolved = parent.toURI().resolve(uri);
+        String resolvedString = resolved.toString();
+        if (resolvedString.contains("../")) {
+            resolved = URI.create(resolvedString.replace("../", ""));
+        }
+        return resolved.toURL().toExternalForm();
+    }
+
+    /**
+     * Resolves the given link the way pages do now. The link is parsed as an
+     * image, which only decodes and strips it, since classifying links as
+     * pages or files is not part of resolving them.
+     */
+    @NotNull
+    private static String resolveAfter(@NotNull URLResolver resolver, @NotNull byte[] link) throws IOException {
+        WebPage.URLParser parser = WebPage.URLParser.fromAttribute(HTMLTagTokenizer.AttributeType.IMAGE, link, 0,
+                link.length, StandardCharsets.UTF_8);
+        return new URL(resolver.resolve(parser.reference)).toExternalForm();
+    }
+}
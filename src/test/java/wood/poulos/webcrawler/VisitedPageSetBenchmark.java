@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import wood.poulos.webcrawler.util.Throughput;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntFunction;
+
+/**
+ * Compares the memory taken by each page and the time taken by each claim of
+ * the {@link VisitedPageSet} with the map of URL strings to depths it
+ * replaced, and with a map keyed by {@link WebPage}s.
+ */
+public final class VisitedPageSetBenchmark {
+
+    private static final int PAGES = 500_000;
+
+    /**
+     * Keeps the structure being measured reachable while the heap is measured.
+     */
+    private static Object retained;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(PAGES + " pages");
+        Map<String, IntFunction<Object>> structures = new LinkedHashMap<>();
+        structures.put("VisitedPageSet", pages -> {
+            VisitedPageSet set = new VisitedPageSet();
+            for (int i = 0; i < pages; i++) {
+                set.claim(urlOf(i), 1);
+            }
+            return set;
+        });
+        structures.put("ConcurrentHashMap<String, Integer>", pages -> {
+            ConcurrentMap<String, Integer> map = new ConcurrentHashMap<>();
+            for (int i = 0; i < pages; i++) {
+                claim(map, urlOf(i), 1);
+            }
+            return map;
+        });
+        structures.put("ConcurrentHashMap<WebPage, Integer>", pages -> {
+            ConcurrentMap<WebPage, Integer> map = new ConcurrentHashMap<>();
+            for (int i = 0; i < pages; i++) {
+                claim(map, WebElements.createWebPage(toURL(urlOf(i))), 1);
+            }
+            return map;
+        });
+        // The first pass warms up the code and the heap, which skews the first measurements made.
+        for (IntFunction<Object> build : structures.values()) {
+            measureMemory(build);
+        }
+        for (Map.Entry<String, IntFunction<Object>> structure : structures.entrySet()) {
+            System.out.println(String.format(Locale.ROOT, "%-40s %10.1f bytes/page", structure.getKey(),
+                    measureMemory(structure.getValue())));
+        }
+
+        String[] urls = new String[PAGES];
+        for (int i = 0; i < PAGES; i++) {
+            urls[i] = urlOf(i);
+        }
+        Throughput.reportOperations("ConcurrentHashMap<String, Integer>", PAGES, () -> {
+            ConcurrentMap<String, Integer> map = new ConcurrentHashMap<>();
+            for (String url : urls) {
+                claim(map, url, 1);
+            }
+            return map.size();
+        });
+        Throughput.reportOperations("VisitedPageSet", PAGES, () -> {
+            VisitedPageSet set = new VisitedPageSet();
+            for (String url : urls) {
+                set.claim(url, 1);
+            }
+            return set.size();
+        });
+    }
+
+    /**
+     * Claims a page in a map the way the crawler did before the
+     * {@link VisitedPageSet}.
+     */
+    private static <K> boolean claim(ConcurrentMap<K, Integer> claimedPages, K key, int depth) {
+        Integer claimedDepth = claimedPages.putIfAbsent(key, depth);
+        while (claimedDepth != null) {
+            if (claimedDepth <= depth) {
+                return false;
+            }
+            if (claimedPages.replace(key, claimedDepth, depth)) {
+                return true;
+            }
+            claimedDepth = claimedPages.putIfAbsent(key, depth);
+        }
+        return true;
+    }
+
+    private static String urlOf(int page) {
+        return "http://host" + (page % 64) + ".example.com/section" + (page % 1000) + "/page" + page + ".html";
+    }
+
+    private static URL toURL(String url) {
+        try {
+            return new URL(url);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the heap retained by the structure the given function builds
+     * from the {@link #PAGES}, divided by the number of pages. The URLs are
+     * built as they are claimed, so a structure that keeps them pays for them.
+     * The size is the difference between the heap with and without the
+     * structure.
+     */
+    private static double measureMemory(IntFunction<Object> build) throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        retained = build.apply(PAGES);
+        collectGarbage();
+        long with = memory.getHeapMemoryUsage().getUsed();
+        retained = null;
+        collectGarbage();
+        long without = memory.getHeapMemoryUsage().getUsed();
+        return (double) (with - without) / PAGES;
+    }
+
+    private static void collectGarbage() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+    }
+}
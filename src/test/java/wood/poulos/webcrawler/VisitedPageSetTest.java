@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitedPageSetTest {
+
+    private final VisitedPageSet set = new VisitedPageSet();
+
+    @Test
+    void testClaimOnlySucceedsOncePerDepth() {
+        assertTrue(set.claim("http://test.xyz/page.html", 2));
+        assertFalse(set.claim("http://test.xyz/page.html", 2));
+        assertFalse(set.claim("http://test.xyz/page.html", 3));
+        assertTrue(set.claim("http://test.xyz/page.html", 1));
+        assertFalse(set.claim("http://test.xyz/page.html", 1));
+        assertTrue(set.claim("http://test.xyz/other.html", 3));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    void testClaimDeeperThanRecordedDepthIsOnlyClaimedOnce() {
+        assertTrue(set.claim("http://test.xyz/", VisitedPageSet.MAX_RECORDED_DEPTH + 10));
+        assertFalse(set.claim("http://test.xyz/", VisitedPageSet.MAX_RECORDED_DEPTH + 5));
+        assertTrue(set.claim("http://test.xyz/", VisitedPageSet.MAX_RECORDED_DEPTH - 1));
+    }
+
+    @Test
+    void testGrowingKeepsClaimedPages() {
+        int pages = 100_000;
+        for (int i = 0; i < pages; i++) {
+            assertTrue(set.claim("http://test.xyz/" + i, 5));
+        }
+        assertEquals(pages, set.size());
+        for (int i = 0; i < pages; i++) {
+            assertFalse(set.claim("http://test.xyz/" + i, 5));
+        }
+        assertTrue(set.claim("http://test.xyz/" + (pages / 2), 4));
+        assertEquals(pages, set.size());
+    }
+
+    @Test
+    void testMemoryPerPageIsAtMostThreeLongs() {
+        int pages = 1_000_000;
+        for (int i = 0; i < pages; i++) {
+            set.claim("http://test.xyz/" + i, 1);
+        }
+        assertTrue(set.getCapacity() * Long.BYTES / pages <= 3 * Long.BYTES);
+    }
+
+    @Test
+    void testExpectedPagesAvoidsGrowing() {
+        VisitedPageSet presized = new VisitedPageSet(10_000);
+        int capacity = presized.getCapacity();
+        for (int i = 0; i < 10_000; i++) {
+            presized.claim("http://test.xyz/" + i, 1);
+        }
+        assertEquals(capacity, presized.getCapacity());
+    }
+
+    @Test
+    void testConcurrentClaimsOnlySucceedOncePerPage() throws Exception {
+        int threads = 32;
+        int pages = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> claims = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            claims.add(executor.submit(() -> {
+                start.await();
+                int successes = 0;
+                for (int i = 0; i < pages; i++) {
+                    if (set.claim("http://test.xyz/" + ((i + offset * 101) % pages), 1)) {
+                        successes++;
+                    }
+                }
+                return successes;
+            }));
+        }
+        start.countDown();
+        int successes = 0;
+        for (Future<Integer> claim : claims) {
+            successes += claim.get();
+        }
+        executor.shutdown();
+        assertEquals(pages, successes);
+        assertEquals(pages, set.size());
+    }
+
+    @Test
+    void testFingerprintsDifferForSimilarURLs() {
+        assertNotEquals(VisitedPageSet.fingerprint("http://test.xyz/a"), VisitedPageSet.fingerprint("http://test.xyz/b"));
+        assertNotEquals(VisitedPageSet.fingerprint("http://test.xyz/ab"), VisitedPageSet.fingerprint("http://test.xyz/ba"));
+        assertEquals(VisitedPageSet.fingerprint("http://test.xyz/a"), VisitedPageSet.fingerprint("http://test.xyz/a"));
+    }
+}
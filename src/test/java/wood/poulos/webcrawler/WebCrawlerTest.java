@@ -24,18 +24,37 @@
 package wood.poulos.webcrawler;
 
 import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.*;
+import wood.poulos.webcrawler.util.Fetcher;
 import wood.poulos.webcrawler.util.FileDownloadVerifier;
 import wood.poulos.webcrawler.util.TestWebServer;
+import wood.poulos.webcrawler.util.URLConverter;
 import wood.poulos.webcrawler.util.URLCreator;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -143,34 +162,397 @@ public class WebCrawlerTest {
 
     @Test
     void testStartTestPagesDepth1() throws IOException {
-        WebCrawler crawler = new WebCrawler(URI.create(host), 1, repo);
+        startAndAssertDownloaded(new WebCrawler(URI.create(host), 1, repo), 1, 3);
+    }
+
+    @Test
+    void testStartTestPagesDepth2() throws IOException {
+        startAndAssertDownloaded(new WebCrawler(URI.create(host), 2, repo), 1, 12);
+    }
+
+    @Test
+    void testStartTestPagesDepth3() throws IOException {
+        startAndAssertDownloaded(new WebCrawler(URI.create(host), 3, repo), 1, 15);
+    }
+
+    @Test
+    void testStartTestPagesDepth3WithSaturatedSingleThread() throws IOException {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setThreads(1);
+        settings.setQueueCapacity(1);
+        startAndAssertDownloaded(new WebCrawler(URI.create(host), 3, repo, settings), 1, 15);
+    }
+
+    @Test
+    void testStartTestPagesDepth3WithSpillingFrontier() throws IOException {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setFrontierMemoryCapacity(1);
+        settings.setThreads(2);
+        settings.setQueueCapacity(1);
+        startAndAssertDownloaded(new WebCrawler(URI.create(host), 3, repo, settings), 1, 15);
+    }
+
+    @Test
+    void testStartTestPagesDepth3OnePageAtATimePerHost() throws IOException {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setPagesPerHost(1);
+        settings.setHostDelayMillis(100);
+        RecordingFetcher fetcher = new RecordingFetcher(WebCrawler.createFetcher(settings));
+        startAndAssertDownloaded(new WebCrawler(URI.create(host), 3, repo, settings, null, fetcher), 1, 15);
+
+        // The seed is crawled before any other page is scheduled, so only the pages after it are checked.
+        List<RecordingFetcher.Fetch> pages = fetcher.getPageFetches();
+        assertTrue(pages.size() > 2, pages.toString());
+        for (int i = 2; i < pages.size(); i++) {
+            RecordingFetcher.Fetch previous = pages.get(i - 1);
+            RecordingFetcher.Fetch next = pages.get(i);
+            assertTrue(next.start >= previous.end, previous.path + " and " + next.path + " were crawled at once");
+            // Allows for the time between a crawl starting and its page being fetched.
+            assertTrue(next.start - previous.start >= TimeUnit.MILLISECONDS.toNanos(90),
+                    next.path + " was crawled too soon after " + previous.path);
+        }
+    }
+
+    @Test
+    void testStartTestPagesDepth3AdaptiveHostLimits() throws IOException {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setAdaptingHostLimits(true);
+        settings.setPagesPerHost(1);
+        repo.configureDownloads(4, 1);
+        repo.enableAdaptiveDownloads();
+        WebCrawler crawler = new WebCrawler(URI.create(host), 3, repo, settings);
+        startAndAssertDownloaded(crawler, 1, 15);
+        // The local server answers quickly, so both limits are raised from the 1 they started at.
+        assertTrue(crawler.getPageLimits().get("localhost") > 1, crawler.getPageLimits().toString());
+        assertTrue(repo.getDownloadLimits().get("localhost") > 1, repo.getDownloadLimits().toString());
+    }
+
+    @Test
+    void testStartTestPagesDepth3VirtualThreadsMatchesPlatformThreads() throws IOException {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setExecutionMode(CrawlerSettings.ExecutionMode.VIRTUAL);
+        settings.setMaxConnections(2);
+        startAndAssertDownloaded(new WebCrawler(URI.create(host), 3, repo, settings), 1, 15);
+
+        Path platformDir = Files.createTempDirectory(Paths.get("."), "tmp");
+        try {
+            WebCrawler platformCrawler = new WebCrawler(URI.create(host), 3, new LocalFileRepository(platformDir),
+                    new CrawlerSettings());
+            platformCrawler.start();
+            for (int i = 1; i <= 15; i++) {
+                assertImageDownloaded(i, platformDir, host);
+                assertFileDownloaded(i, platformDir, host);
+            }
+        } finally {
+            FileUtils.deleteDirectory(platformDir.toFile());
+        }
+    }
+
+    @Test
+    void testStartTestPagesDepth3StreamingDownloads() throws IOException {
+        repo.configureDownloads(2, 2);
+        repo.enableStreaming(2);
+        startAndAssertDownloaded(new WebCrawler(URI.create(host), 3, repo), 1, 15);
+    }
+
+    @Test
+    void testStartTestPagesDepth3NonBlockingFetches() throws IOException {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setFetchMode(CrawlerSettings.FetchMode.NON_BLOCKING);
+        repo.setFetcher(WebCrawler.createFetcher(settings));
+        WebCrawler crawler = new WebCrawler(URI.create(host), 3, repo, settings);
         crawler.start();
-        for (int i = 1; i <= 3; i++) {
+        for (int i = 1; i <= 15; i++) {
             assertImageDownloaded(i, tempDir, host);
             assertFileDownloaded(i, tempDir, host);
         }
     }
 
     @Test
-    void testStartTestPagesDepth2() throws IOException {
-        WebCrawler crawler = new WebCrawler(URI.create(host), 2, repo);
+    void testStartTestPagesDepth3NonBlockingFetchesStopsAtPageBudget() throws IOException {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setFetchMode(CrawlerSettings.FetchMode.NON_BLOCKING);
+        settings.setMaxPages(3);
+        RecordingFetcher fetcher = new RecordingFetcher(WebCrawler.createFetcher(settings));
+        repo.setFetcher(fetcher);
+        new WebCrawler(URI.create(host + "index.html"), 3, repo, settings, null, fetcher).start();
+        List<RecordingFetcher.Fetch> pages = fetcher.getPageFetches();
+        assertEquals(3, pages.size(), pages.toString());
+        for (RecordingFetcher.Fetch page : pages) {
+            assertTrue(page.end != Long.MAX_VALUE, page.path);
+        }
+    }
+
+    @Test
+    void testStartTestPagesDepth2SavingPages() throws IOException {
+        repo.enablePageSaving();
+        startAndAssertDownloaded(new WebCrawler(URI.create(host + "index.html"), 2, repo), 1, 12);
+        for (String page : new String[]{"index.html", "page2.html", "page3.html", "page4.html"}) {
+            Path saved = tempDir.resolve(URLConverter.convertToFilePath(URLCreator.create(host + page)));
+            assertTrue(Arrays.equals(Files.readAllBytes(Paths.get("./testPages", page)), Files.readAllBytes(saved)), page);
+        }
+    }
+
+    @Test
+    void testStartTestPagesDepth3SkipsPathsDisallowedByRobots() throws IOException {
+        Path robotsFile = Paths.get("./testPages/robots.txt");
+        Files.write(robotsFile, ("User-agent: *\n"
+                + "Disallow: /page4.html\n"
+                + "Disallow: /images/image1.png\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            CrawlerSettings settings = new CrawlerSettings();
+            RecordingFetcher fetcher = new RecordingFetcher(WebCrawler.createFetcher(settings));
+            repo.setFetcher(fetcher);
+            startAndAssertDownloaded(new WebCrawler(URI.create(host + "index.html"), 3, repo, settings, null, fetcher),
+                    2, 9);
+            assertFileDownloaded(1, tempDir, host);
+            assertDownloaded(13, 15);
+
+            List<String> requested = fetcher.getRequestedPaths();
+            assertTrue(requested.contains("/robots.txt"), requested.toString());
+            assertFalse(requested.contains("/page4.html"), requested.toString());
+            assertFalse(requested.contains("/images/image1.png"), requested.toString());
+            assertNotDownloaded("images/image1.png");
+            for (int i = 10; i <= 12; i++) {
+                assertNotDownloaded("images/image" + i + ".png");
+            }
+        } finally {
+            Files.delete(robotsFile);
+        }
+    }
+
+    @Test
+    void testStartTestPagesDepth1SeededFromSitemaps() throws IOException {
+        Path index = Paths.get("./testPages/sitemap.xml");
+        Path pages = Paths.get("./testPages/sitemap-pages.xml.gz");
+        Files.write(index, ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+                + "  <sitemap><loc>" + host + "sitemap-pages.xml.gz</loc></sitemap>\n"
+                + "</sitemapindex>\n").getBytes(StandardCharsets.UTF_8));
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(pages))) {
+            out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+                    + "  <url><loc>" + host + "page5.html</loc></url>\n"
+                    + "  <url><loc>http://elsewhere.invalid/page4.html</loc></url>\n"
+                    + "</urlset>\n").getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            CrawlerSettings settings = new CrawlerSettings();
+            settings.setSeedingFromSitemaps(true);
+            RecordingFetcher fetcher = new RecordingFetcher(WebCrawler.createFetcher(settings));
+            startAndAssertDownloaded(new WebCrawler(URI.create(host + "index.html"), 1, repo, settings, null, fetcher),
+                    1, 3);
+
+            // page5.html is only linked from pages deeper than the crawl goes, so only the sitemap leads to it.
+            List<String> requested = fetcher.getRequestedPaths();
+            assertTrue(requested.contains("/sitemap.xml"), requested.toString());
+            assertTrue(requested.contains("/sitemap-pages.xml.gz"), requested.toString());
+            assertTrue(requested.contains("/page5.html"), requested.toString());
+            assertDownloaded(13, 15);
+            // Pages linked from the seed are still only crawled to the crawl's depth.
+            assertFalse(requested.contains("/page4.html"), requested.toString());
+            assertNotDownloaded("images/image10.png");
+        } finally {
+            Files.delete(index);
+            Files.delete(pages);
+        }
+    }
+
+    @Test
+    void testStartTestPagesDepth3StopsAtPageBudget() throws IOException {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setMaxPages(1);
+        RecordingFetcher fetcher = new RecordingFetcher(WebCrawler.createFetcher(settings));
+        startAndAssertDownloaded(new WebCrawler(URI.create(host + "index.html"), 3, repo, settings, null, fetcher),
+                1, 3);
+        assertEquals(1, fetcher.getPageFetches().size(), fetcher.getPageFetches().toString());
+        for (int i = 5; i <= 15; i++) {
+            assertNotDownloaded("images/image" + i + ".png");
+        }
+    }
+
+    @Test
+    void testStartTestPagesDepth3StopsAtPageByteBudget() throws IOException {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setMaxPageBytes(1);
+        RecordingFetcher fetcher = new RecordingFetcher(WebCrawler.createFetcher(settings));
+        startAndAssertDownloaded(new WebCrawler(URI.create(host + "index.html"), 3, repo, settings, null, fetcher),
+                1, 3);
+        // The seed is read to the end, but it uses up the budget, so no page after it is crawled.
+        assertEquals(1, fetcher.getPageFetches().size(), fetcher.getPageFetches().toString());
+        assertNotDownloaded("images/image5.png");
+    }
+
+    @Test
+    void testStartGeneratedSiteWithTinyQueueNeverCrawlsPagesInline() throws IOException {
+        Path site = generateSite(8, 3);
+        try {
+            CrawlerSettings settings = new CrawlerSettings();
+            settings.setThreads(2);
+            settings.setQueueCapacity(1);
+            settings.setPagesPerHost(100);
+            RecordingFetcher fetcher = new RecordingFetcher(WebCrawler.createFetcher(settings));
+            new WebCrawler(URI.create(host + "generated/page0.html"), 4, repo, settings, null, fetcher).start();
+
+            List<RecordingFetcher.Fetch> pages = fetcher.getPageFetches();
+            assertEquals(1 + 8 + 64 + 512, pages.size());
+            for (RecordingFetcher.Fetch page : pages) {
+                assertEquals(1, page.enclosingCrawls, page.path + " was crawled inside another crawl");
+            }
+        } finally {
+            FileUtils.deleteDirectory(site.toFile());
+        }
+    }
+
+    @Test
+    void testStartWithJournalDeletesJournalOnceFinished() throws IOException {
+        Path journalFile = tempDir.resolve(CrawlJournal.FILE_NAME);
+        CrawlJournal journal = CrawlJournal.open(journalFile, URI.create(host), 1, 1_000_000L, false);
+        startAndAssertDownloaded(new WebCrawler(URI.create(host), 1, repo, new CrawlerSettings(), journal), 1, 3);
+        assertFalse(Files.exists(journalFile));
+    }
+
+    @Test
+    void testStartResumesFromJournal() throws IOException {
+        Path journalFile = tempDir.resolve(CrawlJournal.FILE_NAME);
+        Files.write(journalFile, Arrays.asList(
+                "H\t2\t" + host,
+                "C\t0\t" + host,
+                "C\t1\t" + host + "page2.html",
+                "S\tI\t" + host + "images/image1.png",
+                "S\tF\t" + host + "text_files/text_file_1.txt",
+                "D\t0\t" + host));
+        CrawlJournal journal = CrawlJournal.open(journalFile, URI.create(host), 2, 1_000_000L, true);
+        startAndAssertDownloaded(new WebCrawler(URI.create(host), 2, repo, new CrawlerSettings(), journal), 4, 6);
+        assertDownloaded(1, 1);
+        // The seed page had already been crawled, so it is not crawled again.
+        assertNotDownloaded("text_files/text_file_2.txt");
+        assertFalse(Files.exists(journalFile));
+    }
+
+    @Test
+    void testStartResumesPagesWhoseLinksWereDroppedByPageBudget() throws IOException {
+        Path journalFile = tempDir.resolve(CrawlJournal.FILE_NAME);
+        URI seed = URI.create(host + "index.html");
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setMaxPages(1);
+        new WebCrawler(seed, 3, repo, settings, CrawlJournal.open(journalFile, seed, 3, 1_000_000L, false)).start();
+
+        // The seed used up the budget as it started, so the pages it links to were dropped.
+        assertTrue(Files.exists(journalFile));
+        for (String record : Files.readAllLines(journalFile)) {
+            assertFalse(record.startsWith("D\t"), record);
+        }
+
+        CrawlJournal journal = CrawlJournal.open(journalFile, seed, 3, 1_000_000L, true);
+        startAndAssertDownloaded(new WebCrawler(seed, 3, repo, new CrawlerSettings(), journal), 1, 15);
+        assertFalse(Files.exists(journalFile));
+    }
+
+    @Test
+    void testStartResumingFromUnreachableSeedKeepsJournal() throws IOException {
+        String seed = "http://localhost:1/";
+        Path journalFile = tempDir.resolve(CrawlJournal.FILE_NAME);
+        Files.write(journalFile, Arrays.asList(
+                "H\t2\t" + seed,
+                "C\t0\t" + seed,
+                "C\t1\t" + host + "page2.html"));
+        CrawlJournal journal = CrawlJournal.open(journalFile, URI.create(seed), 2, 1_000_000L, true);
+        WebCrawler crawler = new WebCrawler(URI.create(seed), 2, repo, new CrawlerSettings(), journal);
         crawler.start();
-        for (int i = 1; i <= 12; i++) {
-            assertImageDownloaded(i, tempDir, host);
-            assertFileDownloaded(i, tempDir, host);
+
+        assertTrue(Files.exists(journalFile));
+        // The pages left to crawl wait for the seed, so none of them was crawled.
+        for (String record : Files.readAllLines(journalFile)) {
+            assertFalse(record.startsWith("D\t"), record);
         }
     }
 
     @Test
-    void testStartTestPagesDepth3() throws IOException {
+    void testResumeOptionIsRemovedFromArgs() {
+        String[] args = {WebCrawler.RESUME_OPTION, "http://test.xyz/", "1", "dir"};
+        assertTrue(WebCrawler.hasResumeOption(args));
+        assertArrayEquals(new String[] {"http://test.xyz/", "1", "dir"}, WebCrawler.removeResumeOption(args));
+        assertFalse(WebCrawler.hasResumeOption(new String[] {"http://test.xyz/", "1", "dir"}));
+    }
+
+    @Test
+    void testClaimPageOnlyOncePerDepth() {
         WebCrawler crawler = new WebCrawler(URI.create(host), 3, repo);
+        WebPage page = WebElements.createWebPage(URLCreator.create(host + "page2.html"));
+        assertTrue(crawler.claimPage(page, 2));
+        assertFalse(crawler.claimPage(page, 2));
+        assertFalse(crawler.claimPage(WebElements.createWebPage(URLCreator.create(host + "page2.html")), 3));
+        assertTrue(crawler.claimPage(page, 1));
+        assertFalse(crawler.claimPage(page, 1));
+    }
+
+    @Test
+    void testClaimPageConcurrentlyOnlySucceedsOnce() throws Exception {
+        WebCrawler crawler = new WebCrawler(URI.create(host), 3, repo);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<Boolean>> claims = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            WebPage page = WebElements.createWebPage(URLCreator.create(host + "page3.html"));
+            claims.add(executor.submit(() -> crawler.claimPage(page, 1)));
+        }
+        int successes = 0;
+        for (Future<Boolean> claim : claims) {
+            if (claim.get()) {
+                successes++;
+            }
+        }
+        executor.shutdown();
+        assertEquals(1, successes);
+    }
+
+    /**
+     * Starts the given crawler and asserts that the images and text files
+     * numbered from first to last were downloaded.
+     */
+    private void startAndAssertDownloaded(WebCrawler crawler, int first, int last) throws IOException {
         crawler.start();
-        for (int i = 1; i <= 15; i++) {
+        assertDownloaded(first, last);
+    }
+
+    private void assertDownloaded(int first, int last) throws IOException {
+        for (int i = first; i <= last; i++) {
             assertImageDownloaded(i, tempDir, host);
             assertFileDownloaded(i, tempDir, host);
         }
     }
 
+    /**
+     * Writes a site to testPages/generated in which page0.html is the root of
+     * a tree of pages with the given number of links per page and levels
+     * below the root.
+     *
+     * @return The directory of the site, to be deleted once done with.
+     */
+    private static Path generateSite(int linksPerPage, int levels) throws IOException {
+        Path site = Files.createDirectories(Paths.get("./testPages/generated"));
+        int pages = 1;
+        int levelSize = 1;
+        for (int i = 0; i < levels; i++) {
+            levelSize *= linksPerPage;
+            pages += levelSize;
+        }
+        for (int page = 0; page < pages; page++) {
+            StringBuilder html = new StringBuilder("<html><body>\n");
+            for (int link = page * linksPerPage + 1; link <= (page + 1) * linksPerPage && link < pages; link++) {
+                html.append("<a href=\"page").append(link).append(".html\">Page ").append(link).append("</a>\n");
+            }
+            html.append("<a href=\"page0.html\">Home</a>\n</body></html>\n");
+            Files.write(site.resolve("page" + page + ".html"), html.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return site;
+    }
+
+    private void assertNotDownloaded(String path) {
+        Path downloaded = tempDir.resolve(URLConverter.convertToFilePath(URLCreator.create(host + path)));
+        assertFalse(Files.exists(downloaded), "Downloaded file exists: " + downloaded);
+    }
+
     public static void assertImageDownloaded(int imageNumber, Path tempDir, String host) throws IOException {
         FileDownloadVerifier.assertFileDownloadedSuccessfully(
                 Paths.get("./testPages/images/image" + imageNumber + ".png"),
@@ -182,4 +564,95 @@ public class WebCrawlerTest {
                 Paths.get("./testPages/text_files/text_file_" + fileNumber + ".txt"),
                 URLCreator.create(host + "text_files/text_file_" + fileNumber + ".txt"), tempDir);
     }
-}
\ No newline at end of file
+
+    /**
+     * Passes fetches on to another fetcher, recording what was requested and
+     * when each response was fetched and closed.
+     */
+    private static final class RecordingFetcher implements Fetcher {
+
+        private final Fetcher fetcher;
+        private final List<Fetch> fetches = new CopyOnWriteArrayList<>();
+
+        RecordingFetcher(Fetcher fetcher) {
+            this.fetcher = fetcher;
+        }
+
+        @NotNull
+        @Override
+        public Response fetch(@NotNull URL url) throws IOException {
+            Fetch fetch = new Fetch(url.getPath());
+            fetches.add(fetch);
+            Response response = fetcher.fetch(url);
+            return new Response() {
+                @Nullable
+                @Override
+                public String getContentType() {
+                    return response.getContentType();
+                }
+
+                @NotNull
+                @Override
+                public InputStream getBody() {
+                    return response.getBody();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    fetch.end = System.nanoTime();
+                    response.close();
+                }
+            };
+        }
+
+        @NotNull
+        @Override
+        public CompletableFuture<Void> fetchAsync(@NotNull URL url, @NotNull BodyHandler handler) {
+            Fetch fetch = new Fetch(url.getPath());
+            fetches.add(fetch);
+            return fetcher.fetchAsync(url, handler).whenComplete((ignore, failure) -> fetch.end = System.nanoTime());
+        }
+
+        List<String> getRequestedPaths() {
+            return fetches.stream().map(fetch -> fetch.path).collect(Collectors.toList());
+        }
+
+        /**
+         * Returns the fetches of HTML pages, in the order they were started.
+         */
+        List<Fetch> getPageFetches() {
+            return fetches.stream()
+                    .filter(fetch -> fetch.path.endsWith("/") || fetch.path.endsWith(".html"))
+                    .collect(Collectors.toList());
+        }
+
+        static final class Fetch {
+
+            final String path;
+            final long start = System.nanoTime();
+            volatile long end = Long.MAX_VALUE;
+            /**
+             * The number of page crawls on the stack of the thread that made
+             * the fetch, which is more than one if a crawl ran inside another.
+             */
+            final int enclosingCrawls;
+
+            private Fetch(String path) {
+                this.path = path;
+                int crawls = 0;
+                for (StackTraceElement frame : Thread.currentThread().getStackTrace()) {
+                    if (frame.getClassName().equals(WebCrawler.class.getName())
+                            && frame.getMethodName().equals("crawlPage")) {
+                        crawls++;
+                    }
+                }
+                this.enclosingCrawls = crawls;
+            }
+
+            @Override
+            public String toString() {
+                return path;
+            }
+        }
+    }
+}
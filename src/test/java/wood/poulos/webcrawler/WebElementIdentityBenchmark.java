@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler;
+
+import wood.poulos.webcrawler.util.Throughput;
+
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compares the cost of adding web elements to a set now that they are
+ * identified by their canonical URL string, with adding the {@link URL}s that
+ * identified them before, whose {@link URL#hashCode()} looks the host up.
+ * Both are timed over fresh URLs every run, since a URL caches its hash code.
+ */
+public final class WebElementIdentityBenchmark {
+
+    private static final int ELEMENTS = 100_000;
+    private static final int HOSTS = 64;
+
+    /**
+     * The number of URLs added to a set of URLs. Adding one can take a good
+     * part of a second while their hosts are looked up, so only the first few
+     * URLs are added.
+     */
+    private static final int URL_ELEMENTS = 20;
+
+    private static final int NEW_HOSTS = 5;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(ELEMENTS + " elements on " + HOSTS + " hosts, the first " + URL_ELEMENTS
+                + " of them as URLs");
+        String[] urls = new String[ELEMENTS];
+        for (int i = 0; i < ELEMENTS; i++) {
+            urls[i] = "http://host" + (i % HOSTS) + ".example.com/section" + (i % 100) + "/file" + i + ".txt";
+        }
+        Throughput.reportOperations("URL (before)", URL_ELEMENTS, () -> {
+            Set<URL> set = new HashSet<>();
+            for (int i = 0; i < URL_ELEMENTS; i++) {
+                set.add(new URL(urls[i]));
+            }
+            return set.size();
+        });
+        Throughput.reportOperations("canonical identity", ELEMENTS, () -> {
+            Set<WebElement> set = new HashSet<>();
+            for (String url : urls) {
+                set.add(WebElements.createWebFile(new URL(url)));
+            }
+            return set.size();
+        });
+
+        // Every run uses hosts that have not been looked up yet.
+        System.out.println(NEW_HOSTS + " elements on hosts not looked up before");
+        int[] run = {0};
+        Throughput.reportOperations("URL (before)", NEW_HOSTS, () -> {
+            Set<URL> set = new HashSet<>();
+            run[0]++;
+            for (int i = 0; i < NEW_HOSTS; i++) {
+                set.add(new URL("http://url" + run[0] + "-" + i + ".example.com/index.html"));
+            }
+            return set.size();
+        });
+        Throughput.reportOperations("canonical identity", NEW_HOSTS, () -> {
+            Set<WebElement> set = new HashSet<>();
+            run[0]++;
+            for (int i = 0; i < NEW_HOSTS; i++) {
+                set.add(WebElements.createWebFile(new URL("http://element" + run[0] + "-" + i
+                        + ".example.com/index.html")));
+            }
+            return set.size();
+        });
+    }
+}
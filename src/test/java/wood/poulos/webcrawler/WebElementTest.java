@@ -26,7 +26,13 @@ package wood.poulos.webcrawler;
 import org.junit.jupiter.api.Test;
 import wood.poulos.webcrawler.util.URLCreator;
 
+import java.net.MalformedURLException;
 import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -65,4 +71,43 @@ class WebElementTest {
         assertNotEquals(e2, e4);
         assertNotEquals(e3, e4);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testEqualsIgnoresCaseOfProtocolAndHostAndDefaultPort() {
+        WebElement e1 = WebElements.createWebFile(URLCreator.create("http://test.xyz/file.txt"));
+        WebElement e2 = WebElements.createWebFile(URLCreator.create("HTTP://Test.XYZ:80/file.txt"));
+        WebElement e3 = WebElements.createWebFile(URLCreator.create("http://test.xyz:8080/file.txt"));
+        WebElement e4 = WebElements.createWebFile(URLCreator.create("http://test.xyz/FILE.txt"));
+
+        assertEquals(e1, e2);
+        assertEquals(e1.hashCode(), e2.hashCode());
+        assertNotEquals(e1, e3);
+        assertNotEquals(e1, e4);
+    }
+
+    @Test
+    void testEqualsAndHashCodeNeverUseURLEquality() throws MalformedURLException {
+        URLStreamHandler handler = new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL u) {
+                throw new AssertionError("Opened a connection to " + u);
+            }
+
+            @Override
+            protected int hashCode(URL u) {
+                throw new AssertionError("Hashed " + u);
+            }
+
+            @Override
+            protected boolean equals(URL u1, URL u2) {
+                throw new AssertionError("Compared " + u1 + " to " + u2);
+            }
+        };
+        Set<WebElement> elements = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            elements.add(WebElements.createWebFile(new URL(null, "http://test.xyz/" + i + ".txt", handler)));
+            elements.add(WebElements.createWebImage(new URL(null, "http://test.xyz/" + i + ".txt", handler)));
+        }
+        assertEquals(100, elements.size());
+    }
+}
@@ -25,10 +25,12 @@ package wood.poulos.webcrawler;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Test;
+import wood.poulos.webcrawler.util.URLConnectionFetcher;
 import wood.poulos.webcrawler.util.URLCreator;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -43,4 +45,13 @@ class WebFileTest {
         assertTrue(FileUtils.contentEqualsIgnoreEOL(originalFile, tempFile, null));
     }
 
+    @Test
+    void testSaveAsyncTestFileToTempFileProducesIdenticalFile() throws Exception {
+        WebElement file = WebElements.createWebFile(URLCreator.create("file:./testPages/text_files/text_file_1.txt"));
+        File originalFile = new File("./testPages/text_files/text_file_1.txt");
+        File tempFile = Files.createTempFile("text_file_1", ".txt").toFile();
+        file.saveAsync(tempFile.toPath(), new URLConnectionFetcher()).get(10, TimeUnit.SECONDS);
+        assertTrue(FileUtils.contentEquals(originalFile, tempFile));
+    }
+
 }
\ No newline at end of file
@@ -23,18 +23,35 @@
  */
 package wood.poulos.webcrawler;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import wood.poulos.webcrawler.util.SelectorFetcher;
 import wood.poulos.webcrawler.util.TestWebServer;
 import wood.poulos.webcrawler.util.URLCreator;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -105,4 +122,198 @@ class WebPageTest {
         assertTrue(indexPage.getFiles().containsAll(expectedFiles));
         assertTrue(indexPage.getImages().containsAll(expectedImages));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCrawlHandsEachDistinctElementToListener() throws Exception {
+        List<WebElement> found = new ArrayList<>();
+        indexPage.crawl(WebPage.DEFAULT_CANONICALIZER, found::add);
+
+        Collection<WebElement> collected = new HashSet<>();
+        collected.addAll(indexPage.getWebPages());
+        collected.addAll(indexPage.getFiles());
+        collected.addAll(indexPage.getImages());
+        assertEquals(collected.size(), found.size());
+        assertEquals(collected, new HashSet<>(found));
+    }
+
+    @Test
+    void testCrawlFromListenerOnSameThreadLeavesBothPagesWhole() throws Exception {
+        WebPage page2 = WebElements.createWebPage(URLCreator.create(host + "page2.html"));
+        indexPage.crawl(WebPage.DEFAULT_CANONICALIZER, element -> {
+            if (element.equals(page2)) {
+                try {
+                    page2.crawl();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+
+        assertTrue(page2.isCrawled());
+        assertTrue(indexPage.getWebPages().containsAll(expectedPages));
+        assertTrue(indexPage.getFiles().containsAll(expectedFiles));
+        assertTrue(indexPage.getImages().containsAll(expectedImages));
+        for (int i = 4; i <= 6; i++) {
+            assertTrue(page2.getImages().contains(
+                    WebElements.createWebImage(URLCreator.create(host + "images/image" + i + ".png"))), "image" + i);
+            assertTrue(page2.getFiles().contains(
+                    WebElements.createWebFile(URLCreator.create(host + "text_files/text_file_" + i + ".txt"))),
+                    "text_file_" + i);
+        }
+    }
+
+    @Test
+    void testCrawlHandsElementsToListenerBeforePageIsRead() throws Exception {
+        byte[] head = ("<a href=\"first.html\">" + new String(new char[4 * CharsetDetector.PRESCAN_LENGTH])
+                .replace('\0', ' ')).getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = "<a href=\"second.html\">".getBytes(StandardCharsets.US_ASCII);
+        List<WebElement> found = new ArrayList<>();
+        List<Integer> foundBeforeTail = new ArrayList<>();
+
+        URLStreamHandler handler = new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL u) {
+                return new URLConnection(u) {
+                    @Override
+                    public void connect() {
+                    }
+
+                    @Override
+                    public InputStream getInputStream() {
+                        // Hands out the head, then notes what was found before handing out the tail.
+                        return new InputStream() {
+                            private final InputStream headStream = new ByteArrayInputStream(head);
+                            private final InputStream tailStream = new ByteArrayInputStream(tail);
+
+                            @Override
+                            public int read() throws IOException {
+                                byte[] one = new byte[1];
+                                return read(one, 0, 1) == -1 ? -1 : one[0];
+                            }
+
+                            @Override
+                            public int read(byte[] b, int off, int len) throws IOException {
+                                int read = headStream.read(b, off, len);
+                                if (read != -1) {
+                                    return read;
+                                }
+                                if (foundBeforeTail.isEmpty()) {
+                                    foundBeforeTail.add(found.size());
+                                }
+                                return tailStream.read(b, off, len);
+                            }
+                        };
+                    }
+                };
+            }
+        };
+        WebPage page = WebElements.createWebPage(new URL(null, "http://test.xyz/index.html", handler));
+        page.crawl(WebPage.DEFAULT_CANONICALIZER, found::add);
+
+        assertEquals(Arrays.asList(
+                WebElements.createWebPage(URLCreator.create("http://test.xyz/first.html")),
+                WebElements.createWebPage(URLCreator.create("http://test.xyz/second.html"))), found);
+        assertEquals(Integer.valueOf(1), foundBeforeTail.get(0));
+    }
+
+    @Test
+    void testCrawlHandsNonHTMLContentToListenerWithoutParsing() throws Exception {
+        for (String path : new String[]{"text_files/text_file_1.txt", "images/image1.png"}) {
+            WebPage page = new WebPage(URLCreator.create(host + path));
+            List<WebElement> found = new ArrayList<>();
+            List<WebElement> content = new ArrayList<>();
+            List<byte[]> bodies = new ArrayList<>();
+            page.crawl(WebPage.DEFAULT_CANONICALIZER, new WebPage.ElementListener() {
+                @Override
+                public void elementFound(WebElement element) {
+                    found.add(element);
+                }
+
+                @Override
+                public void contentFound(WebElement element, InputStream body) {
+                    content.add(element);
+                    try {
+                        bodies.add(IOUtils.toByteArray(body));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+
+            assertTrue(found.isEmpty());
+            assertEquals(Collections.singletonList(page), content);
+            assertEquals(path.endsWith(".png"), content.get(0) instanceof WebImage);
+            assertArrayEquals(Files.readAllBytes(Paths.get("./testPages").resolve(path)), bodies.get(0));
+            assertTrue(page.isCrawled());
+            assertTrue(page.getWebPages().isEmpty());
+        }
+    }
+
+    @Test
+    void testCrawlCopiesPageToListenerCopyWhileParsing() throws Exception {
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        indexPage.crawl(WebPage.DEFAULT_CANONICALIZER, new WebPage.ElementListener() {
+            @Override
+            public void elementFound(WebElement element) {
+            }
+
+            @Override
+            public OutputStream openPageCopy() {
+                return copy;
+            }
+        });
+
+        assertArrayEquals(Files.readAllBytes(Paths.get("./testPages/index.html")), copy.toByteArray());
+        assertTrue(indexPage.getWebPages().containsAll(expectedPages));
+        assertTrue(indexPage.getImages().containsAll(expectedImages));
+    }
+
+    @Test
+    void testCrawlAsyncFindsElementsAndCopiesPageAsItArrives() throws Exception {
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        List<WebElement> found = new ArrayList<>();
+        List<Thread> listenerThreads = new ArrayList<>();
+        SelectorFetcher fetcher = new SelectorFetcher(5000, 5000);
+        try {
+            assertTrue(indexPage.crawlAsync(fetcher, WebPage.DEFAULT_CANONICALIZER, new WebPage.ElementListener() {
+                @Override
+                public void elementFound(WebElement element) {
+                    found.add(element);
+                    listenerThreads.add(Thread.currentThread());
+                }
+
+                @Override
+                public OutputStream openPageCopy() {
+                    return copy;
+                }
+            }, Runnable::run).get(10, TimeUnit.SECONDS));
+        } finally {
+            fetcher.close();
+        }
+
+        assertArrayEquals(Files.readAllBytes(Paths.get("./testPages/index.html")), copy.toByteArray());
+        assertTrue(found.containsAll(expectedPages));
+        assertTrue(found.containsAll(expectedFiles));
+        assertTrue(found.containsAll(expectedImages));
+        assertFalse(listenerThreads.contains(Thread.currentThread()));
+        assertTrue(indexPage.isCrawled());
+        assertTrue(indexPage.getWebPages().containsAll(expectedPages));
+        assertTrue(indexPage.getImages().containsAll(expectedImages));
+    }
+
+    @Test
+    void testCrawlAsyncLeavesNonHTMLContentToBlockingCrawl() throws Exception {
+        WebPage page = new WebPage(URLCreator.create(host + "images/image1.png"));
+        List<WebElement> found = new ArrayList<>();
+        SelectorFetcher fetcher = new SelectorFetcher(5000, 5000);
+        try {
+            assertFalse(page.crawlAsync(fetcher, WebPage.DEFAULT_CANONICALIZER, found::add, Runnable::run)
+                    .get(10, TimeUnit.SECONDS));
+        } finally {
+            fetcher.close();
+        }
+
+        assertTrue(found.isEmpty());
+        assertFalse(page.isCrawled());
+    }
+}
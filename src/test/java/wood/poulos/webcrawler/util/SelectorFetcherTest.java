@@ -0,0 +1,377 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelectorFetcherTest {
+
+    private static String host;
+    private static TestWebServer server;
+
+    @BeforeAll
+    static void setUpWebServer() throws IOException {
+        TestWebServer.lock.lock();
+        server = new TestWebServer();
+        host = "http://localhost:" + server.getPort() + "/";
+        server.start();
+    }
+
+    @AfterAll
+    static void tearDownWebServer() {
+        server.stop();
+        TestWebServer.lock.unlock();
+    }
+
+    private final SelectorFetcher fetcher = new SelectorFetcher(5000, 5000);
+
+    @AfterEach
+    void closeFetcher() {
+        fetcher.close();
+    }
+
+    @Test
+    void testFetchAsyncPushesBodyAndContentType() throws Exception {
+        CollectingHandler handler = new CollectingHandler();
+        await(fetcher.fetchAsync(URLCreator.create(host + "index.html"), handler));
+        assertTrue(handler.contentType.startsWith("text/html"));
+        assertArrayEquals(Files.readAllBytes(Paths.get("./testPages/index.html")), handler.body.toByteArray());
+        assertTrue(handler.finished);
+    }
+
+    @Test
+    void testFetchAsyncMissingResourceFailsWithFileNotFoundException() {
+        CollectingHandler handler = new CollectingHandler();
+        CompletableFuture<Void> fetched = fetcher.fetchAsync(URLCreator.create(host + "missing.html"), handler);
+        assertThrows(FileNotFoundException.class, () -> await(fetched));
+        assertFalse(handler.started);
+    }
+
+    @Test
+    void testFetchAsyncManyAtOnce() throws Exception {
+        byte[] expected = Files.readAllBytes(Paths.get("./testPages/page2.html"));
+        List<CollectingHandler> handlers = new ArrayList<>();
+        List<CompletableFuture<Void>> fetches = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            CollectingHandler handler = new CollectingHandler();
+            handlers.add(handler);
+            fetches.add(fetcher.fetchAsync(URLCreator.create(host + "page2.html"), handler));
+        }
+        for (int i = 0; i < fetches.size(); i++) {
+            await(fetches.get(i));
+            assertArrayEquals(expected, handlers.get(i).body.toByteArray());
+        }
+    }
+
+    @Test
+    void testFetchAsyncChunkedBody() throws Exception {
+        String response = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                "5\r\nHello\r\n7;ext=1\r\n, world\r\n0\r\nTrailer: x\r\n\r\n";
+        try (ServerSocket rawServer = serve(response.getBytes(StandardCharsets.US_ASCII))) {
+            CollectingHandler handler = new CollectingHandler();
+            await(fetcher.fetchAsync(urlOf(rawServer), handler));
+            assertEquals("text/plain", handler.contentType);
+            assertEquals("Hello, world", new String(handler.body.toByteArray(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void testFetchAsyncSkipsInformationalResponses() throws Exception {
+        String response = "HTTP/1.1 100 Continue\r\n\r\n" +
+                "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok";
+        try (ServerSocket rawServer = serve(response.getBytes(StandardCharsets.US_ASCII))) {
+            CollectingHandler handler = new CollectingHandler();
+            await(fetcher.fetchAsync(urlOf(rawServer), handler));
+            assertEquals("ok", new String(handler.body.toByteArray(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void testFetchAsyncLargeBody() throws Exception {
+        byte[] body = new byte[SelectorFetcher.BUFFER_SIZE * 8 + 123];
+        new Random(42).nextBytes(body);
+        byte[] head = ("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] response = new byte[head.length + body.length];
+        System.arraycopy(head, 0, response, 0, head.length);
+        System.arraycopy(body, 0, response, head.length, body.length);
+
+        try (ServerSocket rawServer = serve(response)) {
+            CollectingHandler handler = new CollectingHandler();
+            await(fetcher.fetchAsync(urlOf(rawServer), handler));
+            assertNull(handler.contentType);
+            assertArrayEquals(body, handler.body.toByteArray());
+        }
+    }
+
+    @Test
+    void testFetchAsyncBodyUntilClose() throws Exception {
+        byte[] response = "HTTP/1.0 200 OK\r\n\r\nuntil the end".getBytes(StandardCharsets.US_ASCII);
+        try (ServerSocket rawServer = serve(response)) {
+            CollectingHandler handler = new CollectingHandler();
+            await(fetcher.fetchAsync(urlOf(rawServer), handler));
+            assertEquals("until the end", new String(handler.body.toByteArray(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void testFetchAsyncTruncatedBodyFailsWithEOFException() throws Exception {
+        byte[] response = "HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\nshort".getBytes(StandardCharsets.US_ASCII);
+        try (ServerSocket rawServer = serve(response)) {
+            CollectingHandler handler = new CollectingHandler();
+            CompletableFuture<Void> fetched = fetcher.fetchAsync(urlOf(rawServer), handler);
+            assertThrows(EOFException.class, () -> await(fetched));
+            assertFalse(handler.finished);
+        }
+    }
+
+    @Test
+    void testFetchAsyncFollowsRedirects() throws Exception {
+        String response = "HTTP/1.1 302 Found\r\nLocation: " + host + "page2.html\r\nContent-Length: 0\r\n\r\n";
+        try (ServerSocket rawServer = serve(response.getBytes(StandardCharsets.US_ASCII))) {
+            CollectingHandler handler = new CollectingHandler();
+            await(fetcher.fetchAsync(urlOf(rawServer), handler));
+            assertArrayEquals(Files.readAllBytes(Paths.get("./testPages/page2.html")), handler.body.toByteArray());
+        }
+    }
+
+    @Test
+    void testFetchAsyncFailsWhenHandlerFails() throws Exception {
+        IOException failure = new IOException("Could not handle the body");
+        CompletableFuture<Void> fetched = fetcher.fetchAsync(URLCreator.create(host + "index.html"),
+                new CollectingHandler() {
+                    @Override
+                    public void handle(@NotNull ByteBuffer chunk) throws IOException {
+                        throw failure;
+                    }
+                });
+        assertSame(failure, assertThrows(IOException.class, () -> await(fetched)));
+    }
+
+    @Test
+    void testFetchAsyncTimesOutWhenServerSendsNothing() throws Exception {
+        try (ServerSocket silentServer = serve(null)) {
+            SelectorFetcher impatientFetcher = new SelectorFetcher(1000, 200);
+            try {
+                long start = System.nanoTime();
+                CompletableFuture<Void> fetched = impatientFetcher.fetchAsync(urlOf(silentServer),
+                        new CollectingHandler());
+                assertThrows(SocketTimeoutException.class, () -> await(fetched));
+                assertTrue(System.nanoTime() - start < 4_000_000_000L);
+            } finally {
+                impatientFetcher.close();
+            }
+        }
+    }
+
+    @Test
+    void testFetchAsyncHttpsUsesFallback() throws Exception {
+        List<URL> fallbackURLs = new ArrayList<>();
+        SelectorFetcher fallingBackFetcher = new SelectorFetcher(1000, 1000, url -> {
+            fallbackURLs.add(url);
+            return new Fetcher.Response() {
+                private final InputStream body = new ByteArrayInputStream(new byte[]{'o', 'k'});
+
+                @Override
+                public String getContentType() {
+                    return "text/plain";
+                }
+
+                @NotNull
+                @Override
+                public InputStream getBody() {
+                    return body;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    body.close();
+                }
+            };
+        });
+        try {
+            URL url = new URL("https://localhost/index.html");
+            CollectingHandler handler = new CollectingHandler();
+            await(fallingBackFetcher.fetchAsync(url, handler));
+            assertEquals(1, fallbackURLs.size());
+            assertEquals(url, fallbackURLs.get(0));
+            assertEquals("text/plain", handler.contentType);
+            assertEquals("ok", new String(handler.body.toByteArray(), StandardCharsets.US_ASCII));
+        } finally {
+            fallingBackFetcher.close();
+        }
+    }
+
+    @Test
+    void testFetchUsesFallback() throws Exception {
+        List<URL> fallbackURLs = new ArrayList<>();
+        SelectorFetcher fallingBackFetcher = new SelectorFetcher(1000, 1000, url -> {
+            fallbackURLs.add(url);
+            throw new FileNotFoundException(url.toString());
+        });
+        try {
+            URL url = URLCreator.create(host + "index.html");
+            assertThrows(FileNotFoundException.class, () -> fallingBackFetcher.fetch(url));
+            assertEquals(1, fallbackURLs.size());
+        } finally {
+            fallingBackFetcher.close();
+        }
+    }
+
+    @Test
+    void testFetchAsyncAfterCloseFailsWithIOException() {
+        fetcher.close();
+        CompletableFuture<Void> fetched = fetcher.fetchAsync(URLCreator.create(host + "index.html"),
+                new CollectingHandler());
+        assertThrows(IOException.class, () -> await(fetched));
+    }
+
+    @Test
+    void testCloseFailsFetchesInFlight() throws Exception {
+        try (ServerSocket silentServer = serve(null)) {
+            CompletableFuture<Void> fetched = fetcher.fetchAsync(urlOf(silentServer), new CollectingHandler());
+            fetcher.close();
+            assertThrows(IOException.class, () -> await(fetched));
+        }
+    }
+
+    @Test
+    void testNegativeTimeoutThrowsIAE() {
+        assertThrows(IllegalArgumentException.class, () -> new SelectorFetcher(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new SelectorFetcher(0, -1));
+    }
+
+    /**
+     * Waits for the given fetch, throwing what it failed with.
+     */
+    private static void await(@NotNull CompletableFuture<Void> fetched) throws Exception {
+        try {
+            fetched.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a server that answers a single request with the given raw
+     * response and closes the connection, or never answers if it is null.
+     */
+    private static ServerSocket serve(byte[] response) throws IOException {
+        ServerSocket rawServer = new ServerSocket(0);
+        Thread thread = new Thread(() -> {
+            try (Socket socket = rawServer.accept()) {
+                InputStream in = socket.getInputStream();
+                int matched = 0;
+                while (matched < 4) {
+                    int b = in.read();
+                    if (b == -1) {
+                        return;
+                    }
+                    matched = (b == "\r\n\r\n".charAt(matched)) ? matched + 1 : (b == '\r' ? 1 : 0);
+                }
+                if (response == null) {
+                    Thread.sleep(5000);
+                    return;
+                }
+                OutputStream out = socket.getOutputStream();
+                out.write(response);
+                out.flush();
+            } catch (IOException | InterruptedException ignore) {
+                // The test is over.
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return rawServer;
+    }
+
+    private static URL urlOf(ServerSocket rawServer) throws IOException {
+        return new URL("http://localhost:" + rawServer.getLocalPort() + "/");
+    }
+
+    /**
+     * Collects the body it is handed, which must be copied since the chunks
+     * are only valid while they are handled.
+     */
+    private static class CollectingHandler implements Fetcher.BodyHandler {
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        @Nullable
+        private volatile String contentType;
+        private volatile boolean started;
+        private volatile boolean finished;
+
+        @Override
+        public void start(@Nullable String contentType) {
+            this.contentType = contentType;
+            started = true;
+        }
+
+        @Override
+        public void handle(@NotNull ByteBuffer chunk) throws IOException {
+            byte[] bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            synchronized (body) {
+                body.write(bytes);
+            }
+        }
+
+        @Override
+        public void finish() {
+            finished = true;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A small timing harness for the benchmarks in the test source set. A task is
+ * run a few times to warm up and then timed over several runs, and the median
+ * run is reported, which is steady enough to compare two implementations of
+ * the same thing on one machine. Benchmarks are plain programs rather than
+ * tests, so they are run by hand and never slow the build down.
+ */
+public final class Throughput {
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int TIMED_RUNS = 10;
+
+    /**
+     * A piece of work to time. Returning a value derived from the work keeps
+     * the JIT from optimizing it away.
+     */
+    @FunctionalInterface
+    public interface Task {
+        long run() throws Exception;
+    }
+
+    private Throughput() {
+    }
+
+    /**
+     * Times the given task, returning the median duration of a run.
+     *
+     * @param task The task to time.
+     * @return the median duration of a run, in nanoseconds.
+     * @throws Exception If the task fails.
+     */
+    public static long time(@NotNull Task task) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            sink += task.run();
+        }
+        long[] durations = new long[TIMED_RUNS];
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            long start = System.nanoTime();
+            sink += task.run();
+            durations[i] = System.nanoTime() - start;
+        }
+        if (sink == 42) {
+            System.out.print("");
+        }
+        Arrays.sort(durations);
+        return durations[TIMED_RUNS / 2];
+    }
+
+    /**
+     * Times the given task over an input of the given size and prints its
+     * throughput in megabytes per second.
+     *
+     * @param name  The name to report the task under.
+     * @param bytes The number of bytes a run of the task reads.
+     * @param task  The task to time.
+     * @return the throughput in megabytes per second.
+     * @throws Exception If the task fails.
+     */
+    public static double reportBytes(@NotNull String name, long bytes, @NotNull Task task) throws Exception {
+        long nanos = time(task);
+        double mbPerSecond = bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+        System.out.println(String.format(Locale.ROOT, "%-40s %10.1f MB/s", name, mbPerSecond));
+        return mbPerSecond;
+    }
+
+    /**
+     * Times the given task and prints how long each of its operations took.
+     *
+     * @param name       The name to report the task under.
+     * @param operations The number of operations a run of the task does.
+     * @param task       The task to time.
+     * @return the duration of an operation in nanoseconds.
+     * @throws Exception If the task fails.
+     */
+    public static double reportOperations(@NotNull String name, long operations, @NotNull Task task)
+            throws Exception {
+        double nanosPerOperation = (double) time(task) / operations;
+        System.out.println(String.format(Locale.ROOT, "%-40s %10.1f ns/op", name, nanosPerOperation));
+        return nanosPerOperation;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Fetches every file of the test pages from the {@link TestWebServer} with
+ * the shared {@link URLConnectionFetcher}, and with the bare connections that
+ * pages and downloads were fetched with before it. Pages were read to their
+ * end but never closed, while downloads were closed once copied.
+ * <p>
+ * The same fetches are then made from a minimal keep-alive server that
+ * answers at once and counts the connections it accepts, with every tenth
+ * fetch for a missing file, to show how often each way reuses a connection.
+ * </p>
+ */
+public final class URLConnectionFetcherBenchmark {
+
+    /**
+     * The number of times every file is fetched in a run.
+     */
+    private static final int ROUNDS = 1;
+
+    /**
+     * The number of fetches in a run from the minimal server.
+     */
+    private static final int FETCHES = 2000;
+
+    public static void main(String[] args) throws Exception {
+        TestWebServer server = new TestWebServer();
+        server.start();
+        try {
+            String host = "http://localhost:" + server.getPort() + "/";
+            Path root = Paths.get("testPages");
+            List<URL> urls;
+            try (Stream<Path> files = Files.walk(root)) {
+                urls = files.filter(Files::isRegularFile)
+                        .map(file -> URLCreator.create(host + root.relativize(file).toString().replace('\\', '/')))
+                        .collect(Collectors.toList());
+            }
+            long fetches = (long) urls.size() * ROUNDS;
+            System.out.println(urls.size() + " files fetched " + ROUNDS + " times a run");
+
+            Fetcher fetcher = new URLConnectionFetcher();
+            Throughput.reportOperations("openConnection (before)", fetches, () -> fetchBefore(urls, ROUNDS));
+            Throughput.reportOperations("URLConnectionFetcher", fetches, () -> fetch(fetcher, urls, ROUNDS));
+        } finally {
+            server.stop();
+        }
+
+        try (CountingServer countingServer = new CountingServer()) {
+            List<URL> urls = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                urls.add(new URL("http://localhost:" + countingServer.getPort() + (i == 9 ? "/missing.html" : "/page" + i
+                        + ".html")));
+            }
+            int rounds = FETCHES / urls.size();
+            System.out.println(FETCHES + " fetches a run from a minimal server, a tenth of them missing");
+            Fetcher fetcher = new URLConnectionFetcher();
+            countingServer.connections.set(0);
+            Throughput.reportOperations("openConnection (before)", FETCHES, () -> fetchBefore(urls, rounds));
+            System.out.println("  " + countingServer.connections.getAndSet(0) + " connections");
+            Throughput.reportOperations("URLConnectionFetcher", FETCHES, () -> fetch(fetcher, urls, rounds));
+            System.out.println("  " + countingServer.connections.getAndSet(0) + " connections");
+        }
+    }
+
+    /**
+     * Fetches the given URLs the way pages and downloads were fetched before
+     * the {@link URLConnectionFetcher}, reading each to its end.
+     */
+    private static long fetchBefore(@NotNull List<URL> urls, int rounds) throws IOException {
+        long bytes = 0;
+        for (int i = 0; i < rounds; i++) {
+            for (URL url : urls) {
+                URLConnection connection = url.openConnection();
+                connection.connect();
+                try {
+                    if (url.getPath().endsWith(".html")) {
+                        bytes += drain(connection.getInputStream());
+                    } else {
+                        try (InputStream body = connection.getInputStream()) {
+                            bytes += drain(body);
+                        }
+                    }
+                } catch (FileNotFoundException ignore) {
+                    // A missing element failed its crawl or download.
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Fetches the given URLs with the given fetcher, reading each to its end.
+     */
+    private static long fetch(@NotNull Fetcher fetcher, @NotNull List<URL> urls, int rounds) throws IOException {
+        long bytes = 0;
+        for (int i = 0; i < rounds; i++) {
+            for (URL url : urls) {
+                try (Fetcher.Response response = fetcher.fetch(url)) {
+                    bytes += drain(response.getBody());
+                } catch (FileNotFoundException ignore) {
+                    // A missing element failed its crawl or download.
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long drain(@NotNull InputStream body) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * A minimal HTTP server that keeps connections alive, answers every
+     * request at once with a small page, or a 404 for paths starting with
+     * {@code /missing}, and counts the connections it accepts.
+     */
+    private static final class CountingServer implements AutoCloseable {
+
+        private static final byte[] PAGE = new byte[4096];
+
+        private final ServerSocket socket;
+        private final AtomicInteger connections = new AtomicInteger();
+
+        private CountingServer() throws IOException {
+            socket = new ServerSocket(0);
+            Thread acceptor = new Thread(this::accept, "counting-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private int getPort() {
+            return socket.getLocalPort();
+        }
+
+        private void accept() {
+            while (!socket.isClosed()) {
+                try {
+                    Socket connection = socket.accept();
+                    connections.incrementAndGet();
+                    Thread handler = new Thread(() -> serve(connection), "counting-server-connection");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(@NotNull Socket connection) {
+            try (Socket ignored = connection;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(),
+                         StandardCharsets.US_ASCII));
+                 OutputStream out = connection.getOutputStream()) {
+                connection.setTcpNoDelay(true);
+                String requestLine;
+                while ((requestLine = in.readLine()) != null) {
+                    String line;
+                    while ((line = in.readLine()) != null && !line.isEmpty()) {
+                        // The headers are not needed.
+                    }
+                    boolean missing = requestLine.startsWith("GET /missing");
+                    byte[] body = missing ? "Not Found".getBytes(StandardCharsets.US_ASCII) : PAGE;
+                    String head = (missing ? "HTTP/1.1 404 Not Found" : "HTTP/1.1 200 OK")
+                            + "\r\nContent-Type: text/html\r\nContent-Length: " + body.length + "\r\n\r\n";
+                    byte[] headBytes = head.getBytes(StandardCharsets.US_ASCII);
+                    byte[] response = Arrays.copyOf(headBytes, headBytes.length + body.length);
+                    System.arraycopy(body, 0, response, headBytes.length, body.length);
+                    out.write(response);
+                    out.flush();
+                }
+            } catch (IOException ignore) {
+                // The client closed the connection.
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler.util;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class URLConnectionFetcherTest {
+
+    private static String host;
+    private static TestWebServer server;
+
+    @BeforeAll
+    static void setUpWebServer() throws IOException {
+        TestWebServer.lock.lock();
+        server = new TestWebServer();
+        host = "http://localhost:" + server.getPort() + "/";
+        server.start();
+    }
+
+    @AfterAll
+    static void tearDownWebServer() {
+        server.stop();
+        TestWebServer.lock.unlock();
+    }
+
+    private final Fetcher fetcher = new URLConnectionFetcher();
+
+    @Test
+    void testFetchReturnsBodyAndContentType() throws Exception {
+        try (Fetcher.Response response = fetcher.fetch(URLCreator.create(host + "index.html"))) {
+            assertTrue(response.getContentType().startsWith("text/html"));
+            assertArrayEquals(Files.readAllBytes(Paths.get("./testPages/index.html")),
+                    IOUtils.toByteArray(response.getBody()));
+        }
+    }
+
+    @Test
+    void testFetchMissingResourceThrowsFileNotFoundException() {
+        assertThrows(FileNotFoundException.class, () -> fetcher.fetch(URLCreator.create(host + "missing.html")));
+    }
+
+    @Test
+    void testFetchManyTimesFromSameHost() throws Exception {
+        byte[] expected = Files.readAllBytes(Paths.get("./testPages/page2.html"));
+        for (int i = 0; i < 200; i++) {
+            if (i % 10 == 0) {
+                assertThrows(FileNotFoundException.class, () -> fetcher.fetch(URLCreator.create(host + "missing.html")));
+            }
+            try (Fetcher.Response response = fetcher.fetch(URLCreator.create(host + "page2.html"))) {
+                assertArrayEquals(expected, IOUtils.toByteArray(response.getBody()));
+            }
+        }
+    }
+
+    @Test
+    void testFetchTimesOutWhenServerSendsNothing() throws Exception {
+        try (ServerSocket silentServer = new ServerSocket(0)) {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    Socket socket = silentServer.accept();
+                    try {
+                        Thread.sleep(5000);
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException | InterruptedException ignore) {
+                    // The test is over.
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            Fetcher impatientFetcher = new URLConnectionFetcher(1000, 200);
+            URL url = new URL("http://localhost:" + silentServer.getLocalPort() + "/");
+            long start = System.nanoTime();
+            assertThrows(SocketTimeoutException.class, () -> impatientFetcher.fetch(url));
+            assertTrue(System.nanoTime() - start < 4_000_000_000L);
+            acceptor.interrupt();
+        }
+    }
+
+    @Test
+    void testFetchServerErrorThrowsHttpStatusException() throws Exception {
+        try (ServerSocket overloadedServer = new ServerSocket(0)) {
+            Thread responder = new Thread(() -> {
+                try (Socket socket = overloadedServer.accept()) {
+                    socket.getOutputStream().write(("HTTP/1.1 429 Too Many Requests\r\nContent-Length: 0\r\n" +
+                            "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                } catch (IOException ignore) {
+                    // The test is over.
+                }
+            });
+            responder.setDaemon(true);
+            responder.start();
+
+            URL url = new URL("http://localhost:" + overloadedServer.getLocalPort() + "/");
+            HttpStatusException e = assertThrows(HttpStatusException.class, () -> fetcher.fetch(url));
+            assertEquals(429, e.getStatusCode());
+        }
+    }
+
+    @Test
+    void testNegativeTimeoutThrowsIAE() {
+        assertThrows(IllegalArgumentException.class, () -> new URLConnectionFetcher(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new URLConnectionFetcher(0, -1));
+    }
+}
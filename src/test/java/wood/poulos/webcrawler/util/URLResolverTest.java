@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Jeremy Wood, Elijah Poulos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package wood.poulos.webcrawler.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class URLResolverTest {
+
+    private final URLResolver resolver = new URLResolver("http://a/b/c/d;p?q");
+
+    @Test
+    void testResolveNormalExamples() {
+        assertEquals("g:h", resolver.resolve("g:h"));
+        assertEquals("http://a/b/c/g", resolver.resolve("g"));
+        assertEquals("http://a/b/c/g", resolver.resolve("./g"));
+        assertEquals("http://a/b/c/g/", resolver.resolve("g/"));
+        assertEquals("http://a/g", resolver.resolve("/g"));
+        assertEquals("http://g", resolver.resolve("//g"));
+        assertEquals("http://a/b/c/d;p?y", resolver.resolve("?y"));
+        assertEquals("http://a/b/c/g?y", resolver.resolve("g?y"));
+        assertEquals("http://a/b/c/d;p?q#s", resolver.resolve("#s"));
+        assertEquals("http://a/b/c/g#s", resolver.resolve("g#s"));
+        assertEquals("http://a/b/c/g?y#s", resolver.resolve("g?y#s"));
+        assertEquals("http://a/b/c/;x", resolver.resolve(";x"));
+        assertEquals("http://a/b/c/g;x", resolver.resolve("g;x"));
+        assertEquals("http://a/b/c/g;x?y#s", resolver.resolve("g;x?y#s"));
+        assertEquals("http://a/b/c/d;p?q", resolver.resolve(""));
+        assertEquals("http://a/b/c/", resolver.resolve("."));
+        assertEquals("http://a/b/c/", resolver.resolve("./"));
+        assertEquals("http://a/b/", resolver.resolve(".."));
+        assertEquals("http://a/b/", resolver.resolve("../"));
+        assertEquals("http://a/b/g", resolver.resolve("../g"));
+        assertEquals("http://a/", resolver.resolve("../.."));
+        assertEquals("http://a/", resolver.resolve("../../"));
+        assertEquals("http://a/g", resolver.resolve("../../g"));
+    }
+
+    @Test
+    void testResolveAbnormalExamples() {
+        assertEquals("http://a/g", resolver.resolve("../../../g"));
+        assertEquals("http://a/g", resolver.resolve("../../../../g"));
+        assertEquals("http://a/g", resolver.resolve("/./g"));
+        assertEquals("http://a/g", resolver.resolve("/../g"));
+        assertEquals("http://a/b/c/g.", resolver.resolve("g."));
+        assertEquals("http://a/b/c/.g", resolver.resolve(".g"));
+        assertEquals("http://a/b/c/g..", resolver.resolve("g.."));
+        assertEquals("http://a/b/c/..g", resolver.resolve("..g"));
+        assertEquals("http://a/b/g", resolver.resolve("./../g"));
+        assertEquals("http://a/b/c/g/", resolver.resolve("./g/."));
+        assertEquals("http://a/b/c/g/h", resolver.resolve("g/./h"));
+        assertEquals("http://a/b/c/h", resolver.resolve("g/../h"));
+        assertEquals("http://a/b/c/g;x=1/y", resolver.resolve("g;x=1/./y"));
+        assertEquals("http://a/b/c/y", resolver.resolve("g;x=1/../y"));
+        assertEquals("http://a/b/c/g?y/./x", resolver.resolve("g?y/./x"));
+        assertEquals("http://a/b/c/g?y/../x", resolver.resolve("g?y/../x"));
+        assertEquals("http://a/b/c/g#s/./x", resolver.resolve("g#s/./x"));
+        assertEquals("http://a/b/c/g#s/../x", resolver.resolve("g#s/../x"));
+        assertEquals("http:g", resolver.resolve("http:g"));
+    }
+
+    @Test
+    void testResolveRangeOfCharacters() {
+        String html = "<a href=\"../g?y#s\">";
+        int start = html.indexOf('"') + 1;
+        int end = html.lastIndexOf('"');
+        assertEquals("http://a/b/g?y#s", resolver.resolve(html, start, end));
+    }
+
+    @Test
+    void testResolveAgainstBaseWithoutPath() throws Exception {
+        URLResolver hostOnly = new URLResolver(new URL("http://example.com"));
+        assertEquals("http://example.com/page.html", hostOnly.resolve("page.html"));
+        assertEquals("http://example.com?q", hostOnly.resolve("?q"));
+    }
+
+    @Test
+    void testRelativeBaseThrowsIAE() {
+        assertThrows(IllegalArgumentException.class, () -> new URLResolver("/relative/path"));
+    }
+
+    @Test
+    void testPathOf() {
+        assertEquals("/a/b.html", URLResolver.pathOf("http://example.com/a/b.html?q#f"));
+        assertEquals("../b.html", URLResolver.pathOf("../b.html#f"));
+        assertEquals("", URLResolver.pathOf("?q"));
+        assertNull(URLResolver.pathOf("mailto:someone@example.com"));
+    }
+}